@@ -0,0 +1,107 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Test data shared by the benchmarks.
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Returns the password with the given index, as written by {@link #writePasswordFile(int)}.
+     *
+     * @param index Password index
+     * @return The password
+     */
+    static String password(int index) {
+        return "pw" + index;
+    }
+
+    /**
+     * Writes a temporary password file with passwords pw0 to pw(count - 1).
+     *
+     * @param count Number of passwords
+     * @return Path of the file, deleted when the JVM exits
+     * @throws IOException If the file cannot be written
+     */
+    static Path writePasswordFile(int count) throws IOException {
+        Path file = Files.createTempFile("xperience-bench", ".txt");
+        file.toFile().deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < count; i++) {
+                writer.write(password(i));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Builds an event record with a name and description of the given sizes.
+     *
+     * @param id Number that makes the name unique
+     * @param nameLength Length of the name in characters
+     * @param descriptionLength Length of the description in characters
+     * @param valid False to produce a record with an invalid date
+     * @param password Password field
+     * @return The record
+     */
+    static String record(int id, int nameLength, int descriptionLength, boolean valid, String password) {
+        return name(id, nameLength) + (valid ? "#2025-04-15#14:30#" : "#2025-02-30#14:30#")
+            + description(descriptionLength) + "#" + password + "#";
+    }
+
+    /**
+     * Builds a unique name of the given length.
+     *
+     * @param id Number that makes the name unique
+     * @param length Length in characters
+     * @return The name
+     */
+    static String name(int id, int length) {
+        String suffix = Integer.toString(id);
+        return "n".repeat(Math.max(0, length - suffix.length())) + suffix;
+    }
+
+    /**
+     * Builds a description of the given length.
+     *
+     * @param length Length in characters
+     * @return The description
+     */
+    static String description(int length) {
+        char[] text = new char[length];
+        Arrays.fill(text, 'd');
+        return new String(text);
+    }
+
+    /**
+     * Decides whether the i-th operation of a mix should be valid.
+     *
+     * @param mix "valid", "invalid" or "mixed" (every other operation invalid)
+     * @param i Operation number
+     * @return True if the operation should be valid
+     */
+    static boolean isValid(String mix, int i) {
+        switch (mix) {
+            case "valid":
+                return true;
+            case "invalid":
+                return false;
+            default:
+                return (i & 1) == 0;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures EventStoreMemory.addEvent for different name and description sizes
+ * and mixes of valid and invalid events, on one thread and under contention.
+ * Each measurement is a fixed batch of adds on a fresh store so the store
+ * stays the same size from run to run.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = EventStoreMemoryBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = EventStoreMemoryBenchmark.BATCH)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventStoreMemoryBenchmark {
+
+    /**
+     * Number of adds per measurement and thread.
+     */
+    static final int BATCH = 10000;
+
+    @Param({"8", "300"})
+    public int nameLength;
+
+    @Param({"16", "65535"})
+    public int descriptionLength;
+
+    @Param({"valid", "invalid", "mixed"})
+    public String mix;
+
+    private String namePrefix;
+    private String description;
+    private EventStoreMemory store;
+    private AtomicInteger next;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        namePrefix = BenchmarkSupport.name(0, Math.max(1, nameLength - 7));
+        description = BenchmarkSupport.description(descriptionLength);
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        store = new EventStoreMemory();
+        next = new AtomicInteger();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public EventStore.Result addEvent() {
+        return add();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public EventStore.Result addEventContended() {
+        return add();
+    }
+
+    private EventStore.Result add() {
+        int i = next.getAndIncrement();
+        String date = BenchmarkSupport.isValid(mix, i) ? "2025-04-15" : "2025-02-30";
+        return store.addEvent(namePrefix + i, date, "14:30", description);
+    }
+}
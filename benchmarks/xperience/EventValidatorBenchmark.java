@@ -0,0 +1,70 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.time.*;
+import java.time.format.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the date and time checks of EventStore.EventValidator with the
+ * original LocalDate.parse and per-call regex implementations, for valid and
+ * invalid input.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventValidatorBenchmark {
+
+    /**
+     * Whether the benchmark input is valid or one of the common invalid shapes.
+     */
+    @Param({"valid", "invalid"})
+    public String input;
+
+    private String date;
+    private String time;
+
+    @Setup
+    public void setup() {
+        boolean valid = "valid".equals(input);
+        date = valid ? "2025-04-15" : "2025-02-30";
+        time = valid ? "14:30" : "24:01";
+    }
+
+    @Benchmark
+    public boolean validateDate() {
+        return EventStore.EventValidator.validateDate(date);
+    }
+
+    @Benchmark
+    public boolean legacyValidateDate() {
+        try {
+            LocalDate.parse(date, DateTimeFormatter.ISO_LOCAL_DATE);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean validateTime() {
+        return EventStore.EventValidator.validateTime(time);
+    }
+
+    @Benchmark
+    public boolean legacyValidateTime() {
+        Pattern timePattern = Pattern.compile("^([01]\\d|2[0-3]):([0-5]\\d)$");
+        return time != null && timePattern.matcher(time).matches();
+    }
+}
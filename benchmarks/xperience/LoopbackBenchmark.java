@@ -0,0 +1,136 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Drives a real XPerienceServer with an in-memory store over loopback sockets,
+ * one connection per request as the current clients do. Per-request logging is
+ * turned down to WARNING once the server is up so that console output does not
+ * dominate the measurement.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = LoopbackBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = LoopbackBenchmark.BATCH)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoopbackBenchmark {
+
+    /**
+     * Number of requests per measurement and thread.
+     */
+    static final int BATCH = 2000;
+
+    /**
+     * Passwords available to one fork; enough for every request of the contended benchmark.
+     */
+    private static final int PASSWORDS = 20 * BATCH * 8;
+
+    @Param({"blocking", "nio"})
+    public String mode;
+
+    @Param({"16", "65535"})
+    public int descriptionLength;
+
+    @Param({"valid", "invalid"})
+    public String mix;
+
+    private int port;
+    private String description;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Completed exceptionally if the server thread fails, for example because the port was taken.
+     */
+    private final CompletableFuture<Void> serverFailure = new CompletableFuture<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Path passwordFile = BenchmarkSupport.writePasswordFile(PASSWORDS);
+        description = BenchmarkSupport.description(descriptionLength);
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+
+        // The server accepts connections inside its constructor, so it gets its own thread
+        ServerOptions options = ServerOptions.parse("nio".equals(mode) ? new String[] {"--nio"} : new String[0]);
+        Thread.ofPlatform().daemon(true).start(() -> {
+            try {
+                new XPerienceServer(port, new EventStoreMemory(), passwordFile.toString(), options);
+            } catch (IOException | RuntimeException e) {
+                serverFailure.completeExceptionally(e);
+            }
+        });
+        waitForServer();
+        Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String request() throws IOException {
+        return send();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String requestContended() throws IOException {
+        return send();
+    }
+
+    private String send() throws IOException {
+        int i = next.getAndIncrement();
+        String password = BenchmarkSupport.isValid(mix, i) ? BenchmarkSupport.password(i) : "bad";
+        String record = "bench" + i + "#2025-04-15#14:30#" + description + "#" + password + "#";
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.getOutputStream().write(record.getBytes(StandardCharsets.UTF_8));
+            byte[] buffer = new byte[64];
+            int bytesRead = socket.getInputStream().read(buffer);
+            return new String(buffer, 0, Math.max(0, bytesRead), StandardCharsets.UTF_8);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkServer() {
+        checkServerFailure();
+    }
+
+    private void waitForServer() throws InterruptedException {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            checkServerFailure();
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                // Another process may have taken the port; give a failed bind a moment to show
+                serverFailure.get(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return;
+            } catch (ExecutionException e) {
+                checkServerFailure();
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+        throw new IllegalStateException("Server did not start on port " + port);
+    }
+
+    /**
+     * Fails the trial if the server thread has failed.
+     */
+    private void checkServerFailure() {
+        if (serverFailure.isCompletedExceptionally()) {
+            throw new IllegalStateException("Server on port " + port + " failed", serverFailure.exceptionNow());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures PasswordList.validateAndConsume for mixes of valid (unused) and
+ * invalid passwords, on one thread and under contention. Each measurement
+ * consumes a fixed batch of passwords from a freshly loaded list; contended
+ * threads wrap around and then see already consumed passwords.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = PasswordListBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = PasswordListBenchmark.BATCH)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordListBenchmark {
+
+    /**
+     * Number of passwords checked per measurement and thread.
+     */
+    static final int BATCH = 100000;
+
+    @Param({"valid", "invalid", "mixed"})
+    public String mix;
+
+    private Path passwordFile;
+    private String[] valid;
+    private String[] invalid;
+    private PasswordList passwordList;
+    private AtomicInteger next;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        passwordFile = BenchmarkSupport.writePasswordFile(BATCH);
+        valid = new String[BATCH];
+        invalid = new String[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            valid[i] = BenchmarkSupport.password(i);
+            invalid[i] = "bad" + i;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() throws IOException {
+        passwordList = new PasswordList(passwordFile.toString());
+        next = new AtomicInteger();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean validateAndConsume() {
+        return consumeNext();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean validateAndConsumeContended() {
+        return consumeNext();
+    }
+
+    private boolean consumeNext() {
+        int i = next.getAndIncrement() % BATCH;
+        return passwordList.validateAndConsume(BenchmarkSupport.isValid(mix, i) ? valid[i] : invalid[i]);
+    }
+}
@@ -0,0 +1,72 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.nio.charset.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/**
+ * Measures the request parsing and validation done by processEvent, compared
+ * with the original decode, replaceAll and split approach.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProcessEventBenchmark {
+
+    @Param({"8", "300"})
+    public int nameLength;
+
+    @Param({"16", "65535"})
+    public int descriptionLength;
+
+    @Param({"valid", "invalid"})
+    public String mix;
+
+    private byte[] frame;
+
+    @Setup
+    public void setup() {
+        frame = BenchmarkSupport.record(1, nameLength, descriptionLength, "valid".equals(mix), "password123")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses in place and decodes only the password, as for a rejected password.
+     */
+    @Benchmark
+    public String parsePasswordOnly() {
+        EventRequest request = new EventRequest();
+        return request.parse(frame, 0, frame.length) ? request.password() : null;
+    }
+
+    /**
+     * Parses in place, decodes every field and validates the event.
+     */
+    @Benchmark
+    public boolean parseAndValidate() {
+        EventRequest request = new EventRequest();
+        return request.parse(frame, 0, frame.length)
+            && EventStore.EventValidator.validate(request.name(), request.date(), request.time(), request.description());
+    }
+
+    /**
+     * Original parsing: decode the whole frame, strip newlines with a regex and split.
+     */
+    @Benchmark
+    public void legacyParse(Blackhole blackhole) {
+        String input = new String(frame, 0, frame.length).replaceAll("[\r\n]+$", "");
+        String[] parts = input.split("#", -1);
+        blackhole.consume(parts);
+    }
+}
@@ -0,0 +1,66 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.nio.*;
+import java.nio.charset.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the server side of the two framings of the same event: assembling
+ * the frame from received bytes, parsing it and decoding its fields, for a
+ * '#'-delimited text record and for a length-prefixed binary frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtocolBenchmark {
+
+    @Param({"16", "1024", "65535"})
+    public int descriptionLength;
+
+    @Param({"text", "binary"})
+    public String protocol;
+
+    private byte[] frame;
+    private RequestFrameReader reader;
+
+    @Setup
+    public void setup() {
+        String record = BenchmarkSupport.record(1, 32, descriptionLength, true, "password123");
+        frame = "binary".equals(protocol) ? BinaryRequest.fromText(record) : record.getBytes(StandardCharsets.UTF_8);
+        reader = new RequestFrameReader();
+    }
+
+    /**
+     * Finds the end of the frame as the front ends do, without parsing it.
+     */
+    @Benchmark
+    public int frame() throws RequestFrameReader.FrameTooLargeException {
+        reader.append(ByteBuffer.wrap(frame));
+        reader.nextFrame();
+        return reader.frameLength();
+    }
+
+    /**
+     * Frames, parses and decodes every field, as for an accepted registration.
+     */
+    @Benchmark
+    public boolean frameAndParse() throws RequestFrameReader.FrameTooLargeException {
+        reader.append(ByteBuffer.wrap(frame));
+        reader.nextFrame();
+        EventRequest request = new EventRequest();
+        return request.parse(reader.array(), reader.frameOffset(), reader.frameLength())
+            && EventStore.EventValidator.validate(request.name(), request.date(), request.time(), request.description())
+            && !request.password().isEmpty();
+    }
+}
@@ -0,0 +1,63 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the overhead metrics add to one event registration: the clock
+ * reads, histogram updates and counter of the stages processEvent records,
+ * with metrics disabled (interval 0), timing every request and timing one in
+ * 16, on one thread and on several threads sharing the same histograms.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServerMetricsBenchmark {
+
+    @Param({"0", "1", "16"})
+    public int sampleInterval;
+
+    private ServerMetrics metrics;
+
+    @Setup
+    public void setup() {
+        metrics = sampleInterval == 0 ? ServerMetrics.DISABLED : new ServerMetrics(sampleInterval);
+    }
+
+    /**
+     * Records the stages of one accepted event, as processEvent does.
+     */
+    @Benchmark
+    public long request() {
+        return recordRequest();
+    }
+
+    /**
+     * Same, with four threads recording into the same histograms.
+     */
+    @Benchmark
+    @Threads(4)
+    public long requestContended() {
+        return recordRequest();
+    }
+
+    private long recordRequest() {
+        long time = metrics.start();
+        time = metrics.record(ServerMetrics.Stage.PARSE, time);
+        time = metrics.record(ServerMetrics.Stage.PASSWORD, time);
+        time = metrics.record(ServerMetrics.Stage.VALIDATE, time);
+        time = metrics.record(ServerMetrics.Stage.STORE, time);
+        metrics.accepted(1);
+        return metrics.record(ServerMetrics.Stage.PROCESS, time);
+    }
+}
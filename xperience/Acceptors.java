@@ -0,0 +1,173 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.logging.*;
+
+/**
+ * Listening sockets of a server and the threads that accept on them.
+ * With more than one acceptor, every listener is bound to the same port with
+ * {@link StandardSocketOptions#SO_REUSEPORT}, so the kernel spreads new
+ * connections across the listeners and no single accept loop limits the
+ * connection rate. Where the option is not supported, a single listener is
+ * bound instead.
+ */
+public class Acceptors {
+    private static final Logger logger = Logger.getLogger(Acceptors.class.getName());
+
+    /**
+     * Accept loop run on one listener.
+     *
+     * @param <S> Type of listener
+     */
+    @FunctionalInterface
+    public interface AcceptLoop<S> {
+
+        /**
+         * Accepts connections until the listener fails.
+         *
+         * @param listener The listener
+         * @param index Number of the listener, from 0
+         * @throws IOException If accepting fails
+         */
+        void run(S listener, int index) throws IOException;
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Acceptors() {
+    }
+
+    /**
+     * Binds blocking server sockets to a port.
+     *
+     * @param port The port to listen on
+     * @param count Number of listeners wanted
+     * @return The bound sockets; only one if the port cannot be shared
+     * @throws IOException If no socket can be bound
+     */
+    public static List<ServerSocket> bind(int port, int count) throws IOException {
+        boolean shared = count > 1 && supportsReusePort();
+        List<ServerSocket> sockets = new ArrayList<>();
+        for (int i = 0; i < (shared ? count : 1); i++) {
+            ServerSocket socket = new ServerSocket();
+            try {
+                if (shared) {
+                    socket.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                }
+                socket.bind(new InetSocketAddress(port));
+            } catch (IOException e) {
+                socket.close();
+                keepBound(sockets, e);
+                break;
+            }
+            sockets.add(socket);
+        }
+        return sockets;
+    }
+
+    /**
+     * Binds server socket channels to a port.
+     *
+     * @param port The port to listen on
+     * @param count Number of listeners wanted
+     * @return The bound channels, in blocking mode; only one if the port cannot be shared
+     * @throws IOException If no channel can be bound
+     */
+    public static List<ServerSocketChannel> bindChannels(int port, int count) throws IOException {
+        boolean shared = count > 1 && supportsReusePort();
+        List<ServerSocketChannel> channels = new ArrayList<>();
+        for (int i = 0; i < (shared ? count : 1); i++) {
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            try {
+                if (shared) {
+                    channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                }
+                channel.bind(new InetSocketAddress(port));
+            } catch (IOException e) {
+                channel.close();
+                keepBound(channels, e);
+                break;
+            }
+            channels.add(channel);
+        }
+        return channels;
+    }
+
+    /**
+     * Runs an accept loop on every listener: the first on the calling thread,
+     * the others on their own platform threads. Returns, closing all
+     * listeners, once the loop of the first listener fails.
+     *
+     * @param <S> Type of listener
+     * @param listeners The bound listeners
+     * @param loop Accept loop to run on each
+     * @throws IOException If the loop of the first listener fails
+     */
+    public static <S extends Closeable> void run(List<S> listeners, AcceptLoop<S> loop) throws IOException {
+        try {
+            for (int i = 1; i < listeners.size(); i++) {
+                S listener = listeners.get(i);
+                int index = i;
+                Thread.ofPlatform().name("xperience-acceptor-" + i).daemon(true).start(() -> {
+                    try {
+                        loop.run(listener, index);
+                    } catch (IOException e) {
+                        logger.severe("Acceptor " + index + " failed: " + e.getMessage());
+                    }
+                });
+            }
+            loop.run(listeners.get(0), 0);
+        } finally {
+            for (S listener : listeners) {
+                try {
+                    listener.close();
+                } catch (IOException e) {
+                    logger.warning("Error closing listener: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether listeners can share a port.
+     *
+     * @return True if SO_REUSEPORT is supported
+     * @throws IOException If the probe socket cannot be opened
+     */
+    private static boolean supportsReusePort() throws IOException {
+        try (ServerSocket probe = new ServerSocket()) {
+            if (probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                return true;
+            }
+        }
+        logger.warning("SO_REUSEPORT is not supported; using a single acceptor");
+        return false;
+    }
+
+    /**
+     * Handles a failure to bind a listener: if others are already bound the
+     * server goes on with them, otherwise the failure is rethrown.
+     *
+     * @param bound Listeners bound so far
+     * @param error The failure
+     * @throws IOException The failure, if no listener is bound
+     */
+    private static void keepBound(List<? extends Closeable> bound, IOException error) throws IOException {
+        if (bound.isEmpty()) {
+            throw error;
+        }
+        logger.warning("Could not bind acceptor " + (bound.size() + 1) + ", using " + bound.size()
+            + ": " + error.getMessage());
+    }
+}
@@ -0,0 +1,106 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * JUnit 5 test for Acceptors.
+ */
+public class AcceptorsTest {
+
+    /**
+     * Returns a port that was free a moment ago.
+     */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Closes every listener in a list.
+     */
+    private static void closeAll(List<? extends Closeable> listeners) throws IOException {
+        for (Closeable listener : listeners) {
+            listener.close();
+        }
+    }
+
+    @Test
+    public void testSingleAcceptorBindsOneSocket() throws IOException {
+        List<ServerSocket> sockets = Acceptors.bind(freePort(), 1);
+        try {
+            assertEquals(1, sockets.size());
+            assertTrue(sockets.get(0).isBound());
+        } finally {
+            closeAll(sockets);
+        }
+    }
+
+    @Test
+    public void testListenersShareThePort() throws IOException {
+        int port = freePort();
+        List<ServerSocketChannel> channels = Acceptors.bindChannels(port, 3);
+        try {
+            // Without SO_REUSEPORT the server falls back to a single listener
+            assertTrue(channels.size() == 3 || channels.size() == 1);
+            for (ServerSocketChannel channel : channels) {
+                assertEquals(port, ((InetSocketAddress) channel.getLocalAddress()).getPort());
+                assertTrue(channel.isBlocking());
+            }
+        } finally {
+            closeAll(channels);
+        }
+    }
+
+    @Test
+    public void testEveryConnectionIsAcceptedAndListenersAreClosed() throws Exception {
+        int port = freePort();
+        List<ServerSocket> sockets = Acceptors.bind(port, 4);
+        int connections = 50;
+        CountDownLatch accepted = new CountDownLatch(connections);
+        Thread server = new Thread(() -> {
+            try {
+                Acceptors.run(sockets, (serverSocket, index) -> {
+                    while (accepted.getCount() > 0) {
+                        try (Socket socket = serverSocket.accept()) {
+                            socket.getOutputStream().write(index);
+                            accepted.countDown();
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                // Closed by the test
+            }
+        });
+        server.start();
+
+        for (int i = 0; i < connections; i++) {
+            try (Socket client = new Socket("localhost", port)) {
+                int index = client.getInputStream().read();
+                assertTrue(index >= 0 && index < sockets.size());
+            }
+        }
+        assertTrue(accepted.await(5, TimeUnit.SECONDS));
+
+        // Once the first loop returns, every listener is closed
+        sockets.get(0).close();
+        server.join(5000);
+        assertFalse(server.isAlive());
+        for (ServerSocket socket : sockets) {
+            assertTrue(socket.isClosed());
+        }
+    }
+}
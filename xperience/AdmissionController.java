@@ -0,0 +1,271 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Adaptive limit on the number of requests processed at once.
+ * A request is admitted with {@link #tryAcquire()} and its processing time
+ * is reported with {@link #release(long)}. Every {@link #WINDOW} requests the
+ * limit is adjusted by comparing the recent processing time with its long-term
+ * average: while the recent time stays within {@link #TOLERANCE} times the
+ * average the limit grows by about its square root, and beyond that it shrinks
+ * in proportion, so requests queue in the server only as far as the store keeps
+ * up. The limit stays between {@link #MIN_LIMIT} and the configured maximum.
+ * <p>
+ * Requests over the limit are shed: front ends answer them with
+ * {@link #BUSY_RESPONSE}, and reject new connections with it before reading
+ * them while {@link #isOverloaded()}.
+ */
+public class AdmissionController {
+
+    /**
+     * Response to a request that was shed.
+     */
+    public static final String BUSY_RESPONSE = "Reject#Busy#";
+
+    /**
+     * Returned by {@link #tryAcquire()} when the request is not admitted.
+     */
+    public static final long REFUSED = Long.MIN_VALUE;
+
+    /**
+     * Default maximum number of requests processed at once.
+     */
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+
+    /**
+     * How long a shed connection is drained of the client's request before it is closed, in milliseconds.
+     */
+    public static final int SHED_LINGER_MILLIS = 1000;
+
+    /**
+     * Lowest limit, so that a slow store still gets concurrent requests.
+     */
+    public static final int MIN_LIMIT = 4;
+
+    /**
+     * Limit before any processing time has been observed.
+     */
+    public static final int INITIAL_LIMIT = 32;
+
+    /**
+     * Number of requests per limit adjustment.
+     */
+    static final int WINDOW = 32;
+
+    /**
+     * How far the recent processing time may exceed its long-term average before the limit shrinks.
+     */
+    static final double TOLERANCE = 2.0;
+
+    /**
+     * Number of windows the long-term average spans.
+     */
+    private static final int LONG_WINDOWS = 100;
+
+    /**
+     * Weight of a new limit estimate against the current limit.
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * Controller that admits every request, used when admission control is not enabled.
+     */
+    public static final AdmissionController UNLIMITED = new AdmissionController(false, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final boolean enabled;
+    private final int maxLimit;
+    private volatile int limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder shed = new LongAdder();
+
+    /**
+     * Guards the window and the averages; a request that finds it taken skips its sample.
+     */
+    private final ReentrantLock update = new ReentrantLock();
+    private long windowNanos;
+    private int windowCount;
+    private int windowMaxInFlight;
+    private double longNanos;
+
+    /**
+     * Constructs an adaptive controller.
+     *
+     * @param maxLimit Highest limit
+     */
+    public AdmissionController(int maxLimit) {
+        this(true, Math.min(INITIAL_LIMIT, maxLimit), maxLimit);
+    }
+
+    /**
+     * Constructs a controller.
+     *
+     * @param enabled False to admit every request without counting
+     * @param initialLimit Limit to start with
+     * @param maxLimit Highest limit
+     */
+    AdmissionController(boolean enabled, int initialLimit, int maxLimit) {
+        if (maxLimit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        this.enabled = enabled;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(Math.min(MIN_LIMIT, maxLimit), Math.min(initialLimit, maxLimit));
+    }
+
+    /**
+     * Returns the controller selected by the startup flags.
+     *
+     * @param options Startup flags ({@code --admission[=<max>]})
+     * @return A new adaptive controller, or {@link #UNLIMITED}
+     */
+    public static AdmissionController fromOptions(ServerOptions options) {
+        if (!options.has(ServerOptions.ADMISSION)) {
+            return UNLIMITED;
+        }
+        return new AdmissionController(options.getInt(ServerOptions.ADMISSION, DEFAULT_MAX_LIMIT));
+    }
+
+    /**
+     * Checks whether the limit is reached, so new connections should be turned away unread.
+     *
+     * @return True if no request would be admitted now
+     */
+    public boolean isOverloaded() {
+        return enabled && inFlight.get() >= limit;
+    }
+
+    /**
+     * Admits a request if the limit allows it; an admitted request must be released.
+     *
+     * @return The time of admission in nanoseconds, to pass to {@link #release(long)},
+     *         or {@link #REFUSED}
+     */
+    public long tryAcquire() {
+        if (!enabled) {
+            return 0;
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return REFUSED;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Releases an admitted request and samples its processing time.
+     *
+     * @param admitted Time of admission, as returned by {@link #tryAcquire()}
+     */
+    public void release(long admitted) {
+        if (!enabled) {
+            return;
+        }
+        int current = inFlight.getAndDecrement();
+        if (update.tryLock()) {
+            try {
+                sample(System.nanoTime() - admitted, current);
+            } finally {
+                update.unlock();
+            }
+        }
+    }
+
+    /**
+     * Releases an admitted request without sampling its time, for work such as
+     * an export whose duration depends on the client rather than on the server.
+     *
+     * @param admitted Time of admission, as returned by {@link #tryAcquire()}
+     */
+    public void releaseUnsampled(long admitted) {
+        if (enabled) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Counts a shed request or connection.
+     */
+    public void shed() {
+        shed.increment();
+    }
+
+    /**
+     * Returns the number of requests and connections shed.
+     *
+     * @return Shed count
+     */
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return Maximum number of requests processed at once
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of requests being processed.
+     *
+     * @return Admitted requests not yet released
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Adds one processing time to the window and adjusts the limit when the window is full.
+     * Called with the update lock held.
+     *
+     * @param nanos Processing time in nanoseconds
+     * @param concurrent Requests in flight when it finished, including itself
+     */
+    void sample(long nanos, int concurrent) {
+        windowNanos += Math.max(1, nanos);
+        windowMaxInFlight = Math.max(windowMaxInFlight, concurrent);
+        if (++windowCount < WINDOW) {
+            return;
+        }
+        double recent = (double) windowNanos / windowCount;
+        int used = windowMaxInFlight;
+        windowNanos = 0;
+        windowCount = 0;
+        windowMaxInFlight = 0;
+
+        if (longNanos == 0) {
+            longNanos = recent;
+        } else {
+            longNanos += (recent - longNanos) / LONG_WINDOWS;
+        }
+        // Once the load drops, forget the slow average faster so the limit can recover
+        if (longNanos > recent * TOLERANCE) {
+            longNanos = longNanos * 0.9 + recent * 0.1;
+        }
+
+        int current = limit;
+        if (used < current / 2) {
+            // The limit was not what held requests back, so this window says nothing about it
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longNanos / recent));
+        double estimate = current * gradient + Math.sqrt(current);
+        double smoothed = current * (1 - SMOOTHING) + estimate * SMOOTHING;
+        limit = (int) Math.max(Math.min(MIN_LIMIT, maxLimit), Math.min(maxLimit, Math.round(smoothed)));
+    }
+}
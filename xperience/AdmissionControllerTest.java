@@ -0,0 +1,82 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit 5 test for AdmissionController.
+ */
+public class AdmissionControllerTest {
+
+    /**
+     * Feeds whole windows of one processing time at a given concurrency.
+     */
+    private static void feed(AdmissionController admission, int windows, long nanos, int concurrent) {
+        for (int i = 0; i < windows * AdmissionController.WINDOW; i++) {
+            admission.sample(nanos, concurrent);
+        }
+    }
+
+    @Test
+    public void testRefusesOverLimit() {
+        AdmissionController admission = new AdmissionController(true, 4, 4);
+        long[] admitted = new long[4];
+        for (int i = 0; i < admitted.length; i++) {
+            admitted[i] = admission.tryAcquire();
+            assertNotEquals(AdmissionController.REFUSED, admitted[i]);
+        }
+        assertTrue(admission.isOverloaded());
+        assertEquals(AdmissionController.REFUSED, admission.tryAcquire());
+        assertEquals(4, admission.getInFlight());
+
+        admission.release(admitted[0]);
+        assertFalse(admission.isOverloaded());
+        assertNotEquals(AdmissionController.REFUSED, admission.tryAcquire());
+    }
+
+    @Test
+    public void testUnlimitedAdmitsEverything() {
+        for (int i = 0; i < 10_000; i++) {
+            assertNotEquals(AdmissionController.REFUSED, AdmissionController.UNLIMITED.tryAcquire());
+        }
+        assertFalse(AdmissionController.UNLIMITED.isOverloaded());
+        assertEquals(0, AdmissionController.UNLIMITED.getInFlight());
+    }
+
+    @Test
+    public void testLimitGrowsWhileLatencyIsSteady() {
+        AdmissionController admission = new AdmissionController(true, 32, 100);
+        for (int i = 0; i < 200; i++) {
+            feed(admission, 1, 1_000_000, admission.getLimit());
+        }
+        assertEquals(100, admission.getLimit());
+    }
+
+    @Test
+    public void testLimitShrinksWhenLatencyRises() {
+        AdmissionController admission = new AdmissionController(true, 64, 1000);
+        feed(admission, 10, 1_000_000, 64);
+        int before = admission.getLimit();
+
+        // The store slows down tenfold while the limit is in full use
+        for (int i = 0; i < 20; i++) {
+            feed(admission, 1, 10_000_000, admission.getLimit());
+        }
+        assertTrue(admission.getLimit() < before / 2, () -> "limit " + admission.getLimit());
+        assertTrue(admission.getLimit() >= AdmissionController.MIN_LIMIT);
+    }
+
+    @Test
+    public void testLimitHoldsWhenNotInUse() {
+        AdmissionController admission = new AdmissionController(true, 32, 1000);
+        feed(admission, 50, 1_000_000, 2);
+        assertEquals(32, admission.getLimit());
+    }
+}
@@ -0,0 +1,264 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.logging.*;
+
+/**
+ * Logging handler that never blocks the logging thread.
+ * Records are put in a bounded ring buffer and a background thread passes
+ * them on to a target handler, so formatting and writing happen off the
+ * request threads and no thread waits on the target's lock. When the ring is
+ * full the record is dropped; the number dropped is counted and reported
+ * through the target once there is room again.
+ * <p>
+ * The ring is a lock-free multi-producer queue: each slot carries a sequence
+ * number that tells producers whether it is free and the consumer whether it
+ * is filled. Messages longer than {@link #MAX_MESSAGE_LENGTH} are truncated
+ * before they are queued. The caller's class and method are not looked up,
+ * which would walk the stack on the logging thread; records show their logger
+ * name instead.
+ */
+public final class AsyncLogHandler extends Handler {
+
+    /**
+     * Default number of records the ring holds.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * Longest message passed on, in characters.
+     */
+    public static final int MAX_MESSAGE_LENGTH = 8192;
+
+    /**
+     * How long the drain thread sleeps at most when the ring is empty, in milliseconds.
+     */
+    private static final long IDLE_PARK_MILLIS = 100;
+
+    private final Handler target;
+    private final LogRecord[] ring;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    /**
+     * Next slot to fill; shared by producers.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Next slot to drain; only written by the drain thread.
+     */
+    private volatile long head;
+
+    /**
+     * Records dropped because the ring was full, and how many of them have been reported.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+    private long droppedReported;
+
+    /**
+     * True while the drain thread is parked and must be woken for new records.
+     */
+    private volatile boolean idle;
+    private volatile boolean closed;
+    private final Thread drainer;
+
+    /**
+     * Constructs a handler with the default capacity.
+     *
+     * @param target Handler the records are passed on to
+     */
+    public AsyncLogHandler(Handler target) {
+        this(target, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a handler and starts its drain thread.
+     *
+     * @param target Handler the records are passed on to, only ever called from the drain thread
+     * @param capacity Number of records the ring holds; rounded up to a power of two
+     */
+    public AsyncLogHandler(Handler target, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.target = target;
+        this.ring = new LogRecord[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        drainer = new Thread(this::drainLoop, "xperience-log");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Queues a record, or drops it if the ring is full.
+     *
+     * @param record The record
+     */
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        String message = record.getMessage();
+        if (message != null && message.length() > MAX_MESSAGE_LENGTH) {
+            record.setMessage(message.substring(0, MAX_MESSAGE_LENGTH) + "... (" + message.length() + " chars)");
+        }
+        // Formatters fall back to the logger name instead of inferring the caller on the drain thread
+        record.setSourceClassName(null);
+
+        if (!offer(record)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (idle) {
+            LockSupport.unpark(drainer);
+        }
+    }
+
+    /**
+     * Waits briefly for the queued records to be written, then flushes the target.
+     */
+    @Override
+    public void flush() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (head < tail.get() && System.nanoTime() < deadline && drainer.isAlive()) {
+            LockSupport.unpark(drainer);
+            Thread.onSpinWait();
+        }
+        target.flush();
+    }
+
+    /**
+     * Stops accepting records, writes the queued ones and closes the target.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    /**
+     * Returns the number of records dropped because the ring was full.
+     *
+     * @return Dropped records
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Claims a free slot and fills it.
+     *
+     * @param record The record
+     * @return False if the ring is full
+     */
+    private boolean offer(LogRecord record) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    ring[slot] = record;
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                // The slot still holds a record from one lap earlier
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Takes the next record if it has been filled.
+     *
+     * @return The record, or null if there is none yet
+     */
+    private LogRecord poll() {
+        int slot = (int) head & mask;
+        if (sequences.get(slot) != head + 1) {
+            return null;
+        }
+        LogRecord record = ring[slot];
+        ring[slot] = null;
+        sequences.set(slot, head + ring.length);
+        head++;
+        return record;
+    }
+
+    /**
+     * Drain thread: passes records on until the handler is closed and the ring is empty.
+     */
+    private void drainLoop() {
+        while (true) {
+            LogRecord record = poll();
+            if (record != null) {
+                publishToTarget(record);
+                continue;
+            }
+            reportDropped();
+            target.flush();
+            if (closed && head == tail.get()) {
+                return;
+            }
+
+            // Park until a producer sees the idle flag; check again first so no wakeup is missed.
+            // Once closed, spin instead: a producer that saw the handler open may still be filling a slot.
+            idle = true;
+            if (sequences.get((int) head & mask) != head + 1 && !closed) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(IDLE_PARK_MILLIS));
+            }
+            idle = false;
+        }
+    }
+
+    /**
+     * Passes one record on, reporting rather than propagating a failure of the target.
+     *
+     * @param record The record
+     */
+    private void publishToTarget(LogRecord record) {
+        try {
+            target.publish(record);
+        } catch (RuntimeException e) {
+            reportError("Log target failed", e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * Reports records dropped since the last report.
+     */
+    private void reportDropped() {
+        long count = dropped.get();
+        if (count > droppedReported) {
+            LogRecord warning = new LogRecord(Level.WARNING, "Dropped " + (count - droppedReported)
+                + " log records because the log buffer was full");
+            warning.setLoggerName(AsyncLogHandler.class.getName());
+            warning.setSourceClassName(null);
+            publishToTarget(warning);
+            droppedReported = count;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+/**
+ * JUnit 5 test for AsyncLogHandler and RequestLog.
+ */
+public class AsyncLogHandlerTest {
+
+    /**
+     * Target handler that keeps the messages it receives, optionally blocking until released.
+     */
+    private static class CollectingHandler extends Handler {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch release;
+
+        CollectingHandler(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testRecordsKeepTheirOrder() {
+        CollectingHandler target = new CollectingHandler(new CountDownLatch(0));
+        AsyncLogHandler handler = new AsyncLogHandler(target, 16);
+        for (int i = 0; i < 10; i++) {
+            handler.publish(new LogRecord(Level.INFO, "message " + i));
+        }
+        handler.flush();
+        handler.close();
+
+        assertEquals(10, target.messages.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("message " + i, target.messages.get(i));
+        }
+        assertEquals(0, handler.getDroppedCount());
+    }
+
+    @Test
+    public void testDropsWhenFullWithoutBlocking() {
+        CountDownLatch release = new CountDownLatch(1);
+        CollectingHandler target = new CollectingHandler(release);
+        AsyncLogHandler handler = new AsyncLogHandler(target, 4);
+
+        // The drain thread is stuck in the target, so at most the ring plus one record get through
+        assertTimeoutPreemptively(java.time.Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 100; i++) {
+                handler.publish(new LogRecord(Level.INFO, "message " + i));
+            }
+        });
+        long dropped = handler.getDroppedCount();
+        assertTrue(dropped >= 100 - 5, () -> "dropped " + dropped);
+
+        release.countDown();
+        handler.close();
+        assertEquals(100 - dropped, target.messages.stream().filter(m -> m.startsWith("message")).count());
+        assertEquals("Dropped " + dropped + " log records because the log buffer was full",
+            target.messages.get(target.messages.size() - 1));
+    }
+
+    @Test
+    public void testLongMessagesAreTruncated() {
+        CollectingHandler target = new CollectingHandler(new CountDownLatch(0));
+        AsyncLogHandler handler = new AsyncLogHandler(target);
+        handler.publish(new LogRecord(Level.INFO, "x".repeat(AsyncLogHandler.MAX_MESSAGE_LENGTH * 2)));
+        handler.close();
+
+        String message = target.messages.get(0);
+        assertTrue(message.startsWith("x".repeat(AsyncLogHandler.MAX_MESSAGE_LENGTH) + "... ("));
+        assertTrue(message.endsWith((AsyncLogHandler.MAX_MESSAGE_LENGTH * 2) + " chars)"));
+    }
+
+    @Test
+    public void testRequestLogTruncatesAndSamples() {
+        Logger logger = Logger.getLogger(AsyncLogHandlerTest.class.getName());
+        RequestLog log = new RequestLog(logger, 1, 8);
+        byte[] request = "Event#Name#2024-01-01#10:00#".getBytes(StandardCharsets.UTF_8);
+        assertEquals("Event#Na... (" + request.length + " bytes)", log.truncate(request, 0, request.length));
+        assertEquals("Event#", log.truncate(request, 0, 6));
+        assertEquals("Accept#", log.truncate("Accept#"));
+        assertTrue(log.sample());
+
+        // Roughly one request in a hundred is sampled
+        RequestLog sampled = new RequestLog(logger, 100, 8);
+        int count = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (sampled.sample()) {
+                count++;
+            }
+        }
+        assertTrue(count > 500 && count < 1500, "sampled " + count);
+    }
+}
@@ -0,0 +1,165 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.util.*;
+
+/**
+ * Wire format of a batch registration, which carries many events and a single
+ * one-time password:
+ * {@code Batch#<count>#<password>#name#date#time#description#...}
+ * with {@code count} groups of four event fields. The reply is {@code Batch#}
+ * followed by the usual {@code Accept#N#} or {@code Reject#} for each event in
+ * order, or a plain {@code Reject#} if the whole batch is refused.
+ */
+public class BatchRequest {
+
+    /**
+     * First field of a batch request.
+     */
+    public static final String KEYWORD = "Batch";
+
+    /**
+     * Maximum number of events in one batch.
+     */
+    public static final int MAX_EVENTS = 10000;
+
+    /**
+     * Hard limit on the size of one batch frame in bytes; the frame reader's
+     * configurable limit may not exceed it.
+     */
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Number of fields per event in a batch.
+     */
+    private static final int FIELDS_PER_EVENT = 4;
+
+    /**
+     * Number of header fields (keyword, count, password).
+     */
+    private static final int HEADER_FIELDS = 3;
+
+    /**
+     * Password that authorizes the batch.
+     */
+    private final String password;
+
+    /**
+     * Events carried by the batch.
+     */
+    private final List<Event> events;
+
+    /**
+     * Constructs a parsed batch.
+     *
+     * @param password Password that authorizes the batch
+     * @param events Events carried by the batch
+     */
+    private BatchRequest(String password, List<Event> events) {
+        this.password = password;
+        this.events = events;
+    }
+
+    /**
+     * Parses the event count field of a batch header.
+     *
+     * @param field Text of the count field
+     * @return The count, or -1 if the field is not a count between 1 and {@link #MAX_EVENTS}
+     */
+    public static int parseCount(CharSequence field) {
+        if (field.length() == 0 || field.length() > 5) {
+            return -1;
+        }
+        int count = 0;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            count = count * 10 + (c - '0');
+        }
+        return count >= 1 && count <= MAX_EVENTS ? count : -1;
+    }
+
+    /**
+     * Returns the total number of '#'-terminated fields in a batch of the given size.
+     *
+     * @param count Number of events
+     * @return Number of fields in the frame
+     */
+    public static int fieldCount(int count) {
+        return HEADER_FIELDS + FIELDS_PER_EVENT * count;
+    }
+
+    /**
+     * Parses a batch request.
+     *
+     * @param input The raw request
+     * @return The parsed batch, or null if the request is malformed
+     */
+    public static BatchRequest parse(String input) {
+        // Ignore trailing newlines if any
+        int end = input.length();
+        while (end > 0 && (input.charAt(end - 1) == '\r' || input.charAt(end - 1) == '\n')) {
+            end--;
+        }
+
+        String[] parts = input.substring(0, end).split("#", -1);
+        if (parts.length < HEADER_FIELDS || !KEYWORD.equals(parts[0])) {
+            return null;
+        }
+        int count = parseCount(parts[1]);
+        if (count < 0 || parts.length < fieldCount(count)) {
+            return null;
+        }
+
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int base = HEADER_FIELDS + FIELDS_PER_EVENT * i;
+            events.add(new Event(parts[base], parts[base + 1], parts[base + 2], parts[base + 3]));
+        }
+        return new BatchRequest(parts[2], events);
+    }
+
+    /**
+     * Formats the reply to a batch from the per-event results.
+     *
+     * @param results One result per event, in order
+     * @return The reply string
+     */
+    public static String formatResponse(List<EventStore.Result> results) {
+        StringBuilder response = new StringBuilder(KEYWORD).append('#');
+        for (EventStore.Result result : results) {
+            if (result.success) {
+                response.append("Accept#").append(result.eventCount).append('#');
+            } else {
+                response.append("Reject#");
+            }
+        }
+        return response.toString();
+    }
+
+    /**
+     * Returns the password that authorizes the batch.
+     *
+     * @return The password
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Returns the events carried by the batch.
+     *
+     * @return The events, in order
+     */
+    public List<Event> getEvents() {
+        return events;
+    }
+}
@@ -0,0 +1,336 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Binary framing of an event registration, an alternative to the
+ * {@code name#date#time#description#password#} text record. A binary frame is
+ * the {@link #MAGIC} byte followed by the five fields in the same order:
+ * <ul>
+ * <li>name, description and password as a varint byte length and their UTF-8 bytes;</li>
+ * <li>date as a zigzag varint of {@code year * 512 + month * 32 + day};</li>
+ * <li>time as a varint of {@code hour * 64 + minute}.</li>
+ * </ul>
+ * Varints are unsigned LEB128, seven bits per byte, least significant group
+ * first, at most nine bytes. The server finds the end of a frame from the
+ * length prefixes instead of scanning a description of up to 65,535 bytes
+ * for delimiters, and a description may contain '#'. The magic byte never
+ * occurs in UTF-8, so a connection whose first byte is the magic byte speaks
+ * the binary framing, and each frame is told apart from a text record by its
+ * first byte. Replies are the same text as for text records; query replies
+ * escape the '#' such a description may contain.
+ */
+public final class BinaryRequest {
+
+    /**
+     * First byte of every binary frame.
+     */
+    public static final byte MAGIC = (byte) 0xFE;
+
+    /**
+     * Returned by {@link #frameLength} when more bytes are needed.
+     */
+    public static final int INCOMPLETE = -1;
+
+    /**
+     * Returned by {@link #frameLength} when the frame cannot be decoded.
+     */
+    public static final int MALFORMED = -2;
+
+    /**
+     * Longest varint accepted, enough for any non-negative long.
+     */
+    private static final int MAX_VARINT_BYTES = 9;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BinaryRequest() {
+    }
+
+    /**
+     * Checks whether a frame uses the binary framing.
+     *
+     * @param buffer Buffer holding the frame
+     * @param offset Offset of the first byte of the frame
+     * @param length Length of the frame in bytes
+     * @return True if the frame starts with the magic byte
+     */
+    public static boolean matches(byte[] buffer, int offset, int length) {
+        return length > 0 && buffer[offset] == MAGIC;
+    }
+
+    /**
+     * Finds the length of the binary frame at the start of the given bytes
+     * by reading its length prefixes.
+     *
+     * @param buffer Buffer holding the bytes
+     * @param offset Offset of the magic byte
+     * @param limit Offset one past the last available byte
+     * @return Length of the frame in bytes, {@link #INCOMPLETE} or {@link #MALFORMED}
+     */
+    public static int frameLength(byte[] buffer, int offset, int limit) {
+        int position = offset + 1;
+        for (int field = 0; field < EventRequest.FIELD_COUNT; field++) {
+            int end = varintEnd(buffer, position, limit);
+            if (end < 0) {
+                return end;
+            }
+            if (field != EventRequest.DATE && field != EventRequest.TIME) {
+                long size = varint(buffer, position);
+                if (size > limit - end) {
+                    return size > Integer.MAX_VALUE ? MALFORMED : INCOMPLETE;
+                }
+                end += (int) size;
+            }
+            position = end;
+        }
+        return position - offset;
+    }
+
+    /**
+     * Finds the end of the varint at the given position.
+     *
+     * @param buffer Buffer holding the varint
+     * @param position Offset of its first byte
+     * @param limit Offset one past the last available byte
+     * @return Offset one past its last byte, {@link #INCOMPLETE} or {@link #MALFORMED}
+     */
+    static int varintEnd(byte[] buffer, int position, int limit) {
+        for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+            if (position + i >= limit) {
+                return INCOMPLETE;
+            }
+            if (buffer[position + i] >= 0) {
+                return position + i + 1;
+            }
+        }
+        return MALFORMED;
+    }
+
+    /**
+     * Decodes a varint already known to be complete.
+     *
+     * @param buffer Buffer holding the varint
+     * @param position Offset of its first byte
+     * @return The value
+     */
+    static long varint(byte[] buffer, int position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Encodes an event registration as a binary frame.
+     *
+     * @param name Event name
+     * @param date Event date in the YYYY-MM-DD form of the text protocol
+     * @param time Event time in HH:MM form
+     * @param description Event description
+     * @param password One-time password
+     * @return The frame
+     * @throws IllegalArgumentException If the date or time does not fit the packed form
+     */
+    public static byte[] encode(String name, String date, String time, String description, String password) {
+        long packedDate = packDate(date);
+        long packedTime = packTime(time);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(name.length() + description.length() + 32);
+        out.write(MAGIC);
+        writeText(out, name);
+        writeVarint(out, (packedDate << 1) ^ (packedDate >> 63));
+        writeVarint(out, packedTime);
+        writeText(out, description);
+        writeText(out, password);
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a {@code name#date#time#description#password#} text record as a binary frame.
+     * Missing fields are sent empty and fields after the fifth are dropped.
+     *
+     * @param record The text record
+     * @return The frame
+     * @throws IllegalArgumentException If the date or time does not fit the packed form
+     */
+    public static byte[] fromText(String record) {
+        String[] fields = Arrays.copyOf(record.split("#", -1), EventRequest.FIELD_COUNT);
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == null) {
+                fields[i] = "";
+            }
+        }
+        return encode(fields[EventRequest.NAME], fields[EventRequest.DATE], fields[EventRequest.TIME],
+            fields[EventRequest.DESCRIPTION], fields[EventRequest.PASSWORD]);
+    }
+
+    /**
+     * Decodes a packed date into the text form, which is then validated like a text date.
+     *
+     * @param packed The zigzag-decoded date
+     * @return The date as YYYY-MM-DD, with a sign for negative years and years past 9999
+     */
+    static String formatDate(long packed) {
+        long year = packed >> 9;
+        StringBuilder date = new StringBuilder(16);
+        if (year < 0) {
+            date.append('-');
+            pad(date, -year, 4);
+        } else {
+            if (year > 9999) {
+                date.append('+');
+            }
+            pad(date, year, 4);
+        }
+        date.append('-');
+        pad(date, (packed >> 5) & 15, 2);
+        date.append('-');
+        pad(date, packed & 31, 2);
+        return date.toString();
+    }
+
+    /**
+     * Decodes a packed time into the text form, which is then validated like a text time.
+     *
+     * @param packed The packed time
+     * @return The time as HH:MM
+     */
+    static String formatTime(long packed) {
+        StringBuilder time = new StringBuilder(5);
+        pad(time, packed >>> 6, 2);
+        time.append(':');
+        pad(time, packed & 63, 2);
+        return time.toString();
+    }
+
+    /**
+     * Decodes the zigzag form of a signed value.
+     *
+     * @param value The encoded value
+     * @return The signed value
+     */
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Packs a date as {@code year * 512 + month * 32 + day}. The date is only
+     * taken apart here; whether it is a real date is left to the server.
+     *
+     * @param date Date in the form [sign]YYYY-MM-DD
+     * @return The packed date
+     * @throws IllegalArgumentException If the date is not in that form or a part does not fit
+     */
+    static long packDate(String date) {
+        int dash = date.lastIndexOf('-', date.length() - 4);
+        if (dash < 1 || date.length() - dash != 6 || date.charAt(dash + 3) != '-') {
+            throw new IllegalArgumentException("Date cannot be packed: " + date);
+        }
+        String yearText = date.substring(date.charAt(0) == '+' ? 1 : 0, dash);
+        long year = parseDigits(yearText.startsWith("-") ? yearText.substring(1) : yearText, 10, date);
+        int month = (int) parseDigits(date.substring(dash + 1, dash + 3), 2, date);
+        int day = (int) parseDigits(date.substring(dash + 4), 2, date);
+        if (month > 15 || day > 31) {
+            throw new IllegalArgumentException("Date cannot be packed: " + date);
+        }
+        return (yearText.startsWith("-") ? -year : year) * 512 + month * 32 + day;
+    }
+
+    /**
+     * Packs a time as {@code hour * 64 + minute}.
+     *
+     * @param time Time in the form HH:MM
+     * @return The packed time
+     * @throws IllegalArgumentException If the time is not in that form or a part does not fit
+     */
+    static long packTime(String time) {
+        if (time.length() != 5 || time.charAt(2) != ':') {
+            throw new IllegalArgumentException("Time cannot be packed: " + time);
+        }
+        long hour = parseDigits(time.substring(0, 2), 2, time);
+        long minute = parseDigits(time.substring(3), 2, time);
+        if (minute > 63) {
+            throw new IllegalArgumentException("Time cannot be packed: " + time);
+        }
+        return hour * 64 + minute;
+    }
+
+    /**
+     * Parses a run of ASCII digits.
+     *
+     * @param digits The digits
+     * @param maxDigits Largest number of digits allowed
+     * @param whole The text being packed, for the error message
+     * @return The number
+     * @throws IllegalArgumentException If the run is empty, too long or not all digits
+     */
+    private static long parseDigits(String digits, int maxDigits, String whole) {
+        if (digits.isEmpty() || digits.length() > maxDigits) {
+            throw new IllegalArgumentException("Cannot be packed: " + whole);
+        }
+        long value = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Cannot be packed: " + whole);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Appends a non-negative number padded with zeros to a minimum width.
+     *
+     * @param text Text to append to
+     * @param value The number
+     * @param width Minimum number of digits
+     */
+    private static void pad(StringBuilder text, long value, int width) {
+        String digits = Long.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            text.append('0');
+        }
+        text.append(digits);
+    }
+
+    /**
+     * Writes a UTF-8 field with its length prefix.
+     *
+     * @param out Stream to write to
+     * @param text The field
+     */
+    private static void writeText(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    /**
+     * Writes a non-negative value as a varint.
+     *
+     * @param out Stream to write to
+     * @param value The value
+     */
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
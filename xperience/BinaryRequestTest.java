@@ -0,0 +1,121 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.*;
+import org.junit.jupiter.params.provider.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * JUnit 5 test for the BinaryRequest framing.
+ * Every text record is also sent as a binary frame, and the parser must see
+ * the same fields in both.
+ */
+public class BinaryRequestTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "Party#2025-04-15#14:30#Fun#pass#",
+        "Café über#2025-04-15#14:30#日本語 🎉#päss#",
+        "Leap#2024-02-29#00:00##p#",
+        "Future#+12345-01-31#23:59#Far off#p#",
+        "Past#-0044-03-15#12:00#Ides#p#",
+        "Invalid#2025-02-30#24:01#Packs but does not validate#p#",
+        "Minutes#2025-08-01#08:60#Also packs#p#"
+    })
+    public void testMatchesTextParsing(String record) {
+        byte[] text = record.getBytes(StandardCharsets.UTF_8);
+        EventRequest expected = new EventRequest();
+        assertTrue(expected.parse(text, 0, text.length));
+
+        // The frame is read in place, away from the start of the buffer
+        byte[] binary = BinaryRequest.fromText(record);
+        byte[] frame = new byte[binary.length + 2];
+        System.arraycopy(binary, 0, frame, 2, binary.length);
+        assertEquals(binary.length, BinaryRequest.frameLength(frame, 2, frame.length));
+
+        EventRequest request = new EventRequest();
+        assertTrue(request.parse(frame, 2, binary.length));
+        assertEquals(expected.name(), request.name());
+        assertEquals(expected.date(), request.date());
+        assertEquals(expected.time(), request.time());
+        assertEquals(expected.description(), request.description());
+        assertEquals(expected.password(), request.password());
+        assertEquals(EventStore.EventValidator.validate(expected.name(), expected.date(), expected.time(), expected.description()),
+            EventStore.EventValidator.validate(request.name(), request.date(), request.time(), request.description()));
+    }
+
+    @Test
+    public void testDescriptionMayContainDelimiters() {
+        byte[] frame = BinaryRequest.encode("Hash", "2025-04-15", "14:30", "C# and F#", "pass");
+        EventRequest request = new EventRequest();
+        assertTrue(request.parse(frame, 0, frame.length));
+        assertEquals("C# and F#", request.description());
+        assertEquals("pass", request.password());
+    }
+
+    @Test
+    public void testRoundTripThroughQuery() {
+        IndexedEventStore store = new IndexedEventStore(new EventStoreMemory());
+        for (byte[] frame : new byte[][] {
+                BinaryRequest.encode("Café", "2025-04-15", "14:30", "日本語 🎉", "p1"),
+                BinaryRequest.encode("C#", "2025-04-15", "15:00", "Language", "p2"),
+                BinaryRequest.encode("Hash", "2025-04-15", "16:00", "C# and F# \\# too", "p3")}) {
+            EventRequest request = new EventRequest();
+            assertTrue(request.parse(frame, 0, frame.length));
+            assertTrue(store.addEvent(request.name(), request.date(), request.time(), request.description()).success);
+        }
+
+        // Every event comes back with its fields intact, '#' and '\' included
+        String reply = QueryRequest.formatResponse(
+            QueryRequest.parse("Query#Dates#2025-04-15#2025-04-15#0#10#").execute(store));
+        assertEquals("Events#3#Café#2025-04-15#14:30#日本語 🎉#C\\##2025-04-15#15:00#Language#"
+            + "Hash#2025-04-15#16:00#C\\# and F\\# \\\\\\# too#", reply);
+        List<Event> events = QueryRequest.parseResponse(reply);
+        assertEquals(3, events.size());
+        assertEquals("日本語 🎉", events.get(0).getDescription());
+        assertEquals("C#", events.get(1).getName());
+        assertEquals("C# and F# \\# too", events.get(2).getDescription());
+        assertEquals("Café", QueryRequest.parseResponse(QueryRequest.formatResponse(
+            QueryRequest.parse("Query#Name#Café#").execute(store))).get(0).getName());
+    }
+
+    @Test
+    public void testEveryPrefixIsIncomplete() {
+        byte[] frame = BinaryRequest.encode("Party", "2025-04-15", "14:30", "x".repeat(300), "pass");
+        for (int limit = 1; limit < frame.length; limit++) {
+            assertEquals(BinaryRequest.INCOMPLETE, BinaryRequest.frameLength(frame, 0, limit));
+            assertFalse(new EventRequest().parse(frame, 0, limit));
+        }
+        assertEquals(frame.length, BinaryRequest.frameLength(frame, 0, frame.length));
+    }
+
+    @Test
+    public void testMalformedLengths() {
+        // Ten continuation bytes: longer than any varint
+        byte[] tooLong = {BinaryRequest.MAGIC, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+            (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0};
+        assertEquals(BinaryRequest.MALFORMED, BinaryRequest.frameLength(tooLong, 0, tooLong.length));
+
+        // A name longer than any frame could be
+        byte[] huge = {BinaryRequest.MAGIC, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F};
+        assertEquals(BinaryRequest.MALFORMED, BinaryRequest.frameLength(huge, 0, huge.length));
+        assertFalse(new EventRequest().parse(huge, 0, huge.length));
+    }
+
+    @Test
+    public void testUnpackableDatesAndTimes() {
+        assertThrows(IllegalArgumentException.class, () -> BinaryRequest.fromText("Party#25-12-2025#20:00#x#p#"));
+        assertThrows(IllegalArgumentException.class, () -> BinaryRequest.fromText("Party#2025-12-25#8:00#x#p#"));
+        assertThrows(IllegalArgumentException.class, () -> BinaryRequest.fromText("Party#2025-16-25#20:00#x#p#"));
+        assertThrows(IllegalArgumentException.class, () -> BinaryRequest.fromText("Party#2025-12-25#20:64#x#p#"));
+    }
+}
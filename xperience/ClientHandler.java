@@ -0,0 +1,312 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.logging.*;
+
+/**
+ * Handles one client connection on a blocking socket for the XPerience servers.
+ * By default a connection carries a single request. In keep-alive mode the client
+ * may pipeline many records on one connection; they are processed in order and
+ * their replies are written in the same order. An export request, if
+ * enabled, is answered with the export stream and ends the connection.
+ * Requests over the admission limit are answered with
+ * {@link AdmissionController#BUSY_RESPONSE} without being processed.
+ * A connection is closed if a client does not send its first byte, finish its
+ * request or take its response within the {@link Deadlines}.
+ */
+public class ClientHandler {
+
+    /**
+     * Logger for client communication.
+     */
+    private static final Logger logger = Logger.getLogger(ClientHandler.class.getName());
+
+    /**
+     * Turns a raw request into the response to send back.
+     */
+    private final RequestProcessor processor;
+
+    /**
+     * Whether connections are kept open for further requests.
+     */
+    private final boolean keepAlive;
+
+    /**
+     * How long an idle keep-alive connection stays open, in milliseconds.
+     */
+    private final int idleTimeoutMillis;
+
+    /**
+     * Largest batch frame accepted before its password is checked, in bytes.
+     */
+    private final int maxBatchFrameSize;
+
+    /**
+     * Store streamed in reply to an export request, or null if exports are rejected.
+     */
+    private final EventStore exportStore;
+
+    /**
+     * Metrics of the read, processing and write of each request.
+     */
+    private final ServerMetrics metrics;
+
+    /**
+     * Sampled, truncated log of requests and responses.
+     */
+    private final RequestLog requestLog;
+
+    /**
+     * Limit on concurrently processed requests.
+     */
+    private final AdmissionController admission;
+
+    /**
+     * Deadlines for the first byte, the request and the response of each connection.
+     */
+    private final Deadlines deadlines;
+
+    /**
+     * Constructs a handler that rejects export requests and records no metrics.
+     *
+     * @param processor Function that turns a request into a response
+     * @param options Startup flags ({@code --keepalive}, {@code --idle-timeout})
+     */
+    public ClientHandler(RequestProcessor processor, ServerOptions options) {
+        this(processor, options, null, ServerMetrics.DISABLED, AdmissionController.UNLIMITED);
+    }
+
+    /**
+     * Constructs a handler.
+     *
+     * @param processor Function that turns a request into a response
+     * @param options Startup flags ({@code --keepalive}, {@code --idle-timeout}, {@code --log-sample}, {@code --log-payload},
+     *                {@code --first-byte-timeout}, {@code --request-timeout}, {@code --write-timeout}, {@code --batch-frame-size})
+     * @param exportStore Store to stream in reply to an export request, or null to leave it to the processor
+     * @param metrics Metrics to record the stages of each request in
+     * @param admission Limit on concurrently processed requests
+     */
+    public ClientHandler(RequestProcessor processor, ServerOptions options, EventStore exportStore, ServerMetrics metrics,
+                         AdmissionController admission) {
+        this.processor = processor;
+        this.exportStore = exportStore;
+        this.metrics = metrics;
+        this.admission = admission;
+        this.requestLog = new RequestLog(logger, options);
+        this.deadlines = Deadlines.fromOptions(options);
+        this.keepAlive = options.has(ServerOptions.KEEP_ALIVE);
+        this.idleTimeoutMillis = options.getInt(ServerOptions.IDLE_TIMEOUT, ServerOptions.DEFAULT_IDLE_TIMEOUT_MILLIS);
+        this.maxBatchFrameSize = options.getInt(ServerOptions.BATCH_FRAME_SIZE, RequestFrameReader.DEFAULT_MAX_BATCH_FRAME_SIZE);
+    }
+
+    /**
+     * Turns away a new connection without processing its request, because the server is over its
+     * admission limit. Runs on its own thread, since it waits briefly for the client to finish sending.
+     *
+     * @param clientSocket The socket representing the connection to the client.
+     */
+    public void shed(Socket clientSocket) {
+        admission.shed();
+        metrics.rejected(ServerMetrics.RejectReason.BUSY);
+        try (clientSocket) {
+            clientSocket.getOutputStream().write(AdmissionController.BUSY_RESPONSE.getBytes());
+            clientSocket.shutdownOutput();
+
+            // Discard the request unread: closing with it still queued would reset the connection and lose the reply
+            clientSocket.setSoTimeout(AdmissionController.SHED_LINGER_MILLIS);
+            InputStream in = clientSocket.getInputStream();
+            byte[] discard = new byte[1024];
+            long total = 0;
+            int n;
+            while (total < RequestFrameReader.DEFAULT_MAX_FRAME_SIZE && (n = in.read(discard)) >= 0) {
+                total += n;
+            }
+        } catch (SocketTimeoutException e) {
+            // The client kept the connection open; close it anyway
+        } catch (IOException e) {
+            logger.warning("Error rejecting client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles communication with a connected client and closes the socket when done.
+     *
+     * @param clientSocket The socket representing the connection to the client.
+     */
+    public void handle(Socket clientSocket) {
+        Watchdog watchdog = new Watchdog(clientSocket);
+        try {
+            OutputStream out = new BufferedOutputStream(clientSocket.getOutputStream());
+            if (keepAlive) {
+                clientSocket.setSoTimeout(idleTimeoutMillis);
+            }
+
+            // Accumulate raw bytes until a complete record has arrived; later requests on a
+            // keep-alive connection wait for their first byte under the idle timeout instead
+            RequestFrameReader reader = new RequestFrameReader(RequestFrameReader.DEFAULT_MAX_FRAME_SIZE, maxBatchFrameSize, keepAlive,
+                metrics.isEnabled());
+            watchdog.arm(Deadlines.Kind.FIRST_BYTE);
+            boolean open = true;
+            while (open) {
+                String response;
+                boolean logged = requestLog.sample();
+                long timed = 0;
+                try {
+                    boolean read = reader.readFrame(clientSocket, () -> watchdog.arm(Deadlines.Kind.REQUEST));
+                    watchdog.disarm();
+                    if (!read || reader.isCloseRecord()) {
+                        break;
+                    }
+                    // One sample decision covers every stage of the request; the read is measured by the reader
+                    timed = metrics.start();
+                    metrics.recordNanos(ServerMetrics.Stage.READ, timed, reader.frameReadNanos());
+
+                    if (logged) {
+                        requestLog.received(reader.array(), reader.frameOffset(), reader.frameLength());
+                    }
+
+                    // Process the complete record in place, unless too many requests are in flight
+                    long admitted = admission.tryAcquire();
+                    if (admitted == AdmissionController.REFUSED) {
+                        admission.shed();
+                        metrics.rejected(ServerMetrics.RejectReason.BUSY);
+                        response = AdmissionController.BUSY_RESPONSE;
+                    } else if (exportStore != null
+                            && QueryRequest.isExport(reader.array(), reader.frameOffset(), reader.frameLength())) {
+                        // Replies to earlier requests go first, then the stream ends the connection
+                        try {
+                            watchdog.arm(Deadlines.Kind.WRITE);
+                            out.flush();
+                            watchdog.disarm();
+                            long bytes = EventExport.export(exportStore, deadlines.guard(
+                                Channels.newChannel(clientSocket.getOutputStream()),
+                                () -> watchdog.expire(Deadlines.Kind.WRITE)));
+                            logger.info("Exported " + bytes + " bytes to client");
+                        } finally {
+                            admission.releaseUnsampled(admitted);
+                        }
+                        break;
+                    } else {
+                        long start = metrics.startNext(timed);
+                        try {
+                            response = processor.process(reader.array(), reader.frameOffset(), reader.frameLength(), timed);
+                        } finally {
+                            admission.release(admitted);
+                        }
+                        metrics.record(ServerMetrics.Stage.PROCESS, start);
+                    }
+                    open = keepAlive;
+                } catch (RequestFrameReader.FrameTooLargeException e) {
+                    logger.warning("Rejected oversized request: " + e.getMessage());
+                    metrics.rejected(ServerMetrics.RejectReason.OVERSIZED);
+                    timed = metrics.start();
+                    response = "Reject#";
+                    open = false;
+                } catch (SocketTimeoutException e) {
+                    logger.info("Closing idle connection");
+                    break;
+                }
+
+                // Send response, holding back the flush while pipelined requests are waiting
+                long start = metrics.startNext(timed);
+                watchdog.arm(Deadlines.Kind.WRITE);
+                out.write(response.getBytes());
+                if (!open || !reader.hasFrame()) {
+                    out.flush();
+                }
+                watchdog.disarm();
+                metrics.record(ServerMetrics.Stage.WRITE, start);
+
+                if (logged) {
+                    requestLog.sent(response);
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            Deadlines.Kind expired = watchdog.expired;
+            if (expired != null) {
+                logger.info("Closed connection after its " + Deadlines.name(expired) + " deadline passed");
+                metrics.timedOut(expired);
+            } else {
+                logger.severe("Error with client communication: " + e.getMessage());
+            }
+        } finally {
+            watchdog.disarm();
+            try {
+                clientSocket.close();
+            } catch (IOException e) {
+                logger.warning("Error closing client socket: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deadline of one connection. When it passes, the timer thread closes the
+     * socket, which ends the blocked read or write of the connection's thread.
+     */
+    private final class Watchdog {
+        private final Socket socket;
+
+        /**
+         * Running deadline, or null; only used by the connection's thread.
+         */
+        private TimerWheel.Timeout timeout;
+
+        /**
+         * Kind of the deadline that closed the socket, or null.
+         */
+        private volatile Deadlines.Kind expired;
+
+        /**
+         * Constructs a watchdog for a connection.
+         *
+         * @param socket The client socket
+         */
+        Watchdog(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Starts a deadline, replacing the running one.
+         *
+         * @param kind Kind of deadline
+         */
+        void arm(Deadlines.Kind kind) {
+            disarm();
+            timeout = deadlines.start(kind, () -> expire(kind));
+        }
+
+        /**
+         * Closes the socket because a deadline has passed, failing any read or write in progress.
+         *
+         * @param kind Kind of the deadline
+         */
+        void expire(Deadlines.Kind kind) {
+            expired = kind;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.warning("Error closing client socket: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Cancels the running deadline, if any.
+         */
+        void disarm() {
+            if (timeout != null) {
+                timeout.cancel();
+                timeout = null;
+            }
+        }
+    }
+}
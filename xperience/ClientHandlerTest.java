@@ -0,0 +1,45 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.net.*;
+import java.nio.charset.*;
+
+/**
+ * JUnit 5 test for ClientHandler.
+ */
+public class ClientHandlerTest {
+
+    @Test
+    public void testEveryStageFollowsOneSample() throws Exception {
+        ServerMetrics metrics = new ServerMetrics(3);
+        RequestProcessor processor = (buffer, offset, length, timed) -> {
+            metrics.record(ServerMetrics.Stage.PARSE, metrics.startNext(timed));
+            return "Accept#1#";
+        };
+        ClientHandler handler = new ClientHandler(processor, ServerOptions.parse(new String[] {"--keepalive"}), null,
+            metrics, AdmissionController.UNLIMITED);
+
+        int requests = 90;
+        try (ServerSocket listener = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort())) {
+            Socket accepted = listener.accept();
+            Thread.ofVirtual().start(() -> handler.handle(accepted));
+            socket.setSoTimeout(5000);
+            for (int i = 0; i < requests; i++) {
+                socket.getOutputStream().write(("Party" + i + "#2025-04-15#14:30#Fun#pass#").getBytes(StandardCharsets.UTF_8));
+                assertEquals("Accept#1#", new String(socket.getInputStream().readNBytes(9), StandardCharsets.UTF_8));
+            }
+        }
+        SelectorServerTest.assertStagesMatch(metrics, requests, ServerMetrics.Stage.READ,
+            ServerMetrics.Stage.PARSE, ServerMetrics.Stage.PROCESS, ServerMetrics.Stage.WRITE);
+        assertEquals(0, metrics.histogram(ServerMetrics.Stage.QUEUE).count());
+    }
+}
@@ -0,0 +1,225 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Bounded pool of JDBC connections, each with its own cache of prepared
+ * statements.
+ * At most {@code maxSize} connections are open at once. A thread that needs
+ * a connection while all of them are in use waits a bounded time, so a burst of virtual threads cannot open an
+ * unbounded number of database sessions. Connections are opened lazily and
+ * reused; one that fails with anything other than a constraint violation is
+ * closed instead of being returned.
+ */
+public class ConnectionPool implements Closeable {
+
+    /**
+     * Default time to wait for a free connection, in milliseconds.
+     */
+    public static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Seconds allowed for the validity check of a connection that has been idle.
+     */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /**
+     * Idle time after which a connection is checked before it is reused, in milliseconds.
+     */
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 30000;
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    /**
+     * Permits for connections that may still be borrowed.
+     */
+    private final Semaphore permits;
+
+    /**
+     * How long to wait for a free connection, in milliseconds.
+     */
+    private final long borrowTimeoutMillis;
+
+    /**
+     * Open connections not currently borrowed, most recently used first.
+     */
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Set once the pool is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructs a pool; no connection is opened until one is borrowed.
+     *
+     * @param url JDBC URL
+     * @param user Database user
+     * @param password Database password
+     * @param maxSize Maximum number of open connections
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize) {
+        this(url, user, password, maxSize, DEFAULT_BORROW_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Constructs a pool with a specific wait for free connections.
+     *
+     * @param url JDBC URL
+     * @param user Database user
+     * @param password Database password
+     * @param maxSize Maximum number of open connections
+     * @param borrowTimeoutMillis How long {@link #borrow()} waits for a free connection
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.permits = new Semaphore(maxSize, true);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    /**
+     * Borrows a connection; close it to give it back.
+     *
+     * @return A connection with auto-commit enabled
+     * @throws SQLException If no connection becomes free in time or a new one cannot be opened
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+
+        try {
+            // Reuse an idle connection if one is still usable
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (System.currentTimeMillis() - connection.lastUsedMillis < VALIDATE_AFTER_IDLE_MILLIS
+                        || connection.connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return connection;
+                }
+                connection.discard();
+            }
+            return new PooledConnection(DriverManager.getConnection(url, user, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes all idle connections; borrowed connections are closed when they are given back.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            connection.discard();
+        }
+    }
+
+    /**
+     * A borrowed connection. Closing it returns it to the pool.
+     */
+    public final class PooledConnection implements AutoCloseable {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private long lastUsedMillis;
+        private boolean broken;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Returns the prepared statement for some SQL, preparing it on first use.
+         *
+         * @param sql The SQL text
+         * @return The cached statement, with its parameters cleared
+         * @throws SQLException If the statement cannot be prepared
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        /**
+         * Returns the underlying connection, for transaction control.
+         *
+         * @return The JDBC connection
+         */
+        public Connection connection() {
+            return connection;
+        }
+
+        /**
+         * Marks the connection as unusable so that it is closed instead of reused.
+         */
+        public void markBroken() {
+            broken = true;
+        }
+
+        /**
+         * Returns the connection to the pool, or closes it if it is broken or the pool is closed.
+         */
+        @Override
+        public void close() {
+            try {
+                if (!broken && !closed && connection.getAutoCommit()) {
+                    lastUsedMillis = System.currentTimeMillis();
+                    idle.offerFirst(this);
+                    if (closed) {
+                        ConnectionPool.this.close();
+                    }
+                } else {
+                    discard();
+                }
+            } catch (SQLException e) {
+                discard();
+            } finally {
+                permits.release();
+            }
+        }
+
+        /**
+         * Closes the connection and its statements.
+         */
+        private void discard() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // Already unusable
+            }
+        }
+    }
+}
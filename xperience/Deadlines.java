@@ -0,0 +1,146 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Deadlines that bound how long a client may hold a connection without
+ * making progress: until its first byte, until its request is complete, and
+ * until it has taken the response. All connections of a front end share one
+ * {@link TimerWheel}, so a deadline costs a small object rather than a timer
+ * or a thread. What happens on expiry is up to the front end; both close the
+ * connection.
+ */
+public class Deadlines {
+
+    /**
+     * Kinds of deadline.
+     */
+    public enum Kind {
+        /** From accepting a connection until its first byte arrives. */
+        FIRST_BYTE,
+        /** From the first byte of a request until the whole request has arrived. */
+        REQUEST,
+        /** From starting to write a response until it is sent. */
+        WRITE
+    }
+
+    /**
+     * Default time allowed until the first byte, in milliseconds.
+     */
+    public static final int DEFAULT_FIRST_BYTE_MILLIS = 10_000;
+
+    /**
+     * Default time allowed to send a whole request, in milliseconds.
+     */
+    public static final int DEFAULT_REQUEST_MILLIS = 30_000;
+
+    /**
+     * Default time allowed to take a response, in milliseconds.
+     */
+    public static final int DEFAULT_WRITE_MILLIS = 30_000;
+
+    private final TimerWheel timer;
+    private final long[] millis = new long[Kind.values().length];
+
+    /**
+     * Constructs deadlines backed by their own timer thread.
+     *
+     * @param firstByteMillis Time allowed until the first byte, in milliseconds
+     * @param requestMillis Time allowed to send a whole request, in milliseconds
+     * @param writeMillis Time allowed to take a response, in milliseconds
+     */
+    public Deadlines(long firstByteMillis, long requestMillis, long writeMillis) {
+        this.timer = new TimerWheel("xperience-deadlines");
+        millis[Kind.FIRST_BYTE.ordinal()] = firstByteMillis;
+        millis[Kind.REQUEST.ordinal()] = requestMillis;
+        millis[Kind.WRITE.ordinal()] = writeMillis;
+    }
+
+    /**
+     * Returns the deadlines set by the startup flags.
+     *
+     * @param options Startup flags ({@code --first-byte-timeout}, {@code --request-timeout}, {@code --write-timeout})
+     * @return The deadlines
+     */
+    public static Deadlines fromOptions(ServerOptions options) {
+        return new Deadlines(options.getInt(ServerOptions.FIRST_BYTE_TIMEOUT, DEFAULT_FIRST_BYTE_MILLIS),
+            options.getInt(ServerOptions.REQUEST_TIMEOUT, DEFAULT_REQUEST_MILLIS),
+            options.getInt(ServerOptions.WRITE_TIMEOUT, DEFAULT_WRITE_MILLIS));
+    }
+
+    /**
+     * Starts a deadline.
+     *
+     * @param kind Kind of deadline, which sets its duration
+     * @param onExpiry Action run on the timer thread if the deadline passes before it is cancelled
+     * @return Handle to cancel the deadline with
+     */
+    public TimerWheel.Timeout start(Kind kind, Runnable onExpiry) {
+        return timer.schedule(onExpiry, millis[kind.ordinal()], TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wraps a blocking channel so that every write runs under its own write
+     * deadline. A long stream written in chunks may take as long as it needs,
+     * as long as the client takes each chunk in time.
+     *
+     * @param out The channel to write to
+     * @param onExpiry Action run on the timer thread if a write does not finish in time;
+     *                 it should close the connection so that the write fails
+     * @return The guarded channel
+     */
+    public WritableByteChannel guard(WritableByteChannel out, Runnable onExpiry) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                TimerWheel.Timeout timeout = start(Kind.WRITE, onExpiry);
+                try {
+                    return out.write(src);
+                } finally {
+                    timeout.cancel();
+                }
+            }
+
+            @Override
+            public boolean isOpen() {
+                return out.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+    /**
+     * Returns the duration of a kind of deadline.
+     *
+     * @param kind Kind of deadline
+     * @return Duration in milliseconds
+     */
+    public long millis(Kind kind) {
+        return millis[kind.ordinal()];
+    }
+
+    /**
+     * Returns the name of a kind of deadline as used in logs and reports.
+     *
+     * @param kind Kind of deadline
+     * @return Its lower-case name
+     */
+    public static String name(Kind kind) {
+        return kind.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,54 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * JUnit 5 test for Deadlines.
+ */
+public class DeadlinesTest {
+
+    @Test
+    public void testGuardedWritesExpireOnlyWhenStuck() throws IOException {
+        Deadlines deadlines = new Deadlines(1000, 1000, 200);
+        Pipe pipe = Pipe.open();
+        AtomicBoolean expired = new AtomicBoolean();
+        WritableByteChannel out = deadlines.guard(pipe.sink(), () -> {
+            expired.set(true);
+            try {
+                pipe.sink().close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        // Writes the reader keeps up with finish in time
+        ByteBuffer chunk = ByteBuffer.allocate(1024);
+        ByteBuffer sink = ByteBuffer.allocate(1024);
+        for (int i = 0; i < 10; i++) {
+            out.write(chunk.clear());
+            pipe.source().read(sink.clear());
+        }
+        assertFalse(expired.get());
+
+        // Nobody reads, so the pipe fills and the write is cut off by its deadline
+        assertThrows(IOException.class, () -> {
+            while (true) {
+                out.write(ByteBuffer.allocate(64 * 1024));
+            }
+        });
+        assertTrue(expired.get());
+        assertFalse(out.isOpen());
+    }
+}
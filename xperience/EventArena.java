@@ -0,0 +1,311 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.nio.*;
+import java.nio.charset.*;
+
+/**
+ * Append-only store of event records in off-heap memory.
+ * Records are written into direct buffers (chunks) that start at 1 MB and
+ * double up to 64 MB, so millions of events add no objects for the garbage
+ * collector to trace. Each record is addressed by a long that packs the chunk
+ * number and the offset within the chunk, and is never moved or changed once
+ * written. The total size is bounded by {@code -XX:MaxDirectMemorySize}.
+ * <p>
+ * Record layout: packed date (8 bytes), minutes since midnight (2), name
+ * length (2), description length (4), then the UTF-8 name and description.
+ */
+public class EventArena {
+
+    /**
+     * Size of the fixed part of a record.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    // Field offsets within a record
+    private static final int DATE_OFFSET = 0;
+    private static final int TIME_OFFSET = 8;
+    private static final int NAME_LENGTH_OFFSET = 10;
+    private static final int DESCRIPTION_LENGTH_OFFSET = 12;
+
+    /**
+     * Size of the first chunk.
+     */
+    private static final int FIRST_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Size of the largest chunks.
+     */
+    private static final int MAX_CHUNK_SIZE = 1 << 26;
+
+    /**
+     * Allocated chunks; replaced by a longer copy when a chunk is added.
+     */
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+    /**
+     * Offset of the next free byte in the last chunk.
+     */
+    private int position;
+
+    /**
+     * Total bytes of records written.
+     */
+    private long used;
+
+    /**
+     * Appends a record.
+     * Space is reserved under a short lock and the bytes are copied outside
+     * it, so threads can append concurrently.
+     *
+     * @param name UTF-8 bytes of the name (at most 65535)
+     * @param date Date packed by {@link #packDate(String)}
+     * @param time Time packed by {@link #packTime(String)}
+     * @param description UTF-8 bytes of the description
+     * @return Address of the record
+     */
+    public long append(byte[] name, long date, short time, byte[] description) {
+        int size = HEADER_SIZE + name.length + description.length;
+        long address = allocate(size);
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int offset = (int) address;
+        chunk.putLong(offset + DATE_OFFSET, date);
+        chunk.putShort(offset + TIME_OFFSET, time);
+        chunk.putShort(offset + NAME_LENGTH_OFFSET, (short) name.length);
+        chunk.putInt(offset + DESCRIPTION_LENGTH_OFFSET, description.length);
+        chunk.put(offset + HEADER_SIZE, name);
+        chunk.put(offset + HEADER_SIZE + name.length, description);
+        return address;
+    }
+
+    /**
+     * Reads a record back as an event.
+     *
+     * @param address Address returned by {@link #append}
+     * @return The event, with the date in ISO form
+     */
+    public Event read(long address) {
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int offset = (int) address;
+        int nameLength = chunk.getShort(offset + NAME_LENGTH_OFFSET) & 0xFFFF;
+        byte[] name = new byte[nameLength];
+        byte[] description = new byte[chunk.getInt(offset + DESCRIPTION_LENGTH_OFFSET)];
+        chunk.get(offset + HEADER_SIZE, name);
+        chunk.get(offset + HEADER_SIZE + nameLength, description);
+        return new Event(new String(name, StandardCharsets.UTF_8),
+            unpackDate(chunk.getLong(offset + DATE_OFFSET)),
+            unpackTime(chunk.getShort(offset + TIME_OFFSET)),
+            new String(description, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Compares the name of a record with a name, without copying it.
+     *
+     * @param address Address of the record
+     * @param name UTF-8 bytes of the name
+     * @return True if they are equal
+     */
+    public boolean nameEquals(long address, byte[] name) {
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int offset = (int) address;
+        if ((chunk.getShort(offset + NAME_LENGTH_OFFSET) & 0xFFFF) != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (chunk.get(offset + HEADER_SIZE + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the size of a record.
+     *
+     * @param address Address of the record
+     * @return Size in bytes, including the fixed part
+     */
+    public int recordSize(long address) {
+        return recordSize(chunks[(int) (address >>> 32)], (int) address);
+    }
+
+    /**
+     * Returns the size of a record held in a buffer in arena layout.
+     *
+     * @param records Buffer in native byte order
+     * @param offset Offset of the record
+     * @return Size in bytes, including the fixed part
+     */
+    public static int recordSize(ByteBuffer records, int offset) {
+        return HEADER_SIZE + (records.getShort(offset + NAME_LENGTH_OFFSET) & 0xFFFF)
+            + records.getInt(offset + DESCRIPTION_LENGTH_OFFSET);
+    }
+
+    /**
+     * Returns the UTF-8 bytes of the name of a record.
+     *
+     * @param address Address of the record
+     * @return A copy of the name
+     */
+    public byte[] name(long address) {
+        ByteBuffer chunk = chunks[(int) (address >>> 32)];
+        int offset = (int) address;
+        byte[] name = new byte[chunk.getShort(offset + NAME_LENGTH_OFFSET) & 0xFFFF];
+        chunk.get(offset + HEADER_SIZE, name);
+        return name;
+    }
+
+    /**
+     * Returns a read-only view of a record.
+     *
+     * @param address Address of the record
+     * @return Buffer in native byte order holding exactly the record
+     */
+    public ByteBuffer record(long address) {
+        return chunks[(int) (address >>> 32)].slice((int) address, recordSize(address))
+            .asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Copies a record, unchanged, to a buffer.
+     *
+     * @param address Address of the record
+     * @param target Buffer to copy into at its position, which is advanced
+     */
+    public void copyRecord(long address, ByteBuffer target) {
+        target.put(chunks[(int) (address >>> 32)].slice((int) address, recordSize(address)));
+    }
+
+    /**
+     * Adds a direct buffer holding complete records, as copied by
+     * {@link #copyRecord}, as a chunk of its own. The buffer is used in place
+     * and later appends start a new chunk.
+     *
+     * @param records Direct buffer with the records between its position and limit
+     * @return Address of the first record; the others follow at increasing offsets
+     */
+    public synchronized long adopt(ByteBuffer records) {
+        ByteBuffer chunk = records.slice().order(ByteOrder.nativeOrder());
+        ByteBuffer[] current = chunks;
+        ByteBuffer[] grown = new ByteBuffer[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = chunk;
+        chunks = grown;
+        position = chunk.capacity();
+        used += chunk.capacity();
+        return (long) current.length << 32;
+    }
+
+    /**
+     * Returns the number of bytes of records written.
+     *
+     * @return Bytes used
+     */
+    public synchronized long used() {
+        return used;
+    }
+
+    /**
+     * Reserves space for a record, adding a chunk if the last one is full.
+     *
+     * @param size Size of the record
+     * @return Address of the reserved space
+     */
+    private synchronized long allocate(int size) {
+        ByteBuffer[] current = chunks;
+        int last = current.length - 1;
+        if (last < 0 || position + size > current[last].capacity()) {
+            // Chunks double in size; a record never spans two chunks
+            int chunkSize = last < 0 ? FIRST_CHUNK_SIZE : Math.min(MAX_CHUNK_SIZE, current[last].capacity() * 2);
+            ByteBuffer[] grown = new ByteBuffer[current.length + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            grown[++last] = ByteBuffer.allocateDirect(Math.max(chunkSize, size)).order(ByteOrder.nativeOrder());
+            chunks = grown;
+            position = 0;
+        }
+        long address = ((long) last << 32) | position;
+        position += size;
+        used += size;
+        return address;
+    }
+
+    /**
+     * Packs a date accepted by {@link EventStore.EventValidator#validateDate(String)}
+     * into a long: the signed year above the month (4 bits) and day (5 bits).
+     *
+     * @param date A valid date
+     * @return The packed date
+     */
+    public static long packDate(String date) {
+        int i = date.charAt(0) == '+' || date.charAt(0) == '-' ? 1 : 0;
+        long year = 0;
+        int end = date.length() - 6;
+        while (i < end) {
+            year = year * 10 + (date.charAt(i++) - '0');
+        }
+        if (date.charAt(0) == '-') {
+            year = -year;
+        }
+        int month = (date.charAt(end + 1) - '0') * 10 + (date.charAt(end + 2) - '0');
+        int day = (date.charAt(end + 4) - '0') * 10 + (date.charAt(end + 5) - '0');
+        return (year << 9) | (month << 5) | day;
+    }
+
+    /**
+     * Formats a packed date the way {@code LocalDate.toString} does.
+     *
+     * @param packed The packed date
+     * @return The date in ISO form
+     */
+    public static String unpackDate(long packed) {
+        long year = packed >> 9;
+        int month = (int) (packed >>> 5) & 0xF;
+        int day = (int) packed & 0x1F;
+        StringBuilder text = new StringBuilder(16);
+        if (Math.abs(year) < 1000) {
+            // Pad to four digits, keeping the sign of negative years
+            if (year < 0) {
+                text.append(year - 10000).deleteCharAt(1);
+            } else {
+                text.append(year + 10000).deleteCharAt(0);
+            }
+        } else {
+            if (year > 9999) {
+                text.append('+');
+            }
+            text.append(year);
+        }
+        return text.append(month < 10 ? "-0" : "-").append(month).append(day < 10 ? "-0" : "-").append(day).toString();
+    }
+
+    /**
+     * Packs a time accepted by {@link EventStore.EventValidator#validateTime(String)}
+     * as minutes since midnight.
+     *
+     * @param time A valid time
+     * @return The packed time
+     */
+    public static short packTime(String time) {
+        int hour = (time.charAt(0) - '0') * 10 + (time.charAt(1) - '0');
+        int minute = (time.charAt(3) - '0') * 10 + (time.charAt(4) - '0');
+        return (short) (hour * 60 + minute);
+    }
+
+    /**
+     * Formats a packed time as HH:MM.
+     *
+     * @param packed Minutes since midnight
+     * @return The time
+     */
+    public static String unpackTime(short packed) {
+        int hour = packed / 60;
+        int minute = packed % 60;
+        return (hour < 10 ? "0" : "") + hour + (minute < 10 ? ":0" : ":") + minute;
+    }
+}
@@ -0,0 +1,366 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.function.*;
+import java.util.zip.*;
+
+/**
+ * Export stream of every event in a store, and the command-line export tool.
+ * <p>
+ * The stream is an 8-byte magic number followed by one record per event and
+ * a zero length: each record is its payload length, the CRC32C of the
+ * payload and the payload, an event in {@link EventArena} layout. All numbers
+ * are little-endian. This is exactly the record format of
+ * {@link EventStoreLog} segments, so log files are sent as they are with
+ * {@link FileChannel#transferTo}; other stores encode into one fixed direct
+ * buffer. Either way memory use does not depend on the number of events.
+ */
+public class EventExport {
+
+    /**
+     * Identifies (and versions) an export stream.
+     */
+    public static final long MAGIC = 0x5850_4558_504F_5201L;
+
+    /**
+     * Size of the record header: payload length and checksum.
+     */
+    public static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * Size of the fixed part of the payload, and the offsets of its fields.
+     */
+    private static final int EVENT_HEADER_SIZE = 16;
+    private static final int DATE_OFFSET = 0;
+    private static final int TIME_OFFSET = 8;
+    private static final int NAME_LENGTH_OFFSET = 10;
+    private static final int DESCRIPTION_LENGTH_OFFSET = 12;
+
+    /**
+     * Size of the buffer records are encoded into before they are written.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Flag of the export tool naming a running server to export from.
+     */
+    private static final String SERVER = "server";
+
+    /**
+     * Writes the complete export stream of a store.
+     *
+     * @param store Store to export
+     * @param out Channel to write to
+     * @return Number of bytes written
+     * @throws IOException If writing fails
+     */
+    public static long export(EventStore store, WritableByteChannel out) throws IOException {
+        Writer writer = new Writer(out);
+        store.exportTo(writer);
+        return writer.finish();
+    }
+
+    /**
+     * Reads an export stream, checking every record.
+     *
+     * @param in Channel positioned at the start of the stream
+     * @param action Called with each event, in stream order
+     * @return Number of events read
+     * @throws IOException If reading fails or the stream is malformed or truncated
+     */
+    public static long read(ReadableByteChannel in, Consumer<Event> action) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(in, header);
+        if (header.getLong(0) != MAGIC) {
+            throw new IOException("Not an event export");
+        }
+
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer payload = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long count = 0;
+        while (true) {
+            recordHeader.clear().limit(Integer.BYTES);
+            readFully(in, recordHeader);
+            int length = recordHeader.getInt(0);
+            if (length == 0) {
+                return count;
+            }
+            if (length < EVENT_HEADER_SIZE || length > BUFFER_SIZE) {
+                throw new IOException("Corrupt event export");
+            }
+            recordHeader.limit(RECORD_HEADER_SIZE);
+            readFully(in, recordHeader);
+            payload.clear().limit(length);
+            readFully(in, payload);
+            if (checksum(payload, 0, length) != recordHeader.getInt(4)) {
+                throw new IOException("Corrupt event export");
+            }
+            action.accept(decode(payload));
+            count++;
+        }
+    }
+
+    /**
+     * Command-line export tool. Writes the export stream of an event log
+     * directory, a snapshot file or a running server to a file.
+     *
+     * @param args The output file followed by {@code --event-log=<dir>},
+     *             {@code --snapshot=<file>} or {@code --server=<host>:<port>}
+     */
+    public static void main(String[] args) {
+        ServerOptions options;
+        try {
+            options = ServerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            options = null;
+        }
+        int sources = options == null ? 0 : (options.has(ServerOptions.EVENT_LOG) ? 1 : 0)
+            + (options.has(ServerOptions.SNAPSHOT) ? 1 : 0) + (options.has(SERVER) ? 1 : 0);
+        if (options == null || options.positional().size() != 1 || sources != 1) {
+            System.out.println("Usage: java EventExport <output file> (--event-log=<dir> | --snapshot=<file> | --server=<host>:<port>)");
+            System.exit(1);
+        }
+
+        Path output = Paths.get(options.positional().get(0));
+        long start = System.nanoTime();
+        try (FileChannel out = FileChannel.open(output,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long bytes;
+            if (options.has(ServerOptions.EVENT_LOG)) {
+                // Read the segments in place; the log may belong to a running server
+                Writer writer = new Writer(out);
+                EventStoreLog.exportDirectory(Paths.get(options.get(ServerOptions.EVENT_LOG, "events")), writer);
+                bytes = writer.finish();
+            } else if (options.has(ServerOptions.SNAPSHOT)) {
+                Writer writer = new Writer(out);
+                EventStoreMemory.exportSnapshot(Paths.get(options.get(ServerOptions.SNAPSHOT, "events.snapshot")), writer);
+                bytes = writer.finish();
+            } else {
+                bytes = download(options.get(SERVER, ""), out);
+            }
+            out.force(true);
+            System.out.println("Exported " + bytes + " bytes to " + output + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Export failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Requests an export from a running server and copies the stream to a file.
+     *
+     * @param server Server address as {@code host:port}
+     * @param out File to write to
+     * @return Number of bytes received
+     * @throws IOException If the request fails or the server refuses it
+     */
+    private static long download(String server, FileChannel out) throws IOException {
+        int colon = server.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Server must be given as <host>:<port>");
+        }
+        InetSocketAddress address = new InetSocketAddress(server.substring(0, colon), Integer.parseInt(server.substring(colon + 1)));
+        try (SocketChannel channel = SocketChannel.open(address)) {
+            channel.write(ByteBuffer.wrap(QueryRequest.EXPORT_REQUEST.getBytes(StandardCharsets.US_ASCII)));
+            long position = 0;
+            long received;
+            while ((received = out.transferFrom(channel, position, BUFFER_SIZE)) > 0) {
+                position += received;
+            }
+            if (position < Long.BYTES) {
+                throw new IOException("Server refused the export");
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Decodes a payload.
+     *
+     * @param payload Buffer holding one payload from index 0
+     * @return The event
+     */
+    private static Event decode(ByteBuffer payload) {
+        byte[] name = new byte[payload.getShort(NAME_LENGTH_OFFSET) & 0xFFFF];
+        byte[] description = new byte[payload.getInt(DESCRIPTION_LENGTH_OFFSET)];
+        payload.get(EVENT_HEADER_SIZE, name);
+        payload.get(EVENT_HEADER_SIZE + name.length, description);
+        return new Event(new String(name, StandardCharsets.UTF_8),
+            EventArena.unpackDate(payload.getLong(DATE_OFFSET)),
+            EventArena.unpackTime(payload.getShort(TIME_OFFSET)),
+            new String(description, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Computes the CRC32C of a payload.
+     *
+     * @param buffer Buffer holding the payload
+     * @param offset Offset of the payload
+     * @param length Length of the payload
+     * @return The checksum
+     */
+    static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Fills a buffer from a channel.
+     *
+     * @param in The channel
+     * @param buffer The buffer
+     * @throws IOException If reading fails or the channel ends first
+     */
+    private static void readFully(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                throw new EOFException("Truncated event export");
+            }
+        }
+    }
+
+    /**
+     * Writes an export stream: the magic number on construction, records as
+     * they are given and the end marker on {@link #finish()}.
+     */
+    public static final class Writer {
+        private final WritableByteChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long written;
+
+        /**
+         * Starts a stream.
+         *
+         * @param out Channel to write to
+         */
+        public Writer(WritableByteChannel out) {
+            this.out = out;
+            buffer.putLong(MAGIC);
+        }
+
+        /**
+         * Encodes an event.
+         *
+         * @param event A valid event
+         * @throws IOException If writing fails
+         */
+        public void write(Event event) throws IOException {
+            byte[] name = event.getName().getBytes(StandardCharsets.UTF_8);
+            byte[] description = event.getDescription().getBytes(StandardCharsets.UTF_8);
+            int length = EVENT_HEADER_SIZE + name.length + description.length;
+            reserve(RECORD_HEADER_SIZE + length);
+            int payload = buffer.position() + RECORD_HEADER_SIZE;
+            buffer.putLong(payload + DATE_OFFSET, EventArena.packDate(event.getDate()));
+            buffer.putShort(payload + TIME_OFFSET, EventArena.packTime(event.getTime()));
+            buffer.putShort(payload + NAME_LENGTH_OFFSET, (short) name.length);
+            buffer.putInt(payload + DESCRIPTION_LENGTH_OFFSET, description.length);
+            buffer.put(payload + EVENT_HEADER_SIZE, name);
+            buffer.put(payload + EVENT_HEADER_SIZE + name.length, description);
+            seal(length);
+        }
+
+        /**
+         * Copies a record kept in {@link EventArena} layout in native byte order.
+         *
+         * @param record Buffer holding exactly the record between its position and limit
+         * @throws IOException If writing fails
+         */
+        public void writeRecord(ByteBuffer record) throws IOException {
+            if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+                write(decode(record.slice().order(ByteOrder.nativeOrder())));
+                return;
+            }
+            int length = record.remaining();
+            reserve(RECORD_HEADER_SIZE + length);
+            buffer.position(buffer.position() + RECORD_HEADER_SIZE);
+            buffer.put(record);
+            buffer.position(buffer.position() - RECORD_HEADER_SIZE - length);
+            seal(length);
+        }
+
+        /**
+         * Sends complete records, already in export format, straight from a file.
+         *
+         * @param file File holding the records
+         * @param position Offset of the first record
+         * @param count Number of bytes of records
+         * @throws IOException If the transfer fails or the file is shorter than expected
+         */
+        public void transfer(FileChannel file, long position, long count) throws IOException {
+            flush();
+            long end = position + count;
+            while (position < end) {
+                long sent = file.transferTo(position, end - position, out);
+                if (sent <= 0) {
+                    throw new EOFException("Export source ended early");
+                }
+                position += sent;
+                written += sent;
+            }
+        }
+
+        /**
+         * Ends the stream and writes out everything buffered.
+         *
+         * @return Number of bytes written in total
+         * @throws IOException If writing fails
+         */
+        public long finish() throws IOException {
+            reserve(Integer.BYTES);
+            buffer.putInt(0);
+            flush();
+            return written;
+        }
+
+        /**
+         * Makes room for a record, writing out the buffer if needed.
+         *
+         * @param size Size of the record including its header
+         * @throws IOException If writing fails
+         */
+        private void reserve(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        /**
+         * Writes the header of the payload just placed after the position and moves past the record.
+         *
+         * @param length Length of the payload
+         */
+        private void seal(int length) {
+            int start = buffer.position();
+            buffer.putInt(start, length);
+            buffer.putInt(start + Integer.BYTES, checksum(buffer, start + RECORD_HEADER_SIZE, length));
+            buffer.position(start + RECORD_HEADER_SIZE + length);
+        }
+
+        /**
+         * Writes out everything buffered.
+         *
+         * @throws IOException If writing fails
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * JUnit 5 test for EventExport and the export of each kind of store.
+ */
+public class EventExportTest {
+
+    @TempDir
+    Path directory;
+
+    private static byte[] export(EventStore store) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventExport.export(store, Channels.newChannel(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, Event> read(byte[] export) throws IOException {
+        Map<String, Event> events = new HashMap<>();
+        EventExport.read(Channels.newChannel(new ByteArrayInputStream(export)), event -> events.put(event.getName(), event));
+        return events;
+    }
+
+    private static void addMany(EventStore store, int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(store.addEvent("Event" + i, "2025-04-15", "14:30", "d".repeat(1000) + i).success);
+        }
+    }
+
+    @Test
+    public void testMemoryRoundTrip() throws IOException {
+        EventStoreMemory store = new EventStoreMemory();
+        store.addEvent("Café", "-0044-03-15", "00:00", "Ünïcødé");
+        addMany(store, 2000);
+
+        // More than one buffer of records
+        byte[] export = export(store);
+        assertTrue(export.length > 2_000_000);
+        Map<String, Event> events = read(export);
+        assertEquals(2001, events.size());
+        assertEquals("-0044-03-15", events.get("Café").getDate());
+        assertEquals("Ünïcødé", events.get("Café").getDescription());
+        assertEquals("d".repeat(1000) + 1999, events.get("Event1999").getDescription());
+    }
+
+    @Test
+    public void testEmptyStore() throws IOException {
+        byte[] export = export(new EventStoreMemory());
+        assertEquals(Long.BYTES + Integer.BYTES, export.length);
+        assertTrue(read(export).isEmpty());
+    }
+
+    @Test
+    public void testLogSendsSegmentsAsTheyAre() throws IOException {
+        EventStoreLog log = new EventStoreLog(directory, EventStoreLog.MIN_SEGMENT_SIZE, true);
+        addMany(log, 3000);
+        byte[] export = export(log);
+
+        // Several segments; the offline export of the directory is the same stream
+        ByteArrayOutputStream offline = new ByteArrayOutputStream();
+        EventExport.Writer writer = new EventExport.Writer(Channels.newChannel(offline));
+        EventStoreLog.exportDirectory(directory, writer);
+        writer.finish();
+        log.close();
+        assertArrayEquals(export, offline.toByteArray());
+
+        Map<String, Event> events = read(export);
+        assertEquals(3000, events.size());
+        assertEquals("d".repeat(1000) + 2999, events.get("Event2999").getDescription());
+
+        // The same events encoded from the arena give the same records
+        EventStoreMemory memory = new EventStoreMemory();
+        memory.addEvents(new ArrayList<>(events.values()));
+        assertEquals(export.length, export(memory).length);
+    }
+
+    @Test
+    public void testSnapshotExport() throws IOException {
+        EventStoreMemory store = new EventStoreMemory();
+        addMany(store, 500);
+        Path file = directory.resolve("events.snapshot");
+        store.snapshot(file);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventExport.Writer writer = new EventExport.Writer(Channels.newChannel(bytes));
+        assertEquals(500, EventStoreMemory.exportSnapshot(file, writer));
+        writer.finish();
+        assertEquals(read(export(store)).keySet(), read(bytes.toByteArray()).keySet());
+    }
+
+    @Test
+    public void testShardsShareOneStream() throws IOException {
+        ShardedEventStore store = new ShardedEventStore(List.of(new EventStoreMemory(), new EventStoreMemory(), new EventStoreMemory()));
+        addMany(store, 300);
+        assertEquals(300, read(export(store)).size());
+    }
+
+    @Test
+    public void testCorruptExport() throws IOException {
+        EventStoreMemory store = new EventStoreMemory();
+        addMany(store, 3);
+        byte[] export = export(store);
+
+        byte[] corrupt = export.clone();
+        corrupt[Long.BYTES + 20] ^= 1;
+        assertThrows(IOException.class, () -> read(corrupt));
+        assertThrows(EOFException.class, () -> read(Arrays.copyOf(export, export.length - 1)));
+        assertThrows(IOException.class, () -> read(new byte[12]));
+    }
+}
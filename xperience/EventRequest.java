@@ -0,0 +1,246 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.nio.charset.*;
+
+/**
+ * Single-pass parser for {@code name#date#time#description#password#} records.
+ * The parser finds the '#' delimiters directly in the received bytes and only
+ * records their positions; each field is decoded from UTF-8 when it is asked
+ * for, so a rejected password never costs a copy of the description.
+ * Parsing follows the original rules exactly: trailing line breaks are ignored,
+ * at least five fields are required, and anything after the fifth field is
+ * ignored. A {@link BinaryRequest} frame is parsed the same way from its
+ * length prefixes, and its packed date and time are turned back into text.
+ */
+public class EventRequest {
+
+    /**
+     * Number of fields in an event record.
+     */
+    public static final int FIELD_COUNT = 5;
+
+    /**
+     * Index of the name field.
+     */
+    public static final int NAME = 0;
+
+    /**
+     * Index of the date field.
+     */
+    public static final int DATE = 1;
+
+    /**
+     * Index of the time field.
+     */
+    public static final int TIME = 2;
+
+    /**
+     * Index of the description field.
+     */
+    public static final int DESCRIPTION = 3;
+
+    /**
+     * Index of the password field.
+     */
+    public static final int PASSWORD = 4;
+
+    /**
+     * Field delimiter of the text protocol.
+     */
+    private static final byte DELIMITER = '#';
+
+    /**
+     * Buffer holding the parsed record.
+     */
+    private byte[] buffer;
+
+    /**
+     * Offset of the first byte of each field.
+     */
+    private final int[] starts = new int[FIELD_COUNT];
+
+    /**
+     * Offset one past the last byte of each field.
+     */
+    private final int[] ends = new int[FIELD_COUNT];
+
+    /**
+     * Whether the parsed record is a binary frame.
+     */
+    private boolean binary;
+
+    /**
+     * Packed date and time of a binary frame.
+     */
+    private long packedDate;
+    private long packedTime;
+
+    /**
+     * Parses a record in place. The buffer must not change while fields are read.
+     *
+     * @param buffer Buffer holding the record
+     * @param offset Offset of the first byte of the record
+     * @param length Length of the record in bytes
+     * @return True if the record has at least five fields
+     */
+    public boolean parse(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.binary = BinaryRequest.matches(buffer, offset, length);
+        if (binary) {
+            return parseBinary(offset + 1, offset + length);
+        }
+
+        // Ignore trailing newlines if any
+        int end = offset + length;
+        while (end > offset && (buffer[end - 1] == '\r' || buffer[end - 1] == '\n')) {
+            end--;
+        }
+
+        int field = 0;
+        int fieldStart = offset;
+        for (int i = offset; i < end && field < FIELD_COUNT; i++) {
+            if (buffer[i] == DELIMITER) {
+                starts[field] = fieldStart;
+                ends[field] = i;
+                field++;
+                fieldStart = i + 1;
+            }
+        }
+
+        // The last field may run to the end of the record without a delimiter
+        if (field == FIELD_COUNT - 1) {
+            starts[field] = fieldStart;
+            ends[field] = end;
+            field++;
+        }
+        return field == FIELD_COUNT;
+    }
+
+    /**
+     * Parses the fields of a binary frame from their length prefixes.
+     *
+     * @param position Offset of the first field, after the magic byte
+     * @param end Offset one past the last byte of the frame
+     * @return True if all five fields are present
+     */
+    private boolean parseBinary(int position, int end) {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            int next = BinaryRequest.varintEnd(buffer, position, end);
+            if (next < 0) {
+                return false;
+            }
+            long value = BinaryRequest.varint(buffer, position);
+            starts[field] = next;
+            ends[field] = next;
+            if (field == DATE) {
+                packedDate = BinaryRequest.unzigzag(value);
+            } else if (field == TIME) {
+                packedTime = value;
+            } else if (value > end - next) {
+                return false;
+            } else {
+                ends[field] = next + (int) value;
+            }
+            position = ends[field];
+        }
+        return true;
+    }
+
+    /**
+     * Decodes one field.
+     *
+     * @param index Field index ({@link #NAME} to {@link #PASSWORD})
+     * @return The field text
+     */
+    public String field(int index) {
+        if (binary && index == DATE) {
+            return BinaryRequest.formatDate(packedDate);
+        }
+        if (binary && index == TIME) {
+            return BinaryRequest.formatTime(packedTime);
+        }
+        return new String(buffer, starts[index], ends[index] - starts[index], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the length of one field in bytes without decoding it; the packed
+     * date and time of a binary frame have no length.
+     *
+     * @param index Field index
+     * @return Field length in bytes
+     */
+    public int fieldLength(int index) {
+        return ends[index] - starts[index];
+    }
+
+    /**
+     * Checks whether a field is exactly the given ASCII text without decoding it.
+     *
+     * @param index Field index
+     * @param text The text to compare with
+     * @return True if the field matches
+     */
+    public boolean fieldEquals(int index, String text) {
+        if (fieldLength(index) != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer[starts[index] + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the event name.
+     *
+     * @return The name field
+     */
+    public String name() {
+        return field(NAME);
+    }
+
+    /**
+     * Returns the event date.
+     *
+     * @return The date field
+     */
+    public String date() {
+        return field(DATE);
+    }
+
+    /**
+     * Returns the event time.
+     *
+     * @return The time field
+     */
+    public String time() {
+        return field(TIME);
+    }
+
+    /**
+     * Returns the event description.
+     *
+     * @return The description field
+     */
+    public String description() {
+        return field(DESCRIPTION);
+    }
+
+    /**
+     * Returns the one-time password.
+     *
+     * @return The password field
+     */
+    public String password() {
+        return field(PASSWORD);
+    }
+}
@@ -0,0 +1,57 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.params.*;
+import org.junit.jupiter.params.provider.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.charset.*;
+
+/**
+ * JUnit 5 test for the EventRequest parser.
+ * Every input is also parsed with the original replaceAll/split logic and the
+ * two must agree on whether the record is usable and on every field.
+ */
+public class EventRequestTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "Party#2025-04-15#14:30#Fun#pass#",
+        "Party#2025-04-15#14:30#Fun#pass",
+        "Party#2025-04-15#14:30#Fun#pass#\r\n",
+        "Party#2025-04-15#14:30#Fun#pass\n\n",
+        "Party#2025-04-15#14:30#Fun#pass#extra#fields#",
+        "Party#2025-04-15#14:30#Fun#",
+        "Party#2025-04-15#14:30#Fun",
+        "Concert#2025-10-20#21:00#",
+        "#2025-07-01#20:00#Missing name#pass#",
+        "####",
+        "#####",
+        "",
+        "\r\n",
+        "Café über#2025-04-15#14:30#日本語 🎉#päss#",
+        "Line\nbreak#2025-04-15#14:30#Multi\nline#pass\n#"
+    })
+    public void testMatchesLegacyParsing(String input) {
+        byte[] bytes = ("xx" + input + "yy").getBytes(StandardCharsets.UTF_8);
+        int length = input.getBytes(StandardCharsets.UTF_8).length;
+
+        EventRequest request = new EventRequest();
+        boolean parsed = request.parse(bytes, 2, length);
+
+        String[] parts = input.replaceAll("[\r\n]+$", "").split("#", -1);
+        assertEquals(parts.length >= 5, parsed);
+        if (parsed) {
+            assertEquals(parts[0], request.name());
+            assertEquals(parts[1], request.date());
+            assertEquals(parts[2], request.time());
+            assertEquals(parts[3], request.description());
+            assertEquals(parts[4], request.password());
+        }
+    }
+}
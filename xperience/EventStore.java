@@ -7,9 +7,9 @@
  ************************************************/
 package xperience;
 
-import java.util.regex.*;
-import java.time.*;
-import java.time.format.*;
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
 
 /**
  * Interface for storing and managing events.
@@ -26,6 +26,61 @@ public interface EventStore {
      */
     Result addEvent(String name, String date, String time, String description);
 
+    /**
+     * Attempts to add several events to the store.
+     * Each event is validated and checked for duplicates on its own, so one
+     * rejected event does not affect the others.
+     * 
+     * @param events Events to add, in order
+     * @return One result per event, in the same order
+     */
+    default List<Result> addEvents(List<Event> events) {
+        List<Result> results = new ArrayList<>(events.size());
+        for (Event event : events) {
+            results.add(addEvent(event.getName(), event.getDate(), event.getTime(), event.getDescription()));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the number of events currently in the store.
+     * 
+     * @return Event count
+     */
+    int getEventCount();
+
+    /**
+     * Passes every stored event to an action, in no particular order.
+     * Events added concurrently may or may not be included.
+     *
+     * @param action Called once per event
+     * @throws UncheckedIOException If the store cannot be read; the events passed so far are then incomplete
+     */
+    void forEachEvent(Consumer<Event> action);
+
+    /**
+     * Writes every stored event to an export stream, in no particular order.
+     * Events added concurrently may or may not be included. By default each
+     * event passed to {@link #forEachEvent} is encoded; stores that keep their
+     * records in the export format send them directly.
+     *
+     * @param export Stream to write the records to
+     * @throws IOException If reading the store or writing fails
+     */
+    default void exportTo(EventExport.Writer export) throws IOException {
+        try {
+            forEachEvent(event -> {
+                try {
+                    export.write(event);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     /**
      * Represents the result of an event addition attempt.
      */
@@ -45,6 +100,8 @@ public interface EventStore {
     class EventValidator {
         private static final int MAX_NAME_LENGTH = 300;
         private static final int MAX_DESCRIPTION_LENGTH = 65535;
+        private static final int MAX_YEAR_DIGITS = 10;
+        private static final long MAX_YEAR = 999_999_999L;
 
         /**
          * Validates an event's attributes.
@@ -76,17 +133,52 @@ public interface EventStore {
 
         /**
          * Validates event date in YYYY-MM-DD format.
+         * Accepts exactly what {@code LocalDate.parse} with
+         * {@code DateTimeFormatter.ISO_LOCAL_DATE} accepts, including signed
+         * years beyond 9999 and the leap year rules, but without building an
+         * exception for every invalid date.
          * 
          * @param date Event date to validate
          * @return True if date is valid
          */
         public static boolean validateDate(String date) {
-            try {
-                LocalDate.parse(date, DateTimeFormatter.ISO_LOCAL_DATE);
-                return true;
-            } catch (DateTimeParseException e) {
+            if (date == null) {
+                return false;
+            }
+            int length = date.length();
+
+            // Optional sign, then the year digits
+            int i = 0;
+            char sign = length > 0 ? date.charAt(0) : 0;
+            if (sign == '+' || sign == '-') {
+                i++;
+            } else {
+                sign = 0;
+            }
+            int yearStart = i;
+            long year = 0;
+            while (i < length && i - yearStart < MAX_YEAR_DIGITS && isDigit(date.charAt(i))) {
+                year = year * 10 + (date.charAt(i) - '0');
+                i++;
+            }
+            int yearDigits = i - yearStart;
+
+            // Four digits without a sign; '+' only for longer years; no negative zero
+            if (sign == 0 ? yearDigits != 4
+                    : yearDigits < (sign == '+' ? 5 : 4) || year > MAX_YEAR || (sign == '-' && year == 0)) {
                 return false;
             }
+
+            // Then exactly "-MM-DD"
+            if (length - i != 6 || date.charAt(i) != '-' || date.charAt(i + 3) != '-') {
+                return false;
+            }
+            int month = twoDigits(date, i + 1);
+            int day = twoDigits(date, i + 4);
+            if (month < 1 || month > 12 || day < 1) {
+                return false;
+            }
+            return day <= daysInMonth(month, sign == '-' ? -year : year);
         }
 
         /**
@@ -96,8 +188,60 @@ public interface EventStore {
          * @return True if time is valid
          */
         public static boolean validateTime(String time) {
-            Pattern timePattern = Pattern.compile("^([01]\\d|2[0-3]):([0-5]\\d)$");
-            return time != null && timePattern.matcher(time).matches();
+            if (time == null || time.length() != 5 || time.charAt(2) != ':') {
+                return false;
+            }
+            int hour = twoDigits(time, 0);
+            int minute = twoDigits(time, 3);
+            return hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59;
+        }
+
+        /**
+         * Checks for an ASCII digit.
+         * 
+         * @param c Character to check
+         * @return True if the character is 0-9
+         */
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        /**
+         * Reads a two-digit number.
+         * 
+         * @param text Text containing the number
+         * @param index Index of the first digit
+         * @return The number, or -1 if either character is not an ASCII digit
+         */
+        private static int twoDigits(String text, int index) {
+            char tens = text.charAt(index);
+            char ones = text.charAt(index + 1);
+            if (!isDigit(tens) || !isDigit(ones)) {
+                return -1;
+            }
+            return (tens - '0') * 10 + (ones - '0');
+        }
+
+        /**
+         * Returns the number of days in a month of the proleptic ISO calendar.
+         * 
+         * @param month Month from 1 to 12
+         * @param year Year, possibly negative
+         * @return Number of days in the month
+         */
+        private static int daysInMonth(int month, long year) {
+            switch (month) {
+                case 2:
+                    boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+                    return leap ? 29 : 28;
+                case 4:
+                case 6:
+                case 9:
+                case 11:
+                    return 30;
+                default:
+                    return 31;
+            }
         }
 
         /**
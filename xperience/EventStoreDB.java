@@ -7,82 +7,453 @@
  ************************************************/
 package xperience;
 
+import java.io.*;
+import java.sql.*;
+import java.time.*;
 import java.util.*;
-import donabase.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.logging.*;
 
 /**
  * Database implementation of EventStore.
+ * Events are written with cached prepared statements on connections from a
+ * bounded {@link ConnectionPool}. Each event is a single INSERT; a duplicate
+ * name is detected from the violation of the table's {@code UNIQUE(name)}
+ * constraint rather than with a separate query.
+ * An optional {@link NameFilter}, loaded from the table at startup, rejects
+ * recently seen names without a round trip and lets batches skip the
+ * existence check for names that are definitely new. Both compare names in
+ * lower case, following the case-insensitive collation of the name column.
  */
 public class EventStoreDB implements EventStore {
-    private final DonaBaseConnection dbConnection;
-    private static int eventCount = 0;
+    private static final Logger logger = Logger.getLogger(EventStoreDB.class.getName());
+
+    /**
+     * Inserts one event.
+     */
+    private static final String INSERT_SQL =
+        "INSERT INTO Event (name, event_date, event_time, description) VALUES (?, ?, ?, ?)";
+
+    /**
+     * Counts the stored events.
+     */
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM Event";
+
+    /**
+     * Checks whether a name is taken.
+     */
+    private static final String EXISTS_SQL = "SELECT 1 FROM Event WHERE name = ?";
+
+    /**
+     * Reads one page of names, in id order, for loading the name filter.
+     */
+    private static final String NAMES_SQL = "SELECT id, name FROM Event WHERE id > ? ORDER BY id LIMIT ?";
+
+    /**
+     * Reads one page of events, in id order.
+     */
+    private static final String EVENTS_SQL =
+        "SELECT id, name, event_date, event_time, description FROM Event WHERE id > ? ORDER BY id LIMIT ?";
+
+    /**
+     * Number of rows read per page when loading the name filter or reading all events.
+     */
+    private static final int NAMES_PAGE_SIZE = 10000;
+
+    /**
+     * Smallest number of names the filter is sized for.
+     */
+    private static final long MIN_FILTER_NAMES = 1_000_000;
+
+    private final ConnectionPool pool;
+    private final AtomicInteger eventCount = new AtomicInteger(0);
+
+    /**
+     * Known names, or null if the filter is disabled.
+     */
+    private final NameFilter nameFilter;
+
+    /**
+     * Constructs a store on a connection pool, reading the current event count.
+     *
+     * @param pool Pool of connections to the database
+     */
+    public EventStoreDB(ConnectionPool pool) {
+        this(pool, false);
+    }
+
+    /**
+     * Constructs a store on a connection pool, reading the current event count
+     * and optionally loading every stored name into a {@link NameFilter}.
+     *
+     * @param pool Pool of connections to the database
+     * @param filterNames True to keep a local filter of taken names
+     */
+    public EventStoreDB(ConnectionPool pool, boolean filterNames) {
+        this.pool = pool;
 
-    public EventStoreDB(DonaBaseConnection dbConnection) {
-        this.dbConnection = dbConnection;
-        
         // Initialize event count from database
-        try {
-            String countQuery = "SELECT COUNT(*) FROM Event";
-            List<List<String>> result = dbConnection.query(countQuery);
-            if (result != null && !result.isEmpty()) {
-                eventCount = Integer.parseInt(result.get(0).get(0));
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            try (ResultSet result = connection.prepare(COUNT_SQL).executeQuery()) {
+                if (result.next()) {
+                    eventCount.set(result.getInt(1));
+                }
+            } catch (SQLException e) {
+                connection.markBroken();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.warning("Cannot read event count: " + e.getMessage());
+        }
+
+        this.nameFilter = filterNames ? loadNameFilter() : null;
+    }
+
+    /**
+     * Builds a name filter sized for the table to double and streams every
+     * stored name into it, one page at a time.
+     *
+     * @return The filter, or null if the names cannot be read
+     */
+    private NameFilter loadNameFilter() {
+        NameFilter filter = new NameFilter(Math.max(MIN_FILTER_NAMES, 2L * eventCount.get()), NameFilter.DEFAULT_RECENT_NAMES);
+        long start = System.nanoTime();
+        long loaded = 0;
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            try {
+                PreparedStatement page = connection.prepare(NAMES_SQL);
+                long lastId = 0;
+                int rows;
+                do {
+                    page.setLong(1, lastId);
+                    page.setInt(2, NAMES_PAGE_SIZE);
+                    rows = 0;
+                    try (ResultSet result = page.executeQuery()) {
+                        while (result.next()) {
+                            lastId = result.getLong(1);
+                            filter.load(result.getString(2));
+                            rows++;
+                        }
+                    }
+                    loaded += rows;
+                } while (rows == NAMES_PAGE_SIZE);
+            } catch (SQLException e) {
+                connection.markBroken();
+                throw e;
             }
-        } catch (Exception e) {
-            // Log error or handle appropriately
+        } catch (SQLException e) {
+            logger.warning("Cannot load event names, name filter disabled: " + e.getMessage());
+            return null;
         }
+        logger.info("Loaded " + loaded + " event names in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return filter;
     }
 
     @Override
     public Result addEvent(String name, String date, String time, String description) {
         // Validate the event
         if (!EventStore.EventValidator.validate(name, date, time, description)) {
-            return new Result(false, eventCount);
-        }
-
-        try {
-            // Escape single quotes in input values to prevent SQL injection
-            String escapedName = escapeSQLString(name);
-            String escapedDate = escapeSQLString(date);
-            String escapedTime = escapeSQLString(time);
-            String escapedDescription = escapeSQLString(description);
-            
-            // Check if the event name already exists in the database
-            String checkQuery = String.format(
-                "SELECT COUNT(*) FROM Event WHERE name = '%s'",
-                escapedName
-            );
-            List<List<String>> result = dbConnection.query(checkQuery);
-            
-            if (result != null && !result.isEmpty() && Integer.parseInt(result.get(0).get(0)) > 0) {
-                return new Result(false, eventCount);
+            return new Result(false, eventCount.get());
+        }
+
+        // A recently seen name is rejected without asking the database
+        if (nameFilter != null && nameFilter.isKnown(name)) {
+            return new Result(false, eventCount.get());
+        }
+
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            try {
+                PreparedStatement insert = connection.prepare(INSERT_SQL);
+                bind(insert, name, date, time, description);
+                if (insert.executeUpdate() == 1) {
+                    remember(name);
+                    return new Result(true, eventCount.incrementAndGet());
+                }
+                return new Result(false, eventCount.get());
+            } catch (SQLException e) {
+                if (isDuplicate(e)) {
+                    remember(name);
+                }
+
+                // A duplicate name or bad value leaves the connection usable; anything else may not
+                if (!isRowRejected(e)) {
+                    connection.markBroken();
+                    logger.warning("Insert failed: " + e.getMessage());
+                }
+                return new Result(false, eventCount.get());
             }
-            
-            // Insert the event into the database
-            String insertQuery = String.format(
-                "INSERT INTO Event (name, event_date, event_time, description) VALUES ('%s', '%s', '%s', '%s')",
-                escapedName, escapedDate, escapedTime, escapedDescription
-            );
-            
-            boolean rowsAffected = dbConnection.insert(insertQuery);
-            
-            if (rowsAffected) {
-                eventCount++; // Increment event count on successful insert
-                return new Result(true, eventCount);
+        } catch (SQLException e) {
+            logger.warning("No database connection: " + e.getMessage());
+            return new Result(false, eventCount.get());
+        }
+    }
+
+    /**
+     * Adds several events in one transaction with a single JDBC batch, which
+     * the MySQL driver sends as one multi-row INSERT when
+     * {@code rewriteBatchedStatements} is set. If any row fails (typically a
+     * duplicate name) the transaction is rolled back and the events are
+     * added one at a time so each gets its own result.
+     *
+     * @param events Events to add, in order
+     * @return One result per event, in the same order
+     */
+    @Override
+    public List<Result> addEvents(List<Event> events) {
+        Result[] results = new Result[events.size()];
+        List<Integer> pending = new ArrayList<>();
+        Set<String> batchNames = new HashSet<>();
+
+        // Reject invalid events and names repeated within the batch, ignoring case like the column, up front
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            if (!EventStore.EventValidator.validate(event.getName(), event.getDate(), event.getTime(), event.getDescription())
+                    || !batchNames.add(NameFilter.key(event.getName()))) {
+                results[i] = new Result(false, eventCount.get());
             } else {
-                return new Result(false, eventCount);
+                pending.add(i);
             }
-        } catch (Exception e) {
-            return new Result(false, eventCount);
         }
+
+        // Names the filter cannot rule out are checked first so they do not fail the whole batch
+        if (nameFilter != null) {
+            pending = filterTakenNames(events, pending, results);
+        }
+
+        if (!pending.isEmpty() && !insertBatch(events, pending)) {
+            // Fall back to single inserts, which report each duplicate individually
+            for (int index : pending) {
+                Event event = events.get(index);
+                results[index] = addEvent(event.getName(), event.getDate(), event.getTime(), event.getDescription());
+            }
+            return Arrays.asList(results);
+        }
+        for (int index : pending) {
+            remember(events.get(index).getName());
+            results[index] = new Result(true, eventCount.incrementAndGet());
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Rejects pending events whose names are taken. Names the filter knows
+     * are rejected directly, names it cannot rule out are looked up, and
+     * names that are definitely new are not queried at all.
+     *
+     * @param events All events of the batch
+     * @param pending Indexes of the events still to insert
+     * @param results Results array to fill in for rejected events
+     * @return Indexes of the events to insert
+     */
+    private List<Integer> filterTakenNames(List<Event> events, List<Integer> pending, Result[] results) {
+        List<Integer> remaining = new ArrayList<>(pending.size());
+        List<Integer> uncertain = new ArrayList<>();
+        for (int index : pending) {
+            String name = events.get(index).getName();
+            if (nameFilter.isKnown(name)) {
+                results[index] = new Result(false, eventCount.get());
+            } else if (nameFilter.mightContain(name)) {
+                uncertain.add(index);
+            } else {
+                remaining.add(index);
+            }
+        }
+        if (uncertain.isEmpty()) {
+            return remaining;
+        }
+
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            try {
+                PreparedStatement exists = connection.prepare(EXISTS_SQL);
+                for (int index : uncertain) {
+                    String name = events.get(index).getName();
+                    exists.setString(1, name);
+                    try (ResultSet result = exists.executeQuery()) {
+                        if (result.next()) {
+                            remember(name);
+                            results[index] = new Result(false, eventCount.get());
+                        } else {
+                            remaining.add(index);
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                connection.markBroken();
+                throw e;
+            }
+        } catch (SQLException e) {
+            // Let the insert decide; a duplicate then only costs the batch fallback
+            for (int index : uncertain) {
+                if (results[index] == null && !remaining.contains(index)) {
+                    remaining.add(index);
+                }
+            }
+        }
+        Collections.sort(remaining);
+        return remaining;
+    }
+
+    /**
+     * Returns the name filter, for tests.
+     *
+     * @return The filter, or null if it is disabled
+     */
+    NameFilter nameFilter() {
+        return nameFilter;
+    }
+
+    /**
+     * Records a taken name in the filter, if there is one.
+     *
+     * @param name The name
+     */
+    private void remember(String name) {
+        if (nameFilter != null) {
+            nameFilter.add(name);
+        }
+    }
+
+    @Override
+    public int getEventCount() {
+        return eventCount.get();
     }
 
     /**
-     * Escapes single quotes in a string for safe use in SQL queries.
-     * 
-     * @param input The string to be escaped.
-     * @return The escaped string.
+     * Passes every stored event to an action, reading the table one page at a time.
+     * A database failure ends the enumeration and is thrown, so that the events
+     * passed so far are never taken for the whole table.
+     *
+     * @param action Called once per event
+     * @throws UncheckedIOException If the events cannot be read
      */
-    private String escapeSQLString(String input) {
-        return input.replace("'", "''");
+    @Override
+    public void forEachEvent(Consumer<Event> action) {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            try {
+                PreparedStatement page = connection.prepare(EVENTS_SQL);
+                long lastId = 0;
+                int rows;
+                do {
+                    page.setLong(1, lastId);
+                    page.setInt(2, NAMES_PAGE_SIZE);
+                    rows = 0;
+                    try (ResultSet result = page.executeQuery()) {
+                        while (result.next()) {
+                            lastId = result.getLong(1);
+                            LocalTime time = result.getObject(4, LocalTime.class);
+                            action.accept(new Event(result.getString(2),
+                                result.getObject(3, LocalDate.class).toString(),
+                                String.format("%02d:%02d", time.getHour(), time.getMinute()),
+                                result.getString(5)));
+                            rows++;
+                        }
+                    }
+                } while (rows == NAMES_PAGE_SIZE);
+            } catch (SQLException e) {
+                connection.markBroken();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new UncheckedIOException(new IOException("Cannot read events: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Inserts validated events atomically.
+     *
+     * @param events All events of the batch
+     * @param pending Indexes of the events to insert
+     * @return True if every event was inserted, false if none was
+     */
+    private boolean insertBatch(List<Event> events, List<Integer> pending) {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            Connection jdbc = connection.connection();
+            try {
+                jdbc.setAutoCommit(false);
+                PreparedStatement insert = connection.prepare(INSERT_SQL);
+                for (int index : pending) {
+                    Event event = events.get(index);
+                    bind(insert, event.getName(), event.getDate(), event.getTime(), event.getDescription());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                jdbc.commit();
+                jdbc.setAutoCommit(true);
+                return true;
+            } catch (SQLException e) {
+                // Nothing was committed; leave the connection as it was borrowed
+                try {
+                    connection.prepare(INSERT_SQL).clearBatch();
+                    jdbc.rollback();
+                    jdbc.setAutoCommit(true);
+                } catch (SQLException rollbackFailure) {
+                    connection.markBroken();
+                }
+                if (!isRowRejected(e)) {
+                    connection.markBroken();
+                }
+                return false;
+            }
+        } catch (SQLException e) {
+            logger.warning("No database connection: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Sets the parameters of the insert statement.
+     *
+     * @param insert The insert statement
+     * @param name Event name
+     * @param date Event date
+     * @param time Event time
+     * @param description Event description
+     * @throws SQLException If a parameter cannot be set
+     */
+    private static void bind(PreparedStatement insert, String name, String date, String time, String description)
+            throws SQLException {
+        insert.setString(1, name);
+        insert.setString(2, date);
+        insert.setString(3, time);
+        insert.setString(4, description);
+    }
+
+    /**
+     * Checks whether a failure was a constraint violation, such as a duplicate name.
+     *
+     * @param e The failure
+     * @return True if it was a constraint violation (SQLSTATE class 23)
+     */
+    private static boolean isDuplicate(SQLException e) {
+        for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+            if (cause instanceof SQLIntegrityConstraintViolationException
+                    || cause.getCause() instanceof SQLIntegrityConstraintViolationException
+                    || (cause.getSQLState() != null && cause.getSQLState().startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a failure was caused by the row rather than the
+     * connection: a constraint violation such as a duplicate name (SQLSTATE
+     * class 23) or a value the column cannot hold (class 22), including one
+     * reported inside a failed batch.
+     *
+     * @param e The failure
+     * @return True if the connection is still usable
+     */
+    private static boolean isRowRejected(SQLException e) {
+        if (isDuplicate(e)) {
+            return true;
+        }
+        for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+            if (cause.getSQLState() != null && cause.getSQLState().startsWith("22")) {
+                return true;
+            }
+        }
+        return false;
     }
 }
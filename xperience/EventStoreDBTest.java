@@ -0,0 +1,339 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.*;
+import java.nio.channels.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * JUnit 5 test for EventStoreDB and ConnectionPool.
+ * Uses an in-memory H2 database in MySQL mode as a stand-in for the MySQL
+ * server, with the Event table from event.sql.
+ */
+public class EventStoreDBTest {
+
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    private String url;
+    private ConnectionPool pool;
+    private EventStoreDB eventStore;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        // A fresh named database per test, kept until the pool is closed
+        url = "jdbc:h2:mem:events" + databases.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        execute("CREATE TABLE Event ("
+            + "id INT UNSIGNED AUTO_INCREMENT PRIMARY KEY, "
+            + "name VARCHAR(300) NOT NULL UNIQUE, "
+            + "event_date DATE NOT NULL, "
+            + "event_time TIME NOT NULL, "
+            + "description TEXT NOT NULL, "
+            + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        pool = new ConnectionPool(url, "sa", "", 4);
+        eventStore = new EventStoreDB(pool);
+    }
+
+    @AfterEach
+    public void cleanup() throws SQLException {
+        pool.close();
+        execute("SHUTDOWN");
+    }
+
+    @Test
+    public void testAddEventAndDuplicate() throws SQLException {
+        EventStore.Result result = eventStore.addEvent("O'Brien's party", "2025-04-15", "14:30", "Quotes ' and \\ stay literal");
+        assertTrue(result.success);
+        assertEquals(1, result.eventCount);
+
+        // The UNIQUE(name) constraint rejects the second insert
+        EventStore.Result duplicate = eventStore.addEvent("O'Brien's party", "2025-05-20", "09:00", "Different description");
+        assertFalse(duplicate.success);
+        assertEquals(1, duplicate.eventCount);
+
+        assertEquals("Quotes ' and \\ stay literal", queryString("SELECT description FROM Event WHERE name = 'O''Brien''s party'"));
+        assertEquals("1", queryString("SELECT COUNT(*) FROM Event"));
+    }
+
+    @Test
+    public void testInvalidEventNotInserted() throws SQLException {
+        EventStore.Result result = eventStore.addEvent("Conference", "2025-02-30", "14:30", "Invalid date");
+        assertFalse(result.success);
+        assertEquals(0, result.eventCount);
+        assertEquals("0", queryString("SELECT COUNT(*) FROM Event"));
+    }
+
+    @Test
+    public void testEventCountReadAtStartup() {
+        eventStore.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+        eventStore.addEvent("Workshop", "2025-04-16", "10:00", "Coding workshop");
+
+        EventStoreDB restarted = new EventStoreDB(pool);
+        assertEquals(3, restarted.addEvent("Meetup", "2025-04-18", "18:00", "Evening meetup").eventCount);
+    }
+
+    @Test
+    public void testAddEvents() throws SQLException {
+        eventStore.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+
+        List<EventStore.Result> results = eventStore.addEvents(List.of(
+            new Event("Workshop", "2025-04-16", "10:00", "Coding workshop"),
+            new Event("Conference", "2025-05-20", "09:00", "Duplicate of an existing event"),
+            new Event("Meetup", "2025-02-30", "18:00", "Invalid date"),
+            new Event("Workshop", "2025-04-17", "11:00", "Duplicate within the batch"),
+            new Event("Meetup", "2025-04-18", "18:00", "Evening meetup")
+        ));
+
+        assertEquals(5, results.size());
+        assertTrue(results.get(0).success);
+        assertEquals(2, results.get(0).eventCount);
+        assertFalse(results.get(1).success);
+        assertFalse(results.get(2).success);
+        assertFalse(results.get(3).success);
+        assertTrue(results.get(4).success);
+        assertEquals(3, results.get(4).eventCount);
+        assertEquals("3", queryString("SELECT COUNT(*) FROM Event"));
+    }
+
+    @Test
+    public void testAddEventsWithoutDuplicates() throws SQLException {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            events.add(new Event("Event" + i, "2025-04-15", "14:30", "Description " + i));
+        }
+
+        List<EventStore.Result> results = eventStore.addEvents(events);
+        for (int i = 0; i < 500; i++) {
+            assertTrue(results.get(i).success);
+            assertEquals(i + 1, results.get(i).eventCount);
+        }
+        assertEquals("500", queryString("SELECT COUNT(*) FROM Event"));
+    }
+
+    @Test
+    public void testConcurrentDuplicateNames() throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+
+        // More threads than connections; each name is accepted exactly once
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < 16; t++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        if (eventStore.addEvent("Event" + i, "2025-04-15", "14:30", "Race").success) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        }
+
+        assertEquals(100, accepted.get());
+        assertEquals("100", queryString("SELECT COUNT(*) FROM Event"));
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        eventStore.addEvent("Event0", "2025-04-15", "14:30", "Stored before");
+        GroupCommitEventStore grouped = new GroupCommitEventStore(eventStore, 32, 5, false);
+        AtomicInteger accepted = new AtomicInteger();
+
+        // Groups containing a stored name fall back to single inserts; the rest commit together
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 300; i++) {
+                String name = "Event" + (i % 150);
+                executor.submit(() -> {
+                    if (grouped.addEvent(name, "2025-04-15", "14:30", "Grouped").success) {
+                        accepted.incrementAndGet();
+                    }
+                });
+            }
+        }
+        grouped.close();
+
+        assertEquals(149, accepted.get());
+        assertEquals(150, grouped.getEventCount());
+        assertEquals("150", queryString("SELECT COUNT(*) FROM Event"));
+    }
+
+    @Test
+    public void testBatchNamesIgnoreCase() throws SQLException {
+        // Like the utf8mb4_unicode_ci column of the real schema
+        execute("DROP TABLE Event");
+        execute("CREATE TABLE Event ("
+            + "id INT UNSIGNED AUTO_INCREMENT PRIMARY KEY, "
+            + "name VARCHAR_IGNORECASE(300) NOT NULL UNIQUE, "
+            + "event_date DATE NOT NULL, "
+            + "event_time TIME NOT NULL, "
+            + "description TEXT NOT NULL, "
+            + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        EventStoreDB filtered = new EventStoreDB(pool, true);
+        assertTrue(filtered.addEvent("Party", "2025-04-15", "14:30", "Stored").success);
+
+        List<EventStore.Result> results = filtered.addEvents(List.of(
+            new Event("PARTY", "2025-04-16", "10:00", "Stored in another case"),
+            new Event("Gala", "2025-04-16", "10:00", "New event"),
+            new Event("gala", "2025-04-16", "10:00", "Repeated in another case")
+        ));
+        assertFalse(results.get(0).success);
+        assertTrue(results.get(1).success);
+        assertFalse(results.get(2).success);
+        assertEquals(2, filtered.getEventCount());
+        assertTrue(filtered.nameFilter().isKnown("GALA"));
+    }
+
+    @Test
+    public void testNameFilterLoadsStoredNames() throws SQLException {
+        // More rows than one page of the loader
+        execute("INSERT INTO Event (name, event_date, event_time, description) "
+            + "SELECT 'Name' || X, DATE '2025-04-15', TIME '14:30:00', 'Loaded' FROM SYSTEM_RANGE(1, 25000)");
+        EventStoreDB filtered = new EventStoreDB(pool, true);
+        NameFilter filter = filtered.nameFilter();
+
+        for (int i = 1; i <= 25000; i += 97) {
+            assertTrue(filter.mightContain("Name" + i), "Name" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("New" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200, () -> "Too many false positives");
+
+        // Loaded names are confirmed by the database; new names skip the check
+        List<EventStore.Result> results = filtered.addEvents(List.of(
+            new Event("Name42", "2025-04-16", "10:00", "Stored duplicate"),
+            new Event("New1", "2025-04-16", "10:00", "New event"),
+            new Event("New2", "2025-04-16", "10:00", "New event")
+        ));
+        assertFalse(results.get(0).success);
+        assertTrue(results.get(1).success);
+        assertEquals(25002, results.get(2).eventCount);
+
+        // Names just seen are rejected locally
+        assertTrue(filter.isKnown("Name42"));
+        assertTrue(filter.isKnown("New2"));
+        assertFalse(filtered.addEvent("New2", "2025-04-16", "10:00", "Again").success);
+        assertEquals("25002", queryString("SELECT COUNT(*) FROM Event"));
+    }
+
+    @Test
+    public void testForEachEvent() {
+        for (int i = 0; i < 25; i++) {
+            eventStore.addEvent("Event" + i, "2025-04-15", "14:3" + (i % 10), "Description " + i);
+        }
+        Map<String, Event> events = new HashMap<>();
+        eventStore.forEachEvent(event -> events.put(event.getName(), event));
+
+        assertEquals(25, events.size());
+        assertEquals("2025-04-15", events.get("Event17").getDate());
+        assertEquals("14:37", events.get("Event17").getTime());
+        assertEquals("Description 17", events.get("Event17").getDescription());
+    }
+
+    @Test
+    public void testExportFailsWhenTheDatabaseFails() throws SQLException {
+        // More than one page, so the export queries the table again after the first
+        execute("INSERT INTO Event (name, event_date, event_time, description) "
+            + "SELECT 'Name' || X, DATE '2025-04-15', TIME '14:30:00', 'Loaded' FROM SYSTEM_RANGE(1, 15000)");
+
+        // Drops the table while the first page is being read, so the next query fails
+        AtomicInteger seen = new AtomicInteger();
+        EventStore failing = new EventStore() {
+            @Override
+            public Result addEvent(String name, String date, String time, String description) {
+                return eventStore.addEvent(name, date, time, description);
+            }
+
+            @Override
+            public int getEventCount() {
+                return eventStore.getEventCount();
+            }
+
+            @Override
+            public void forEachEvent(Consumer<Event> action) {
+                eventStore.forEachEvent(event -> {
+                    if (seen.incrementAndGet() == 1) {
+                        try {
+                            execute("DROP TABLE Event");
+                        } catch (SQLException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    action.accept(event);
+                });
+            }
+        };
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        assertThrows(IOException.class, () -> EventExport.export(failing, Channels.newChannel(bytes)));
+
+        // No end marker was written, so the stream cannot pass for a complete export
+        assertThrows(IOException.class, () -> EventExport.read(
+            Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())), event -> { }));
+        assertThrows(UncheckedIOException.class, () -> new IndexedEventStore(eventStore));
+    }
+
+    @Test
+    public void testExport() throws IOException {
+        for (int i = 0; i < 25; i++) {
+            eventStore.addEvent("Event" + i, "2025-04-15", "14:3" + (i % 10), "Description " + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventExport.export(eventStore, Channels.newChannel(bytes));
+
+        Map<String, Event> events = new HashMap<>();
+        EventExport.read(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())),
+            event -> events.put(event.getName(), event));
+        assertEquals(25, events.size());
+        assertEquals("14:37", events.get("Event17").getTime());
+        assertEquals("Description 17", events.get("Event17").getDescription());
+    }
+
+    @Test
+    public void testPoolIsBounded() throws SQLException {
+        ConnectionPool small = new ConnectionPool(url, "sa", "", 2, 200);
+        ConnectionPool.PooledConnection first = small.borrow();
+        ConnectionPool.PooledConnection second = small.borrow();
+
+        // Both connections are in use, so a third borrower times out
+        long start = System.nanoTime();
+        assertThrows(SQLTransientConnectionException.class, small::borrow);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+
+        // A returned connection is reused, with its prepared statements
+        PreparedStatement statement = first.prepare("SELECT COUNT(*) FROM Event");
+        first.close();
+        try (ConnectionPool.PooledConnection reused = small.borrow()) {
+            assertSame(statement, reused.prepare("SELECT COUNT(*) FROM Event"));
+        }
+        second.close();
+        small.close();
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private String queryString(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            assertTrue(result.next());
+            return result.getString(1);
+        }
+    }
+}
@@ -0,0 +1,644 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.logging.*;
+import java.util.regex.*;
+import java.util.stream.*;
+import java.util.zip.*;
+
+/**
+ * Durable EventStore that appends accepted events to a log of memory-mapped
+ * segment files in a directory.
+ * <p>
+ * Each segment is preallocated, starts with a 16-byte header and holds
+ * records of the form {@code length, CRC32C, payload}, where the payload is
+ * the event in the same layout as {@link EventArena}; a zero length marks the
+ * end of the log. Appends are serialized and copied straight into the mapped
+ * segment. A single sync thread forces the current segment whenever records
+ * are waiting, so concurrent callers share one fsync. By default callers
+ * are acknowledged only once their record is on disk; in asynchronous mode
+ * they are acknowledged immediately and the log is forced every
+ * {@link #ASYNC_SYNC_INTERVAL_MILLIS} milliseconds.
+ * <p>
+ * On startup the segments are scanned in order to rebuild the name index. A
+ * record with a bad length or checksum in the last segment is a torn write
+ * from a crash: it and everything after it are zeroed, so stale bytes can
+ * never be mistaken for records later. The same damage in an earlier segment,
+ * which was forced before the next one was started, is reported as an error.
+ * <p>
+ * The records are already in {@link EventExport} format, so an export sends
+ * the segment files as they are with {@link FileChannel#transferTo}.
+ */
+public class EventStoreLog implements EventStore, Closeable {
+    private static final Logger logger = Logger.getLogger(EventStoreLog.class.getName());
+
+    /**
+     * Default size of a segment file in bytes.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    /**
+     * Smallest allowed segment size; a segment must hold the largest valid event.
+     */
+    public static final int MIN_SEGMENT_SIZE = 1 << 20;
+
+    /**
+     * Interval between forces in asynchronous mode, in milliseconds.
+     */
+    public static final int ASYNC_SYNC_INTERVAL_MILLIS = 100;
+
+    /**
+     * Identifies (and versions) segment files.
+     */
+    private static final long MAGIC = 0x5850_4556_4C4F_4701L;
+
+    /**
+     * Size of the segment header: magic and segment number.
+     */
+    private static final int SEGMENT_HEADER_SIZE = 16;
+
+    /**
+     * Size of the record header: payload length and checksum.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    /**
+     * Size of the fixed part of the payload, and the offsets of its fields.
+     */
+    private static final int EVENT_HEADER_SIZE = 16;
+    private static final int DATE_OFFSET = 0;
+    private static final int TIME_OFFSET = 8;
+    private static final int NAME_LENGTH_OFFSET = 10;
+    private static final int DESCRIPTION_LENGTH_OFFSET = 12;
+
+    /**
+     * Names of segment files, numbered in log order.
+     */
+    private static final Pattern SEGMENT_NAME = Pattern.compile("events-(\\d{10})\\.log");
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncOnAck;
+
+    /**
+     * Mapped segments in log order. Guarded by this store's monitor, like all
+     * of the fields below except the event count.
+     */
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * Files of the mapped segments, and the end of the records in every
+     * segment but the last, whose end is the position.
+     */
+    private final List<Path> segmentFiles = new ArrayList<>();
+    private final List<Integer> segmentEnds = new ArrayList<>();
+
+    /**
+     * Number of the last segment file.
+     */
+    private long lastSegmentNumber;
+
+    /**
+     * Offset of the end of the log in the last segment.
+     */
+    private int position;
+
+    /**
+     * Event names mapped to the address of their record: segment index in
+     * the high 32 bits, offset in the low 32 bits.
+     */
+    private final Map<String, Long> index = new HashMap<>();
+
+    /**
+     * Number of records appended and number known to be on disk, since startup.
+     */
+    private long appended;
+    private long synced;
+
+    /**
+     * True while the sync thread waits for records.
+     */
+    private boolean syncIdle;
+    private boolean closed;
+
+    private final AtomicInteger eventCount = new AtomicInteger();
+    private final Thread syncer;
+
+    /**
+     * Opens the log in a directory with the default segment size, acknowledging events once they are on disk.
+     *
+     * @param directory Directory of the segment files; created if missing
+     * @throws IOException If the log cannot be read or is corrupt
+     */
+    public EventStoreLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, true);
+    }
+
+    /**
+     * Opens the log in a directory, replaying its segments.
+     *
+     * @param directory Directory of the segment files; created if missing
+     * @param segmentSize Size of new segment files in bytes
+     * @param syncOnAck True to acknowledge events only once they are on disk
+     * @throws IOException If the log cannot be read or is corrupt
+     */
+    public EventStoreLog(Path directory, int segmentSize, boolean syncOnAck) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segment size must be at least " + MIN_SEGMENT_SIZE);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncOnAck = syncOnAck;
+        Files.createDirectories(directory);
+
+        List<Path> files = listSegments(directory);
+        for (int i = 0; i < files.size(); i++) {
+            replay(files.get(i), i == files.size() - 1);
+        }
+        if (segments.isEmpty()) {
+            startSegment(0);
+        }
+        eventCount.set(index.size());
+
+        syncer = new Thread(this::syncLoop, "xperience-event-log-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    @Override
+    public Result addEvent(String name, String date, String time, String description) {
+        // Validate the event
+        if (!EventStore.EventValidator.validate(name, date, time, description)) {
+            return new Result(false, eventCount.get());
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] descriptionBytes = description.getBytes(StandardCharsets.UTF_8);
+
+        synchronized (this) {
+            if (!add(name, nameBytes, EventArena.packDate(date), EventArena.packTime(time), descriptionBytes)) {
+                return new Result(false, eventCount.get());
+            }
+            int count = eventCount.incrementAndGet();
+            awaitSync(appended);
+            return new Result(true, count);
+        }
+    }
+
+    /**
+     * Appends all valid events and waits for a single sync.
+     *
+     * @param events Events to add, in order
+     * @return One result per event, in the same order
+     */
+    @Override
+    public List<Result> addEvents(List<Event> events) {
+        List<Result> results = new ArrayList<>(events.size());
+        synchronized (this) {
+            for (Event event : events) {
+                boolean added = EventStore.EventValidator.validate(
+                        event.getName(), event.getDate(), event.getTime(), event.getDescription())
+                    && add(event.getName(), event.getName().getBytes(StandardCharsets.UTF_8),
+                        EventArena.packDate(event.getDate()), EventArena.packTime(event.getTime()),
+                        event.getDescription().getBytes(StandardCharsets.UTF_8));
+                results.add(added
+                    ? new Result(true, eventCount.incrementAndGet())
+                    : new Result(false, eventCount.get()));
+            }
+            awaitSync(appended);
+        }
+        return results;
+    }
+
+    @Override
+    public int getEventCount() {
+        return eventCount.get();
+    }
+
+    @Override
+    public void forEachEvent(Consumer<Event> action) {
+        List<String> names;
+        synchronized (this) {
+            names = new ArrayList<>(index.keySet());
+        }
+        for (String name : names) {
+            action.accept(getEvent(name));
+        }
+    }
+
+    /**
+     * Sends the records of every segment straight from the files, up to the
+     * end of the log when the export starts.
+     */
+    @Override
+    public void exportTo(EventExport.Writer export) throws IOException {
+        List<Path> files;
+        List<Integer> ends;
+        synchronized (this) {
+            files = new ArrayList<>(segmentFiles);
+            ends = new ArrayList<>(segmentEnds);
+            ends.add(position);
+        }
+        for (int i = 0; i < files.size(); i++) {
+            try (FileChannel channel = FileChannel.open(files.get(i), StandardOpenOption.READ)) {
+                export.transfer(channel, SEGMENT_HEADER_SIZE, ends.get(i) - SEGMENT_HEADER_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Writes the records of a log directory to an export stream without
+     * opening the log, so the log may belong to a running server. Each segment
+     * is scanned for the end of its valid records, which are then sent as
+     * they are; a torn tail of the last segment is left out.
+     *
+     * @param directory Directory of the segment files
+     * @param export Stream to write the records to
+     * @throws IOException If reading or writing fails or an earlier segment is corrupt
+     */
+    public static void exportDirectory(Path directory, EventExport.Writer export) throws IOException {
+        List<Path> files = listSegments(directory);
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            boolean last = i == files.size() - 1;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                MappedByteBuffer segment = size < SEGMENT_HEADER_SIZE || size > Integer.MAX_VALUE ? null
+                    : channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (segment == null || segment.order(ByteOrder.LITTLE_ENDIAN).getLong(0) != MAGIC) {
+                    if (last) {
+                        // Still being created
+                        continue;
+                    }
+                    throw new IOException("Not an event log segment: " + file);
+                }
+
+                int end = SEGMENT_HEADER_SIZE;
+                int length = 0;
+                while (end + RECORD_HEADER_SIZE <= segment.capacity() && (length = recordLength(segment, end)) > 0) {
+                    end += RECORD_HEADER_SIZE + length;
+                }
+                if (length < 0 && !last) {
+                    throw new IOException("Corrupt record in log segment " + file + " at offset " + end);
+                }
+                export.transfer(channel, SEGMENT_HEADER_SIZE, end - SEGMENT_HEADER_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Returns a stored event.
+     *
+     * @param name Event name
+     * @return The event, with its date in ISO form, or null if there is no event with that name
+     */
+    public synchronized Event getEvent(String name) {
+        Long address = index.get(name);
+        if (address == null) {
+            return null;
+        }
+        ByteBuffer segment = segments.get((int) (address >>> 32));
+        int payload = (int) (long) address + RECORD_HEADER_SIZE;
+        byte[] nameBytes = new byte[segment.getShort(payload + NAME_LENGTH_OFFSET) & 0xFFFF];
+        byte[] description = new byte[segment.getInt(payload + DESCRIPTION_LENGTH_OFFSET)];
+        segment.get(payload + EVENT_HEADER_SIZE, nameBytes);
+        segment.get(payload + EVENT_HEADER_SIZE + nameBytes.length, description);
+        return new Event(name,
+            EventArena.unpackDate(segment.getLong(payload + DATE_OFFSET)),
+            EventArena.unpackTime(segment.getShort(payload + TIME_OFFSET)),
+            new String(description, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Stops accepting events, forces everything appended and stops the sync thread.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        syncer.interrupt();
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Appends a valid event unless its name is taken. Called with the monitor held.
+     *
+     * @param name Event name
+     * @param nameBytes UTF-8 bytes of the name
+     * @param date Date packed by {@link EventArena#packDate(String)}
+     * @param time Time packed by {@link EventArena#packTime(String)}
+     * @param description UTF-8 bytes of the description
+     * @return True if the event was appended
+     */
+    private boolean add(String name, byte[] nameBytes, long date, short time, byte[] description) {
+        if (closed || index.containsKey(name)) {
+            return false;
+        }
+        int length = EVENT_HEADER_SIZE + nameBytes.length + description.length;
+        try {
+            if (position + RECORD_HEADER_SIZE + length > segments.get(segments.size() - 1).capacity()) {
+                // The full segment is forced before the next one is started
+                segments.get(segments.size() - 1).force();
+                startSegment(lastSegmentNumber + 1);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.log(Level.SEVERE, "Could not start a new log segment", e);
+            return false;
+        }
+
+        MappedByteBuffer segment = segments.get(segments.size() - 1);
+        int payload = position + RECORD_HEADER_SIZE;
+        segment.putLong(payload + DATE_OFFSET, date);
+        segment.putShort(payload + TIME_OFFSET, time);
+        segment.putShort(payload + NAME_LENGTH_OFFSET, (short) nameBytes.length);
+        segment.putInt(payload + DESCRIPTION_LENGTH_OFFSET, description.length);
+        segment.put(payload + EVENT_HEADER_SIZE, nameBytes);
+        segment.put(payload + EVENT_HEADER_SIZE + nameBytes.length, description);
+
+        // The length is written last: a record is only visible once it is complete
+        segment.putInt(position + 4, checksum(segment, payload, length));
+        segment.putInt(position, length);
+
+        index.put(name, ((long) (segments.size() - 1) << 32) | position);
+        position = payload + length;
+        appended++;
+        if (syncIdle) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Waits until the given number of records is on disk, if events are
+     * acknowledged on sync. Called with the monitor held.
+     *
+     * @param sequence Number of records that must be synced
+     */
+    private void awaitSync(long sequence) {
+        while (syncOnAck && synced < sequence && syncer.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                // The record is appended and will still be synced
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Forces the current segment whenever records are waiting, until the store is closed and synced.
+     */
+    private void syncLoop() {
+        while (true) {
+            MappedByteBuffer segment;
+            long target;
+            synchronized (this) {
+                while (!closed && appended == synced) {
+                    syncIdle = true;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Only close() stops the sync thread
+                    }
+                }
+                syncIdle = false;
+                if (appended == synced) {
+                    notifyAll();
+                    return;
+                }
+                segment = segments.get(segments.size() - 1);
+                target = appended;
+            }
+
+            // Appends continue while the segment is forced and are synced by the next pass
+            try {
+                segment.force();
+            } catch (UncheckedIOException e) {
+                logger.log(Level.SEVERE, "Could not sync the event log", e);
+                pause(ASYNC_SYNC_INTERVAL_MILLIS);
+                continue;
+            }
+            synchronized (this) {
+                synced = target;
+                notifyAll();
+            }
+            if (!syncOnAck) {
+                pause(ASYNC_SYNC_INTERVAL_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Sleeps between syncs unless the store is closing.
+     *
+     * @param millis Time to sleep
+     */
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            // close() interrupts the sleep so the final sync happens at once
+        }
+    }
+
+    /**
+     * Creates, maps and syncs a new empty segment. Called with the monitor held.
+     *
+     * @param number Number of the segment file
+     * @throws IOException If the file cannot be created
+     */
+    private void startSegment(long number) throws IOException {
+        Path file = directory.resolve(String.format("events-%010d.log", number));
+        MappedByteBuffer segment;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segment.putLong(0, MAGIC);
+        segment.putLong(8, number);
+        segment.force();
+        addSegment(file, segment);
+        lastSegmentNumber = number;
+        position = SEGMENT_HEADER_SIZE;
+    }
+
+    /**
+     * Maps an existing segment and indexes its records.
+     *
+     * @param file The segment file
+     * @param last True if this is the last segment, whose tail may be torn
+     * @throws IOException If the segment cannot be mapped or is corrupt
+     */
+    private void replay(Path file, boolean last) throws IOException {
+        Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+        matcher.matches();
+        long number = Long.parseLong(matcher.group(1));
+        MappedByteBuffer segment;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size < SEGMENT_HEADER_SIZE || size > Integer.MAX_VALUE) {
+                if (!last) {
+                    throw new IOException("Corrupt log segment " + file);
+                }
+                // Crashed while the segment was being created
+                logger.warning("Recreating incomplete log segment " + file);
+                startSegment(number);
+                return;
+            }
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        if (segment.getLong(0) != MAGIC || segment.getLong(8) != number) {
+            if (!last || segment.getLong(0) != 0) {
+                throw new IOException("Not an event log segment: " + file);
+            }
+            logger.warning("Recreating incomplete log segment " + file);
+            startSegment(number);
+            return;
+        }
+
+        int segmentIndex = segments.size();
+        int offset = SEGMENT_HEADER_SIZE;
+        boolean torn = false;
+        while (offset + RECORD_HEADER_SIZE <= segment.capacity()) {
+            int length = recordLength(segment, offset);
+            if (length <= 0) {
+                torn = length < 0;
+                break;
+            }
+            int payload = offset + RECORD_HEADER_SIZE;
+            byte[] name = new byte[segment.getShort(payload + NAME_LENGTH_OFFSET) & 0xFFFF];
+            segment.get(payload + EVENT_HEADER_SIZE, name);
+            index.putIfAbsent(new String(name, StandardCharsets.UTF_8), ((long) segmentIndex << 32) | offset);
+            offset = payload + length;
+        }
+
+        if (!last) {
+            if (torn) {
+                throw new IOException("Corrupt record in log segment " + file + " at offset " + offset);
+            }
+        } else if (torn || !isZero(segment, offset)) {
+            // Cut the log at the first bad record and clear whatever follows it
+            logger.warning("Truncating torn tail of log segment " + file + " at offset " + offset);
+            for (int i = offset; i < segment.capacity(); i++) {
+                segment.put(i, (byte) 0);
+            }
+            segment.force();
+        }
+        addSegment(file, segment);
+        lastSegmentNumber = number;
+        position = offset;
+    }
+
+    /**
+     * Appends a mapped segment to the log, recording where the previous one ends. Called with the monitor held.
+     *
+     * @param file The segment file
+     * @param segment The mapped segment
+     */
+    private void addSegment(Path file, MappedByteBuffer segment) {
+        if (!segments.isEmpty()) {
+            segmentEnds.add(position);
+        }
+        segments.add(segment);
+        segmentFiles.add(file);
+    }
+
+    /**
+     * Lists the segment files of a log directory.
+     *
+     * @param directory The directory
+     * @return The segment files in log order
+     * @throws IOException If the directory cannot be listed
+     */
+    private static List<Path> listSegments(Path directory) throws IOException {
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches())
+                .sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Checks the record at an offset.
+     *
+     * @param segment The segment
+     * @param offset Offset of the record, with room for its header
+     * @return Length of the payload, 0 at the end of the log, or -1 if the record is torn
+     */
+    private static int recordLength(ByteBuffer segment, int offset) {
+        int length = segment.getInt(offset);
+        if (length == 0) {
+            return 0;
+        }
+        int payload = offset + RECORD_HEADER_SIZE;
+        if (length < EVENT_HEADER_SIZE || length > segment.capacity() - payload
+                || segment.getInt(offset + 4) != checksum(segment, payload, length)) {
+            return -1;
+        }
+        int nameLength = segment.getShort(payload + NAME_LENGTH_OFFSET) & 0xFFFF;
+        return EVENT_HEADER_SIZE + nameLength + segment.getInt(payload + DESCRIPTION_LENGTH_OFFSET) == length ? length : -1;
+    }
+
+    /**
+     * Checks whether a segment holds only zeros from an offset on.
+     *
+     * @param segment The segment
+     * @param offset Offset to start at
+     * @return True if every remaining byte is zero
+     */
+    private static boolean isZero(ByteBuffer segment, int offset) {
+        int end = segment.capacity();
+        int i = offset;
+        for (; i < end && (i & 7) != 0; i++) {
+            if (segment.get(i) != 0) {
+                return false;
+            }
+        }
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            if (segment.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (segment.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the CRC32C of a record payload.
+     *
+     * @param segment Segment holding the payload
+     * @param offset Offset of the payload
+     * @param length Length of the payload
+     * @return The checksum
+     */
+    private static int checksum(ByteBuffer segment, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(segment.slice(offset, length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,173 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * JUnit 5 test for EventStoreLog.
+ * Each test works in its own temporary directory and reopens the log to check
+ * what survived.
+ */
+public class EventStoreLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testEventsSurviveRestart() throws IOException {
+        EventStoreLog log = new EventStoreLog(directory);
+        assertEquals(1, log.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference").eventCount);
+        assertEquals(2, log.addEvent("Café", "-0044-03-15", "00:00", "Ünïcødé").eventCount);
+        assertFalse(log.addEvent("Conference", "2025-05-20", "09:00", "Duplicate").success);
+        assertFalse(log.addEvent("Meetup", "2025-02-30", "18:00", "Invalid date").success);
+        log.close();
+        assertFalse(log.addEvent("Meetup", "2025-04-18", "18:00", "After close").success);
+
+        EventStoreLog reopened = new EventStoreLog(directory);
+        assertEquals(2, reopened.getEventCount());
+        assertFalse(reopened.addEvent("Conference", "2025-05-20", "09:00", "Duplicate after restart").success);
+        Event event = reopened.getEvent("Café");
+        assertEquals("-0044-03-15", event.getDate());
+        assertEquals("00:00", event.getTime());
+        assertEquals("Ünïcødé", event.getDescription());
+        assertEquals(3, reopened.addEvent("Meetup", "2025-04-18", "18:00", "Evening meetup").eventCount);
+        reopened.close();
+    }
+
+    @Test
+    public void testAddEvents() throws IOException {
+        EventStoreLog log = new EventStoreLog(directory);
+        log.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+
+        List<EventStore.Result> results = log.addEvents(List.of(
+            new Event("Workshop", "2025-04-16", "10:00", "Coding workshop"),
+            new Event("Conference", "2025-05-20", "09:00", "Duplicate of an existing event"),
+            new Event("Meetup", "2025-02-30", "18:00", "Invalid date"),
+            new Event("Workshop", "2025-04-17", "11:00", "Duplicate within the batch"),
+            new Event("Meetup", "2025-04-18", "18:00", "Evening meetup")
+        ));
+
+        assertTrue(results.get(0).success);
+        assertEquals(2, results.get(0).eventCount);
+        assertFalse(results.get(1).success);
+        assertFalse(results.get(2).success);
+        assertFalse(results.get(3).success);
+        assertTrue(results.get(4).success);
+        assertEquals(3, results.get(4).eventCount);
+        log.close();
+    }
+
+    @Test
+    public void testSegmentsRollOver() throws IOException {
+        EventStoreLog log = new EventStoreLog(directory, EventStoreLog.MIN_SEGMENT_SIZE, false);
+        String description = "x".repeat(60000);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(log.addEvent("Event" + i, "2025-04-15", "14:30", description).success);
+        }
+        log.close();
+        List<Path> files = segmentFiles();
+        assertTrue(files.size() >= 6, () -> "Expected several segments: " + files);
+
+        EventStoreLog reopened = new EventStoreLog(directory, EventStoreLog.MIN_SEGMENT_SIZE, false);
+        assertEquals(100, reopened.getEventCount());
+        assertEquals(description, reopened.getEvent("Event99").getDescription());
+        assertEquals(description, reopened.getEvent("Event0").getDescription());
+        reopened.close();
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        EventStoreLog log = new EventStoreLog(directory);
+        for (int i = 0; i < 10; i++) {
+            log.addEvent("Event" + i, "2025-04-15", "14:30", "Description " + i);
+        }
+        log.close();
+
+        // Damage the eighth record, as a crash in the middle of writing it would
+        Path segment = segmentFiles().get(0);
+        long offset = find(segment, "Description 7");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), offset);
+        }
+
+        EventStoreLog reopened = new EventStoreLog(directory);
+        assertEquals(7, reopened.getEventCount());
+        assertNull(reopened.getEvent("Event7"));
+        assertEquals(-1, find(segment, "Description 8"), "Bytes after the torn record should be cleared");
+        assertEquals(8, reopened.addEvent("Event7", "2025-04-15", "14:30", "Rewritten").eventCount);
+        reopened.close();
+
+        EventStoreLog again = new EventStoreLog(directory);
+        assertEquals(8, again.getEventCount());
+        assertEquals("Rewritten", again.getEvent("Event7").getDescription());
+        again.close();
+    }
+
+    @Test
+    public void testDamagedEarlierSegmentIsReported() throws IOException {
+        EventStoreLog log = new EventStoreLog(directory, EventStoreLog.MIN_SEGMENT_SIZE, false);
+        for (int i = 0; i < 40; i++) {
+            log.addEvent("Event" + i, "2025-04-15", "14:30", "y".repeat(60000) + i);
+        }
+        log.close();
+
+        Path first = segmentFiles().get(0);
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), 100);
+        }
+        assertThrows(IOException.class, () -> new EventStoreLog(directory, EventStoreLog.MIN_SEGMENT_SIZE, false));
+    }
+
+    @Test
+    public void testConcurrentCallersShareSyncs() throws Exception {
+        EventStoreLog log = new EventStoreLog(directory);
+        AtomicInteger accepted = new AtomicInteger();
+        Set<Integer> counts = ConcurrentHashMap.newKeySet();
+
+        // Every name is added by two threads; each is accepted once with a distinct count
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < 16; t++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        EventStore.Result result = log.addEvent("Event" + i, "2025-04-15", "14:30", "Race");
+                        if (result.success) {
+                            accepted.incrementAndGet();
+                            counts.add(result.eventCount);
+                        }
+                    }
+                });
+            }
+        }
+        log.close();
+        assertEquals(100, accepted.get());
+        assertEquals(100, counts.size());
+        assertEquals(100, new EventStoreLog(directory).getEventCount());
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (var listing = Files.list(directory)) {
+            return listing.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static long find(Path file, String text) throws IOException {
+        String contents = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        return contents.indexOf(text);
+    }
+}
@@ -6,32 +6,516 @@
  *
  ************************************************/
 package xperience;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.SecureRandom;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
 
 /**
  * In-memory implementation of EventStore.
+ * Accepted events are kept in full in an off-heap {@link EventArena}. A
+ * name-to-address index, split into independently locked segments of
+ * primitive arrays, finds them again and rejects duplicate names.
+ * <p>
+ * The store can be written to a snapshot file while it keeps serving and
+ * restored from one at startup. A snapshot holds the event count and the
+ * records in arena layout, in blocks of at most {@link #SNAPSHOT_BLOCK_SIZE}
+ * bytes with a CRC32C each, ended by an empty block. Restoring reads the file
+ * sequentially, adopts every block as an arena chunk as it is and only
+ * rebuilds the index; no event is validated or added again.
  */
 public class EventStoreMemory implements EventStore {
-    private final Set<String> eventNames = ConcurrentHashMap.newKeySet();
+    /**
+     * Number of index segments; a power of two.
+     */
+    private static final int SEGMENTS = 64;
+
+    /**
+     * Shift that selects a segment from the top bits of a name hash.
+     */
+    private static final int SEGMENT_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENTS);
+
+    /**
+     * Largest block of records in a snapshot file.
+     */
+    public static final int SNAPSHOT_BLOCK_SIZE = 1 << 24;
+
+    /**
+     * Identifies (and versions) snapshot files; also detects a different byte order.
+     */
+    private static final long SNAPSHOT_MAGIC = 0x5850_534E_4150_5301L;
+
+    /**
+     * Size of the snapshot header: magic and event count.
+     */
+    private static final int SNAPSHOT_HEADER_SIZE = 16;
+
+    /**
+     * Size of a block header: length and checksum.
+     */
+    private static final int BLOCK_HEADER_SIZE = 8;
+
+    /**
+     * Random seed mixed into every name hash, so clients cannot choose colliding names.
+     */
+    private final long seed = new SecureRandom().nextLong();
+
+    private final EventArena arena = new EventArena();
+    private final Segment[] segments = new Segment[SEGMENTS];
     private final AtomicInteger eventCount = new AtomicInteger(0);
-    
+
+    /**
+     * Serializes snapshots of this store; never taken by adding threads.
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * Buffer for the blocks of a snapshot, allocated by the first one. Guarded by the snapshot lock.
+     */
+    private ByteBuffer snapshotBlock;
+
+    /**
+     * Constructs an empty store.
+     */
+    public EventStoreMemory() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
     @Override
     public Result addEvent(String name, String date, String time, String description) {
         // Validate the event
         if (!EventStore.EventValidator.validate(name, date, time, description)) {
             return new Result(false, eventCount.get());
         }
-        
-        // Check for duplicate name
-        if (eventNames.contains(name)) {
+
+        // Check for duplicate name and add the event in one step
+        if (!add(name, date, time, description)) {
             return new Result(false, eventCount.get());
         }
-        
-        // Add event
-        eventNames.add(name);
         int count = eventCount.incrementAndGet();
         return new Result(true, count);
     }
+
+    @Override
+    public List<Result> addEvents(List<Event> events) {
+        List<Result> results = new ArrayList<>(events.size());
+        for (Event event : events) {
+            boolean added = EventStore.EventValidator.validate(
+                    event.getName(), event.getDate(), event.getTime(), event.getDescription())
+                && add(event.getName(), event.getDate(), event.getTime(), event.getDescription());
+            results.add(added
+                ? new Result(true, eventCount.incrementAndGet())
+                : new Result(false, eventCount.get()));
+        }
+        return results;
+    }
+
+    @Override
+    public int getEventCount() {
+        return eventCount.get();
+    }
+
+    @Override
+    public void forEachEvent(Consumer<Event> action) {
+        for (Segment segment : segments) {
+            long[] addresses;
+            synchronized (segment) {
+                addresses = segment.addresses();
+            }
+            for (long address : addresses) {
+                action.accept(arena.read(address));
+            }
+        }
+    }
+
+    /**
+     * Sends each record straight from the arena, without decoding it.
+     */
+    @Override
+    public void exportTo(EventExport.Writer export) throws IOException {
+        for (Segment segment : segments) {
+            long[] addresses;
+            synchronized (segment) {
+                addresses = segment.addresses();
+            }
+            for (long address : addresses) {
+                export.writeRecord(arena.record(address));
+            }
+        }
+    }
+
+    /**
+     * Returns a stored event.
+     *
+     * @param name Event name
+     * @return The event, with its date in ISO form, or null if there is no event with that name
+     */
+    public Event getEvent(String name) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(nameBytes);
+        Segment segment = segments[hash >>> SEGMENT_SHIFT];
+        long address;
+        synchronized (segment) {
+            address = segment.find(arena, hash, nameBytes);
+        }
+        return address < 0 ? null : arena.read(address);
+    }
+
+    /**
+     * Returns the number of off-heap bytes used by stored events.
+     *
+     * @return Bytes used
+     */
+    public long memoryUsed() {
+        return arena.used();
+    }
+
+    /**
+     * Writes a snapshot of the store, replacing the file atomically.
+     * Adding threads are only held up while the index entries of one segment
+     * are copied; the records are copied afterwards, since they never change.
+     * Events added while the snapshot is taken may or may not be included.
+     *
+     * @param file Snapshot file
+     * @return Number of events written
+     * @throws IOException If the snapshot cannot be written
+     */
+    public int snapshot(Path file) throws IOException {
+        synchronized (snapshotLock) {
+            long[][] addresses = new long[SEGMENTS][];
+            int count = 0;
+            for (int i = 0; i < SEGMENTS; i++) {
+                synchronized (segments[i]) {
+                    addresses[i] = segments[i].addresses();
+                }
+                count += addresses[i].length;
+            }
+
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            if (snapshotBlock == null) {
+                snapshotBlock = ByteBuffer.allocateDirect(SNAPSHOT_BLOCK_SIZE).order(ByteOrder.nativeOrder());
+            }
+            ByteBuffer block = snapshotBlock.clear();
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE).order(ByteOrder.nativeOrder());
+                header.putLong(SNAPSHOT_MAGIC).putLong(count).flip();
+                writeFully(channel, header);
+
+                block.position(BLOCK_HEADER_SIZE);
+                for (long[] segment : addresses) {
+                    for (long address : segment) {
+                        if (block.remaining() < arena.recordSize(address)) {
+                            writeBlock(channel, block);
+                        }
+                        arena.copyRecord(address, block);
+                    }
+                }
+                if (block.position() > BLOCK_HEADER_SIZE) {
+                    writeBlock(channel, block);
+                }
+
+                // An empty block marks the end
+                writeBlock(channel, block);
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return count;
+        }
+    }
+
+    /**
+     * Restores a store from a snapshot file.
+     *
+     * @param file Snapshot file
+     * @return The restored store, or an empty store if the file does not exist
+     * @throws IOException If the file cannot be read or is not a complete snapshot
+     */
+    public static EventStoreMemory load(Path file) throws IOException {
+        EventStoreMemory store = new EventStoreMemory();
+        if (!Files.exists(file)) {
+            return store;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE).order(ByteOrder.nativeOrder());
+            readFully(channel, header);
+            if (header.getLong(0) != SNAPSHOT_MAGIC) {
+                throw new IOException("Not an event snapshot: " + file);
+            }
+            long expected = header.getLong(8);
+
+            ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE).order(ByteOrder.nativeOrder());
+            int count = 0;
+            while (true) {
+                blockHeader.clear();
+                readFully(channel, blockHeader);
+                int length = blockHeader.getInt(0);
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0 || length > SNAPSHOT_BLOCK_SIZE) {
+                    throw new IOException("Corrupt event snapshot: " + file);
+                }
+                ByteBuffer block = ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder());
+                readFully(channel, block);
+                CRC32C crc = new CRC32C();
+                crc.update(block.flip());
+                if ((int) crc.getValue() != blockHeader.getInt(4)) {
+                    throw new IOException("Corrupt event snapshot: " + file);
+                }
+
+                // The block becomes a chunk; index each record where it is
+                long base = store.arena.adopt(block.rewind());
+                for (int offset = 0; offset < length; offset += store.arena.recordSize(base | offset)) {
+                    store.index(base | offset);
+                    count++;
+                }
+            }
+            if (count != expected) {
+                throw new IOException("Incomplete event snapshot: " + file);
+            }
+            store.eventCount.set(count);
+        }
+        return store;
+    }
+
+    /**
+     * Writes the records of a snapshot file to an export stream without
+     * restoring a store, reading one block at a time.
+     *
+     * @param file Snapshot file
+     * @param export Stream to write the records to
+     * @return Number of events written
+     * @throws IOException If reading or writing fails or the file is not a complete snapshot
+     */
+    public static long exportSnapshot(Path file, EventExport.Writer export) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE).order(ByteOrder.nativeOrder());
+            readFully(channel, header);
+            if (header.getLong(0) != SNAPSHOT_MAGIC) {
+                throw new IOException("Not an event snapshot: " + file);
+            }
+            long expected = header.getLong(8);
+
+            ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE).order(ByteOrder.nativeOrder());
+            ByteBuffer block = ByteBuffer.allocateDirect(SNAPSHOT_BLOCK_SIZE).order(ByteOrder.nativeOrder());
+            long count = 0;
+            while (true) {
+                blockHeader.clear();
+                readFully(channel, blockHeader);
+                int length = blockHeader.getInt(0);
+                if (length == 0) {
+                    break;
+                }
+                if (length < 0 || length > SNAPSHOT_BLOCK_SIZE) {
+                    throw new IOException("Corrupt event snapshot: " + file);
+                }
+                block.clear().limit(length);
+                readFully(channel, block);
+                CRC32C crc = new CRC32C();
+                crc.update(block.flip());
+                if ((int) crc.getValue() != blockHeader.getInt(4)) {
+                    throw new IOException("Corrupt event snapshot: " + file);
+                }
+
+                // The same buffer is reused for every block, so memory use does not grow with the file
+                for (int offset = 0, size; offset < length; offset += size) {
+                    size = EventArena.recordSize(block, offset);
+                    export.writeRecord(block.slice(offset, size).order(ByteOrder.nativeOrder()));
+                    count++;
+                }
+            }
+            if (count != expected) {
+                throw new IOException("Incomplete event snapshot: " + file);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Stores a valid event unless its name is already taken.
+     *
+     * @param name Event name
+     * @param date Event date
+     * @param time Event time
+     * @param description Event description
+     * @return True if the event was stored
+     */
+    private boolean add(String name, String date, String time, String description) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(nameBytes);
+        Segment segment = segments[hash >>> SEGMENT_SHIFT];
+        synchronized (segment) {
+            if (segment.find(arena, hash, nameBytes) >= 0) {
+                return false;
+            }
+            long address = arena.append(nameBytes, EventArena.packDate(date), EventArena.packTime(time),
+                description.getBytes(StandardCharsets.UTF_8));
+            segment.insert(hash, address);
+        }
+        return true;
+    }
+
+    /**
+     * Adds a restored record to the index.
+     *
+     * @param address Address of the record
+     */
+    private void index(long address) {
+        int hash = hash(arena.name(address));
+        Segment segment = segments[hash >>> SEGMENT_SHIFT];
+        synchronized (segment) {
+            segment.insert(hash, address);
+        }
+    }
+
+    /**
+     * Writes the records collected in a block, preceded by the block header, and empties the block.
+     *
+     * @param channel Snapshot file
+     * @param block Block with its header space and records before its position
+     * @throws IOException If writing fails
+     */
+    private static void writeBlock(FileChannel channel, ByteBuffer block) throws IOException {
+        int length = block.position() - BLOCK_HEADER_SIZE;
+        CRC32C crc = new CRC32C();
+        crc.update(block.slice(BLOCK_HEADER_SIZE, length));
+        block.putInt(0, length).putInt(4, (int) crc.getValue()).flip();
+        writeFully(channel, block);
+        block.clear().position(BLOCK_HEADER_SIZE);
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer.
+     *
+     * @param channel The channel
+     * @param buffer The buffer
+     * @throws IOException If writing fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Fills a buffer from a channel.
+     *
+     * @param channel The channel
+     * @param buffer The buffer
+     * @throws IOException If reading fails or the channel ends first
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated event snapshot");
+            }
+        }
+    }
+
+    /**
+     * Computes the seeded hash of a name.
+     *
+     * @param name UTF-8 bytes of the name
+     * @return The hash; the top bits select the segment, the low bits the slot
+     */
+    private int hash(byte[] name) {
+        return (int) Hashing.hash(seed, name, 0, name.length);
+    }
+
+    /**
+     * One segment of the name index: an open-addressing table of name hashes
+     * and record addresses, at most half full. Guarded by its own monitor.
+     */
+    private static final class Segment {
+        private int[] hashes = new int[16];
+        private long[] addresses = new long[16];
+        private int size;
+
+        /**
+         * Finds the record with a name.
+         *
+         * @param arena Arena holding the records
+         * @param hash Hash of the name
+         * @param name UTF-8 bytes of the name
+         * @return Address of the record, or -1 if there is none
+         */
+        long find(EventArena arena, int hash, byte[] name) {
+            int mask = addresses.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                // Addresses are stored plus one so that zero marks an empty slot
+                long address = addresses[i] - 1;
+                if (address < 0) {
+                    return -1;
+                }
+                if (hashes[i] == hash && arena.nameEquals(address, name)) {
+                    return address;
+                }
+            }
+        }
+
+        /**
+         * Returns the addresses of all records in the segment.
+         *
+         * @return The addresses, in slot order
+         */
+        long[] addresses() {
+            long[] result = new long[size];
+            int count = 0;
+            for (long entry : addresses) {
+                if (entry != 0) {
+                    result[count++] = entry - 1;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Adds a record whose name is not in the segment yet.
+         *
+         * @param hash Hash of the name
+         * @param address Address of the record
+         */
+        void insert(int hash, long address) {
+            if ((size + 1) * 2 > addresses.length) {
+                int[] oldHashes = hashes;
+                long[] oldAddresses = addresses;
+                hashes = new int[oldAddresses.length * 2];
+                addresses = new long[oldAddresses.length * 2];
+                for (int i = 0; i < oldAddresses.length; i++) {
+                    if (oldAddresses[i] != 0) {
+                        put(oldHashes[i], oldAddresses[i]);
+                    }
+                }
+            }
+            put(hash, address + 1);
+            size++;
+        }
+
+        /**
+         * Stores an entry in the first free slot.
+         *
+         * @param hash Hash of the name
+         * @param entry Address plus one
+         */
+        private void put(int hash, long entry) {
+            int mask = addresses.length - 1;
+            int i = hash & mask;
+            while (addresses[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            hashes[i] = hash;
+            addresses[i] = entry;
+        }
+    }
 }
@@ -8,6 +8,13 @@
 package xperience;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -143,6 +150,197 @@ public class EventStoreTest {
         assertEquals(0, result.eventCount);
     }
     
+    @Test
+    public void testAddEvents() {
+        eventStore.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+
+        List<EventStore.Result> results = eventStore.addEvents(List.of(
+            new Event("Workshop", "2025-04-16", "10:00", "Coding workshop"),
+            new Event("Conference", "2025-05-20", "09:00", "Duplicate of an existing event"),
+            new Event("Meetup", "2025-02-30", "18:00", "Invalid date"),
+            new Event("Workshop", "2025-04-17", "11:00", "Duplicate within the batch"),
+            new Event("Meetup", "2025-04-18", "18:00", "Evening meetup")
+        ));
+
+        assertEquals(5, results.size());
+        assertTrue(results.get(0).success);
+        assertEquals(2, results.get(0).eventCount);
+        assertFalse(results.get(1).success);
+        assertFalse(results.get(2).success);
+        assertFalse(results.get(3).success);
+        assertTrue(results.get(4).success);
+        assertEquals(3, results.get(4).eventCount);
+    }
+
+    @Test
+    public void testGetEvent() {
+        EventStoreMemory store = new EventStoreMemory();
+        store.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+        store.addEvent("Café", "+12025-01-09", "00:05", "Über long résumé ☕");
+        store.addEvent("Conference", "2025-05-20", "09:00", "Duplicate of an existing event");
+
+        Event event = store.getEvent("Conference");
+        assertEquals("Conference", event.getName());
+        assertEquals("2025-04-15", event.getDate());
+        assertEquals("14:30", event.getTime());
+        assertEquals("Annual tech conference", event.getDescription());
+
+        Event unicode = store.getEvent("Café");
+        assertEquals("+12025-01-09", unicode.getDate());
+        assertEquals("00:05", unicode.getTime());
+        assertEquals("Über long résumé ☕", unicode.getDescription());
+
+        assertNull(store.getEvent("Workshop"));
+    }
+
+    @Test
+    public void testPackedDatesRoundTrip() {
+        for (String date : new String[] {"2025-04-15", "0000-01-01", "0999-12-31", "-0001-02-28",
+                "-12345-06-30", "+10000-01-01", "+999999999-12-31", "-999999999-01-01"}) {
+            assertEquals(date, EventArena.unpackDate(EventArena.packDate(date)), date);
+        }
+        for (String time : new String[] {"00:00", "09:05", "23:59"}) {
+            assertEquals(time, EventArena.unpackTime(EventArena.packTime(time)), time);
+        }
+    }
+
+    @Test
+    public void testManyLargeEvents() {
+        EventStoreMemory store = new EventStoreMemory();
+        String description = "d".repeat(65535);
+
+        // Spans many arena chunks and index resizes
+        for (int i = 0; i < 2000; i++) {
+            EventStore.Result result = store.addEvent("Event" + i, "2025-04-15", "14:30", description);
+            assertTrue(result.success);
+            assertEquals(i + 1, result.eventCount);
+        }
+        assertFalse(store.addEvent("Event1999", "2025-04-15", "14:30", "Duplicate").success);
+        for (int i = 0; i < 2000; i += 37) {
+            Event event = store.getEvent("Event" + i);
+            assertEquals("Event" + i, event.getName());
+            assertEquals(description, event.getDescription());
+        }
+        assertTrue(store.memoryUsed() >= 2000L * 65535);
+    }
+
+    @Test
+    public void testConcurrentDuplicateNames() throws InterruptedException {
+        EventStoreMemory store = new EventStoreMemory();
+        AtomicInteger accepted = new AtomicInteger();
+
+        // Every thread tries to add the same names; each name is accepted once
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            int thread = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    if (store.addEvent("Event" + i, "2025-04-15", "14:30", "From thread " + thread).success) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(5000, accepted.get());
+        assertEquals(5001, store.addEvent("Extra", "2025-04-15", "14:30", "Last").eventCount);
+        assertTrue(store.getEvent("Event4999").getDescription().startsWith("From thread "));
+    }
+
+    @Test
+    public void testSnapshotRoundTrip(@TempDir Path directory) throws IOException {
+        EventStoreMemory store = new EventStoreMemory();
+        store.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+        store.addEvent("Café", "-0044-03-15", "00:00", "Ünïcødé");
+        Path file = directory.resolve("events.snapshot");
+        assertEquals(2, store.snapshot(file));
+
+        EventStoreMemory restored = EventStoreMemory.load(file);
+        assertEquals(2, restored.getEventCount());
+        assertEquals("Ünïcødé", restored.getEvent("Café").getDescription());
+        assertEquals("-0044-03-15", restored.getEvent("Café").getDate());
+        assertFalse(restored.addEvent("Conference", "2025-05-20", "09:00", "Duplicate").success);
+        assertEquals(3, restored.addEvent("Workshop", "2025-04-16", "10:00", "Coding workshop").eventCount);
+
+        // A missing snapshot gives an empty store; a damaged one is refused
+        assertEquals(0, EventStoreMemory.load(directory.resolve("missing")).getEventCount());
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> EventStoreMemory.load(file));
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> EventStoreMemory.load(file));
+    }
+
+    @Test
+    public void testSnapshotOfManyBlocks(@TempDir Path directory) throws IOException {
+        EventStoreMemory store = new EventStoreMemory();
+        String description = "x".repeat(60000);
+        for (int i = 0; i < 400; i++) {
+            store.addEvent("Event" + i, "2025-04-15", "14:30", description + i);
+        }
+        Path file = directory.resolve("events.snapshot");
+        store.snapshot(file);
+        assertTrue(Files.size(file) > EventStoreMemory.SNAPSHOT_BLOCK_SIZE);
+
+        EventStoreMemory restored = EventStoreMemory.load(file);
+        assertEquals(400, restored.getEventCount());
+        for (int i = 0; i < 400; i += 37) {
+            assertEquals(description + i, restored.getEvent("Event" + i).getDescription());
+        }
+    }
+
+    @Test
+    public void testSnapshotWhileAdding(@TempDir Path directory) throws Exception {
+        EventStoreMemory store = new EventStoreMemory();
+        Thread adder = new Thread(() -> {
+            for (int i = 0; i < 50000; i++) {
+                store.addEvent("Event" + i, "2025-04-15", "14:30", "Concurrent");
+            }
+        });
+        adder.start();
+        Path file = directory.resolve("events.snapshot");
+        SnapshotScheduler snapshots = new SnapshotScheduler(store, file, 3600);
+        while (adder.isAlive()) {
+            snapshots.snapshotNow();
+
+            // Every snapshot is self-consistent, whatever it caught
+            EventStoreMemory restored = EventStoreMemory.load(file);
+            int count = restored.getEventCount();
+            assertEquals(count + 1, restored.addEvent("Extra", "2025-04-15", "14:30", "Check").eventCount);
+        }
+        adder.join();
+
+        snapshots.close();
+        assertFalse(snapshots.snapshotNow(), "Nothing changed since the final snapshot");
+        assertEquals(50000, EventStoreMemory.load(file).getEventCount());
+    }
+
+    @Test
+    public void testSnapshotOverJmx(@TempDir Path directory) throws Exception {
+        EventStoreMemory store = new EventStoreMemory();
+        store.addEvent("Party", "2025-04-15", "14:30", "Fun");
+        Path file = directory.resolve("events.snapshot");
+        SnapshotScheduler snapshots = new SnapshotScheduler(store, file, 3600);
+        snapshots.register("test");
+        ObjectName name = new ObjectName("xperience:type=SnapshotScheduler,name=" + ObjectName.quote("test"));
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(-1, server.getAttribute(name, "LastCount"));
+            assertEquals(true, server.invoke(name, "snapshotNow", null, null));
+            assertEquals(false, server.invoke(name, "snapshotNow", null, null));
+            assertEquals(1, server.getAttribute(name, "LastCount"));
+            assertEquals(1, EventStoreMemory.load(file).getEventCount());
+        } finally {
+            snapshots.close();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
     @Test
     public void testValidator() {
         // Test the validator directly for coverage
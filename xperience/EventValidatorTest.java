@@ -0,0 +1,110 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.*;
+import org.junit.jupiter.params.provider.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.time.*;
+import java.time.format.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * JUnit 5 test for EventStore.EventValidator.
+ * The date and time checks must agree exactly with the original
+ * LocalDate.parse and regex based implementations kept below as a reference.
+ */
+public class EventValidatorTest {
+
+    private static final Pattern LEGACY_TIME_PATTERN = Pattern.compile("^([01]\\d|2[0-3]):([0-5]\\d)$");
+
+    private static boolean legacyValidateDate(String date) {
+        try {
+            LocalDate.parse(date, DateTimeFormatter.ISO_LOCAL_DATE);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static boolean legacyValidateTime(String time) {
+        return time != null && LEGACY_TIME_PATTERN.matcher(time).matches();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "2025-04-15", "2024-02-29", "2023-02-29", "1900-02-29", "2000-02-29", "2025-02-30",
+        "2025-04-31", "2025-12-31", "2025-00-10", "2025-13-01", "2025-04-00", "0000-01-01",
+        "2025-4-15", "2025-04-5", "25-12-2025", "2025/04/15", "15/04/2025", "2025-04-15 ",
+        " 2025-04-15", "2025-04-15\n", "", "-", "+", "2025-04-1x", "2025--04-15",
+        "+2025-04-15", "-2025-04-15", "12025-04-15", "+12025-04-15", "-12025-04-15",
+        "-0000-01-01", "+0000-01-01", "+00000-01-01", "-00000-01-01", "-0001-01-01",
+        "+999999999-12-31", "-999999999-01-01", "+1000000000-01-01", "+0999999999-01-01",
+        "+00000000001-01-01", "-0004-02-29", "-0100-02-29", "-0400-02-29", "+9999-01-01",
+        "２０２５-04-15", "2025-०٤-15"
+    })
+    public void testDateMatchesLegacy(String date) {
+        assertEquals(legacyValidateDate(date), EventStore.EventValidator.validateDate(date), date);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "00:00", "23:59", "14:30", "24:00", "24:01", "23:60", "8:60", "8:00", "08:0",
+        "2:30 PM", "12:00:00", "12-00", "", "1430", "14:30\n", "１４:30", "19:5a"
+    })
+    public void testTimeMatchesLegacy(String time) {
+        assertEquals(legacyValidateTime(time), EventStore.EventValidator.validateTime(time), time);
+    }
+
+    @Test
+    public void testRandomDatesAndTimesMatchLegacy() {
+        Random random = new Random(42);
+        String alphabet = "0123456789-+:/ ";
+        for (int i = 0; i < 200000; i++) {
+            // Mostly well-shaped values with random digits, plus random noise
+            String date;
+            switch (random.nextInt(4)) {
+                case 0:
+                    date = randomText(random, alphabet, 12);
+                    break;
+                case 1:
+                    // Signed and long years
+                    String year = "+-".charAt(random.nextInt(2)) + "0".repeat(random.nextInt(3))
+                        + (long) Math.pow(10, random.nextInt(11)) * random.nextInt(10) / 3;
+                    date = String.format("%s-%02d-%02d", year, random.nextInt(14), random.nextInt(33));
+                    break;
+                default:
+                    date = String.format("%04d-%02d-%02d", random.nextInt(10000), random.nextInt(14), random.nextInt(33));
+                    break;
+            }
+            String time = random.nextInt(4) == 0
+                ? randomText(random, alphabet, 6)
+                : String.format("%02d:%02d", random.nextInt(26), random.nextInt(62));
+
+            assertEquals(legacyValidateDate(date), EventStore.EventValidator.validateDate(date), date);
+            assertEquals(legacyValidateTime(time), EventStore.EventValidator.validateTime(time), time);
+        }
+    }
+
+    @Test
+    public void testNullValues() {
+        assertFalse(EventStore.EventValidator.validateDate(null));
+        assertFalse(EventStore.EventValidator.validateTime(null));
+    }
+
+    private static String randomText(Random random, String alphabet, int maxLength) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,327 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.logging.*;
+
+/**
+ * EventStore decorator that groups concurrent additions into one
+ * {@link EventStore#addEvents(List)} call, so a database store commits many
+ * events per transaction instead of one.
+ * <p>
+ * Valid events are queued and a single flusher thread hands them to the
+ * underlying store once {@code maxBatch} events are waiting or
+ * {@code maxDelayMillis} have passed since the first of them arrived. By
+ * default each caller blocks until its group has been committed and gets the
+ * store's own result. In write-behind mode callers are acknowledged as soon as
+ * the event is queued: names already queued are still rejected, but a name
+ * that turns out to exist in the store is only detected at flush time, where
+ * the event is dropped and logged. Acknowledged event numbers are never
+ * reused; dropped events are counted separately and left out of the event
+ * count.
+ */
+public class GroupCommitEventStore implements EventStore, Closeable {
+    private static final Logger logger = Logger.getLogger(GroupCommitEventStore.class.getName());
+
+    /**
+     * Default maximum number of events per group.
+     */
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    /**
+     * Default maximum time the first event of a group waits for others, in milliseconds.
+     */
+    public static final int DEFAULT_MAX_DELAY_MILLIS = 5;
+
+    /**
+     * Number of full groups that may be queued before callers block.
+     */
+    private static final int QUEUED_GROUPS = 16;
+
+    /**
+     * How often a waiting flusher checks whether the store was closed, in milliseconds.
+     */
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final EventStore delegate;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final boolean writeBehind;
+    private final BlockingQueue<Pending> queue;
+
+    /**
+     * Names queued but not yet flushed, in write-behind mode, keyed case-insensitively
+     * like the database collation.
+     */
+    private final Set<String> queuedNames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Last event number given to a write-behind caller, including queued and dropped events.
+     */
+    private final AtomicInteger acknowledged;
+
+    /**
+     * Number of acknowledged write-behind events that were not committed.
+     */
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    /**
+     * Told of every event once it is committed.
+     */
+    private volatile Consumer<Event> commitListener = event -> { };
+
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a group-commit store and starts its flusher thread.
+     *
+     * @param delegate Store that commits each group
+     * @param maxBatch Maximum number of events per group
+     * @param maxDelayMillis Maximum time the first event of a group waits for others
+     * @param writeBehind True to acknowledge events when they are queued rather than committed
+     */
+    public GroupCommitEventStore(EventStore delegate, int maxBatch, int maxDelayMillis, boolean writeBehind) {
+        if (maxBatch < 1 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Invalid group size or delay");
+        }
+        this.delegate = delegate;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.writeBehind = writeBehind;
+        this.queue = new ArrayBlockingQueue<>(maxBatch * QUEUED_GROUPS);
+        this.acknowledged = new AtomicInteger(delegate.getEventCount());
+
+        flusher = new Thread(this::flushLoop, "xperience-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public Result addEvent(String name, String date, String time, String description) {
+        Pending pending = enqueue(new Event(name, date, time, description));
+        return pending.result != null ? pending.result.join() : pending.acknowledgement;
+    }
+
+    @Override
+    public List<Result> addEvents(List<Event> events) {
+        // Queue everything first so the events can share a group
+        List<Pending> pending = new ArrayList<>(events.size());
+        for (Event event : events) {
+            pending.add(enqueue(event));
+        }
+        List<Result> results = new ArrayList<>(events.size());
+        for (Pending entry : pending) {
+            results.add(entry.result != null ? entry.result.join() : entry.acknowledgement);
+        }
+        return results;
+    }
+
+    /**
+     * Sets the action told of every event once the underlying store has
+     * committed it, before its caller is released. In write-behind mode this
+     * is the only way to learn which acknowledged events were stored.
+     *
+     * @param listener Called once per committed event, on the flusher thread
+     */
+    public void setCommitListener(Consumer<Event> listener) {
+        this.commitListener = listener;
+    }
+
+    @Override
+    public int getEventCount() {
+        return writeBehind ? acknowledged.get() - dropped.get() : delegate.getEventCount();
+    }
+
+    /**
+     * Returns the number of write-behind events that were acknowledged but not committed.
+     *
+     * @return Dropped events
+     */
+    public int getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Passes every committed event to an action; queued events are not included.
+     *
+     * @param action Called once per event
+     */
+    @Override
+    public void forEachEvent(Consumer<Event> action) {
+        delegate.forEachEvent(action);
+    }
+
+    @Override
+    public void exportTo(EventExport.Writer export) throws IOException {
+        delegate.exportTo(export);
+    }
+
+    /**
+     * Stops accepting events, flushes everything queued and stops the flusher.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushRemaining();
+    }
+
+    /**
+     * Validates and queues an event.
+     *
+     * @param event The event
+     * @return The queued entry, or an entry that already holds its rejection
+     */
+    private Pending enqueue(Event event) {
+        if (closed || !EventStore.EventValidator.validate(event.getName(), event.getDate(), event.getTime(), event.getDescription())) {
+            return new Pending(event, new Result(false, getEventCount()));
+        }
+        Pending pending;
+        if (writeBehind) {
+            // Only names that are already queued can be rejected up front
+            if (!queuedNames.add(NameFilter.key(event.getName()))) {
+                return new Pending(event, new Result(false, getEventCount()));
+            }
+            pending = new Pending(event, new Result(true, acknowledged.incrementAndGet()));
+        } else {
+            pending = new Pending(event, new CompletableFuture<>());
+        }
+
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (writeBehind) {
+                queuedNames.remove(NameFilter.key(event.getName()));
+                dropped.incrementAndGet();
+            }
+            return new Pending(event, new Result(false, getEventCount()));
+        }
+
+        // An event queued while the store was closing is flushed by this caller
+        if (closed && !flusher.isAlive()) {
+            flushRemaining();
+        }
+        return pending;
+    }
+
+    /**
+     * Flushes whatever is left in the queue after the flusher has stopped.
+     */
+    private synchronized void flushRemaining() {
+        List<Pending> group = new ArrayList<>();
+        queue.drainTo(group);
+        if (!group.isEmpty()) {
+            flush(group);
+        }
+    }
+
+    /**
+     * Collects groups from the queue and flushes them until the store is closed and drained.
+     */
+    private void flushLoop() {
+        List<Pending> group = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+
+                // Wait for more events until the group is full, the first one has waited long enough
+                // or the store is closing
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() < maxBatch) {
+                    long wait = closed ? 0 : Math.min(deadline - System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(IDLE_POLL_MILLIS));
+                    Pending next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next != null) {
+                        group.add(next);
+                    } else if (closed || System.nanoTime() - deadline >= 0) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Only close() stops the flusher; flush what has been collected
+            }
+            if (!group.isEmpty()) {
+                flush(group);
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Commits one group and releases its callers.
+     *
+     * @param group Queued entries, in arrival order
+     */
+    private void flush(List<Pending> group) {
+        List<Event> events = new ArrayList<>(group.size());
+        for (Pending pending : group) {
+            events.add(pending.event);
+        }
+        List<Result> results;
+        try {
+            results = delegate.addEvents(events);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Group commit failed", e);
+            results = Collections.nCopies(events.size(), new Result(false, delegate.getEventCount()));
+        }
+
+        Consumer<Event> listener = commitListener;
+        for (int i = 0; i < group.size(); i++) {
+            Pending pending = group.get(i);
+            Result result = results.get(i);
+            if (result.success) {
+                listener.accept(pending.event);
+            }
+            if (pending.result != null) {
+                pending.result.complete(result);
+                continue;
+            }
+            queuedNames.remove(NameFilter.key(pending.event.getName()));
+            if (!result.success) {
+                dropped.incrementAndGet();
+                logger.warning("Dropped write-behind event " + pending.event.getName());
+            }
+        }
+    }
+
+    /**
+     * An event waiting to be committed, with either a future for its result
+     * or the acknowledgement already given to the caller.
+     */
+    private static final class Pending {
+        final Event event;
+        final CompletableFuture<Result> result;
+        final Result acknowledgement;
+
+        Pending(Event event, CompletableFuture<Result> result) {
+            this.event = event;
+            this.result = result;
+            this.acknowledgement = null;
+        }
+
+        Pending(Event event, Result acknowledgement) {
+            this.event = event;
+            this.result = null;
+            this.acknowledgement = acknowledgement;
+        }
+    }
+}
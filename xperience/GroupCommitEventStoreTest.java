@@ -0,0 +1,166 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * JUnit 5 test for GroupCommitEventStore.
+ * Uses an EventStoreMemory that records the size of every group it commits.
+ */
+public class GroupCommitEventStoreTest {
+
+    /**
+     * Memory store that records each addEvents call.
+     */
+    private static class RecordingStore extends EventStoreMemory {
+        final List<Integer> groups = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public List<Result> addEvents(List<Event> events) {
+            groups.add(events.size());
+            return super.addEvents(events);
+        }
+    }
+
+    private RecordingStore delegate;
+
+    @BeforeEach
+    public void setup() {
+        delegate = new RecordingStore();
+    }
+
+    @Test
+    public void testConcurrentCallersShareGroups() throws Exception {
+        GroupCommitEventStore store = new GroupCommitEventStore(delegate, 64, 50, false);
+        Set<Integer> counts = ConcurrentHashMap.newKeySet();
+        AtomicInteger accepted = new AtomicInteger();
+
+        // Every name is added twice; each is accepted once with a distinct count
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 400; i++) {
+                String name = "Event" + (i % 200);
+                executor.submit(() -> {
+                    EventStore.Result result = store.addEvent(name, "2025-04-15", "14:30", "Grouped");
+                    if (result.success) {
+                        accepted.incrementAndGet();
+                        counts.add(result.eventCount);
+                    }
+                });
+            }
+        }
+        store.close();
+
+        assertEquals(200, accepted.get());
+        assertEquals(200, counts.size());
+        assertEquals(200, store.getEventCount());
+        assertTrue(delegate.groups.size() < 400, () -> "Events should be committed in groups: " + delegate.groups);
+        assertTrue(delegate.groups.stream().allMatch(size -> size <= 64));
+    }
+
+    @Test
+    public void testCallerWaitsForCommit() {
+        GroupCommitEventStore store = new GroupCommitEventStore(delegate, 64, 20, false);
+
+        // A lone event is flushed after the delay and its real result returned
+        EventStore.Result result = store.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+        assertTrue(result.success);
+        assertEquals(1, result.eventCount);
+        assertNotNull(delegate.getEvent("Conference"));
+
+        assertFalse(store.addEvent("Conference", "2025-05-20", "09:00", "Duplicate").success);
+        assertFalse(store.addEvent("Meetup", "2025-02-30", "18:00", "Invalid date").success);
+        assertEquals(List.of(1, 1), delegate.groups, () -> "Invalid events should not be queued");
+        store.close();
+    }
+
+    @Test
+    public void testAddEventsInOneGroup() {
+        GroupCommitEventStore store = new GroupCommitEventStore(delegate, 64, 20, false);
+        List<EventStore.Result> results = store.addEvents(List.of(
+            new Event("Workshop", "2025-04-16", "10:00", "Coding workshop"),
+            new Event("Meetup", "2025-02-30", "18:00", "Invalid date"),
+            new Event("Workshop", "2025-04-17", "11:00", "Duplicate within the batch"),
+            new Event("Meetup", "2025-04-18", "18:00", "Evening meetup")
+        ));
+        store.close();
+
+        assertTrue(results.get(0).success);
+        assertFalse(results.get(1).success);
+        assertFalse(results.get(2).success);
+        assertTrue(results.get(3).success);
+        assertEquals(List.of(3), delegate.groups);
+    }
+
+    @Test
+    public void testWriteBehindAcknowledgesOnEnqueue() {
+        delegate.addEvent("Conference", "2025-04-15", "14:30", "Already stored");
+        GroupCommitEventStore store = new GroupCommitEventStore(delegate, 64, 10000, true);
+
+        // Acknowledged before any commit; duplicates of queued names are still rejected
+        EventStore.Result first = store.addEvent("Workshop", "2025-04-16", "10:00", "Coding workshop");
+        assertTrue(first.success);
+        assertEquals(2, first.eventCount);
+        assertFalse(store.addEvent("Workshop", "2025-04-17", "11:00", "Queued duplicate").success);
+        assertTrue(delegate.groups.isEmpty(), () -> "Nothing should be committed yet");
+
+        // A duplicate of a stored name is only found when the group is flushed
+        assertTrue(store.addEvent("Conference", "2025-05-20", "09:00", "Stored duplicate").success);
+        assertEquals(3, store.getEventCount());
+        store.close();
+
+        assertEquals(List.of(2), delegate.groups);
+        assertEquals(2, store.getEventCount());
+        assertEquals(1, store.getDroppedCount());
+        assertEquals("Coding workshop", delegate.getEvent("Workshop").getDescription());
+        assertEquals("Already stored", delegate.getEvent("Conference").getDescription());
+    }
+
+    @Test
+    public void testQueuedNamesIgnoreCase() {
+        GroupCommitEventStore store = new GroupCommitEventStore(delegate, 64, 10000, true);
+        assertTrue(store.addEvent("Workshop", "2025-04-16", "10:00", "Coding workshop").success);
+        assertFalse(store.addEvent("WORKSHOP", "2025-04-17", "11:00", "Queued duplicate").success);
+        store.close();
+
+        assertEquals(0, store.getDroppedCount());
+        assertEquals(List.of(1), delegate.groups);
+        assertEquals("Coding workshop", delegate.getEvent("Workshop").getDescription());
+    }
+
+    @Test
+    public void testDroppedEventNumbersAreNotReused() throws InterruptedException {
+        delegate.addEvent("Conference", "2025-04-15", "14:30", "Already stored");
+        GroupCommitEventStore store = new GroupCommitEventStore(delegate, 1, 0, true);
+        assertEquals(2, store.addEvent("Conference", "2025-05-20", "09:00", "Stored duplicate").eventCount);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (store.getDroppedCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, store.getDroppedCount());
+        assertEquals(1, store.getEventCount());
+
+        // The next caller gets a new number rather than the dropped event's
+        assertEquals(3, store.addEvent("Workshop", "2025-04-16", "10:00", "Coding workshop").eventCount);
+        store.close();
+        assertEquals(2, store.getEventCount());
+        assertEquals(2, delegate.getEventCount());
+    }
+
+    @Test
+    public void testClosedStoreRejects() {
+        GroupCommitEventStore store = new GroupCommitEventStore(delegate, 64, 20, false);
+        store.close();
+        assertFalse(store.addEvent("Conference", "2025-04-15", "14:30", "Too late").success);
+        assertTrue(delegate.groups.isEmpty());
+    }
+}
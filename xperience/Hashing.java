@@ -0,0 +1,104 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+/**
+ * The seeded 64-bit hash shared by the name and password tables: the seed is
+ * mixed with the length, each unit is folded in with an FNV-1a step and a
+ * rotation, and the result goes through the MurmurHash3 fmix64 avalanche.
+ * Tables that hash untrusted input use a random seed per process, so clients
+ * cannot choose colliding keys. MappedPasswordTable stores these hashes in its
+ * index file, so the function must not change.
+ */
+final class Hashing {
+
+    /**
+     * Multiplier spreading the length over the seed (the 64-bit golden ratio).
+     */
+    private static final long LENGTH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * 64-bit FNV prime.
+     */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Hashing() {
+    }
+
+    /**
+     * Computes the seeded hash of a byte array range.
+     *
+     * @param seed Hash seed
+     * @param bytes The bytes
+     * @param start First byte
+     * @param end Index just past the last byte
+     * @return The hash
+     */
+    static long hash(long seed, byte[] bytes, int start, int end) {
+        long hash = start(seed, end - start);
+        for (int i = start; i < end; i++) {
+            hash = step(hash, bytes[i] & 0xFF);
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Computes the seeded hash of the UTF-16 units of a string, without encoding it.
+     *
+     * @param seed Hash seed
+     * @param text The string
+     * @return The hash
+     */
+    static long hash(long seed, String text) {
+        long hash = start(seed, text.length());
+        for (int i = 0; i < text.length(); i++) {
+            hash = step(hash, text.charAt(i));
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Starts a running hash, for input that is not in one array.
+     *
+     * @param seed Hash seed
+     * @param length Number of units that will be hashed
+     * @return Running hash
+     */
+    static long start(long seed, long length) {
+        return seed ^ (length * LENGTH_MULTIPLIER);
+    }
+
+    /**
+     * Folds one unit into a running hash.
+     *
+     * @param hash Running hash
+     * @param unit The unsigned byte or char
+     * @return Updated hash
+     */
+    static long step(long hash, int unit) {
+        return Long.rotateLeft((hash ^ unit) * FNV_PRIME, 29);
+    }
+
+    /**
+     * Final avalanche (MurmurHash3 fmix64).
+     *
+     * @param hash Running hash
+     * @return Mixed hash
+     */
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,37 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.charset.*;
+
+/**
+ * JUnit 5 test for Hashing.
+ */
+public class HashingTest {
+
+    @Test
+    public void testStringsAndBytesAgreeForAscii() {
+        byte[] bytes = "xxpassword123xx".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(Hashing.hash(42, "password123"), Hashing.hash(42, bytes, 2, bytes.length - 2));
+
+        // The running form gives the same hash as the array form
+        long hash = Hashing.start(42, 11);
+        for (int i = 2; i < 13; i++) {
+            hash = Hashing.step(hash, bytes[i] & 0xFF);
+        }
+        assertEquals(Hashing.hash(42, bytes, 2, 13), Hashing.mix(hash));
+    }
+
+    @Test
+    public void testSeedAndLengthChangeTheHash() {
+        assertNotEquals(Hashing.hash(1, "Party"), Hashing.hash(2, "Party"));
+        assertNotEquals(Hashing.hash(1, ""), Hashing.hash(1, "\0"));
+    }
+}
@@ -0,0 +1,217 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.logging.*;
+
+/**
+ * EventStore decorator that keeps an in-process read index of the events in
+ * the underlying store, for answering queries without touching it.
+ * Events are looked up by name in a hash map and listed in date and time
+ * order from a skip list. Both are concurrent and lock-free for readers, so
+ * queries never block writers and see every event whose addition has returned.
+ * The index is filled from the store once at startup and then learns each
+ * event as it is accepted. A store that acknowledges events before committing
+ * them, such as a write-behind {@link GroupCommitEventStore}, instead reports
+ * each commit to {@link #learn}, so an acknowledged event that is later
+ * dropped never reaches the index.
+ */
+public class IndexedEventStore implements EventStore {
+    private static final Logger logger = Logger.getLogger(IndexedEventStore.class.getName());
+
+    private final EventStore delegate;
+
+    /**
+     * Whether names are looked up ignoring case, like a case-insensitive database column.
+     */
+    private final boolean ignoreCase;
+
+    /**
+     * Whether events are indexed when the store accepts them, rather than reported to {@link #learn}.
+     */
+    private final boolean learnOnAdd;
+
+    /**
+     * Events by name.
+     */
+    private final ConcurrentMap<String, Event> byName = new ConcurrentHashMap<>();
+
+    /**
+     * Events ordered by date, time and name.
+     */
+    private final ConcurrentNavigableMap<Key, Event> byDate = new ConcurrentSkipListMap<>();
+
+    /**
+     * Constructs the index over a store, reading the events it already holds.
+     * Names are case-sensitive and events are indexed as the store accepts them.
+     *
+     * @param delegate Store that accepts and keeps the events
+     * @throws UncheckedIOException If the existing events cannot be read
+     */
+    public IndexedEventStore(EventStore delegate) {
+        this(delegate, false, true);
+    }
+
+    /**
+     * Constructs the index over a store, reading the events it already holds.
+     *
+     * @param delegate Store that accepts and keeps the events
+     * @param ignoreCase True to look names up ignoring case, as the store compares them
+     * @param learnOnAdd True to index events as the store accepts them; false if the store
+     *                   reports its commits to {@link #learn} instead
+     * @throws UncheckedIOException If the existing events cannot be read
+     */
+    public IndexedEventStore(EventStore delegate, boolean ignoreCase, boolean learnOnAdd) {
+        this.delegate = delegate;
+        this.ignoreCase = ignoreCase;
+        this.learnOnAdd = learnOnAdd;
+        long start = System.nanoTime();
+        delegate.forEachEvent(this::index);
+        logger.info("Indexed " + byName.size() + " events in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    @Override
+    public Result addEvent(String name, String date, String time, String description) {
+        Result result = delegate.addEvent(name, date, time, description);
+        if (learnOnAdd && result.success) {
+            index(new Event(name, date, time, description));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Result> addEvents(List<Event> events) {
+        List<Result> results = delegate.addEvents(events);
+        for (int i = 0; learnOnAdd && i < results.size(); i++) {
+            if (results.get(i).success) {
+                index(events.get(i));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public int getEventCount() {
+        return delegate.getEventCount();
+    }
+
+    @Override
+    public void forEachEvent(Consumer<Event> action) {
+        byName.values().forEach(action);
+    }
+
+    /**
+     * Exports the underlying store, which may send its records without decoding them.
+     */
+    @Override
+    public void exportTo(EventExport.Writer export) throws IOException {
+        delegate.exportTo(export);
+    }
+
+    /**
+     * Returns an event by name.
+     *
+     * @param name Event name
+     * @return The event, or null if there is none
+     */
+    public Event getEvent(String name) {
+        return byName.get(key(name));
+    }
+
+    /**
+     * Indexes an event the underlying store has committed.
+     *
+     * @param event The event
+     */
+    public void learn(Event event) {
+        index(event);
+    }
+
+    /**
+     * Lists the events from one date and time to another, both inclusive, in
+     * date, time and name order.
+     *
+     * @param fromDate First date, valid
+     * @param fromTime First time on the first date, valid
+     * @param toDate Last date, valid
+     * @param toTime Last time on the last date, valid
+     * @param offset Number of matching events to skip
+     * @param limit Maximum number of events to return
+     * @return The events of the requested page
+     */
+    public List<Event> list(String fromDate, String fromTime, String toDate, String toTime, int offset, int limit) {
+        Key from = new Key(EventArena.packDate(fromDate), EventArena.packTime(fromTime), null);
+        Key to = new Key(EventArena.packDate(toDate), (short) (EventArena.packTime(toTime) + 1), null);
+        List<Event> page = new ArrayList<>(Math.min(limit, 64));
+        if (from.compareTo(to) >= 0) {
+            return page;
+        }
+
+        // The view is weakly consistent: it never blocks and reflects concurrent additions or not
+        Iterator<Event> events = byDate.subMap(from, to).values().iterator();
+        for (int skipped = 0; skipped < offset && events.hasNext(); skipped++) {
+            events.next();
+        }
+        while (page.size() < limit && events.hasNext()) {
+            page.add(events.next());
+        }
+        return page;
+    }
+
+    /**
+     * Adds an accepted event to the index.
+     *
+     * @param event The event
+     */
+    private void index(Event event) {
+        if (byName.putIfAbsent(key(event.getName()), event) == null) {
+            byDate.put(new Key(EventArena.packDate(event.getDate()), EventArena.packTime(event.getTime()), event.getName()), event);
+        }
+    }
+
+    /**
+     * Returns the key of a name in the name map.
+     *
+     * @param name The name
+     * @return The name, in lower case if names ignore case
+     */
+    private String key(String name) {
+        return ignoreCase ? NameFilter.key(name) : name;
+    }
+
+    /**
+     * Sort key of an event. A null name sorts before every name, so it bounds a time from below.
+     */
+    private static final class Key implements Comparable<Key> {
+        final long date;
+        final short time;
+        final String name;
+
+        Key(long date, short time, String name) {
+            this.date = date;
+            this.time = time;
+            this.name = name;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int order = Long.compare(date, other.date);
+            if (order == 0) {
+                order = Short.compare(time, other.time);
+            }
+            if (order == 0 && name != other.name) {
+                order = name == null ? -1 : other.name == null ? 1 : name.compareTo(other.name);
+            }
+            return order;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * JUnit 5 test for IndexedEventStore and the QueryRequest wire format.
+ */
+public class IndexedEventStoreTest {
+
+    private EventStoreMemory delegate;
+    private IndexedEventStore eventStore;
+
+    @BeforeEach
+    public void setup() {
+        delegate = new EventStoreMemory();
+        eventStore = new IndexedEventStore(delegate);
+    }
+
+    @Test
+    public void testIndexLoadsExistingEvents() {
+        EventStoreMemory stored = new EventStoreMemory();
+        stored.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+        stored.addEvent("Workshop", "2025-04-16", "10:00", "Coding workshop");
+
+        IndexedEventStore indexed = new IndexedEventStore(stored);
+        assertEquals("Coding workshop", indexed.getEvent("Workshop").getDescription());
+        assertEquals(2, indexed.list("2025-04-01", "00:00", "2025-04-30", "23:59", 0, 10).size());
+        assertEquals(3, indexed.addEvent("Meetup", "2025-04-18", "18:00", "Evening meetup").eventCount);
+    }
+
+    @Test
+    public void testGetEvent() {
+        eventStore.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+        assertFalse(eventStore.addEvent("Conference", "2025-05-20", "09:00", "Duplicate").success);
+        assertFalse(eventStore.addEvent("Meetup", "2025-02-30", "18:00", "Invalid date").success);
+
+        assertEquals("Annual tech conference", eventStore.getEvent("Conference").getDescription());
+        assertNull(eventStore.getEvent("Meetup"));
+    }
+
+    @Test
+    public void testListByDateAndWindow() {
+        eventStore.addEvents(List.of(
+            new Event("Late", "2025-04-15", "18:00", "Evening"),
+            new Event("Early", "2025-04-15", "09:00", "Morning"),
+            new Event("Also early", "2025-04-15", "09:00", "Same time"),
+            new Event("Next day", "2025-04-16", "00:00", "Midnight"),
+            new Event("Last", "2025-04-30", "23:59", "End of month"),
+            new Event("Old", "-0044-03-15", "12:00", "Ides of March")
+        ));
+
+        // Ordered by date, time and name; both ends inclusive
+        assertEquals(List.of("Also early", "Early", "Late", "Next day", "Last"),
+            names(eventStore.list("2025-04-15", "00:00", "2025-04-30", "23:59", 0, 100)));
+        assertEquals(List.of("Also early", "Early", "Late"),
+            names(eventStore.list("2025-04-15", "09:00", "2025-04-15", "18:00", 0, 100)));
+        assertEquals(List.of("Old", "Also early"),
+            names(eventStore.list("-9999-01-01", "00:00", "2025-12-31", "23:59", 0, 2)));
+
+        // Paging
+        assertEquals(List.of("Late", "Next day"),
+            names(eventStore.list("2025-04-15", "00:00", "2025-04-30", "23:59", 2, 2)));
+        assertEquals(List.of(), eventStore.list("2025-04-15", "00:00", "2025-04-30", "23:59", 5, 2));
+
+        // An empty or reversed range lists nothing
+        assertEquals(List.of(), eventStore.list("2025-04-17", "00:00", "2025-04-29", "23:59", 0, 10));
+        assertEquals(List.of(), eventStore.list("2025-04-30", "00:00", "2025-04-15", "00:00", 0, 10));
+    }
+
+    @Test
+    public void testReadsDuringWrites() throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger reads = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    eventStore.addEvent("Event" + i, "2025-04-15", String.format("%02d:%02d", (i / 60) % 24, i % 60), "Load");
+                }
+                done.set(true);
+            });
+            for (int t = 0; t < 4; t++) {
+                executor.submit(() -> {
+                    do {
+                        List<Event> page = eventStore.list("2025-04-15", "00:00", "2025-04-15", "23:59", 0, 50);
+                        assertTrue(page.size() <= 50);
+                        reads.incrementAndGet();
+                    } while (!done.get());
+                });
+            }
+        }
+        assertTrue(reads.get() >= 4);
+        assertEquals(1000, eventStore.list("2025-04-15", "00:00", "2025-04-15", "23:59", 19000, 1000).size());
+    }
+
+    @Test
+    public void testDroppedWriteBehindEventsAreNotIndexed() {
+        EventStoreMemory database = new EventStoreMemory();
+        database.addEvent("Conference", "2025-04-15", "14:30", "Already stored");
+        GroupCommitEventStore groupCommit = new GroupCommitEventStore(database, 64, 10000, true);
+        IndexedEventStore index = new IndexedEventStore(groupCommit, false, false);
+        groupCommit.setCommitListener(index::learn);
+
+        // Both are acknowledged, but neither is indexed before it is committed
+        assertTrue(index.addEvent("Conference", "2025-05-20", "09:00", "Stored duplicate").success);
+        assertTrue(index.addEvent("Workshop", "2025-04-16", "10:00", "Coding workshop").success);
+        assertNull(index.getEvent("Workshop"));
+        groupCommit.close();
+
+        // The duplicate was dropped at flush and never shows up in queries
+        assertEquals("Already stored", index.getEvent("Conference").getDescription());
+        assertEquals("Coding workshop", index.getEvent("Workshop").getDescription());
+        assertEquals(List.of(), index.list("2025-05-20", "00:00", "2025-05-20", "23:59", 0, 10));
+    }
+
+    @Test
+    public void testNamesMayIgnoreCase() {
+        IndexedEventStore index = new IndexedEventStore(new EventStoreMemory(), true, true);
+        index.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+        assertEquals("Conference", index.getEvent("CONFERENCE").getName());
+        assertNull(eventStore.getEvent("CONFERENCE"));
+    }
+
+    @Test
+    public void testQueryRequests() {
+        eventStore.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+        eventStore.addEvent("Workshop", "2025-04-16", "10:00", "Coding workshop");
+
+        assertEquals("Events#1#Conference#2025-04-15#14:30#Annual tech conference#", query("Query#Name#Conference#"));
+        assertEquals("Events#0#", query("Query#Name#Meetup#\n"));
+        assertEquals("Events#2#Conference#2025-04-15#14:30#Annual tech conference#Workshop#2025-04-16#10:00#Coding workshop#",
+            query("Query#Dates#2025-04-15#2025-04-16#0#10#"));
+        assertEquals("Events#1#Workshop#2025-04-16#10:00#Coding workshop#",
+            query("Query#Window#2025-04-15#14:31#2025-04-16#10:00#0#10#"));
+        assertEquals(List.of(), QueryRequest.parseResponse("Events#0#"));
+        assertNull(QueryRequest.parseResponse("Reject#"));
+        assertNull(QueryRequest.parseResponse("Events#2#Conference#2025-04-15#14:30#Annual tech conference#"));
+
+        // Malformed queries
+        assertNull(QueryRequest.parse("Query#Dates#2025-04-15#2025-04-16#0#"));
+        assertNull(QueryRequest.parse("Query#Dates#2025-02-30#2025-04-16#0#10#"));
+        assertNull(QueryRequest.parse("Query#Dates#2025-04-15#2025-04-16#-1#10#"));
+        assertNull(QueryRequest.parse("Query#Dates#2025-04-15#2025-04-16#0#0#"));
+        assertNull(QueryRequest.parse("Query#Dates#2025-04-15#2025-04-16#0#" + (QueryRequest.MAX_LIMIT + 1) + "#"));
+        assertNull(QueryRequest.parse("Query#Window#2025-04-15#25:00#2025-04-16#10:00#0#10#"));
+        assertNull(QueryRequest.parse("Query#Name##"));
+        assertNull(QueryRequest.parse("Query#Other#x#"));
+
+        // Only frames naming a kind of query are queries
+        assertTrue(matches("Query#Name#Conference#"));
+        assertTrue(matches("Query#Window#"));
+        assertFalse(matches("Query#2025-04-15#14:30#Fun#pass#"));
+        assertFalse(matches("Queryx#Name#"));
+        assertFalse(matches("Query#"));
+    }
+
+    @Test
+    public void testLargePagesEndEarly() {
+        String description = "d".repeat(65535);
+        for (int i = 0; i < 40; i++) {
+            eventStore.addEvent(String.format("Event%02d", i), "2025-04-15", "14:30", description);
+        }
+
+        // Only as many 64 KB events as fit in the reply; the next page starts after them
+        String reply = query("Query#Dates#2025-04-15#2025-04-15#0#1000#");
+        int count = Integer.parseInt(reply.split("#", 3)[1]);
+        assertEquals(QueryRequest.MAX_RESPONSE_CHARS / ("Event00#2025-04-15#14:30##".length() + description.length()), count);
+        assertTrue(reply.length() <= QueryRequest.MAX_RESPONSE_CHARS + 16);
+        String next = query("Query#Dates#2025-04-15#2025-04-15#" + count + "#1000#");
+        assertTrue(next.startsWith("Events#" + count + "#Event" + count + "#"));
+    }
+
+    private String query(String input) {
+        return QueryRequest.formatResponse(QueryRequest.parse(input).execute(eventStore));
+    }
+
+    private static boolean matches(String frame) {
+        byte[] bytes = ("xx" + frame).getBytes(StandardCharsets.UTF_8);
+        return QueryRequest.matches(bytes, 2, bytes.length - 2);
+    }
+
+    private static List<String> names(List<Event> events) {
+        List<String> names = new ArrayList<>();
+        for (Event event : events) {
+            names.add(event.getName());
+        }
+        return names;
+    }
+}
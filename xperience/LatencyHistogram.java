@@ -0,0 +1,156 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Lock-free histogram of durations in nanoseconds.
+ * Each power of two is split into {@link #SUB_BUCKETS} linear buckets, so a
+ * recorded value is off by at most 12.5% and the whole range of a long fits
+ * in a few hundred counters. Recording adds to one bucket and to the sum,
+ * both striped {@link LongAdder}s, so threads recording the same durations do
+ * not contend on one cache line; reading is weakly consistent with concurrent
+ * recording.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of linear buckets in each power of two.
+     */
+    public static final int SUB_BUCKETS = 8;
+
+    /**
+     * Number of bits selecting the linear bucket.
+     */
+    private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    /**
+     * Number of buckets needed for every non-negative long.
+     */
+    private static final int BUCKETS = (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos Duration in nanoseconds; negative values count as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[bucket(value)].increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Returns the number of durations recorded.
+     *
+     * @return The count
+     */
+    public long count() {
+        long total = 0;
+        for (LongAdder bucket : counts) {
+            total += bucket.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the mean duration.
+     *
+     * @return Mean in nanoseconds, or 0 if nothing was recorded
+     */
+    public double mean() {
+        long n = count();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the longest duration recorded.
+     *
+     * @return Maximum in nanoseconds
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns a percentile of the recorded durations.
+     *
+     * @param quantile Fraction between 0 and 1, for example 0.99
+     * @return Upper bound of the bucket holding the percentile, in nanoseconds, or 0 if nothing was recorded
+     */
+    public long percentile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns the bucket of a value: values below {@link #SUB_BUCKETS} have one
+     * bucket each, larger ones share a bucket with the values that agree in
+     * their top {@code 1 + SUB_BUCKET_BITS} bits.
+     *
+     * @param value Non-negative value
+     * @return Bucket index
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the largest value that falls in a bucket.
+     *
+     * @param bucket Bucket index
+     * @return The upper bound, inclusive
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lower + width - 1;
+    }
+}
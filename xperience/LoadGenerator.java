@@ -0,0 +1,503 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Load generator for an XPerience server, run by {@code XPerienceTestClient --load}.
+ * Each of {@code --connections} virtual threads sends one request per
+ * connection, as the servers expect by default, and waits for the reply.
+ * <p>
+ * With {@code --rate} the load is open-loop: request i is due at
+ * {@code start + i / rate} whether or not earlier replies have come back, and
+ * its latency is measured from when it was due, not from when a free
+ * connection got round to sending it. A server that stalls therefore shows
+ * the full delay its clients would see instead of hiding it by slowing the
+ * generator down (coordinated omission). Without a rate every connection
+ * sends as fast as replies arrive.
+ * <p>
+ * Every request takes the next password from the {@code --passwords} file;
+ * the run ends when they run out, after {@code --requests} requests or after
+ * {@code --duration} seconds. A {@code --duplicates} fraction of requests
+ * reuses the name of a recent one. With {@code --binary} requests are sent
+ * as {@link BinaryRequest} frames. The summary is printed and, with
+ * {@code --output}, written as CSV or JSON.
+ */
+public class LoadGenerator {
+
+    /**
+     * Flag that selects the load generator.
+     */
+    public static final String LOAD = "load";
+
+    /**
+     * Flag that sets the server host.
+     */
+    public static final String HOST = "host";
+
+    /**
+     * Flag that sets the number of concurrent connections.
+     */
+    public static final String CONNECTIONS = "connections";
+
+    /**
+     * Flag that sets the target rate in requests per second and makes the load open-loop.
+     */
+    public static final String RATE = "rate";
+
+    /**
+     * Flag that sets the length of the run in seconds.
+     */
+    public static final String DURATION = "duration";
+
+    /**
+     * Flag that sets the maximum number of requests.
+     */
+    public static final String REQUESTS = "requests";
+
+    /**
+     * Flags that set the distributions of name and description lengths.
+     */
+    public static final String NAME_SIZE = "name-size";
+    public static final String DESCRIPTION_SIZE = "description-size";
+
+    /**
+     * Flag that names the file of one-time passwords, one per line, used in order.
+     */
+    public static final String PASSWORDS = "passwords";
+
+    /**
+     * Flag that sets the fraction of requests that reuse a recent name.
+     */
+    public static final String DUPLICATES = "duplicates";
+
+    /**
+     * Flag that sends requests as binary frames instead of text records.
+     */
+    public static final String BINARY = "binary";
+
+    /**
+     * Flags that name the results file and its format ({@code csv} or {@code json}, by default from the extension).
+     */
+    public static final String OUTPUT = "output";
+    public static final String FORMAT = "format";
+
+    /**
+     * Default number of concurrent connections.
+     */
+    public static final int DEFAULT_CONNECTIONS = 16;
+
+    /**
+     * Default length of a run, in seconds.
+     */
+    public static final int DEFAULT_DURATION_SECONDS = 10;
+
+    /**
+     * Default distributions of name and description lengths.
+     */
+    public static final String DEFAULT_NAME_SIZE = "uniform:8-32";
+    public static final String DEFAULT_DESCRIPTION_SIZE = "uniform:16-256";
+
+    /**
+     * How long to wait for a reply before counting an error, in milliseconds.
+     */
+    private static final int REPLY_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * Longest reply read; longer replies are cut off.
+     */
+    private static final int MAX_REPLY_SIZE = 64 * 1024;
+
+    /**
+     * Number of recent names duplicates are drawn from.
+     */
+    private static final int RECENT_NAMES = 1024;
+
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final int rate;
+    private final long durationNanos;
+    private final long maxRequests;
+    private final SizeDistribution nameSizes;
+    private final SizeDistribution descriptionSizes;
+    private final List<String> passwords;
+    private final double duplicateRatio;
+    private final boolean binary;
+
+    /**
+     * Prefix that keeps names unique across runs against the same server.
+     */
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Letters descriptions and name padding are cut from.
+     */
+    private final String filler;
+    private final String[] dates;
+
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicReferenceArray<String> recentNames = new AtomicReferenceArray<>(RECENT_NAMES);
+    private final AtomicLong uniqueNames = new AtomicLong();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Constructs a load generator.
+     *
+     * @param host Server host
+     * @param port Server port
+     * @param options Load flags ({@code --connections}, {@code --rate}, {@code --duration}, {@code --requests},
+     *                {@code --name-size}, {@code --description-size}, {@code --passwords}, {@code --duplicates},
+     *                {@code --binary})
+     * @throws IOException If the password file cannot be read
+     * @throws IllegalArgumentException If a flag is invalid or no password file is given
+     */
+    public LoadGenerator(String host, int port, ServerOptions options) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.connections = options.getInt(CONNECTIONS, DEFAULT_CONNECTIONS);
+        this.rate = options.has(RATE) ? options.getInt(RATE, 1) : 0;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(options.getInt(DURATION, DEFAULT_DURATION_SECONDS));
+        this.nameSizes = SizeDistribution.parse(options.get(NAME_SIZE, DEFAULT_NAME_SIZE));
+        this.descriptionSizes = SizeDistribution.parse(options.get(DESCRIPTION_SIZE, DEFAULT_DESCRIPTION_SIZE));
+        this.binary = options.has(BINARY);
+        this.duplicateRatio = Double.parseDouble(options.get(DUPLICATES, "0"));
+        if (duplicateRatio < 0 || duplicateRatio > 1) {
+            throw new IllegalArgumentException("Duplicate ratio must be between 0 and 1");
+        }
+        String passwordFile = options.get(PASSWORDS, null);
+        if (passwordFile == null) {
+            throw new IllegalArgumentException("A password file is required (--passwords=<file>)");
+        }
+        this.passwords = Files.readAllLines(Paths.get(passwordFile), StandardCharsets.UTF_8).stream()
+            .map(String::strip).filter(line -> !line.isEmpty()).toList();
+        long requests = options.has(REQUESTS) ? options.getInt(REQUESTS, 1) : Long.MAX_VALUE;
+        this.maxRequests = Math.min(requests, passwords.size());
+
+        Random random = new Random();
+        int fillerLength = Math.max(nameSizes.max(), descriptionSizes.max());
+        StringBuilder letters = new StringBuilder(fillerLength);
+        for (int i = 0; i < fillerLength; i++) {
+            letters.append((char) ('a' + random.nextInt(26)));
+        }
+        this.filler = letters.toString();
+        this.dates = new String[12 * 28];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = String.format(Locale.ROOT, "2030-%02d-%02d", i / 28 + 1, i % 28 + 1);
+        }
+    }
+
+    /**
+     * Runs the load until the passwords, the request count or the duration run out.
+     *
+     * @return The results
+     * @throws InterruptedException If interrupted while waiting for the connections
+     */
+    public Result run() throws InterruptedException {
+        long start = System.nanoTime();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                workers.submit(() -> work(start));
+            }
+        }
+        return new Result(System.nanoTime() - start);
+    }
+
+    /**
+     * Connection loop: claims the next request, waits until it is due, sends it and records the latency.
+     *
+     * @param start Start of the run in nanoseconds
+     */
+    private void work(long start) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long end = start + durationNanos;
+        while (true) {
+            long index = next.getAndIncrement();
+            if (index >= maxRequests) {
+                return;
+            }
+            long due;
+            if (rate > 0) {
+                due = start + (long) (index * (1e9 / rate));
+                if (due >= end) {
+                    return;
+                }
+                long now;
+                while ((now = System.nanoTime()) < due) {
+                    LockSupport.parkNanos(due - now);
+                }
+            } else {
+                due = System.nanoTime();
+                if (due >= end) {
+                    return;
+                }
+            }
+
+            String request = request(index, random);
+            try {
+                String reply = send(request);
+                latencies.record(System.nanoTime() - due);
+                if (reply.startsWith("Accept#")) {
+                    accepted.increment();
+                } else if (reply.equals(AdmissionController.BUSY_RESPONSE)) {
+                    busy.increment();
+                } else {
+                    rejected.increment();
+                }
+            } catch (IOException e) {
+                errors.increment();
+            }
+        }
+    }
+
+    /**
+     * Builds a registration request.
+     *
+     * @param index Number of the request, which selects its password
+     * @param random Source of sizes and duplicates
+     * @return The request
+     */
+    String request(long index, Random random) {
+        String name = null;
+        long known = Math.min(uniqueNames.get(), RECENT_NAMES);
+        if (known > 0 && random.nextDouble() < duplicateRatio) {
+            // Null if another thread has claimed the slot but not yet filled it
+            name = recentNames.get(random.nextInt((int) known));
+        }
+        if (name == null) {
+            // Unique part first, padded to the drawn length
+            String unique = runId + "-" + Long.toString(index, 36);
+            int size = nameSizes.next(random);
+            name = size > unique.length() ? unique + filler.substring(0, size - unique.length()) : unique;
+            recentNames.set((int) (uniqueNames.getAndIncrement() % RECENT_NAMES), name);
+        }
+        String description = filler.substring(0, descriptionSizes.next(random));
+        return name + "#" + dates[random.nextInt(dates.length)] + "#12:00#" + description + "#"
+            + passwords.get((int) index) + "#";
+    }
+
+    /**
+     * Sends one request on a new connection and reads the reply.
+     *
+     * @param request The request, as a text record
+     * @return The reply
+     * @throws IOException If connecting, sending or reading fails
+     */
+    private String send(String request) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setSoTimeout(REPLY_TIMEOUT_MILLIS);
+            OutputStream out = socket.getOutputStream();
+            out.write(binary ? BinaryRequest.fromText(request) : request.getBytes(StandardCharsets.UTF_8));
+            socket.shutdownOutput();
+            byte[] reply = socket.getInputStream().readNBytes(MAX_REPLY_SIZE);
+            return new String(reply, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Runs the load generator from command-line options and reports the results.
+     *
+     * @param port Server port
+     * @param options Load flags, including {@code --host}, {@code --output} and {@code --format}
+     * @throws IOException If the password file cannot be read or the results cannot be written
+     * @throws InterruptedException If interrupted during the run
+     */
+    public static void run(int port, ServerOptions options) throws IOException, InterruptedException {
+        LoadGenerator generator = new LoadGenerator(options.get(HOST, "localhost"), port, options);
+        Result result = generator.run();
+        System.out.print(result.toText());
+
+        String output = options.get(OUTPUT, null);
+        if (output != null) {
+            String format = options.get(FORMAT, output.endsWith(".json") ? "json" : "csv");
+            String content = switch (format) {
+                case "json" -> result.toJson();
+                case "csv" -> result.toCsv();
+                default -> throw new IllegalArgumentException("Unknown format: " + format);
+            };
+            Files.writeString(Paths.get(output), content, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Distribution of lengths, given as {@code fixed:<n>}, {@code uniform:<min>-<max>}
+     * or {@code exponential:<mean>[-<max>]}.
+     */
+    static final class SizeDistribution {
+        private final String kind;
+        private final int min;
+        private final int max;
+        private final double mean;
+
+        /**
+         * Constructs a distribution.
+         *
+         * @param kind Name of the distribution
+         * @param min Smallest length
+         * @param max Largest length
+         * @param mean Mean length of the exponential distribution
+         */
+        private SizeDistribution(String kind, int min, int max, double mean) {
+            this.kind = kind;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+        }
+
+        /**
+         * Parses a distribution.
+         *
+         * @param spec The distribution, for example {@code uniform:8-32}
+         * @return The distribution
+         * @throws IllegalArgumentException If the distribution is invalid
+         */
+        static SizeDistribution parse(String spec) {
+            int colon = spec.indexOf(':');
+            String kind = colon < 0 ? "fixed" : spec.substring(0, colon);
+            String[] bounds = spec.substring(colon + 1).split("-");
+            try {
+                int first = Integer.parseInt(bounds[0]);
+                int second = bounds.length > 1 ? Integer.parseInt(bounds[1]) : first;
+                if (first < 1 || second < first || bounds.length > 2) {
+                    throw new IllegalArgumentException("Invalid size range: " + spec);
+                }
+                return switch (kind) {
+                    case "fixed" -> new SizeDistribution(kind, first, first, first);
+                    case "uniform" -> new SizeDistribution(kind, first, second, (first + second) / 2.0);
+                    case "exponential" -> new SizeDistribution(kind, 1, bounds.length > 1 ? second : first * 10, first);
+                    default -> throw new IllegalArgumentException("Unknown size distribution: " + spec);
+                };
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid size: " + spec, e);
+            }
+        }
+
+        /**
+         * Draws a length.
+         *
+         * @param random Source of randomness
+         * @return A length between the smallest and the largest
+         */
+        int next(Random random) {
+            return switch (kind) {
+                case "uniform" -> min + random.nextInt(max - min + 1);
+                case "exponential" -> (int) Math.min(max, Math.max(min, Math.round(-mean * Math.log(1 - random.nextDouble()))));
+                default -> min;
+            };
+        }
+
+        /**
+         * Returns the largest length drawn.
+         *
+         * @return The largest length
+         */
+        int max() {
+            return max;
+        }
+    }
+
+    /**
+     * Results of a run.
+     */
+    public final class Result {
+        private final long elapsedNanos;
+
+        /**
+         * Constructs the results of the finished run.
+         *
+         * @param elapsedNanos Length of the run in nanoseconds
+         */
+        Result(long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns the summary as ordered name and value pairs; latencies are in microseconds.
+         *
+         * @return The summary
+         */
+        public Map<String, Object> summary() {
+            double seconds = elapsedNanos / 1e9;
+            long completed = latencies.count();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("connections", connections);
+            summary.put("target_rate", rate);
+            summary.put("protocol", binary ? "binary" : "text");
+            summary.put("duration_s", round(seconds));
+            summary.put("completed", completed);
+            summary.put("accepted", accepted.sum());
+            summary.put("rejected", rejected.sum());
+            summary.put("busy", busy.sum());
+            summary.put("errors", errors.sum());
+            summary.put("throughput_rps", round(completed / seconds));
+            summary.put("mean_us", round(latencies.mean() / 1000));
+            summary.put("p50_us", round(latencies.percentile(0.5) / 1000.0));
+            summary.put("p90_us", round(latencies.percentile(0.9) / 1000.0));
+            summary.put("p99_us", round(latencies.percentile(0.99) / 1000.0));
+            summary.put("p999_us", round(latencies.percentile(0.999) / 1000.0));
+            summary.put("max_us", round(latencies.max() / 1000.0));
+            return summary;
+        }
+
+        /**
+         * Formats the summary for the console.
+         *
+         * @return One {@code name: value} line per entry
+         */
+        public String toText() {
+            StringBuilder text = new StringBuilder();
+            summary().forEach((name, value) -> text.append(name).append(": ").append(value).append('\n'));
+            return text.toString();
+        }
+
+        /**
+         * Formats the summary as CSV: a header line and a value line, so runs can be appended to one file.
+         *
+         * @return The CSV
+         */
+        public String toCsv() {
+            Map<String, Object> summary = summary();
+            return String.join(",", summary.keySet()) + "\n"
+                + String.join(",", summary.values().stream().map(String::valueOf).toList()) + "\n";
+        }
+
+        /**
+         * Formats the summary as a JSON object.
+         *
+         * @return The JSON
+         */
+        public String toJson() {
+            StringJoiner json = new StringJoiner(",\n  ", "{\n  ", "\n}\n");
+            summary().forEach((name, value) -> json.add("\"" + name + "\": "
+                + (value instanceof String ? "\"" + value + "\"" : value)));
+            return json.toString();
+        }
+
+        /**
+         * Rounds to one decimal.
+         *
+         * @param value The value
+         * @return The rounded value
+         */
+        private static double round(double value) {
+            return Math.round(value * 10) / 10.0;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * JUnit 5 test for LoadGenerator.
+ */
+public class LoadGeneratorTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Writes a password file with the given number of passwords.
+     */
+    private Path passwords(int count) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add("pw" + i);
+        }
+        return Files.write(dir.resolve("passwords.txt"), lines);
+    }
+
+    @Test
+    public void testSizeDistributions() {
+        Random random = new Random(1);
+        LoadGenerator.SizeDistribution fixed = LoadGenerator.SizeDistribution.parse("fixed:12");
+        LoadGenerator.SizeDistribution uniform = LoadGenerator.SizeDistribution.parse("uniform:5-9");
+        LoadGenerator.SizeDistribution exponential = LoadGenerator.SizeDistribution.parse("exponential:100-400");
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(12, fixed.next(random));
+            int size = uniform.next(random);
+            assertTrue(size >= 5 && size <= 9);
+            size = exponential.next(random);
+            assertTrue(size >= 1 && size <= 400);
+        }
+        assertEquals(12, LoadGenerator.SizeDistribution.parse("12").next(random));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.SizeDistribution.parse("uniform:9-5"));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.SizeDistribution.parse("normal:5"));
+    }
+
+    @Test
+    public void testRequestsAreValidAndUseThePasswordsInOrder() throws IOException {
+        LoadGenerator generator = new LoadGenerator("localhost", 1, ServerOptions.parse(new String[] {
+            "--passwords=" + passwords(3), "--name-size=uniform:20-40", "--description-size=fixed:64"}));
+        Random random = new Random(1);
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            String[] fields = generator.request(i, random).split("#", -1);
+            assertEquals(6, fields.length);
+            assertTrue(EventStore.EventValidator.validate(fields[0], fields[1], fields[2], fields[3]));
+            assertTrue(fields[0].length() >= 20 && fields[0].length() <= 40);
+            assertEquals(64, fields[3].length());
+            assertEquals("pw" + i, fields[4]);
+            assertTrue(names.add(fields[0]));
+        }
+    }
+
+    @Test
+    public void testDuplicatesReuseRecentNames() throws IOException {
+        LoadGenerator generator = new LoadGenerator("localhost", 1, ServerOptions.parse(new String[] {
+            "--passwords=" + passwords(2000), "--duplicates=1"}));
+        Random random = new Random(1);
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            names.add(generator.request(i, random).split("#")[0]);
+        }
+        // Every request after the first reuses its name
+        assertEquals(1, names.size());
+    }
+
+    @Test
+    public void testRunAgainstAStubServer() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            Thread stub = new Thread(() -> {
+                int count = 0;
+                while (!server.isClosed()) {
+                    try (Socket socket = server.accept()) {
+                        socket.getInputStream().readAllBytes();
+                        String reply = count++ % 2 == 0 ? "Accept#" + count + "#" : AdmissionController.BUSY_RESPONSE;
+                        socket.getOutputStream().write(reply.getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+            stub.setDaemon(true);
+            stub.start();
+
+            Path csv = dir.resolve("results.csv");
+            LoadGenerator.run(server.getLocalPort(), ServerOptions.parse(new String[] {
+                "--load", "--passwords=" + passwords(40), "--connections=4", "--rate=400", "--output=" + csv}));
+            List<String> lines = Files.readAllLines(csv);
+            assertEquals(2, lines.size());
+            List<String> header = List.of(lines.get(0).split(","));
+            String[] values = lines.get(1).split(",");
+            assertEquals("40", values[header.indexOf("completed")]);
+            assertEquals("20", values[header.indexOf("accepted")]);
+            assertEquals("20", values[header.indexOf("busy")]);
+            assertEquals("0", values[header.indexOf("errors")]);
+            assertEquals("400", values[header.indexOf("target_rate")]);
+        }
+    }
+
+    @Test
+    public void testJsonOutput() throws IOException {
+        LoadGenerator generator = new LoadGenerator("localhost", 1, ServerOptions.parse(new String[] {
+            "--passwords=" + passwords(1)}));
+        String json = generator.new Result(1_000_000_000L).toJson();
+        assertTrue(json.startsWith("{\n  \"connections\": 16,\n"));
+        assertTrue(json.contains("\"p999_us\": 0.0"));
+        assertTrue(json.endsWith("}\n"));
+    }
+}
@@ -0,0 +1,167 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * A file mapped into memory in 1 GB segments so that files larger than 2 GB
+ * can be addressed with long offsets. Longs are accessed at 8-byte aligned
+ * offsets, which never straddle a segment, and can be updated atomically.
+ */
+public class MappedFile implements Closeable {
+
+    /**
+     * Number of address bits within one segment.
+     */
+    private static final int SEGMENT_BITS = 30;
+
+    /**
+     * Size of one mapped segment in bytes.
+     */
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+    /**
+     * Provides atomic access to longs in a direct buffer.
+     */
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    /**
+     * Channel the segments were mapped from.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Mapped segments, in file order.
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Size of the mapping in bytes.
+     */
+    private final long size;
+
+    /**
+     * Maps an existing file read-only.
+     *
+     * @param path The file
+     * @return The mapping
+     * @throws IOException If the file cannot be mapped
+     */
+    public static MappedFile openReadOnly(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new MappedFile(channel, FileChannel.MapMode.READ_ONLY, channel.size());
+    }
+
+    /**
+     * Maps a file for reading and writing, creating or extending it to the given size.
+     *
+     * @param path The file
+     * @param size Size of the mapping in bytes
+     * @return The mapping
+     * @throws IOException If the file cannot be mapped
+     */
+    public static MappedFile openReadWrite(Path path, long size) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        return new MappedFile(channel, FileChannel.MapMode.READ_WRITE, size);
+    }
+
+    /**
+     * Maps the first {@code size} bytes of a channel.
+     *
+     * @param channel The open channel
+     * @param mode Mapping mode
+     * @param size Size of the mapping in bytes
+     * @throws IOException If mapping fails
+     */
+    private MappedFile(FileChannel channel, FileChannel.MapMode mode, long size) throws IOException {
+        this.channel = channel;
+        this.size = size;
+        int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+        this.segments = new MappedByteBuffer[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                long offset = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(mode, offset, Math.min(SEGMENT_SIZE, size - offset));
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the size of the mapping.
+     *
+     * @return Size in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Reads one byte.
+     *
+     * @param offset Offset in the file
+     * @return The byte
+     */
+    public byte getByte(long offset) {
+        return segments[(int) (offset >>> SEGMENT_BITS)].get((int) (offset & (SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * Reads an aligned long with volatile semantics.
+     *
+     * @param offset 8-byte aligned offset in the file
+     * @return The value
+     */
+    public long getLong(long offset) {
+        return (long) LONGS.getVolatile(segments[(int) (offset >>> SEGMENT_BITS)], (int) (offset & (SEGMENT_SIZE - 1)));
+    }
+
+    /**
+     * Writes an aligned long with volatile semantics.
+     *
+     * @param offset 8-byte aligned offset in the file
+     * @param value The value
+     */
+    public void putLong(long offset, long value) {
+        LONGS.setVolatile(segments[(int) (offset >>> SEGMENT_BITS)], (int) (offset & (SEGMENT_SIZE - 1)), value);
+    }
+
+    /**
+     * Atomically replaces an aligned long if it has the expected value.
+     *
+     * @param offset 8-byte aligned offset in the file
+     * @param expected Expected current value
+     * @param value New value
+     * @return True if the value was replaced
+     */
+    public boolean compareAndSetLong(long offset, long expected, long value) {
+        return LONGS.compareAndSet(segments[(int) (offset >>> SEGMENT_BITS)], (int) (offset & (SEGMENT_SIZE - 1)), expected, value);
+    }
+
+    /**
+     * Writes any modified pages back to the file.
+     */
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,523 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+/**
+ * One-time password set backed by memory-mapped files, so consumed passwords
+ * stay consumed across server restarts.
+ * <p>
+ * The password file itself is mapped read-only and never copied onto the heap.
+ * An open-addressing index of file offsets is built once into
+ * {@code <password file>.idx} and reused on later starts, so startup does not
+ * depend on the size of the password file. Consumption is recorded in
+ * {@code <password file>.used}, a bitmap with one bit per index slot; a
+ * password is consumed by atomically setting its bit in the mapped page, so no
+ * file rewrite is needed and the operating system writes the page back even if
+ * the process is killed. The bitmap is also forced to disk about once a second.
+ * <p>
+ * Both files record the size and modification time of the password file. The
+ * index is rebuilt if the password file changes, but the bitmap is not
+ * discarded silently: the server refuses to start until it is removed.
+ */
+public class MappedPasswordTable implements PasswordStore, Closeable {
+
+    /**
+     * Logger for index and bitmap maintenance.
+     */
+    private static final Logger logger = Logger.getLogger(MappedPasswordTable.class.getName());
+
+    /**
+     * Suffix of the index file.
+     */
+    public static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * Suffix of the consumption bitmap file.
+     */
+    public static final String BITMAP_SUFFIX = ".used";
+
+    /**
+     * Identifies (and versions) the index and bitmap files.
+     */
+    private static final long MAGIC = 0x5850_5057_4944_5801L;
+
+    /**
+     * Size of the header of both files in bytes.
+     */
+    private static final int HEADER_SIZE = 64;
+
+    // Header field offsets
+    private static final int MAGIC_OFFSET = 0;
+    private static final int FILE_SIZE_OFFSET = 8;
+    private static final int FILE_TIME_OFFSET = 16;
+    private static final int SEED_OFFSET = 24;
+    private static final int SLOT_COUNT_OFFSET = 32;
+    private static final int UNIQUE_COUNT_OFFSET = 40;
+
+    /**
+     * Number of low bits of a slot that hold a hash tag; the rest hold the file offset plus one.
+     */
+    private static final int TAG_BITS = 24;
+
+    /**
+     * Largest password file that can be indexed, limited by the offset bits of a slot.
+     */
+    private static final long MAX_FILE_SIZE = 1L << (64 - TAG_BITS - 1);
+
+    /**
+     * Smallest number of index slots.
+     */
+    private static final long MIN_SLOTS = 64;
+
+    /**
+     * How often the bitmap is forced to disk, in milliseconds.
+     */
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    /**
+     * The password file, mapped read-only.
+     */
+    private final MappedFile passwords;
+
+    /**
+     * The index of password offsets.
+     */
+    private final MappedFile index;
+
+    /**
+     * The consumption bitmap.
+     */
+    private final MappedFile bitmap;
+
+    /**
+     * Seed mixed into every hash; stored in both files.
+     */
+    private final long seed;
+
+    /**
+     * Number of index slots minus one.
+     */
+    private final long mask;
+
+    /**
+     * Number of passwords not yet consumed.
+     */
+    private final AtomicInteger remaining;
+
+    /**
+     * Set when the bitmap has changed since it was last forced to disk.
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * Background thread that forces the bitmap to disk.
+     */
+    private final Thread flusher;
+
+    /**
+     * Opens a password file, building its index if needed and creating or
+     * reopening its consumption bitmap.
+     *
+     * @param passwordFile Path to the password file
+     * @throws IOException If the files cannot be mapped or the bitmap belongs to a different password file
+     */
+    public MappedPasswordTable(Path passwordFile) throws IOException {
+        long fileSize = Files.size(passwordFile);
+        long fileTime = Files.getLastModifiedTime(passwordFile).toMillis();
+        if (fileSize >= MAX_FILE_SIZE) {
+            throw new IOException("Password file too large to index: " + passwordFile);
+        }
+        Path indexFile = sibling(passwordFile, INDEX_SUFFIX);
+        Path bitmapFile = sibling(passwordFile, BITMAP_SUFFIX);
+
+        MappedFile passwords = MappedFile.openReadOnly(passwordFile);
+        MappedFile index = null;
+        try {
+            // An existing bitmap fixes the seed and slot layout; the index must match it
+            long[] bitmapHeader = readHeader(bitmapFile);
+            if (bitmapHeader != null && (bitmapHeader[1] != fileSize || bitmapHeader[2] != fileTime)) {
+                throw new IOException("Password file " + passwordFile + " changed since " + bitmapFile
+                    + " was written; remove " + bitmapFile + " to reset consumed passwords");
+            }
+            long seed = bitmapHeader != null ? bitmapHeader[3] : new SecureRandom().nextLong();
+
+            long[] indexHeader = readHeader(indexFile);
+            if (indexHeader == null || indexHeader[1] != fileSize || indexHeader[2] != fileTime
+                    || indexHeader[3] != seed || (bitmapHeader != null && indexHeader[4] != bitmapHeader[4])) {
+                buildIndex(passwords, indexFile, fileSize, fileTime, seed);
+            }
+            index = MappedFile.openReadOnly(indexFile);
+            long slotCount = index.getLong(SLOT_COUNT_OFFSET);
+            if (bitmapHeader != null && bitmapHeader[4] != slotCount) {
+                throw new IOException("Index " + indexFile + " does not match " + bitmapFile);
+            }
+
+            this.passwords = passwords;
+            this.index = index;
+            this.seed = seed;
+            this.mask = slotCount - 1;
+            this.bitmap = openBitmap(bitmapFile, bitmapHeader == null, fileSize, fileTime, seed, slotCount);
+        } catch (IOException | RuntimeException e) {
+            passwords.close();
+            if (index != null) {
+                index.close();
+            }
+            throw e;
+        }
+
+        this.remaining = new AtomicInteger((int) (index.getLong(UNIQUE_COUNT_OFFSET) - countConsumed()));
+
+        flusher = new Thread(this::flushPeriodically, "xperience-password-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Consumes a password if it is present and unused.
+     *
+     * @param password The password to consume
+     * @return True if this call consumed the password
+     */
+    @Override
+    public boolean consume(String password) {
+        byte[] bytes = password.getBytes(StandardCharsets.UTF_8);
+        long slot = find(bytes);
+        if (slot < 0) {
+            return false;
+        }
+
+        // Atomically set the slot's bit in the mapped bitmap
+        long word = HEADER_SIZE + (slot >>> 6) * Long.BYTES;
+        long bit = 1L << (slot & 63);
+        while (true) {
+            long current = bitmap.getLong(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+            if (bitmap.compareAndSetLong(word, current, current | bit)) {
+                remaining.decrementAndGet();
+                dirty.set(true);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of passwords that have not been consumed.
+     *
+     * @return Number of available passwords
+     */
+    @Override
+    public int size() {
+        return remaining.get();
+    }
+
+    /**
+     * Forces the bitmap to disk and unmaps the files.
+     *
+     * @throws IOException If a file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        flusher.interrupt();
+        bitmap.force();
+        bitmap.close();
+        index.close();
+        passwords.close();
+    }
+
+    /**
+     * Finds the index slot of a password.
+     *
+     * @param password UTF-8 bytes of the password
+     * @return The slot, or -1 if the password is not in the file
+     */
+    private long find(byte[] password) {
+        long hash = Hashing.hash(seed, password, 0, password.length);
+        long tag = hash & ((1L << TAG_BITS) - 1);
+        for (long i = hash & mask; ; i = (i + 1) & mask) {
+            long entry = index.getLong(HEADER_SIZE + i * Long.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            if ((entry & ((1L << TAG_BITS) - 1)) == tag && lineEquals(passwords, (entry >>> TAG_BITS) - 1, password)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Builds the index of a password file into a temporary file and moves it into place.
+     *
+     * @param passwords The mapped password file
+     * @param indexFile Path of the index
+     * @param fileSize Size of the password file
+     * @param fileTime Modification time of the password file
+     * @param seed Hash seed
+     * @throws IOException If the index cannot be written
+     */
+    private static void buildIndex(MappedFile passwords, Path indexFile, long fileSize, long fileTime, long seed)
+            throws IOException {
+        long start = System.nanoTime();
+
+        // First pass counts candidate lines to size the table at most half full
+        long lines = 0;
+        for (long offset = 0; offset < fileSize; ) {
+            long end = lineEnd(passwords, offset);
+            if (isPassword(passwords, offset, end)) {
+                lines++;
+            }
+            offset = end + 1;
+        }
+        long slotCount = Math.max(MIN_SLOTS, Long.highestOneBit(Math.max(1, lines * 2 - 1)) << 1);
+        long mask = slotCount - 1;
+
+        // Second pass inserts each distinct password's offset
+        Path temp = sibling(indexFile, ".tmp");
+        long unique = 0;
+        try (MappedFile index = MappedFile.openReadWrite(temp, HEADER_SIZE + slotCount * Long.BYTES)) {
+            for (long offset = 0; offset < fileSize; ) {
+                long end = lineEnd(passwords, offset);
+                if (isPassword(passwords, offset, end)) {
+                    long hash = hash(seed, passwords, offset, end);
+                    long entry = ((offset + 1) << TAG_BITS) | (hash & ((1L << TAG_BITS) - 1));
+                    for (long i = hash & mask; ; i = (i + 1) & mask) {
+                        long slot = HEADER_SIZE + i * Long.BYTES;
+                        long existing = index.getLong(slot);
+                        if (existing == 0) {
+                            index.putLong(slot, entry);
+                            unique++;
+                            break;
+                        }
+                        if (sameLine(passwords, (existing >>> TAG_BITS) - 1, offset, end)) {
+                            break;
+                        }
+                    }
+                }
+                offset = end + 1;
+            }
+            index.putLong(FILE_SIZE_OFFSET, fileSize);
+            index.putLong(FILE_TIME_OFFSET, fileTime);
+            index.putLong(SEED_OFFSET, seed);
+            index.putLong(SLOT_COUNT_OFFSET, slotCount);
+            index.putLong(UNIQUE_COUNT_OFFSET, unique);
+
+            // Write the magic last so a partially written index is never trusted
+            index.putLong(MAGIC_OFFSET, MAGIC);
+            index.force();
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Indexed " + unique + " passwords in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Maps the consumption bitmap, writing its header if it is new.
+     *
+     * @param bitmapFile Path of the bitmap
+     * @param create True if the bitmap does not exist yet
+     * @param fileSize Size of the password file
+     * @param fileTime Modification time of the password file
+     * @param seed Hash seed
+     * @param slotCount Number of index slots
+     * @return The mapped bitmap
+     * @throws IOException If the bitmap cannot be mapped
+     */
+    private static MappedFile openBitmap(Path bitmapFile, boolean create, long fileSize, long fileTime,
+            long seed, long slotCount) throws IOException {
+        if (!create) {
+            return MappedFile.openReadWrite(bitmapFile, HEADER_SIZE + slotCount / 8);
+        }
+        Path temp = sibling(bitmapFile, ".tmp");
+        try (MappedFile bitmap = MappedFile.openReadWrite(temp, HEADER_SIZE + slotCount / 8)) {
+            bitmap.putLong(FILE_SIZE_OFFSET, fileSize);
+            bitmap.putLong(FILE_TIME_OFFSET, fileTime);
+            bitmap.putLong(SEED_OFFSET, seed);
+            bitmap.putLong(SLOT_COUNT_OFFSET, slotCount);
+            bitmap.putLong(MAGIC_OFFSET, MAGIC);
+            bitmap.force();
+        }
+        Files.move(temp, bitmapFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return MappedFile.openReadWrite(bitmapFile, HEADER_SIZE + slotCount / 8);
+    }
+
+    /**
+     * Reads the header of an index or bitmap file.
+     *
+     * @param file The file
+     * @return Magic, file size, file time, seed and slot count, or null if the file is missing or not valid
+     * @throws IOException If the file exists but cannot be read
+     */
+    private static long[] readHeader(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+            return null;
+        }
+        try (MappedFile mapped = MappedFile.openReadOnly(file)) {
+            if (mapped.getLong(MAGIC_OFFSET) != MAGIC) {
+                return null;
+            }
+            long slotCount = mapped.getLong(SLOT_COUNT_OFFSET);
+            if (slotCount < MIN_SLOTS || Long.bitCount(slotCount) != 1) {
+                return null;
+            }
+            return new long[] {
+                MAGIC, mapped.getLong(FILE_SIZE_OFFSET), mapped.getLong(FILE_TIME_OFFSET),
+                mapped.getLong(SEED_OFFSET), slotCount
+            };
+        }
+    }
+
+    /**
+     * Counts the bits already set in the bitmap.
+     *
+     * @return Number of consumed passwords
+     */
+    private long countConsumed() {
+        long consumed = 0;
+        for (long word = HEADER_SIZE; word < bitmap.size(); word += Long.BYTES) {
+            consumed += Long.bitCount(bitmap.getLong(word));
+        }
+        return consumed;
+    }
+
+    /**
+     * Forces the bitmap to disk whenever it has changed, until interrupted.
+     */
+    private void flushPeriodically() {
+        try {
+            while (true) {
+                Thread.sleep(FLUSH_INTERVAL_MILLIS);
+                if (dirty.getAndSet(false)) {
+                    bitmap.force();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Cannot flush password bitmap", e);
+        }
+    }
+
+    /**
+     * Returns the path of a file next to another one.
+     *
+     * @param file The original file
+     * @param suffix Suffix appended to its name
+     * @return The sibling path
+     */
+    private static Path sibling(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName() + suffix);
+    }
+
+    /**
+     * Returns the offset just past the end of a line; lines end at '\n', '\r' or the end of the file.
+     *
+     * @param file The mapped file
+     * @param offset Offset of the start of the line
+     * @return Offset of the terminator, or the file size
+     */
+    private static long lineEnd(MappedFile file, long offset) {
+        long end = offset;
+        while (end < file.size()) {
+            byte b = file.getByte(end);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Checks whether a line is a usable password: not empty and without '#'.
+     *
+     * @param file The mapped file
+     * @param start Offset of the line
+     * @param end Offset just past the line
+     * @return True if the line is a password
+     */
+    private static boolean isPassword(MappedFile file, long start, long end) {
+        if (start == end) {
+            return false;
+        }
+        for (long i = start; i < end; i++) {
+            if (file.getByte(i) == '#') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the line at an offset is exactly the given password.
+     *
+     * @param file The mapped file
+     * @param offset Offset of the line
+     * @param password UTF-8 bytes of the password
+     * @return True if they are equal
+     */
+    private static boolean lineEquals(MappedFile file, long offset, byte[] password) {
+        if (offset + password.length > file.size()) {
+            return false;
+        }
+        for (int i = 0; i < password.length; i++) {
+            // A password never spans a line terminator
+            if (file.getByte(offset + i) != password[i] || password[i] == '\n' || password[i] == '\r') {
+                return false;
+            }
+        }
+        long end = offset + password.length;
+        return end == file.size() || file.getByte(end) == '\n' || file.getByte(end) == '\r';
+    }
+
+    /**
+     * Checks whether the line at an offset equals another line of the same file.
+     *
+     * @param file The mapped file
+     * @param offset Offset of the first line
+     * @param start Offset of the second line
+     * @param end Offset just past the second line
+     * @return True if they are equal
+     */
+    private static boolean sameLine(MappedFile file, long offset, long start, long end) {
+        long length = end - start;
+        if (offset + length > file.size()) {
+            return false;
+        }
+        for (long i = 0; i < length; i++) {
+            if (file.getByte(offset + i) != file.getByte(start + i)) {
+                return false;
+            }
+        }
+        long lineEnd = offset + length;
+        return lineEnd == file.size() || file.getByte(lineEnd) == '\n' || file.getByte(lineEnd) == '\r';
+    }
+
+    /**
+     * Computes the seeded hash of a range of a mapped file, equal to the hash of the same bytes in an array.
+     *
+     * @param seed Hash seed
+     * @param file The mapped file
+     * @param start First byte
+     * @param end Offset just past the last byte
+     * @return The hash
+     */
+    private static long hash(long seed, MappedFile file, long start, long end) {
+        long hash = Hashing.start(seed, end - start);
+        for (long i = start; i < end; i++) {
+            hash = Hashing.step(hash, file.getByte(i) & 0xFF);
+        }
+        return Hashing.mix(hash);
+    }
+}
@@ -0,0 +1,182 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.lang.invoke.*;
+import java.security.*;
+import java.util.*;
+
+/**
+ * In-process knowledge of which event names are already taken, kept in front
+ * of the database.
+ * A Bloom filter over every known name answers "definitely new" without a
+ * query; a "maybe" still has to be confirmed by the database. A bounded LRU
+ * of recently seen names answers "definitely taken" for repeated names. Both
+ * only ever learn names, matching a table that only grows, and neither is
+ * ever trusted to accept a name: the UNIQUE constraint remains the authority.
+ * Names are compared in lower case, like the case-insensitive collation of
+ * the name column. That collation also equates some names that lower-casing
+ * does not, such as accented and unaccented letters; those are answered
+ * "definitely new" and left to the constraint.
+ */
+public class NameFilter {
+
+    /**
+     * Default number of recently seen names to remember.
+     */
+    public static final int DEFAULT_RECENT_NAMES = 10000;
+
+    /**
+     * Bits per expected name, for a false positive rate of about 1%.
+     */
+    private static final int BITS_PER_NAME = 10;
+
+    /**
+     * Number of bit positions set per name.
+     */
+    private static final int HASHES = 7;
+
+    /**
+     * Largest number of words in the bit array (512 MB).
+     */
+    private static final int MAX_WORDS = 1 << 26;
+
+    /**
+     * Provides atomic access to the words of the bit array.
+     */
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Random seed mixed into every hash.
+     */
+    private final long seed = new SecureRandom().nextLong();
+
+    /**
+     * Bloom filter bits; the length is a power of two.
+     */
+    private final long[] bits;
+
+    /**
+     * Number of bit positions minus one.
+     */
+    private final long mask;
+
+    /**
+     * Recently seen names, least recently used first. Guarded by itself.
+     */
+    private final LinkedHashMap<String, Boolean> recent;
+
+    /**
+     * Constructs an empty filter.
+     *
+     * @param expectedNames Number of names the Bloom filter is sized for; more still work, with more false positives
+     * @param recentNames Number of recently seen names to remember
+     */
+    public NameFilter(long expectedNames, int recentNames) {
+        long bitCount = Long.highestOneBit(Math.max(64, expectedNames * BITS_PER_NAME - 1)) << 1;
+        this.bits = new long[(int) Math.min(MAX_WORDS, bitCount >>> 6)];
+        this.mask = (long) bits.length * 64 - 1;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentNames;
+            }
+        };
+    }
+
+    /**
+     * Records that a name is taken.
+     *
+     * @param name The name
+     */
+    public void add(String name) {
+        String key = key(name);
+        addToBloomFilter(key);
+        synchronized (recent) {
+            recent.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Records a name loaded from the database at startup, without touching the recent names.
+     *
+     * @param name The name
+     */
+    public void load(String name) {
+        addToBloomFilter(key(name));
+    }
+
+    /**
+     * Checks whether a name was recently seen as taken.
+     *
+     * @param name The name
+     * @return True if the name is definitely taken
+     */
+    public boolean isKnown(String name) {
+        synchronized (recent) {
+            return recent.get(key(name)) != null;
+        }
+    }
+
+    /**
+     * Checks whether a name may be taken.
+     *
+     * @param name The name
+     * @return False if the name is definitely new; true if it has to be confirmed
+     */
+    public boolean mightContain(String name) {
+        long hash = hash(key(name));
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = (hash + i * step) & mask;
+            long word = (long) WORDS.getVolatile(bits, (int) (bit >>> 6));
+            if ((word & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the form in which a name is remembered.
+     *
+     * @param name The name
+     * @return The name in lower case
+     */
+    static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Sets the Bloom filter bits of a name.
+     *
+     * @param name The name
+     */
+    private void addToBloomFilter(String name) {
+        long hash = hash(name);
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = (hash + i * step) & mask;
+            int index = (int) (bit >>> 6);
+            long current;
+            do {
+                current = (long) WORDS.getVolatile(bits, index);
+            } while ((current & (1L << bit)) == 0 && !WORDS.compareAndSet(bits, index, current, current | (1L << bit)));
+        }
+    }
+
+    /**
+     * Computes the seeded 64-bit hash of a name.
+     *
+     * @param name The name
+     * @return The hash
+     */
+    private long hash(String name) {
+        return Hashing.hash(seed, name);
+    }
+}
@@ -0,0 +1,75 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JUnit 5 test for NameFilter.
+ */
+public class NameFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        NameFilter filter = new NameFilter(100000, 100);
+        for (int i = 0; i < 100000; i++) {
+            filter.load("Event" + i);
+        }
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(filter.mightContain("Event" + i), "Event" + i);
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        NameFilter filter = new NameFilter(100000, 100);
+        for (int i = 0; i < 100000; i++) {
+            filter.load("Event" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("Other" + i)) {
+                falsePositives++;
+            }
+        }
+        int rate = falsePositives;
+        assertTrue(rate < 2000, () -> "False positive rate too high: " + rate + " in 100000");
+    }
+
+    @Test
+    public void testRecentNamesAreBounded() {
+        NameFilter filter = new NameFilter(1000, 3);
+        filter.add("A");
+        filter.add("B");
+        filter.add("C");
+        assertTrue(filter.isKnown("A"));
+
+        // "B" is now the least recently used and is evicted first
+        filter.add("D");
+        assertTrue(filter.isKnown("A"));
+        assertFalse(filter.isKnown("B"));
+        assertTrue(filter.isKnown("D"));
+        assertTrue(filter.mightContain("B"), () -> "The Bloom filter never forgets");
+
+        // Loaded names are not recent
+        filter.load("E");
+        assertFalse(filter.isKnown("E"));
+        assertTrue(filter.mightContain("E"));
+    }
+
+    @Test
+    public void testNamesIgnoreCase() {
+        NameFilter filter = new NameFilter(1000, 3);
+        filter.add("Party");
+        assertTrue(filter.isKnown("PARTY"));
+        assertTrue(filter.mightContain("pArTy"));
+        filter.load("Gala");
+        assertTrue(filter.mightContain("GALA"));
+    }
+}
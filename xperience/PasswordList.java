@@ -8,15 +8,19 @@
 package xperience;
 
 import java.io.*;
-import java.util.*;
+import java.nio.file.*;
 
 /**
  * Class responsible for managing the list of one-time passwords.
  * This class loads passwords from a file and provides methods to validate and
  * consume passwords as part of the "SeaCure" protocol.
+ * Passwords are kept in a lock-free {@link PasswordTable}, so every client
+ * thread can validate concurrently and each password is consumed at most once.
+ * In persistent mode they are kept in a {@link MappedPasswordTable} instead,
+ * so consumed passwords stay consumed after a restart.
  */
 public class PasswordList {
-    private final Set<String> passwords = new HashSet<>();
+    private final PasswordStore passwords;
     
     /**
      * Constructor that loads passwords from the specified file.
@@ -25,14 +29,33 @@ public class PasswordList {
      * @throws IOException If the file cannot be read
      */
     public PasswordList(String passwordFile) throws IOException {
+        this(passwordFile, false);
+    }
+
+    /**
+     * Constructor that loads passwords from the specified file, optionally
+     * recording consumed passwords in a bitmap file next to it.
+     *
+     * @param passwordFile Path to the file containing passwords
+     * @param persistent True to memory-map the file and persist consumption
+     * @throws IOException If the file cannot be read or its bitmap does not match it
+     */
+    public PasswordList(String passwordFile, boolean persistent) throws IOException {
+        if (persistent) {
+            passwords = new MappedPasswordTable(Paths.get(passwordFile));
+            return;
+        }
+
+        PasswordTable table = new PasswordTable();
         try (BufferedReader reader = new BufferedReader(new FileReader(passwordFile))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 if (!line.isEmpty() && !line.contains("#")) {
-                    passwords.add(line);
+                    table.add(line);
                 }
             }
         }
+        passwords = table;
     }
     
     /**
@@ -47,12 +70,8 @@ public class PasswordList {
             return false;
         }
         
-        if (passwords.contains(password)) {
-            passwords.remove(password);
-            return true;
-        }
-        
-        return false;
+        // Atomic check-and-remove so two clients cannot share a password
+        return passwords.consume(password);
     }
     
     /**
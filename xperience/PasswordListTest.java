@@ -11,6 +11,8 @@ import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 import java.io.*;
 import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -32,8 +34,10 @@ public class PasswordListTest {
     
     @AfterEach
     public void cleanup() throws IOException {
-        // Delete the temporary password file
+        // Delete the temporary password file and its persistent index and bitmap
         Files.deleteIfExists(Paths.get(TEST_PASSWORDS_FILE));
+        Files.deleteIfExists(Paths.get(TEST_PASSWORDS_FILE + MappedPasswordTable.INDEX_SUFFIX));
+        Files.deleteIfExists(Paths.get(TEST_PASSWORDS_FILE + MappedPasswordTable.BITMAP_SUFFIX));
     }
     
     @Test
@@ -92,5 +96,127 @@ public class PasswordListTest {
         assertFalse(passwordList.validateAndConsume(null), () -> "Null password should be rejected");
         assertEquals(3, passwordList.size(), () -> "Password list size should remain unchanged");
     }
+    
+    @Test
+    public void testDuplicatePasswordsInFile() throws IOException {
+        Files.write(Paths.get(TEST_PASSWORDS_FILE), "password1\npassword1\nsecurepass\n".getBytes());
+        PasswordList passwordList = new PasswordList(TEST_PASSWORDS_FILE);
+        
+        assertEquals(2, passwordList.size(), () -> "Duplicate lines should count once");
+        assertTrue(passwordList.validateAndConsume("password1"), () -> "Valid password should be accepted");
+        assertFalse(passwordList.validateAndConsume("password1"), () -> "Duplicate line should not allow reuse");
+    }
+    
+    @Test
+    public void testManyPasswords() throws IOException {
+        StringBuilder passwords = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            passwords.append("pw").append(i).append('\n');
+        }
+        Files.write(Paths.get(TEST_PASSWORDS_FILE), passwords.toString().getBytes());
+        PasswordList passwordList = new PasswordList(TEST_PASSWORDS_FILE);
+        
+        assertEquals(100000, passwordList.size());
+        for (int i = 0; i < 100000; i += 7) {
+            int index = i;
+            assertTrue(passwordList.validateAndConsume("pw" + i), () -> "Password " + index + " should be accepted");
+        }
+        assertFalse(passwordList.validateAndConsume("pw100000"), () -> "Unknown password should be rejected");
+        assertEquals(100000 - 14286, passwordList.size());
+    }
+    
+    @Test
+    public void testConcurrentConsumeOnce() throws Exception {
+        PasswordList passwordList = new PasswordList(TEST_PASSWORDS_FILE);
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        
+        // Many threads race for the same password; exactly one may win
+        Thread[] threads = new Thread[16];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (passwordList.validateAndConsume("securepass")) {
+                    accepted.incrementAndGet();
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertEquals(1, accepted.get(), () -> "Password should be consumed exactly once");
+        assertEquals(2, passwordList.size());
+    }
+    
+    @Test
+    public void testPersistentConsumptionSurvivesReopen() throws IOException {
+        Files.write(Paths.get(TEST_PASSWORDS_FILE), "password1\r\nsecurepass\n\nbad#line\npassword1\nmypassword".getBytes());
+        PasswordList passwordList = new PasswordList(TEST_PASSWORDS_FILE, true);
+        
+        assertEquals(3, passwordList.size(), () -> "Empty, duplicate and # lines should not count");
+        assertTrue(passwordList.validateAndConsume("password1"), () -> "Valid password should be accepted");
+        assertTrue(passwordList.validateAndConsume("mypassword"), () -> "Last line without newline should be accepted");
+        assertFalse(passwordList.validateAndConsume("password1"), () -> "Used password should be rejected");
+        assertFalse(passwordList.validateAndConsume("password"), () -> "Prefix of a password should be rejected");
+        assertFalse(passwordList.validateAndConsume("password1\r\nsecurepass"), () -> "Password spanning lines should be rejected");
+        assertEquals(1, passwordList.size());
+        
+        // A restart sees the same consumed passwords
+        PasswordList reopened = new PasswordList(TEST_PASSWORDS_FILE, true);
+        assertEquals(1, reopened.size(), () -> "Consumed passwords should stay consumed");
+        assertFalse(reopened.validateAndConsume("password1"), () -> "Used password should be rejected after restart");
+        assertTrue(reopened.validateAndConsume("securepass"), () -> "Unused password should be accepted after restart");
+        assertEquals(0, reopened.size());
+    }
+    
+    @Test
+    public void testPersistentRebuildsMissingIndex() throws IOException {
+        PasswordList passwordList = new PasswordList(TEST_PASSWORDS_FILE, true);
+        assertTrue(passwordList.validateAndConsume("securepass"), () -> "Valid password should be accepted");
+        
+        // The index is derived data and is rebuilt to match the bitmap
+        Files.delete(Paths.get(TEST_PASSWORDS_FILE + MappedPasswordTable.INDEX_SUFFIX));
+        PasswordList reopened = new PasswordList(TEST_PASSWORDS_FILE, true);
+        assertEquals(2, reopened.size());
+        assertFalse(reopened.validateAndConsume("securepass"), () -> "Used password should be rejected after rebuild");
+        assertTrue(reopened.validateAndConsume("password1"), () -> "Unused password should be accepted after rebuild");
+    }
+    
+    @Test
+    public void testPersistentRejectsChangedPasswordFile() throws IOException {
+        new PasswordList(TEST_PASSWORDS_FILE, true);
+        Files.write(Paths.get(TEST_PASSWORDS_FILE), "password1\nsecurepass\nmypassword\nnewpassword\n".getBytes());
+        
+        IOException e = assertThrows(IOException.class, () -> new PasswordList(TEST_PASSWORDS_FILE, true));
+        assertTrue(e.getMessage().contains(MappedPasswordTable.BITMAP_SUFFIX), () -> "Error should name the bitmap to remove");
+        
+        // Removing the bitmap resets consumption
+        Files.delete(Paths.get(TEST_PASSWORDS_FILE + MappedPasswordTable.BITMAP_SUFFIX));
+        assertEquals(4, new PasswordList(TEST_PASSWORDS_FILE, true).size());
+    }
+    
+    @Test
+    public void testPersistentManyPasswords() throws IOException {
+        StringBuilder passwords = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            passwords.append("pw").append(i).append('\n');
+        }
+        Files.write(Paths.get(TEST_PASSWORDS_FILE), passwords.toString().getBytes());
+        PasswordList passwordList = new PasswordList(TEST_PASSWORDS_FILE, true);
+        
+        assertEquals(100000, passwordList.size());
+        for (int i = 0; i < 100000; i += 7) {
+            int index = i;
+            assertTrue(passwordList.validateAndConsume("pw" + i), () -> "Password " + index + " should be accepted");
+        }
+        assertFalse(passwordList.validateAndConsume("pw100000"), () -> "Unknown password should be rejected");
+        assertEquals(100000 - 14286, new PasswordList(TEST_PASSWORDS_FILE, true).size());
+    }
 }
-
@@ -0,0 +1,29 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+/**
+ * Set of one-time passwords that can each be consumed once.
+ */
+public interface PasswordStore {
+
+    /**
+     * Consumes a password if it is present and unused.
+     *
+     * @param password The password to consume
+     * @return True if this call consumed the password
+     */
+    boolean consume(String password);
+
+    /**
+     * Returns the number of passwords that have not been consumed.
+     *
+     * @return Number of available passwords
+     */
+    int size();
+}
@@ -0,0 +1,177 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.lang.invoke.*;
+import java.security.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Compact, lock-free set of one-time passwords.
+ * Each password is stored as a 64-bit hash in an open-addressing table of
+ * primitive longs, so memory is 16 bytes per password at the default load
+ * factor and there is no per-entry object. Consuming a password atomically
+ * replaces its hash with a tombstone, so concurrent clients can never consume
+ * the same password twice.
+ * Hashes are seeded with a random value per process; a guess is only accepted
+ * if it matches the full 64-bit hash of a stored password.
+ */
+public class PasswordTable implements PasswordStore {
+
+    /**
+     * Marker for a slot that has never been used.
+     */
+    private static final long EMPTY = 0L;
+
+    /**
+     * Marker for a slot whose password has been consumed.
+     */
+    private static final long CONSUMED = 1L;
+
+    /**
+     * Initial number of slots.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Provides atomic access to the elements of the slot array.
+     */
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Random seed mixed into every hash.
+     */
+    private final long seed = new SecureRandom().nextLong();
+
+    /**
+     * Slot array; a power of two in length, at most half full.
+     */
+    private long[] slots = new long[INITIAL_CAPACITY];
+
+    /**
+     * Number of passwords added, including consumed ones.
+     */
+    private int added;
+
+    /**
+     * Number of passwords not yet consumed.
+     */
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    /**
+     * Adds a password. Not thread-safe; all passwords must be added before the
+     * table is shared with other threads.
+     *
+     * @param password The password to add
+     * @return True if the password was not already in the table
+     */
+    public boolean add(String password) {
+        if ((added + 1) * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        if (!insert(slots, hash(password))) {
+            return false;
+        }
+        added++;
+        remaining.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Consumes a password if it is present and unused.
+     *
+     * @param password The password to consume
+     * @return True if this call consumed the password
+     */
+    @Override
+    public boolean consume(String password) {
+        long hash = hash(password);
+        long[] table = slots;
+        int mask = table.length - 1;
+        for (int i = index(hash, mask); ; i = (i + 1) & mask) {
+            long slot = (long) SLOTS.getVolatile(table, i);
+            if (slot == EMPTY) {
+                return false;
+            }
+            if (slot == hash) {
+                if (SLOTS.compareAndSet(table, i, hash, CONSUMED)) {
+                    remaining.decrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of passwords that have not been consumed.
+     *
+     * @return Number of available passwords
+     */
+    @Override
+    public int size() {
+        return remaining.get();
+    }
+
+    /**
+     * Stores a hash unless it is already present.
+     *
+     * @param table Slot array
+     * @param hash Hash to store
+     * @return True if the hash was stored
+     */
+    private static boolean insert(long[] table, long hash) {
+        int mask = table.length - 1;
+        for (int i = index(hash, mask); ; i = (i + 1) & mask) {
+            if (table[i] == hash) {
+                return false;
+            }
+            if (table[i] == EMPTY) {
+                table[i] = hash;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Moves every stored hash into a larger slot array.
+     *
+     * @param capacity New number of slots
+     */
+    private void resize(int capacity) {
+        long[] grown = new long[capacity];
+        for (long slot : slots) {
+            if (slot != EMPTY && slot != CONSUMED) {
+                insert(grown, slot);
+            }
+        }
+        slots = grown;
+    }
+
+    /**
+     * Returns the first slot to probe for a hash.
+     *
+     * @param hash The hash
+     * @param mask Slot array length minus one
+     * @return Slot index
+     */
+    private static int index(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Computes the seeded 64-bit hash of a password, never equal to a marker value.
+     *
+     * @param password The password
+     * @return The hash
+     */
+    private long hash(String password) {
+        long hash = Hashing.hash(seed, password);
+        return hash == EMPTY || hash == CONSUMED ? hash + 2 : hash;
+    }
+}
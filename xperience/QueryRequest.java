@@ -0,0 +1,357 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Wire format of the read requests, which need no password:
+ * <ul>
+ * <li>{@code Query#Name#<name>#} returns the event with that name;</li>
+ * <li>{@code Query#Dates#<from date>#<to date>#<offset>#<limit>#} lists the
+ * events on the dates from the first to the second;</li>
+ * <li>{@code Query#Window#<from date>#<from time>#<to date>#<to time>#<offset>#<limit>#}
+ * lists the events from the first date and time to the second;</li>
+ * <li>{@code Query#Export#} streams every event in the {@link EventExport}
+ * format and then closes the connection.</li>
+ * </ul>
+ * Ranges are inclusive and listed in date, time and name order; {@code offset}
+ * matching events are skipped and at most {@code limit} returned, so larger
+ * results are read page by page. A page also ends early once the reply reaches
+ * {@link #MAX_RESPONSE_CHARS}, so the next page starts at {@code offset + n}
+ * rather than {@code offset + limit}. The reply is {@code Events#<n>#} followed by
+ * {@code name#date#time#description#} for each event, or {@code Reject#} if
+ * the query is malformed or queries are not enabled. Events registered with
+ * the binary framing may contain '#', so in reply fields '#' is sent as
+ * {@code \#} and '\' as {@code \\}; {@link #parseResponse} undoes this. A
+ * name containing '#' cannot be written in a Name query and is found by a
+ * date or window query instead.
+ */
+public class QueryRequest {
+
+    /**
+     * First field of a query.
+     */
+    public static final String KEYWORD = "Query";
+
+    /**
+     * Second field of each kind of query.
+     */
+    public static final String NAME = "Name";
+    public static final String DATES = "Dates";
+    public static final String WINDOW = "Window";
+    public static final String EXPORT = "Export";
+
+    /**
+     * The complete export request.
+     */
+    public static final String EXPORT_REQUEST = KEYWORD + '#' + EXPORT + '#';
+
+    /**
+     * Largest page that can be requested.
+     */
+    public static final int MAX_LIMIT = 1000;
+
+    /**
+     * Size of reply after which no further events are added, in characters
+     * (at most three times as many bytes); the first event is always included.
+     */
+    public static final int MAX_RESPONSE_CHARS = 1 << 20;
+
+    /**
+     * First field of the reply.
+     */
+    private static final String RESPONSE_KEYWORD = "Events";
+
+    /**
+     * Escapes the next character of a reply field.
+     */
+    private static final char ESCAPE = '\\';
+
+    /**
+     * Kind of query: {@link #NAME}, {@link #DATES} or {@link #WINDOW}.
+     */
+    private final String kind;
+
+    /**
+     * Name looked up by a name query.
+     */
+    private final String name;
+
+    /**
+     * Bounds of a date or window query.
+     */
+    private final String fromDate;
+    private final String fromTime;
+    private final String toDate;
+    private final String toTime;
+
+    /**
+     * Page of a date or window query.
+     */
+    private final int offset;
+    private final int limit;
+
+    /**
+     * Constructs a parsed query.
+     *
+     * @param kind Kind of query
+     * @param name Name looked up, for a name query
+     * @param fromDate First date of the range
+     * @param fromTime First time on the first date
+     * @param toDate Last date of the range
+     * @param toTime Last time on the last date
+     * @param offset Number of matching events to skip
+     * @param limit Maximum number of events to return
+     */
+    private QueryRequest(String kind, String name, String fromDate, String fromTime, String toDate, String toTime,
+            int offset, int limit) {
+        this.kind = kind;
+        this.name = name;
+        this.fromDate = fromDate;
+        this.fromTime = fromTime;
+        this.toDate = toDate;
+        this.toTime = toTime;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the total number of '#'-terminated fields in a query of the given kind.
+     *
+     * @param kind Text of the second field
+     * @return Number of fields in the frame, or -1 if the field is not a kind of query
+     */
+    public static int fieldCount(CharSequence kind) {
+        switch (kind.toString()) {
+            case NAME:
+                return 3;
+            case DATES:
+                return 6;
+            case WINDOW:
+                return 8;
+            case EXPORT:
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Checks whether a frame is a query rather than an event registration.
+     *
+     * @param buffer Buffer holding the frame
+     * @param offset Offset of the frame
+     * @param length Length of the frame
+     * @return True if the frame starts with the query keyword and a kind of query
+     */
+    public static boolean matches(byte[] buffer, int offset, int length) {
+        int prefix = KEYWORD.length() + 1;
+        if (length <= prefix || buffer[offset + KEYWORD.length()] != '#'
+                || !KEYWORD.equals(new String(buffer, offset, KEYWORD.length(), StandardCharsets.US_ASCII))) {
+            return false;
+        }
+        int end = offset + prefix;
+        while (end < offset + length && buffer[end] != '#') {
+            end++;
+        }
+        return fieldCount(new String(buffer, offset + prefix, end - offset - prefix, StandardCharsets.US_ASCII)) > 0;
+    }
+
+    /**
+     * Checks whether a frame is an export request, whose reply is streamed
+     * rather than returned by the request processor.
+     *
+     * @param buffer Buffer holding the frame
+     * @param offset Offset of the frame
+     * @param length Length of the frame
+     * @return True if the frame is {@code Query#Export#}, ignoring trailing newlines
+     */
+    public static boolean isExport(byte[] buffer, int offset, int length) {
+        while (length > 0 && (buffer[offset + length - 1] == '\r' || buffer[offset + length - 1] == '\n')) {
+            length--;
+        }
+        return length == EXPORT_REQUEST.length()
+            && EXPORT_REQUEST.equals(new String(buffer, offset, length, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Parses a query. An export request is never parsed: it is either
+     * streamed by the front end or rejected.
+     *
+     * @param input The raw request
+     * @return The parsed query, or null if it is malformed
+     */
+    public static QueryRequest parse(String input) {
+        // Ignore trailing newlines if any
+        int end = input.length();
+        while (end > 0 && (input.charAt(end - 1) == '\r' || input.charAt(end - 1) == '\n')) {
+            end--;
+        }
+
+        String[] parts = input.substring(0, end).split("#", -1);
+        if (parts.length < 2 || !KEYWORD.equals(parts[0])) {
+            return null;
+        }
+        int fields = fieldCount(parts[1]);
+        if (fields < 0 || parts.length < fields || EXPORT.equals(parts[1])) {
+            return null;
+        }
+
+        switch (parts[1]) {
+            case NAME:
+                return EventStore.EventValidator.validateName(parts[2])
+                    ? new QueryRequest(NAME, parts[2], null, null, null, null, 0, 1)
+                    : null;
+            case DATES:
+                return window(DATES, parts[2], "00:00", parts[3], "23:59", parts[4], parts[5]);
+            default:
+                return window(WINDOW, parts[2], parts[3], parts[4], parts[5], parts[6], parts[7]);
+        }
+    }
+
+    /**
+     * Validates the fields of a date or window query.
+     *
+     * @param kind Kind of query
+     * @param fromDate First date of the range
+     * @param fromTime First time on the first date
+     * @param toDate Last date of the range
+     * @param toTime Last time on the last date
+     * @param offset Text of the offset field
+     * @param limit Text of the limit field
+     * @return The query, or null if a field is invalid
+     */
+    private static QueryRequest window(String kind, String fromDate, String fromTime, String toDate, String toTime,
+            String offset, String limit) {
+        int parsedOffset = parseNumber(offset, Integer.MAX_VALUE);
+        int parsedLimit = parseNumber(limit, MAX_LIMIT);
+        if (!EventStore.EventValidator.validateDate(fromDate) || !EventStore.EventValidator.validateTime(fromTime)
+                || !EventStore.EventValidator.validateDate(toDate) || !EventStore.EventValidator.validateTime(toTime)
+                || parsedOffset < 0 || parsedLimit < 1) {
+            return null;
+        }
+        return new QueryRequest(kind, null, fromDate, fromTime, toDate, toTime, parsedOffset, parsedLimit);
+    }
+
+    /**
+     * Parses a non-negative decimal number.
+     *
+     * @param field Text of the field
+     * @param max Largest accepted value
+     * @return The number, or -1 if the field is not a number up to {@code max}
+     */
+    private static int parseNumber(String field, int max) {
+        if (field.isEmpty() || field.length() > 10) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value <= max ? (int) value : -1;
+    }
+
+    /**
+     * Runs the query against a read index.
+     *
+     * @param index The index
+     * @return The matching events of the requested page
+     */
+    public List<Event> execute(IndexedEventStore index) {
+        if (kind.equals(NAME)) {
+            Event event = index.getEvent(name);
+            return event == null ? List.of() : List.of(event);
+        }
+        return index.list(fromDate, fromTime, toDate, toTime, offset, limit);
+    }
+
+    /**
+     * Formats the reply to a query.
+     *
+     * @param events The events found, in order
+     * @return The reply string, holding the events that fit in {@link #MAX_RESPONSE_CHARS}
+     */
+    public static String formatResponse(List<Event> events) {
+        StringBuilder records = new StringBuilder();
+        int count = 0;
+        for (Event event : events) {
+            int mark = records.length();
+            appendField(records, event.getName());
+            appendField(records, event.getDate());
+            appendField(records, event.getTime());
+            appendField(records, event.getDescription());
+            if (count > 0 && records.length() > MAX_RESPONSE_CHARS) {
+                records.setLength(mark);
+                break;
+            }
+            count++;
+        }
+        return RESPONSE_KEYWORD + '#' + count + '#' + records;
+    }
+
+    /**
+     * Appends one field of a reply, escaping '#' and the escape character.
+     *
+     * @param reply Reply being built
+     * @param field The field
+     */
+    private static void appendField(StringBuilder reply, String field) {
+        if (field.indexOf('#') < 0 && field.indexOf(ESCAPE) < 0) {
+            reply.append(field).append('#');
+            return;
+        }
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '#' || c == ESCAPE) {
+                reply.append(ESCAPE);
+            }
+            reply.append(c);
+        }
+        reply.append('#');
+    }
+
+    /**
+     * Parses the reply to a query, as a client would.
+     *
+     * @param reply The reply
+     * @return The events in the reply, or null if it is a rejection or malformed
+     */
+    public static List<Event> parseResponse(String reply) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < reply.length(); i++) {
+            char c = reply.charAt(i);
+            if (c == ESCAPE && i + 1 < reply.length()) {
+                field.append(reply.charAt(++i));
+            } else if (c == '#') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (fields.size() < 2 || !RESPONSE_KEYWORD.equals(fields.get(0)) || field.length() > 0) {
+            return null;
+        }
+        int count = parseNumber(fields.get(1), MAX_LIMIT);
+        if (count < 0 || fields.size() != 2 + count * 4) {
+            return null;
+        }
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 2; i < fields.size(); i += 4) {
+            events.add(new Event(fields.get(i), fields.get(i + 1), fields.get(i + 2), fields.get(i + 3)));
+        }
+        return events;
+    }
+}
@@ -0,0 +1,564 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.charset.*;
+
+/**
+ * Accumulates request bytes until a complete
+ * {@code name#date#time#description#password#} record has arrived.
+ * Bytes are read straight into one growable buffer and each frame is exposed
+ * as an offset and length into that buffer, so a request is never copied
+ * while it is being assembled.
+ * A batch header ({@code Batch#<count>#}) extends the frame to the number of
+ * fields the batch announces, and a query header ({@code Query#<kind>#}) sets
+ * it to the number of fields of that kind of query.
+ * On keep-alive connections several records may arrive back-to-back; line
+ * breaks between records are skipped and a {@code Close#} record ends the
+ * connection. A {@code Stats#} record followed by a line break is complete on
+ * its own; an event that happens to be named Stats is not affected.
+ * A frame that starts with the {@link BinaryRequest} magic byte is framed by
+ * its length prefixes instead, without scanning its bytes for delimiters.
+ */
+public class RequestFrameReader {
+
+    /**
+     * Number of '#'-terminated fields in a complete record.
+     */
+    public static final int FIELD_COUNT = 5;
+
+    /**
+     * Default hard limit on the size of one frame. Large enough for a 300 character
+     * name and a 65,535 character description even if every character takes
+     * three bytes in UTF-8.
+     */
+    public static final int DEFAULT_MAX_FRAME_SIZE = 256 * 1024;
+
+    /**
+     * Default limit on the size of one batch frame. The batch password is
+     * only checked once the frame is complete, so any client can make the
+     * server buffer this much per connection; it can be raised up to
+     * {@link BatchRequest#MAX_FRAME_SIZE} with {@code --batch-frame-size}.
+     */
+    public static final int DEFAULT_MAX_BATCH_FRAME_SIZE = 1024 * 1024;
+
+    /**
+     * How long a partially received frame may stall before the bytes received
+     * so far are treated as the whole request.
+     */
+    public static final int PARTIAL_FRAME_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * Record that asks the server to close a keep-alive connection.
+     */
+    public static final String CLOSE_RECORD = "Close#";
+
+    /**
+     * Initial size of the frame buffer.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Field delimiter of the text protocol.
+     */
+    private static final byte DELIMITER = '#';
+
+    /**
+     * Hard limit on the size of one frame.
+     */
+    private final int maxFrameSize;
+
+    /**
+     * Limit on the size of a batch frame, at least {@link #maxFrameSize}.
+     */
+    private final int maxBatchFrameSize;
+
+    /**
+     * Whether keep-alive framing (close records, line breaks between records) is used.
+     */
+    private final boolean keepAlive;
+
+    /**
+     * Buffer holding received bytes; valid data lies between start and limit.
+     */
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Offset of the first byte of the frame being assembled.
+     */
+    private int start;
+
+    /**
+     * Offset one past the last received byte.
+     */
+    private int limit;
+
+    /**
+     * Offset of the next byte to scan for delimiters.
+     */
+    private int scan;
+
+    /**
+     * Number of delimiters seen so far in the frame being assembled.
+     */
+    private int delimiters;
+
+    /**
+     * Offset of the first byte of the field being scanned.
+     */
+    private int fieldStart;
+
+    /**
+     * Number of fields that complete the frame being assembled.
+     */
+    private int expectedFields = FIELD_COUNT;
+
+    /**
+     * Whether the frame being assembled starts with the batch keyword.
+     */
+    private boolean batch;
+
+    /**
+     * Whether the frame being assembled starts with the query keyword.
+     */
+    private boolean query;
+
+    /**
+     * Whether the frame being assembled starts with the stats request.
+     */
+    private boolean stats;
+
+    /**
+     * Whether the time taken to receive each frame is measured.
+     */
+    private final boolean timed;
+
+    /**
+     * Time the first bytes of the frame being assembled arrived, and time the
+     * last frame took to arrive, in nanoseconds; only kept when timed.
+     */
+    private long arrivalNanos;
+    private long frameReadNanos;
+
+    /**
+     * Offset one past the end of a frame found by {@link #hasFrame()} but not yet consumed, or -1.
+     */
+    private int frameEnd = -1;
+
+    /**
+     * Offset of the most recently completed frame.
+     */
+    private int frameOffset;
+
+    /**
+     * Length of the most recently completed frame.
+     */
+    private int frameLength;
+
+    /**
+     * Constructs a frame reader with the default maximum frame size.
+     */
+    public RequestFrameReader() {
+        this(DEFAULT_MAX_FRAME_SIZE, false);
+    }
+
+    /**
+     * Constructs a frame reader with the given maximum frame size.
+     *
+     * @param maxFrameSize Hard limit on the size of one frame in bytes
+     * @param keepAlive True to recognise close records and skip line breaks between records
+     */
+    public RequestFrameReader(int maxFrameSize, boolean keepAlive) {
+        this(maxFrameSize, keepAlive, false);
+    }
+
+    /**
+     * Constructs a frame reader that optionally measures how long each frame takes to arrive.
+     *
+     * @param maxFrameSize Hard limit on the size of one frame in bytes
+     * @param keepAlive True to recognise close records and skip line breaks between records
+     * @param timed True to measure {@link #frameReadNanos()}
+     */
+    public RequestFrameReader(int maxFrameSize, boolean keepAlive, boolean timed) {
+        this(maxFrameSize, DEFAULT_MAX_BATCH_FRAME_SIZE, keepAlive, timed);
+    }
+
+    /**
+     * Constructs a frame reader with separate limits for batch frames and other frames.
+     *
+     * @param maxFrameSize Hard limit on the size of one frame in bytes
+     * @param maxBatchFrameSize Limit on the size of a batch frame, raised to at least
+     *                          {@code maxFrameSize} and capped at {@link BatchRequest#MAX_FRAME_SIZE}
+     * @param keepAlive True to recognise close records and skip line breaks between records
+     * @param timed True to measure {@link #frameReadNanos()}
+     */
+    public RequestFrameReader(int maxFrameSize, int maxBatchFrameSize, boolean keepAlive, boolean timed) {
+        this.maxFrameSize = maxFrameSize;
+        this.maxBatchFrameSize = Math.min(Math.max(maxBatchFrameSize, maxFrameSize), BatchRequest.MAX_FRAME_SIZE);
+        this.keepAlive = keepAlive;
+        this.timed = timed;
+    }
+
+    /**
+     * Thrown when a frame grows past the maximum frame size.
+     */
+    public static class FrameTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructs the exception for the given limit.
+         *
+         * @param maxFrameSize The limit that was exceeded
+         */
+        public FrameTooLargeException(int maxFrameSize) {
+            super("Request exceeds " + maxFrameSize + " bytes");
+        }
+    }
+
+    /**
+     * Reads from a blocking socket until a frame is complete. If the client stops
+     * sending in the middle of a frame, or closes its side of the connection, the
+     * bytes received so far become the frame so that malformed requests still get
+     * an answer instead of hanging.
+     *
+     * @param socket The client socket
+     * @return True if a frame is available, false if the stream ended with no data
+     * @throws FrameTooLargeException If the frame exceeds the maximum size
+     * @throws IOException If reading fails
+     */
+    public boolean readFrame(Socket socket) throws IOException {
+        return readFrame(socket, () -> { });
+    }
+
+    /**
+     * Reads from a blocking socket until a frame is complete, reporting when
+     * the frame has started but is not yet complete.
+     *
+     * @param socket The client socket
+     * @param started Run once if the frame takes more than one read, before waiting for the rest
+     * @return True if a frame is available, false if the stream ended with no data
+     * @throws FrameTooLargeException If the frame exceeds the maximum size
+     * @throws IOException If reading fails
+     * @see #readFrame(Socket)
+     */
+    public boolean readFrame(Socket socket, Runnable started) throws IOException {
+        InputStream in = socket.getInputStream();
+        int originalTimeout = socket.getSoTimeout();
+        boolean partialTimeoutSet = false;
+        try {
+            while (!nextFrame()) {
+                if (!partialTimeoutSet && buffered() > 0) {
+                    socket.setSoTimeout(PARTIAL_FRAME_TIMEOUT_MILLIS);
+                    partialTimeoutSet = true;
+                    started.run();
+                }
+                int bytesRead;
+                try {
+                    bytesRead = fill(in);
+                } catch (SocketTimeoutException e) {
+                    if (buffered() == 0) {
+                        throw e;
+                    }
+                    return takeRemainder();
+                }
+                if (bytesRead < 0) {
+                    return takeRemainder();
+                }
+            }
+            return true;
+        } finally {
+            if (partialTimeoutSet) {
+                socket.setSoTimeout(originalTimeout);
+            }
+        }
+    }
+
+    /**
+     * Performs one read from the stream directly into the frame buffer.
+     *
+     * @param in The stream to read from
+     * @return Number of bytes read, or -1 at end of stream
+     * @throws FrameTooLargeException If there is no room left for the current frame
+     * @throws IOException If reading fails
+     */
+    public int fill(InputStream in) throws IOException {
+        ensureSpace();
+        int bytesRead = in.read(buffer, limit, buffer.length - limit);
+        if (bytesRead > 0) {
+            arrived(bytesRead);
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Appends bytes received on a non-blocking channel.
+     *
+     * @param src Buffer positioned at the received bytes; fully consumed on return
+     * @throws FrameTooLargeException If there is no room left for the current frame
+     */
+    public void append(ByteBuffer src) throws FrameTooLargeException {
+        while (src.hasRemaining()) {
+            ensureSpace();
+            int count = Math.min(src.remaining(), buffer.length - limit);
+            src.get(buffer, limit, count);
+            arrived(count);
+        }
+    }
+
+    /**
+     * Scans the buffered bytes for the end of the next frame.
+     * On success the frame is available through {@link #array()},
+     * {@link #frameOffset()} and {@link #frameLength()} until the next call that
+     * adds bytes to this reader.
+     *
+     * @return True if a complete frame was found
+     */
+    public boolean nextFrame() {
+        if (!hasFrame()) {
+            return false;
+        }
+        completeFrame(frameEnd);
+        return true;
+    }
+
+    /**
+     * Checks whether a complete frame is buffered without consuming it.
+     *
+     * @return True if the next call to {@link #nextFrame()} will succeed
+     */
+    public boolean hasFrame() {
+        if (frameEnd >= 0) {
+            return true;
+        }
+
+        // Skip line breaks left between pipelined records
+        while (keepAlive && scan == start && scan < limit && (buffer[scan] == '\r' || buffer[scan] == '\n')) {
+            start = ++scan;
+            fieldStart = scan;
+        }
+        if (scan == start && scan < limit && buffer[scan] == BinaryRequest.MAGIC) {
+            int length = BinaryRequest.frameLength(buffer, start, limit);
+            if (length == BinaryRequest.INCOMPLETE) {
+                return false;
+            }
+            // A malformed header makes everything buffered the frame, which is then rejected
+            frameEnd = length > 0 ? start + length : limit;
+            return true;
+        }
+        while (scan < limit) {
+            if (stats && delimiters == 1 && scan == fieldStart && (buffer[scan] == '\r' || buffer[scan] == '\n')) {
+                // A stats request ends at the line break; anything else makes it a normal record
+                frameEnd = scan;
+                return true;
+            }
+            if (buffer[scan++] != DELIMITER) {
+                continue;
+            }
+            delimiters++;
+            if (delimiters == 1) {
+                if (isCloseRecord(start, scan)) {
+                    frameEnd = scan;
+                    return true;
+                }
+                batch = matches(start, scan, BatchRequest.KEYWORD + "#");
+                query = matches(start, scan, QueryRequest.KEYWORD + "#");
+                stats = matches(start, scan, ServerMetrics.STATS_REQUEST);
+            } else if (delimiters == 2 && batch) {
+                // A batch header announces how many events follow
+                int count = BatchRequest.parseCount(new String(buffer, fieldStart, scan - 1 - fieldStart, StandardCharsets.US_ASCII));
+                if (count > 0) {
+                    expectedFields = BatchRequest.fieldCount(count);
+                }
+            } else if (delimiters == 2 && query) {
+                // Each kind of query has its own number of fields
+                int fields = QueryRequest.fieldCount(new String(buffer, fieldStart, scan - 1 - fieldStart, StandardCharsets.US_ASCII));
+                if (fields > 0) {
+                    expectedFields = fields;
+                }
+            }
+            fieldStart = scan;
+            if (delimiters == expectedFields) {
+                frameEnd = scan;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns how long the most recently completed frame took to arrive: from
+     * the read that brought its first bytes, or from the end of the previous
+     * frame if those were already buffered, until it was complete.
+     *
+     * @return Duration in nanoseconds, or 0 if this reader is not timed
+     */
+    public long frameReadNanos() {
+        return frameReadNanos;
+    }
+
+    /**
+     * Checks whether the current frame is a close record.
+     *
+     * @return True if the client asked to close the connection
+     */
+    public boolean isCloseRecord() {
+        return isCloseRecord(frameOffset, frameOffset + frameLength);
+    }
+
+    /**
+     * Turns whatever is buffered into a frame, for use when the client stops
+     * sending before a frame is complete.
+     *
+     * @return True if any bytes were buffered
+     */
+    public boolean takeRemainder() {
+        if (buffered() == 0) {
+            return false;
+        }
+        completeFrame(limit);
+        return true;
+    }
+
+    /**
+     * Returns the number of buffered bytes that are not yet part of a completed frame.
+     *
+     * @return Number of pending bytes
+     */
+    public int buffered() {
+        return limit - start;
+    }
+
+    /**
+     * Returns the buffer that holds the current frame.
+     *
+     * @return The frame buffer
+     */
+    public byte[] array() {
+        return buffer;
+    }
+
+    /**
+     * Returns the offset of the current frame in {@link #array()}.
+     *
+     * @return Frame offset
+     */
+    public int frameOffset() {
+        return frameOffset;
+    }
+
+    /**
+     * Returns the length of the current frame.
+     *
+     * @return Frame length in bytes
+     */
+    public int frameLength() {
+        return frameLength;
+    }
+
+    /**
+     * Checks whether the given bytes are exactly a close record on a keep-alive connection.
+     *
+     * @param from Offset of the first byte
+     * @param to Offset one past the last byte
+     * @return True if the bytes form a close record
+     */
+    private boolean isCloseRecord(int from, int to) {
+        return keepAlive && matches(from, to, CLOSE_RECORD);
+    }
+
+    /**
+     * Checks whether the given bytes are exactly the given ASCII text.
+     *
+     * @param from Offset of the first byte
+     * @param to Offset one past the last byte
+     * @param text The text to compare with
+     * @return True if the bytes match
+     */
+    private boolean matches(int from, int to, String text) {
+        if (to - from != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer[from + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the bytes up to {@code end} as the current frame and starts a new one.
+     *
+     * @param end Offset one past the last byte of the frame
+     */
+    private void completeFrame(int end) {
+        frameOffset = start;
+        frameLength = end - start;
+        start = end;
+        scan = end;
+        fieldStart = end;
+        delimiters = 0;
+        expectedFields = FIELD_COUNT;
+        batch = false;
+        query = false;
+        stats = false;
+        frameEnd = -1;
+        if (timed) {
+            long now = System.nanoTime();
+            frameReadNanos = now - arrivalNanos;
+            arrivalNanos = now;
+        }
+    }
+
+    /**
+     * Accounts for bytes just placed at the end of the buffer.
+     *
+     * @param count Number of bytes
+     */
+    private void arrived(int count) {
+        if (timed && limit == start) {
+            arrivalNanos = System.nanoTime();
+        }
+        limit += count;
+    }
+
+    /**
+     * Makes room for at least one more byte, reclaiming space used by completed
+     * frames before growing the buffer.
+     *
+     * @throws FrameTooLargeException If the pending frame already fills the maximum size
+     */
+    private void ensureSpace() throws FrameTooLargeException {
+        if (limit < buffer.length) {
+            return;
+        }
+        int pending = limit - start;
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, pending);
+            scan -= start;
+            fieldStart -= start;
+            if (frameEnd >= 0) {
+                frameEnd -= start;
+            }
+            start = 0;
+            limit = pending;
+            return;
+        }
+        // Only a batch, which carries many events, may grow past the normal limit
+        int frameLimit = batch && expectedFields > FIELD_COUNT ? maxBatchFrameSize : maxFrameSize;
+        if (buffer.length >= frameLimit) {
+            throw new FrameTooLargeException(frameLimit);
+        }
+        byte[] grown = new byte[Math.min(buffer.length * 2, frameLimit)];
+        System.arraycopy(buffer, 0, grown, 0, limit);
+        buffer = grown;
+    }
+}
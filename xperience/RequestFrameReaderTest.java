@@ -0,0 +1,225 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+/**
+ * JUnit 5 test for the RequestFrameReader class.
+ */
+public class RequestFrameReaderTest {
+
+    private static String frame(RequestFrameReader reader) {
+        return new String(reader.array(), reader.frameOffset(), reader.frameLength());
+    }
+
+    @Test
+    public void testCompleteFrame() throws IOException {
+        RequestFrameReader reader = new RequestFrameReader();
+        reader.append(ByteBuffer.wrap("Party#2025-04-15#14:30#Fun#pass#".getBytes()));
+
+        assertTrue(reader.nextFrame());
+        assertEquals("Party#2025-04-15#14:30#Fun#pass#", frame(reader));
+    }
+
+    @Test
+    public void testFrameSplitAcrossReads() throws IOException {
+        RequestFrameReader reader = new RequestFrameReader();
+        reader.append(ByteBuffer.wrap("Party#2025-04".getBytes()));
+        assertFalse(reader.nextFrame());
+
+        reader.append(ByteBuffer.wrap("-15#14:30#Fun#pass#".getBytes()));
+        assertTrue(reader.nextFrame());
+        assertEquals("Party#2025-04-15#14:30#Fun#pass#", frame(reader));
+    }
+
+    @Test
+    public void testLargeDescription() throws IOException {
+        String record = "Party#2025-04-15#14:30#" + "d".repeat(65535) + "#pass#";
+        RequestFrameReader reader = new RequestFrameReader();
+        InputStream in = new ByteArrayInputStream(record.getBytes());
+
+        while (!reader.nextFrame()) {
+            assertTrue(reader.fill(in) > 0, () -> "Stream ended before the frame was complete");
+        }
+        assertEquals(record, frame(reader));
+    }
+
+    @Test
+    public void testFrameTooLarge() {
+        RequestFrameReader reader = new RequestFrameReader(2048, false);
+
+        assertThrows(RequestFrameReader.FrameTooLargeException.class,
+            () -> reader.append(ByteBuffer.wrap(("Party#" + "x".repeat(4096)).getBytes())));
+    }
+
+    @Test
+    public void testRemainder() throws IOException {
+        RequestFrameReader reader = new RequestFrameReader();
+        assertFalse(reader.takeRemainder());
+
+        reader.append(ByteBuffer.wrap("Concert#2025-10-20#21:00#".getBytes()));
+        assertFalse(reader.nextFrame());
+        assertTrue(reader.takeRemainder());
+        assertEquals("Concert#2025-10-20#21:00#", frame(reader));
+        assertEquals(0, reader.buffered());
+    }
+
+    @Test
+    public void testPipelinedFrames() throws IOException {
+        RequestFrameReader reader = new RequestFrameReader(RequestFrameReader.DEFAULT_MAX_FRAME_SIZE, true);
+        reader.append(ByteBuffer.wrap("A#2025-04-15#14:30#a#p1#\r\nB#2025-04-16#10:00#b#p2#\nClose#".getBytes()));
+
+        assertTrue(reader.hasFrame());
+        assertTrue(reader.nextFrame());
+        assertEquals("A#2025-04-15#14:30#a#p1#", frame(reader));
+        assertFalse(reader.isCloseRecord());
+
+        assertTrue(reader.nextFrame());
+        assertEquals("B#2025-04-16#10:00#b#p2#", frame(reader));
+
+        assertTrue(reader.nextFrame());
+        assertTrue(reader.isCloseRecord());
+        assertFalse(reader.hasFrame());
+    }
+
+    @Test
+    public void testCloseRecordOnlyWithKeepAlive() throws IOException {
+        RequestFrameReader reader = new RequestFrameReader();
+        reader.append(ByteBuffer.wrap("Close#2025-04-15#14:30#a#p1#".getBytes()));
+
+        assertTrue(reader.nextFrame());
+        assertFalse(reader.isCloseRecord());
+        assertEquals("Close#2025-04-15#14:30#a#p1#", frame(reader));
+    }
+
+    @Test
+    public void testQueryFrames() throws IOException {
+        RequestFrameReader reader = new RequestFrameReader(RequestFrameReader.DEFAULT_MAX_FRAME_SIZE, true);
+        reader.append(ByteBuffer.wrap(("Query#Name#Party#Query#Dates#2025-04-01#2025-04-30#0#10#"
+            + "Query#Window#2025-04-15#09:00#2025-04-15#17:00#20#10#Query#Export#Query#2025-04-15#14:30#a#p1#").getBytes()));
+
+        assertTrue(reader.nextFrame());
+        assertEquals("Query#Name#Party#", frame(reader));
+        assertTrue(reader.nextFrame());
+        assertEquals("Query#Dates#2025-04-01#2025-04-30#0#10#", frame(reader));
+        assertTrue(reader.nextFrame());
+        assertEquals("Query#Window#2025-04-15#09:00#2025-04-15#17:00#20#10#", frame(reader));
+        assertTrue(reader.nextFrame());
+        assertEquals("Query#Export#", frame(reader));
+        assertTrue(QueryRequest.isExport(reader.array(), reader.frameOffset(), reader.frameLength()));
+
+        // An event that happens to be named Query is still a normal record
+        assertTrue(reader.nextFrame());
+        assertEquals("Query#2025-04-15#14:30#a#p1#", frame(reader));
+        assertFalse(reader.hasFrame());
+    }
+
+    @Test
+    public void testQueryFramesKeepTheNormalLimit() throws IOException {
+        // Six fields, like a batch of one, but a query may not grow to the batch limit
+        RequestFrameReader reader = new RequestFrameReader(2048, false);
+        reader.append(ByteBuffer.wrap("Query#Dates#".getBytes()));
+        assertFalse(reader.hasFrame());
+        assertThrows(RequestFrameReader.FrameTooLargeException.class,
+            () -> reader.append(ByteBuffer.wrap("x".repeat(4096).getBytes())));
+
+        RequestFrameReader batchReader = new RequestFrameReader(2048, false);
+        batchReader.append(ByteBuffer.wrap("Batch#1#".getBytes()));
+        assertFalse(batchReader.hasFrame());
+        batchReader.append(ByteBuffer.wrap("x".repeat(4096).getBytes()));
+        assertFalse(batchReader.hasFrame());
+    }
+
+    @Test
+    public void testBatchFramesStopAtTheBatchLimit() throws IOException {
+        // A header can announce the largest batch without any password having been checked
+        RequestFrameReader reader = new RequestFrameReader();
+        reader.append(ByteBuffer.wrap(("Batch#" + BatchRequest.MAX_EVENTS + "#unchecked#").getBytes()));
+        assertFalse(reader.hasFrame());
+        byte[] chunk = "x".repeat(64 * 1024).getBytes();
+        assertThrows(RequestFrameReader.FrameTooLargeException.class, () -> {
+            for (int i = 0; i < BatchRequest.MAX_FRAME_SIZE / chunk.length; i++) {
+                reader.append(ByteBuffer.wrap(chunk));
+            }
+        });
+        assertTrue(reader.array().length <= RequestFrameReader.DEFAULT_MAX_BATCH_FRAME_SIZE);
+
+        // A server can allow larger batches, but never past the hard limit
+        RequestFrameReader larger = new RequestFrameReader(2048, 4 * RequestFrameReader.DEFAULT_MAX_BATCH_FRAME_SIZE, false, false);
+        larger.append(ByteBuffer.wrap("Batch#1#".getBytes()));
+        assertFalse(larger.hasFrame());
+        for (int i = 0; i < 2 * RequestFrameReader.DEFAULT_MAX_BATCH_FRAME_SIZE / chunk.length; i++) {
+            larger.append(ByteBuffer.wrap(chunk));
+        }
+        assertFalse(larger.hasFrame());
+    }
+
+    @Test
+    public void testStatsFrame() throws IOException {
+        RequestFrameReader reader = new RequestFrameReader(RequestFrameReader.DEFAULT_MAX_FRAME_SIZE, true, true);
+        reader.append(ByteBuffer.wrap("Stats#".getBytes()));
+        assertFalse(reader.nextFrame());
+
+        // The line break ends the request, even when it arrives later
+        reader.append(ByteBuffer.wrap("\nStats#2025-04-15#14:30#a#p1#Stats#\r\n".getBytes()));
+        assertTrue(reader.nextFrame());
+        assertEquals("Stats#", frame(reader));
+        assertTrue(reader.frameReadNanos() > 0);
+
+        // An event named Stats is still a normal record
+        assertTrue(reader.nextFrame());
+        assertEquals("Stats#2025-04-15#14:30#a#p1#", frame(reader));
+        assertTrue(reader.nextFrame());
+        assertEquals("Stats#", frame(reader));
+        assertFalse(reader.hasFrame());
+    }
+
+    @Test
+    public void testBinaryFrames() throws IOException {
+        RequestFrameReader reader = new RequestFrameReader(RequestFrameReader.DEFAULT_MAX_FRAME_SIZE, true);
+        byte[] first = BinaryRequest.encode("Party", "2025-04-15", "14:30", "#".repeat(5000), "pass");
+        byte[] second = BinaryRequest.encode("Gala", "2025-04-16", "20:00", "Fun", "pass2");
+
+        // Delimiters in the description do not end a binary frame, which may arrive a byte at a time
+        for (byte b : first) {
+            assertFalse(reader.hasFrame());
+            reader.append(ByteBuffer.wrap(new byte[] {b}));
+        }
+        reader.append(ByteBuffer.wrap(second));
+        reader.append(ByteBuffer.wrap("Party#2025-04-15#14:30#Fun#pass#".getBytes()));
+
+        assertTrue(reader.nextFrame());
+        assertEquals(first.length, reader.frameLength());
+        EventRequest request = new EventRequest();
+        assertTrue(request.parse(reader.array(), reader.frameOffset(), reader.frameLength()));
+        assertEquals("#".repeat(5000), request.description());
+        assertTrue(reader.nextFrame());
+        assertEquals(second.length, reader.frameLength());
+        assertTrue(reader.nextFrame());
+        assertEquals("Party#2025-04-15#14:30#Fun#pass#", frame(reader));
+    }
+
+    @Test
+    public void testMalformedBinaryFrame() throws IOException {
+        RequestFrameReader reader = new RequestFrameReader();
+        byte[] malformed = new byte[12];
+        Arrays.fill(malformed, (byte) 0x80);
+        malformed[0] = BinaryRequest.MAGIC;
+        reader.append(ByteBuffer.wrap(malformed));
+
+        // A length prefix longer than any varint takes everything buffered, which the parser then rejects
+        assertTrue(reader.nextFrame());
+        assertEquals(malformed.length, reader.frameLength());
+        assertFalse(new EventRequest().parse(reader.array(), reader.frameOffset(), reader.frameLength()));
+    }
+}
@@ -0,0 +1,124 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.nio.charset.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+/**
+ * Logs requests and responses for a front end, sampled and truncated.
+ * Whether a request is logged is decided once, so its response is logged
+ * with it. Only the first {@code --log-payload} bytes of a request are
+ * decoded, so a large description costs nothing to log.
+ */
+public class RequestLog {
+
+    /**
+     * Default number of payload bytes logged per request or response.
+     */
+    public static final int DEFAULT_MAX_PAYLOAD = 256;
+
+    private final Logger logger;
+
+    /**
+     * One request in this many is logged.
+     */
+    private final int sampleInterval;
+
+    /**
+     * Number of payload bytes or characters logged.
+     */
+    private final int maxPayload;
+
+    /**
+     * Constructs a request log configured by the startup flags.
+     *
+     * @param logger Logger of the front end
+     * @param options Startup flags ({@code --log-sample}, {@code --log-payload})
+     */
+    public RequestLog(Logger logger, ServerOptions options) {
+        this(logger, options.getInt(ServerOptions.LOG_SAMPLE, 1),
+            options.getInt(ServerOptions.LOG_PAYLOAD, DEFAULT_MAX_PAYLOAD));
+    }
+
+    /**
+     * Constructs a request log.
+     *
+     * @param logger Logger of the front end
+     * @param sampleInterval Log one request in this many, chosen at random
+     * @param maxPayload Number of payload bytes logged per request or response
+     */
+    public RequestLog(Logger logger, int sampleInterval, int maxPayload) {
+        this.logger = logger;
+        this.sampleInterval = sampleInterval;
+        this.maxPayload = maxPayload;
+    }
+
+    /**
+     * Decides whether a request and its response are logged.
+     *
+     * @return True if they are
+     */
+    public boolean sample() {
+        return logger.isLoggable(Level.INFO)
+            && (sampleInterval == 1 || ThreadLocalRandom.current().nextInt(sampleInterval) == 0);
+    }
+
+    /**
+     * Logs a received request.
+     *
+     * @param buffer Buffer holding the request
+     * @param offset Offset of the request
+     * @param length Length of the request in bytes
+     */
+    public void received(byte[] buffer, int offset, int length) {
+        if (BinaryRequest.matches(buffer, offset, length)) {
+            logger.info("Received binary request from client (" + length + " bytes)");
+            return;
+        }
+        logger.info("Received from client: " + truncate(buffer, offset, length));
+    }
+
+    /**
+     * Logs a response.
+     *
+     * @param response The response
+     */
+    public void sent(String response) {
+        logger.info("Sent to client: " + truncate(response));
+    }
+
+    /**
+     * Decodes at most the payload limit of a request.
+     *
+     * @param buffer Buffer holding the request
+     * @param offset Offset of the request
+     * @param length Length of the request in bytes
+     * @return The request, cut short with its full length if it is longer than the limit
+     */
+    String truncate(byte[] buffer, int offset, int length) {
+        if (length <= maxPayload) {
+            return new String(buffer, offset, length, StandardCharsets.UTF_8);
+        }
+        return new String(buffer, offset, maxPayload, StandardCharsets.UTF_8) + "... (" + length + " bytes)";
+    }
+
+    /**
+     * Cuts a response to the payload limit.
+     *
+     * @param response The response
+     * @return The response, cut short with its full length if it is longer than the limit
+     */
+    String truncate(String response) {
+        if (response.length() <= maxPayload) {
+            return response;
+        }
+        return response.substring(0, maxPayload) + "... (" + response.length() + " chars)";
+    }
+}
@@ -0,0 +1,30 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+/**
+ * Turns one complete request frame into the response to send back.
+ * The frame is passed as a view into the connection's receive buffer so that
+ * it can be parsed without copying. The front end decides once per request
+ * whether it is in the metrics sample, so all of its stages are recorded or
+ * none are.
+ */
+@FunctionalInterface
+public interface RequestProcessor {
+
+    /**
+     * Processes a request frame.
+     *
+     * @param buffer Buffer holding the frame
+     * @param offset Offset of the first byte of the frame
+     * @param length Length of the frame in bytes
+     * @param timed Time returned by {@link ServerMetrics#start()} for the request, or 0 if it is not timed
+     * @return The response string
+     */
+    String process(byte[] buffer, int offset, int length, long timed);
+}
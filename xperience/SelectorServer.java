@@ -0,0 +1,690 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+/**
+ * Non-blocking front end for the XPerience servers.
+ * A single acceptor hands new connections round-robin to a small number of
+ * selector threads. The selector threads do all socket I/O, assemble each
+ * request frame, and pass complete requests to the server's executor, so idle
+ * connections cost neither a thread nor a read buffer. An export request,
+ * if enabled, takes its connection off the selector: a worker streams the
+ * export over the channel in blocking mode, so log files go out with
+ * {@link java.nio.channels.FileChannel#transferTo}, and then closes it.
+ * Requests over the admission limit are answered with
+ * {@link AdmissionController#BUSY_RESPONSE} on the selector thread, and while
+ * the limit is reached new connections get that reply before any read.
+ * The {@link Deadlines} for the first byte, the request and the response are
+ * kept on one timer wheel; when one passes, the selector thread closes the
+ * connection.
+ */
+public class SelectorServer {
+
+    /**
+     * Logger for the selector front end.
+     */
+    private static final Logger logger = Logger.getLogger(SelectorServer.class.getName());
+
+    /**
+     * Size of the read buffer shared by all connections of one selector.
+     */
+    private static final int READ_BUFFER_SIZE = 1024;
+
+    /**
+     * How often each selector looks for connections with a stalled partial frame.
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 500;
+
+    /**
+     * Port to listen on.
+     */
+    private final int port;
+
+    /**
+     * Selector loops that own the accepted connections.
+     */
+    private final SelectorLoop[] loops;
+
+    /**
+     * Executor that runs request processing off the selector threads.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Turns a raw request into the response to send back.
+     */
+    private final RequestProcessor processor;
+
+    /**
+     * Whether connections are kept open for further requests.
+     */
+    private final boolean keepAlive;
+
+    /**
+     * How long an idle keep-alive connection stays open, in milliseconds.
+     */
+    private final int idleTimeoutMillis;
+
+    /**
+     * Largest batch frame accepted before its password is checked, in bytes.
+     */
+    private final int maxBatchFrameSize;
+
+    /**
+     * Store streamed in reply to an export request, or null if exports are rejected.
+     */
+    private final EventStore exportStore;
+
+    /**
+     * Metrics of the read, queueing, processing and write of each request.
+     */
+    private final ServerMetrics metrics;
+
+    /**
+     * Sampled, truncated log of requests and responses.
+     */
+    private final RequestLog requestLog;
+
+    /**
+     * Limit on concurrently processed requests.
+     */
+    private final AdmissionController admission;
+
+    /**
+     * Deadlines for the first byte, the request and the response of each connection.
+     */
+    private final Deadlines deadlines;
+
+    /**
+     * Number of listening sockets, each with its own acceptor thread.
+     */
+    private final int acceptors;
+
+    /**
+     * Constructs the selector front end that rejects export requests and records no metrics.
+     *
+     * @param port The port to listen on
+     * @param options Startup flags ({@code --selectors}, {@code --keepalive}, {@code --idle-timeout})
+     * @param executor Executor used to process requests
+     * @param processor Function that turns a request into a response
+     * @throws IOException If a selector cannot be opened
+     */
+    public SelectorServer(int port, ServerOptions options, ExecutorService executor,
+                          RequestProcessor processor) throws IOException {
+        this(port, options, executor, processor, null, ServerMetrics.DISABLED, AdmissionController.UNLIMITED);
+    }
+
+    /**
+     * Constructs the selector front end.
+     *
+     * @param port The port to listen on
+     * @param options Startup flags ({@code --selectors}, {@code --keepalive}, {@code --idle-timeout},
+     *                {@code --log-sample}, {@code --log-payload}, {@code --first-byte-timeout},
+     *                {@code --request-timeout}, {@code --write-timeout}, {@code --acceptors},
+     *                {@code --batch-frame-size})
+     * @param executor Executor used to process requests
+     * @param processor Function that turns a request into a response
+     * @param exportStore Store to stream in reply to an export request, or null to leave it to the processor
+     * @param metrics Metrics to record the stages of each request in
+     * @param admission Limit on concurrently processed requests
+     * @throws IOException If a selector cannot be opened
+     */
+    public SelectorServer(int port, ServerOptions options, ExecutorService executor, RequestProcessor processor,
+                          EventStore exportStore, ServerMetrics metrics, AdmissionController admission) throws IOException {
+        this.port = port;
+        this.exportStore = exportStore;
+        this.metrics = metrics;
+        this.admission = admission;
+        this.requestLog = new RequestLog(logger, options);
+        this.deadlines = Deadlines.fromOptions(options);
+        this.acceptors = options.getInt(ServerOptions.ACCEPTORS, 1);
+        this.executor = executor;
+        this.processor = processor;
+        this.keepAlive = options.has(ServerOptions.KEEP_ALIVE);
+        this.idleTimeoutMillis = options.getInt(ServerOptions.IDLE_TIMEOUT, ServerOptions.DEFAULT_IDLE_TIMEOUT_MILLIS);
+        this.maxBatchFrameSize = options.getInt(ServerOptions.BATCH_FRAME_SIZE, RequestFrameReader.DEFAULT_MAX_BATCH_FRAME_SIZE);
+        int selectorThreads = options.getInt(ServerOptions.SELECTORS, ServerOptions.DEFAULT_SELECTOR_THREADS);
+        this.loops = new SelectorLoop[selectorThreads];
+        for (int i = 0; i < selectorThreads; i++) {
+            loops[i] = new SelectorLoop(Selector.open());
+        }
+    }
+
+    /**
+     * Starts the selector threads and accepts connections until the first
+     * server socket fails. Each acceptor hands its connections to the
+     * selectors in turn, starting from a different one.
+     *
+     * @throws IOException If the server socket cannot be bound or accepting fails
+     */
+    public void run() throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            Thread.ofPlatform().name("xperience-selector-" + i).daemon(true).start(loops[i]);
+        }
+
+        List<ServerSocketChannel> serverChannels = Acceptors.bindChannels(port, acceptors);
+        logger.info("Selector front end started on port " + port + " with " + serverChannels.size()
+            + " acceptors and " + loops.length + " selector threads");
+        Acceptors.run(serverChannels, (serverChannel, index) -> {
+            int next = index % loops.length;
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                boolean draining = admission.isOverloaded();
+                if (draining && !shed(channel)) {
+                    continue;
+                }
+                channel.configureBlocking(false);
+                loops[next].register(channel, draining);
+                next = (next + 1) % loops.length;
+            }
+        });
+    }
+
+    /**
+     * Answers a new connection without processing its request, because the server is over its
+     * admission limit. The connection is then registered only to discard what the client sends
+     * until it closes, since closing with the request unread would reset the connection and lose
+     * the reply.
+     *
+     * @param channel The accepted, still blocking client channel
+     * @return True if the connection is to be registered and drained, false if it is already closed
+     */
+    private boolean shed(SocketChannel channel) {
+        admission.shed();
+        metrics.rejected(ServerMetrics.RejectReason.BUSY);
+        try {
+            // The reply fits in the empty send buffer, so this does not block the acceptor
+            channel.write(ByteBuffer.wrap(AdmissionController.BUSY_RESPONSE.getBytes()));
+            channel.shutdownOutput();
+            return true;
+        } catch (IOException e) {
+            logger.warning("Error rejecting client: " + e.getMessage());
+            try {
+                channel.close();
+            } catch (IOException closeError) {
+                logger.warning("Error closing client socket: " + closeError.getMessage());
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Per-connection state. The frame buffer is only created once the
+     * connection first sends data.
+     */
+    private static final class Connection {
+
+        /**
+         * Accumulates request frames, or null while the connection has sent nothing.
+         */
+        RequestFrameReader reader;
+
+        /**
+         * Response waiting to be written.
+         */
+        ByteBuffer response;
+
+        /**
+         * Time of the last read that added bytes or of the last completed response.
+         */
+        long lastActivityMillis = System.currentTimeMillis();
+
+        /**
+         * Whether a request has been dispatched and reading is suspended.
+         */
+        boolean processing;
+
+        /**
+         * Whether the connection must be closed once the pending response is sent.
+         */
+        boolean closeAfterResponse;
+
+        /**
+         * Sample decision of the current request, from {@link ServerMetrics#start()}.
+         */
+        long timed;
+
+        /**
+         * Time the pending response was queued, when the request is timed.
+         */
+        long respondNanos;
+
+        /**
+         * Whether the current request was sampled for logging, so its response is logged too.
+         */
+        boolean logged;
+
+        /**
+         * Whether the connection was shed and everything it sends is discarded.
+         */
+        boolean draining;
+
+        /**
+         * Running deadline and its kind, or null; only used by the selector thread.
+         */
+        TimerWheel.Timeout deadline;
+        Deadlines.Kind deadlineKind;
+    }
+
+    /**
+     * Event loop that owns a set of connections and performs their reads and writes.
+     */
+    private final class SelectorLoop implements Runnable {
+
+        /**
+         * Selector for the connections owned by this loop.
+         */
+        private final Selector selector;
+
+        /**
+         * Tasks that must run on the selector thread (registrations and interest changes).
+         */
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Read buffer shared by every connection of this loop.
+         */
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        /**
+         * Constructs a loop around an open selector.
+         *
+         * @param selector The selector to poll
+         */
+        SelectorLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        /**
+         * Registers a newly accepted connection with this loop.
+         *
+         * @param channel The non-blocking client channel
+         * @param draining Whether the connection was shed and is only drained until it closes
+         */
+        void register(SocketChannel channel, boolean draining) {
+            execute(() -> {
+                try {
+                    Connection connection = new Connection();
+                    connection.draining = draining;
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    if (!draining) {
+                        arm(key, connection, Deadlines.Kind.FIRST_BYTE);
+                    }
+                } catch (ClosedChannelException e) {
+                    logger.warning("Client closed before registration: " + e.getMessage());
+                }
+            });
+        }
+
+        /**
+         * Runs a task on the selector thread.
+         *
+         * @param task The task to run
+         */
+        void execute(Runnable task) {
+            pending.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long nextSweep = System.currentTimeMillis() + SWEEP_INTERVAL_MILLIS;
+            while (true) {
+                try {
+                    selector.select(SWEEP_INTERVAL_MILLIS);
+                } catch (IOException e) {
+                    logger.severe("Selector failed: " + e.getMessage());
+                    return;
+                }
+
+                Runnable task;
+                while ((task = pending.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        } else if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        logger.severe("Error with client communication: " + e.getMessage());
+                        close(key);
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if (now >= nextSweep) {
+                    sweepStalledFrames(now);
+                    nextSweep = now + SWEEP_INTERVAL_MILLIS;
+                }
+            }
+        }
+
+        /**
+         * Reads available bytes from a readable connection and dispatches the
+         * request once its frame is complete.
+         *
+         * @param key Selection key of the connection
+         * @throws IOException If reading fails
+         */
+        private void read(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            readBuffer.clear();
+            int bytesRead = channel.read(readBuffer);
+            Connection connection = (Connection) key.attachment();
+            if (connection.draining) {
+                if (bytesRead < 0) {
+                    close(key);
+                }
+                return;
+            }
+            if (bytesRead < 0) {
+                // Client finished sending; answer whatever arrived
+                if (connection.reader != null && connection.reader.takeRemainder()) {
+                    dispatch(key, connection);
+                } else {
+                    close(key);
+                }
+                return;
+            }
+            if (bytesRead == 0) {
+                return;
+            }
+
+            // Only connections that have started sending get a frame buffer
+            if (connection.reader == null) {
+                connection.reader = new RequestFrameReader(RequestFrameReader.DEFAULT_MAX_FRAME_SIZE, maxBatchFrameSize, keepAlive,
+                    metrics.isEnabled());
+            }
+            readBuffer.flip();
+            try {
+                connection.reader.append(readBuffer);
+            } catch (RequestFrameReader.FrameTooLargeException e) {
+                logger.warning("Rejected oversized request: " + e.getMessage());
+                metrics.rejected(ServerMetrics.RejectReason.OVERSIZED);
+                connection.logged = requestLog.sample();
+                connection.timed = metrics.start();
+                connection.closeAfterResponse = true;
+                respond(key, connection, "Reject#");
+                return;
+            }
+            connection.lastActivityMillis = System.currentTimeMillis();
+            if (connection.reader.nextFrame()) {
+                dispatch(key, connection);
+            } else if (connection.reader.buffered() > 0 && connection.deadlineKind != Deadlines.Kind.REQUEST) {
+                arm(key, connection, Deadlines.Kind.REQUEST);
+            }
+        }
+
+        /**
+         * Hands the connection's current frame to the executor for processing.
+         *
+         * @param key Selection key of the connection
+         * @param connection State of the connection
+         */
+        private void dispatch(SelectionKey key, Connection connection) {
+            disarm(connection);
+            RequestFrameReader reader = connection.reader;
+            if (reader.isCloseRecord()) {
+                close(key);
+                return;
+            }
+            // One sample decision covers every stage of the request; the read is measured by the reader
+            long timed = metrics.start();
+            connection.timed = timed;
+            metrics.recordNanos(ServerMetrics.Stage.READ, timed, reader.frameReadNanos());
+
+            connection.logged = requestLog.sample();
+            if (connection.logged) {
+                requestLog.received(reader.array(), reader.frameOffset(), reader.frameLength());
+            }
+
+            // Stop reading while the request is being processed; the frame stays in the reader's buffer
+            key.interestOps(0);
+            connection.processing = true;
+            byte[] frame = reader.array();
+            int offset = reader.frameOffset();
+            int length = reader.frameLength();
+            long admitted = admission.tryAcquire();
+            if (admitted == AdmissionController.REFUSED) {
+                admission.shed();
+                metrics.rejected(ServerMetrics.RejectReason.BUSY);
+                respond(key, connection, AdmissionController.BUSY_RESPONSE);
+                return;
+            }
+            if (exportStore != null && QueryRequest.isExport(frame, offset, length)) {
+                // The selector deregisters a cancelled channel at its next select, before pending tasks run
+                key.cancel();
+                execute(() -> executor.submit(() -> export((SocketChannel) key.channel(), admitted)));
+                return;
+            }
+            long queued = metrics.startNext(timed);
+            executor.submit(() -> {
+                long start = metrics.record(ServerMetrics.Stage.QUEUE, queued);
+                String response;
+                try {
+                    response = process(connection, frame, offset, length, timed);
+                } finally {
+                    admission.release(admitted);
+                }
+                metrics.record(ServerMetrics.Stage.PROCESS, start);
+                execute(() -> respond(key, connection, response));
+            });
+        }
+
+        /**
+         * Processes a request on an executor thread. A failure of the processor, such as a
+         * store that cannot be written, is answered with a rejection that closes the connection,
+         * rather than leaving the connection suspended with no deadline.
+         *
+         * @param connection State of the connection
+         * @param frame Buffer holding the frame
+         * @param offset Offset of the frame
+         * @param length Length of the frame
+         * @param timed Sample decision of the request
+         * @return The response to send
+         */
+        private String process(Connection connection, byte[] frame, int offset, int length, long timed) {
+            try {
+                return processor.process(frame, offset, length, timed);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Error processing request", e);
+                metrics.rejected(ServerMetrics.RejectReason.STORE);
+                connection.closeAfterResponse = true;
+                return "Reject#";
+            }
+        }
+
+        /**
+         * Streams the export over a connection that has left the selector, then closes it.
+         * Each chunk must be taken within the write deadline.
+         *
+         * @param channel The deregistered client channel
+         * @param admitted Time the export was admitted, to release when it ends
+         */
+        private void export(SocketChannel channel, long admitted) {
+            AtomicBoolean expired = new AtomicBoolean();
+            try (channel) {
+                channel.configureBlocking(true);
+                long bytes = EventExport.export(exportStore, deadlines.guard(channel, () -> {
+                    expired.set(true);
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        logger.warning("Error closing client socket: " + e.getMessage());
+                    }
+                }));
+                logger.info("Exported " + bytes + " bytes to client");
+            } catch (IOException | RuntimeException e) {
+                if (expired.get()) {
+                    logger.info("Closed connection after its " + Deadlines.name(Deadlines.Kind.WRITE) + " deadline passed");
+                    metrics.timedOut(Deadlines.Kind.WRITE);
+                } else {
+                    logger.severe("Error exporting to client: " + e.getMessage());
+                }
+            } finally {
+                admission.releaseUnsampled(admitted);
+            }
+        }
+
+        /**
+         * Queues a response for writing on a connection.
+         *
+         * @param key Selection key of the connection
+         * @param connection State of the connection
+         * @param response The response to send
+         */
+        private void respond(SelectionKey key, Connection connection, String response) {
+            if (!key.isValid()) {
+                return;
+            }
+            connection.processing = true;
+            connection.response = ByteBuffer.wrap(response.getBytes());
+            connection.respondNanos = metrics.startNext(connection.timed);
+            arm(key, connection, Deadlines.Kind.WRITE);
+            key.interestOps(SelectionKey.OP_WRITE);
+            if (connection.logged) {
+                requestLog.sent(response);
+            }
+        }
+
+        /**
+         * Writes the pending response. Once it is sent the connection is closed,
+         * or in keep-alive mode the next pipelined request is dispatched.
+         *
+         * @param key Selection key of the connection
+         * @throws IOException If writing fails
+         */
+        private void write(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+            channel.write(connection.response);
+            if (connection.response.hasRemaining()) {
+                return;
+            }
+            metrics.record(ServerMetrics.Stage.WRITE, connection.respondNanos);
+            disarm(connection);
+            if (!keepAlive || connection.closeAfterResponse) {
+                close(key);
+                return;
+            }
+
+            // Requests are answered strictly in order; resume with the next one
+            connection.response = null;
+            connection.processing = false;
+            connection.lastActivityMillis = System.currentTimeMillis();
+            if (connection.reader.nextFrame()) {
+                dispatch(key, connection);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Answers connections whose partial frame has not grown within the
+         * partial frame timeout, using the bytes received so far, and closes
+         * keep-alive connections that have been idle for too long.
+         *
+         * @param now Current time in milliseconds
+         */
+        private void sweepStalledFrames(long now) {
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (!key.isValid() || connection == null || connection.processing) {
+                    continue;
+                }
+                long idle = now - connection.lastActivityMillis;
+                if (connection.reader != null && connection.reader.buffered() > 0) {
+                    if (idle >= RequestFrameReader.PARTIAL_FRAME_TIMEOUT_MILLIS && connection.reader.takeRemainder()) {
+                        dispatch(key, connection);
+                    }
+                } else if (connection.draining && idle >= AdmissionController.SHED_LINGER_MILLIS) {
+                    close(key);
+                } else if (keepAlive && idle >= idleTimeoutMillis) {
+                    logger.info("Closing idle connection");
+                    close(key);
+                }
+            }
+        }
+
+        /**
+         * Starts a deadline for a connection, replacing its running one.
+         *
+         * @param key Selection key of the connection
+         * @param connection State of the connection
+         * @param kind Kind of deadline
+         */
+        private void arm(SelectionKey key, Connection connection, Deadlines.Kind kind) {
+            disarm(connection);
+            connection.deadlineKind = kind;
+            connection.deadline = deadlines.start(kind, () -> execute(() -> expire(key, connection)));
+        }
+
+        /**
+         * Cancels the running deadline of a connection, if any.
+         *
+         * @param connection State of the connection
+         */
+        private void disarm(Connection connection) {
+            if (connection.deadline != null) {
+                connection.deadline.cancel();
+                connection.deadline = null;
+                connection.deadlineKind = null;
+            }
+        }
+
+        /**
+         * Closes a connection whose deadline passed, unless the deadline was
+         * replaced while the expiry waited for the selector thread.
+         *
+         * @param key Selection key of the connection
+         * @param connection State of the connection
+         */
+        private void expire(SelectionKey key, Connection connection) {
+            if (!key.isValid() || connection.deadline == null || !connection.deadline.isExpired()) {
+                return;
+            }
+            Deadlines.Kind kind = connection.deadlineKind;
+            logger.info("Closed connection after its " + Deadlines.name(kind) + " deadline passed");
+            metrics.timedOut(kind);
+            close(key);
+        }
+
+        /**
+         * Cancels the key and closes its channel.
+         *
+         * @param key Selection key of the connection
+         */
+        private void close(SelectionKey key) {
+            if (key.attachment() instanceof Connection connection) {
+                disarm(connection);
+            }
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                logger.warning("Error closing client socket: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.concurrent.*;
+
+/**
+ * JUnit 5 test for SelectorServer.
+ */
+public class SelectorServerTest {
+
+    /**
+     * Returns a port that was free a moment ago.
+     */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Connects to the server, retrying until it listens.
+     */
+    private static Socket connect(int port) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return new Socket(InetAddress.getLoopbackAddress(), port);
+            } catch (ConnectException e) {
+                if (attempt == 50) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    @Test
+    public void testFailingProcessorRejectsAndCloses() throws Exception {
+        int port = freePort();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        RequestProcessor processor = (buffer, offset, length, timed) -> {
+            String request = new String(buffer, offset, length, StandardCharsets.UTF_8);
+            if (request.startsWith("Fail")) {
+                throw new UncheckedIOException(new IOException("Store is down"));
+            }
+            return "Accept#1#";
+        };
+        SelectorServer server = new SelectorServer(port, ServerOptions.parse(new String[] {"--keepalive"}), executor, processor);
+        Thread.ofPlatform().daemon(true).start(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                // The test fails on connecting
+            }
+        });
+
+        try (Socket socket = connect(port)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            out.write("Party#2025-04-15#14:30#Fun#pass#".getBytes(StandardCharsets.UTF_8));
+            assertEquals("Accept#1#", new String(in.readNBytes(9), StandardCharsets.UTF_8));
+
+            // The failure is answered, then the keep-alive connection is closed rather than left suspended
+            out.write("Fail#2025-04-15#14:30#Fun#pass#".getBytes(StandardCharsets.UTF_8));
+            assertEquals("Reject#", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEveryStageFollowsOneSample() throws Exception {
+        int port = freePort();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        ServerMetrics metrics = new ServerMetrics(3);
+        RequestProcessor processor = (buffer, offset, length, timed) -> {
+            metrics.record(ServerMetrics.Stage.PARSE, metrics.startNext(timed));
+            return "Accept#1#";
+        };
+        SelectorServer server = new SelectorServer(port, ServerOptions.parse(new String[] {"--keepalive"}), executor,
+            processor, null, metrics, AdmissionController.UNLIMITED);
+        Thread.ofPlatform().daemon(true).start(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                // The test fails on connecting
+            }
+        });
+
+        int requests = 90;
+        try (Socket socket = connect(port)) {
+            socket.setSoTimeout(5000);
+            for (int i = 0; i < requests; i++) {
+                socket.getOutputStream().write(("Party" + i + "#2025-04-15#14:30#Fun#pass#").getBytes(StandardCharsets.UTF_8));
+                assertEquals("Accept#1#", new String(socket.getInputStream().readNBytes(9), StandardCharsets.UTF_8));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertStagesMatch(metrics, requests, ServerMetrics.Stage.READ, ServerMetrics.Stage.QUEUE,
+            ServerMetrics.Stage.PARSE, ServerMetrics.Stage.PROCESS, ServerMetrics.Stage.WRITE);
+    }
+
+    /**
+     * Asserts that a sample of the requests, neither none nor all, recorded every given stage.
+     */
+    static void assertStagesMatch(ServerMetrics metrics, int requests, ServerMetrics.Stage... stages)
+            throws InterruptedException {
+        // The write is recorded just after the client could read the reply
+        long sampled = metrics.histogram(stages[0]).count();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (metrics.histogram(ServerMetrics.Stage.WRITE).count() < sampled && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(sampled > 0 && sampled < requests, () -> "sampled " + sampled + " of " + requests);
+        for (ServerMetrics.Stage stage : stages) {
+            assertEquals(sampled, metrics.histogram(stage).count(), stage::name);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.lang.management.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.logging.*;
+import javax.management.*;
+
+/**
+ * Latency and outcome metrics of request handling.
+ * Each stage of a request has a {@link LatencyHistogram}, and accepted events,
+ * rejects by reason and connections closed by a deadline are counted, all
+ * without locks. The metrics are
+ * published as an MXBean and sent as plain text in reply to {@code Stats#}.
+ * <p>
+ * Stages are timed with {@link #start()} and {@link #record(Stage, long)},
+ * which return the current time so that consecutive stages share one clock
+ * read. To bound the overhead, only one request in {@code --metrics=<n>} is
+ * timed: for the others, as when metrics are disabled, {@link #start()}
+ * returns 0 and no later stage reads the clock. Counters are always exact.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+    private static final Logger logger = Logger.getLogger(ServerMetrics.class.getName());
+
+    /**
+     * Stages of handling a request, in the order they run.
+     */
+    public enum Stage {
+        /** Receiving a frame, from the arrival of its first bytes until it is complete. */
+        READ,
+        /** Waiting for a worker after the frame was complete (selector front end only). */
+        QUEUE,
+        /** Parsing the frame into fields. */
+        PARSE,
+        /** Checking and consuming the one-time password. */
+        PASSWORD,
+        /** Validating the event fields. */
+        VALIDATE,
+        /** Adding the event or batch to the event store. */
+        STORE,
+        /** Whole processing of a request, from frame to response string. */
+        PROCESS,
+        /** Writing the response; on the selector front end, from queueing it until it is sent. */
+        WRITE
+    }
+
+    /**
+     * Reasons for rejecting an event or request.
+     */
+    public enum RejectReason {
+        /** The frame is not a well-formed request. */
+        MALFORMED,
+        /** The frame exceeds the size limit. */
+        OVERSIZED,
+        /** The password is unknown or already used. */
+        PASSWORD,
+        /** A field of the event is invalid. */
+        INVALID,
+        /** The store refused a valid event: a duplicate name or a storage failure. */
+        STORE,
+        /** The server was over its admission limit and shed the request. */
+        BUSY
+    }
+
+    /**
+     * Request for the plain-text report; the frame ends at the line break after it.
+     */
+    public static final String STATS_REQUEST = "Stats#";
+
+    /**
+     * Metrics that record nothing, used when metrics are not enabled.
+     */
+    public static final ServerMetrics DISABLED = new ServerMetrics(false, 1);
+
+    private final boolean enabled;
+
+    /**
+     * One request in this many is timed.
+     */
+    private final int sampleInterval;
+    private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder[] rejected = new LongAdder[RejectReason.values().length];
+    private final LongAdder[] timedOut = new LongAdder[Deadlines.Kind.values().length];
+    private final long startMillis = System.currentTimeMillis();
+
+    /**
+     * Constructs enabled metrics that time every request.
+     */
+    public ServerMetrics() {
+        this(true, 1);
+    }
+
+    /**
+     * Constructs enabled metrics that time a sample of the requests.
+     *
+     * @param sampleInterval Time one request in this many, chosen at random
+     */
+    public ServerMetrics(int sampleInterval) {
+        this(true, sampleInterval);
+    }
+
+    /**
+     * Constructs metrics.
+     *
+     * @param enabled False to record nothing
+     * @param sampleInterval Time one request in this many
+     */
+    private ServerMetrics(boolean enabled, int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("Sample interval must be positive");
+        }
+        this.enabled = enabled;
+        this.sampleInterval = sampleInterval;
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+        for (int i = 0; i < timedOut.length; i++) {
+            timedOut[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the metrics selected by the startup flags, registered as an MXBean if enabled.
+     *
+     * @param options Startup flags ({@code --metrics[=<n>]})
+     * @param name Name of the server in the MBean's object name
+     * @return New enabled metrics, or {@link #DISABLED}
+     */
+    public static ServerMetrics fromOptions(ServerOptions options, String name) {
+        if (!options.has(ServerOptions.METRICS)) {
+            return DISABLED;
+        }
+        ServerMetrics metrics = new ServerMetrics(options.getInt(ServerOptions.METRICS, 1));
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                new ObjectName("xperience:type=ServerMetrics,name=" + ObjectName.quote(name)));
+        } catch (JMException e) {
+            logger.warning("Could not register metrics MBean: " + e.getMessage());
+        }
+        return metrics;
+    }
+
+    /**
+     * Checks whether metrics are recorded.
+     *
+     * @return True if enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts timing a request, unless it is left out of the sample.
+     *
+     * @return The current time in nanoseconds, or 0 if the request is not timed
+     */
+    public long start() {
+        if (!enabled || (sampleInterval > 1 && ThreadLocalRandom.current().nextInt(sampleInterval) != 0)) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Starts timing a later stage of a request, if the request is in the sample.
+     *
+     * @param start Time returned by {@link #start()} for the request, or 0 if it is not timed
+     * @return The current time in nanoseconds, or 0 if the request is not timed
+     */
+    public long startNext(long start) {
+        return start == 0 ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records a stage that started at a given time and ended now.
+     *
+     * @param stage The stage
+     * @param start Start time, as returned by {@link #start()} or by the previous stage
+     * @return The current time, to start the next stage with, or 0 if the request is not timed
+     */
+    public long record(Stage stage, long start) {
+        if (start == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        stages[stage.ordinal()].record(now - start);
+        return now;
+    }
+
+    /**
+     * Records a stage measured elsewhere, if the request is in the sample.
+     *
+     * @param stage The stage
+     * @param start Time returned by {@link #start()} for the request, or 0 if it is not timed
+     * @param nanos Duration in nanoseconds
+     */
+    public void recordNanos(Stage stage, long start, long nanos) {
+        if (start != 0) {
+            stages[stage.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * Counts accepted events.
+     *
+     * @param count Number of events
+     */
+    public void accepted(int count) {
+        if (enabled) {
+            accepted.add(count);
+        }
+    }
+
+    /**
+     * Counts a rejected event or request.
+     *
+     * @param reason Why it was rejected
+     */
+    public void rejected(RejectReason reason) {
+        if (enabled) {
+            rejected[reason.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Counts a connection closed because a deadline passed.
+     *
+     * @param kind The deadline
+     */
+    public void timedOut(Deadlines.Kind kind) {
+        if (enabled) {
+            timedOut[kind.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Counts the outcome of each event of a batch.
+     *
+     * @param events The events, in order
+     * @param results One result per event
+     */
+    public void countResults(List<Event> events, List<EventStore.Result> results) {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < results.size(); i++) {
+            Event event = events.get(i);
+            if (results.get(i).success) {
+                accepted.increment();
+            } else {
+                // Only refused events are validated again, to tell invalid ones from duplicates
+                rejected(EventStore.EventValidator.validate(event.getName(), event.getDate(), event.getTime(),
+                    event.getDescription()) ? RejectReason.STORE : RejectReason.INVALID);
+            }
+        }
+    }
+
+    /**
+     * Returns a histogram, for tests and benchmarks.
+     *
+     * @param stage The stage
+     * @return Its histogram
+     */
+    LatencyHistogram histogram(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    /**
+     * Checks whether a frame is a stats request.
+     *
+     * @param buffer Buffer holding the frame
+     * @param offset Offset of the frame
+     * @param length Length of the frame
+     * @return True if the frame is {@code Stats#}, ignoring trailing newlines
+     */
+    public static boolean isStatsRequest(byte[] buffer, int offset, int length) {
+        while (length > 0 && (buffer[offset + length - 1] == '\r' || buffer[offset + length - 1] == '\n')) {
+            length--;
+        }
+        return length == STATS_REQUEST.length()
+            && STATS_REQUEST.equals(new String(buffer, offset, length, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Formats the plain-text report: {@code Stats#} on the first line, one
+     * {@code name value} line per counter, one line per stage that ran with
+     * its count and latencies in microseconds, and an empty line at the end.
+     *
+     * @return The report
+     */
+    public String formatStats() {
+        StringBuilder report = new StringBuilder(STATS_REQUEST).append('\n');
+        report.append("uptime_seconds ").append((System.currentTimeMillis() - startMillis) / 1000).append('\n');
+        report.append("accepted ").append(accepted.sum()).append('\n');
+        for (RejectReason reason : RejectReason.values()) {
+            report.append("rejected_").append(key(reason)).append(' ').append(rejected[reason.ordinal()].sum()).append('\n');
+        }
+        for (Deadlines.Kind kind : Deadlines.Kind.values()) {
+            report.append("timeout_").append(key(kind)).append(' ').append(timedOut[kind.ordinal()].sum()).append('\n');
+        }
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = stages[stage.ordinal()];
+            if (histogram.count() == 0) {
+                continue;
+            }
+            report.append(key(stage))
+                .append(" count=").append(histogram.count())
+                .append(" mean_us=").append(micros(histogram.mean()))
+                .append(" p50_us=").append(micros(histogram.percentile(0.5)))
+                .append(" p99_us=").append(micros(histogram.percentile(0.99)))
+                .append(" p999_us=").append(micros(histogram.percentile(0.999)))
+                .append(" max_us=").append(micros(histogram.max()))
+                .append('\n');
+        }
+        return report.append('\n').toString();
+    }
+
+    @Override
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRejected() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (RejectReason reason : RejectReason.values()) {
+            counts.put(key(reason), rejected[reason.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getTimedOut() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Deadlines.Kind kind : Deadlines.Kind.values()) {
+            counts.put(key(kind), timedOut[kind.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getStageCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            counts.put(key(stage), stages[stage.ordinal()].count());
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getStageMeanMicros() {
+        return perStage(LatencyHistogram::mean);
+    }
+
+    @Override
+    public Map<String, Double> getStageP50Micros() {
+        return perStage(histogram -> histogram.percentile(0.5));
+    }
+
+    @Override
+    public Map<String, Double> getStageP99Micros() {
+        return perStage(histogram -> histogram.percentile(0.99));
+    }
+
+    @Override
+    public Map<String, Double> getStageP999Micros() {
+        return perStage(histogram -> histogram.percentile(0.999));
+    }
+
+    @Override
+    public Map<String, Double> getStageMaxMicros() {
+        return perStage(histogram -> histogram.max());
+    }
+
+    @Override
+    public String getStats() {
+        return formatStats();
+    }
+
+    /**
+     * Applies a statistic to the histogram of every stage.
+     *
+     * @param statistic Statistic in nanoseconds
+     * @return The statistic of each stage in microseconds
+     */
+    private Map<String, Double> perStage(ToDoubleFunction<LatencyHistogram> statistic) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            values.put(key(stage), statistic.applyAsDouble(stages[stage.ordinal()]) / TimeUnit.MICROSECONDS.toNanos(1));
+        }
+        return values;
+    }
+
+    /**
+     * Returns the name of a stage or reason as used in reports.
+     *
+     * @param constant The stage or reason
+     * @return Its lower-case name
+     */
+    private static String key(Enum<?> constant) {
+        return constant.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Formats nanoseconds as microseconds with one decimal.
+     *
+     * @param nanos Duration in nanoseconds
+     * @return The formatted duration
+     */
+    private static String micros(double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000);
+    }
+}
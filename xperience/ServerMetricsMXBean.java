@@ -0,0 +1,88 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.util.*;
+
+/**
+ * Management interface of {@link ServerMetrics}, registered with the platform
+ * MBean server when metrics are enabled. Maps are keyed by the lower-case
+ * name of the stage, reject reason or deadline; durations are in microseconds.
+ */
+public interface ServerMetricsMXBean {
+
+    /**
+     * Returns the number of events accepted.
+     *
+     * @return Accepted events
+     */
+    long getAccepted();
+
+    /**
+     * Returns the number of rejected events and requests by reason.
+     *
+     * @return Reject counts
+     */
+    Map<String, Long> getRejected();
+
+    /**
+     * Returns the number of connections closed because a deadline passed, by kind of deadline.
+     *
+     * @return Timeout counts
+     */
+    Map<String, Long> getTimedOut();
+
+    /**
+     * Returns the number of times each stage ran.
+     *
+     * @return Stage counts
+     */
+    Map<String, Long> getStageCounts();
+
+    /**
+     * Returns the mean duration of each stage.
+     *
+     * @return Means in microseconds
+     */
+    Map<String, Double> getStageMeanMicros();
+
+    /**
+     * Returns the median duration of each stage.
+     *
+     * @return Medians in microseconds
+     */
+    Map<String, Double> getStageP50Micros();
+
+    /**
+     * Returns the 99th percentile duration of each stage.
+     *
+     * @return Percentiles in microseconds
+     */
+    Map<String, Double> getStageP99Micros();
+
+    /**
+     * Returns the 99.9th percentile duration of each stage.
+     *
+     * @return Percentiles in microseconds
+     */
+    Map<String, Double> getStageP999Micros();
+
+    /**
+     * Returns the longest duration of each stage.
+     *
+     * @return Maxima in microseconds
+     */
+    Map<String, Double> getStageMaxMicros();
+
+    /**
+     * Returns the plain-text report also sent in reply to {@code Stats#}.
+     *
+     * @return The report
+     */
+    String getStats();
+}
@@ -0,0 +1,131 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * JUnit 5 test for ServerMetrics and LatencyHistogram.
+ */
+public class ServerMetricsTest {
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        int previous = -1;
+        for (long value : new long[] {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(bucket >= previous);
+            assertTrue(LatencyHistogram.upperBound(bucket) >= value);
+            assertTrue(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < value);
+            previous = bucket;
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.99));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(500_500, histogram.mean(), 0.001);
+        assertEquals(1_000_000, histogram.max());
+
+        // Within the 12.5% bucket width, never below the true value
+        long p50 = histogram.percentile(0.5);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125, () -> "p50 " + p50);
+        long p99 = histogram.percentile(0.99);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000, () -> "p99 " + p99);
+        assertEquals(1_000_000, histogram.percentile(1));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i % 5000);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(800_000, histogram.count());
+        assertEquals(4999, histogram.max());
+    }
+
+    @Test
+    public void testReport() {
+        ServerMetrics metrics = new ServerMetrics();
+        long time = metrics.start();
+        time = metrics.record(ServerMetrics.Stage.PARSE, time);
+        metrics.record(ServerMetrics.Stage.STORE, time);
+        metrics.accepted(2);
+        metrics.rejected(ServerMetrics.RejectReason.PASSWORD);
+        metrics.countResults(
+            List.of(new Event("A", "2025-04-15", "14:30", "a"), new Event("B", "2025-02-30", "14:30", "b")),
+            List.of(new EventStore.Result(false, 2), new EventStore.Result(false, 2)));
+
+        String report = metrics.formatStats();
+        assertTrue(report.startsWith("Stats#\n"));
+        assertTrue(report.endsWith("\n\n"));
+        assertTrue(report.contains("\naccepted 2\n"));
+        assertTrue(report.contains("\nrejected_password 1\n"));
+        assertTrue(report.contains("\nrejected_store 1\n"));
+        assertTrue(report.contains("\nrejected_invalid 1\n"));
+        assertTrue(report.contains("\nparse count=1 mean_us="));
+        assertFalse(report.contains("\nread "));
+        assertEquals(1L, metrics.getStageCounts().get("store"));
+        assertEquals(1L, metrics.getRejected().get("password"));
+    }
+
+    @Test
+    public void testDisabledRecordsNothing() {
+        ServerMetrics metrics = ServerMetrics.DISABLED;
+        assertEquals(0, metrics.start());
+        assertEquals(0, metrics.record(ServerMetrics.Stage.PARSE, 0));
+        metrics.accepted(1);
+        metrics.rejected(ServerMetrics.RejectReason.STORE);
+        assertEquals(0, metrics.getAccepted());
+        assertEquals(0, metrics.histogram(ServerMetrics.Stage.PARSE).count());
+        assertEquals(0L, metrics.getRejected().get("store"));
+    }
+
+    @Test
+    public void testMeasuredStagesFollowTheSample() {
+        ServerMetrics metrics = new ServerMetrics(4);
+        for (int i = 0; i < 4000; i++) {
+            long timed = metrics.start();
+            metrics.recordNanos(ServerMetrics.Stage.READ, timed, 1000);
+            metrics.record(ServerMetrics.Stage.PARSE, metrics.startNext(timed));
+        }
+
+        // The read is recorded for exactly the requests whose other stages are
+        long reads = metrics.histogram(ServerMetrics.Stage.READ).count();
+        assertEquals(metrics.histogram(ServerMetrics.Stage.PARSE).count(), reads);
+        assertTrue(reads > 500 && reads < 1500, () -> "sampled " + reads + " of 4000");
+    }
+
+    @Test
+    public void testStatsRequest() {
+        byte[] frame = "Stats#\r\n".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(ServerMetrics.isStatsRequest(frame, 0, frame.length));
+        assertFalse(ServerMetrics.isStatsRequest(frame, 0, 5));
+        byte[] event = "Stats#2025-04-15#14:30#a#p1#".getBytes(StandardCharsets.US_ASCII);
+        assertFalse(ServerMetrics.isStatsRequest(event, 0, event.length));
+    }
+}
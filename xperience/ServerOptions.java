@@ -0,0 +1,279 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.util.*;
+
+/**
+ * Command-line options shared by the XPerience servers.
+ * Positional arguments (port, password file, ...) are kept in order and
+ * optional startup flags are given as {@code --name} or {@code --name=value}.
+ */
+public class ServerOptions {
+
+    /**
+     * Flag that selects the non-blocking selector front end.
+     */
+    public static final String NIO = "nio";
+
+    /**
+     * Flag that sets the number of selector threads in NIO mode.
+     */
+    public static final String SELECTORS = "selectors";
+
+    /**
+     * Flag that keeps connections open for multiple pipelined requests.
+     */
+    public static final String KEEP_ALIVE = "keepalive";
+
+    /**
+     * Flag that sets how long an idle keep-alive connection stays open, in milliseconds.
+     */
+    public static final String IDLE_TIMEOUT = "idle-timeout";
+
+    /**
+     * Flag that memory-maps the password file and persists consumed passwords across restarts.
+     */
+    public static final String PERSISTENT_PASSWORDS = "persistent-passwords";
+
+    /**
+     * Flag that sets the maximum number of database connections of the DB server.
+     */
+    public static final String DB_POOL_SIZE = "db-pool";
+
+    /**
+     * Flag that groups concurrent DB inserts into shared transactions.
+     */
+    public static final String GROUP_COMMIT = "group-commit";
+
+    /**
+     * Flag that sets the maximum number of events per group commit.
+     */
+    public static final String GROUP_COMMIT_SIZE = "group-commit-size";
+
+    /**
+     * Flag that sets how long a group commit waits for more events, in milliseconds.
+     */
+    public static final String GROUP_COMMIT_DELAY = "group-commit-delay";
+
+    /**
+     * Flag that enables group commit and acknowledges events before they are committed.
+     */
+    public static final String WRITE_BEHIND = "write-behind";
+
+    /**
+     * Flag that keeps a local filter of taken event names in front of the database.
+     */
+    public static final String NAME_FILTER = "name-filter";
+
+    /**
+     * Flag that sets the number of event store shards of the memory server.
+     */
+    public static final String SHARDS = "shards";
+
+    /**
+     * Flag that keeps events in a durable log in the given directory.
+     */
+    public static final String EVENT_LOG = "event-log";
+
+    /**
+     * Flag that acknowledges logged events before they are synced to disk.
+     */
+    public static final String EVENT_LOG_ASYNC = "event-log-async";
+
+    /**
+     * Flag that restores the memory store from, and snapshots it to, the given file.
+     * Snapshots can also be taken on demand through the SnapshotScheduler MBean.
+     */
+    public static final String SNAPSHOT = "snapshot";
+
+    /**
+     * Flag that sets the interval between snapshots in seconds.
+     */
+    public static final String SNAPSHOT_INTERVAL = "snapshot-interval";
+
+    /**
+     * Flag that keeps a read index of the events and answers queries from it, including exports.
+     */
+    public static final String QUERIES = "queries";
+
+    /**
+     * Flag that records per-stage latencies and reject counts, served over JMX and by {@code Stats#};
+     * {@code --metrics=<n>} times only one request in n.
+     */
+    public static final String METRICS = "metrics";
+
+    /**
+     * Flag that logs only one request and response in the given number.
+     */
+    public static final String LOG_SAMPLE = "log-sample";
+
+    /**
+     * Flag that sets how many bytes of each request and response are logged.
+     */
+    public static final String LOG_PAYLOAD = "log-payload";
+
+    /**
+     * Flag that sets how many log records are buffered before new ones are dropped.
+     */
+    public static final String LOG_BUFFER = "log-buffer";
+
+    /**
+     * Flag that limits concurrent requests adaptively and sheds the excess;
+     * {@code --admission=<n>} caps the limit at n.
+     */
+    public static final String ADMISSION = "admission";
+
+    /**
+     * Flag that sets how long a new connection may wait before sending its first byte, in milliseconds.
+     */
+    public static final String FIRST_BYTE_TIMEOUT = "first-byte-timeout";
+
+    /**
+     * Flag that sets how long a client may take to send a whole request, in milliseconds.
+     */
+    public static final String REQUEST_TIMEOUT = "request-timeout";
+
+    /**
+     * Flag that sets how long a client may take to receive a response, in milliseconds.
+     */
+    public static final String WRITE_TIMEOUT = "write-timeout";
+
+    /**
+     * Flag that sets the largest batch frame accepted, in bytes, before the batch password is checked.
+     */
+    public static final String BATCH_FRAME_SIZE = "batch-frame-size";
+
+    /**
+     * Flag that sets the number of listening sockets, bound with SO_REUSEPORT, each with its own acceptor thread.
+     */
+    public static final String ACCEPTORS = "acceptors";
+
+    /**
+     * Default number of selector threads in NIO mode.
+     */
+    public static final int DEFAULT_SELECTOR_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /**
+     * Default idle timeout for keep-alive connections, in milliseconds.
+     */
+    public static final int DEFAULT_IDLE_TIMEOUT_MILLIS = 30000;
+
+    /**
+     * Default maximum number of database connections.
+     */
+    public static final int DEFAULT_DB_POOL_SIZE = 8;
+
+    /**
+     * Positional arguments in the order they were given.
+     */
+    private final List<String> positional;
+
+    /**
+     * Flag names mapped to their values (empty string for bare flags).
+     */
+    private final Map<String, String> flags;
+
+    /**
+     * Constructs options from already separated positional arguments and flags.
+     *
+     * @param positional Positional arguments
+     * @param flags Flag names mapped to values
+     */
+    private ServerOptions(List<String> positional, Map<String, String> flags) {
+        this.positional = positional;
+        this.flags = flags;
+    }
+
+    /**
+     * Returns options with no positional arguments and no flags set.
+     *
+     * @return Default options
+     */
+    public static ServerOptions defaults() {
+        return new ServerOptions(List.of(), Map.of());
+    }
+
+    /**
+     * Parses command-line arguments into positional arguments and flags.
+     *
+     * @param args Command-line arguments
+     * @return The parsed options
+     * @throws IllegalArgumentException If a flag has an empty name
+     */
+    public static ServerOptions parse(String[] args) {
+        List<String> positional = new ArrayList<>();
+        Map<String, String> flags = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            String flag = arg.substring(2);
+            int equals = flag.indexOf('=');
+            String name = equals < 0 ? flag : flag.substring(0, equals);
+            String value = equals < 0 ? "" : flag.substring(equals + 1);
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            flags.put(name, value);
+        }
+        return new ServerOptions(List.copyOf(positional), Map.copyOf(flags));
+    }
+
+    /**
+     * Returns the positional arguments.
+     *
+     * @return Unmodifiable list of positional arguments
+     */
+    public List<String> positional() {
+        return positional;
+    }
+
+    /**
+     * Checks whether a flag was given.
+     *
+     * @param name Flag name without the leading dashes
+     * @return True if the flag is present
+     */
+    public boolean has(String name) {
+        return flags.containsKey(name);
+    }
+
+    /**
+     * Returns the value of a flag.
+     *
+     * @param name Flag name without the leading dashes
+     * @param defaultValue Value returned if the flag is absent or has no value
+     * @return The flag value or the default
+     */
+    public String get(String name, String defaultValue) {
+        String value = flags.get(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    /**
+     * Returns the integer value of a flag.
+     *
+     * @param name Flag name without the leading dashes
+     * @param defaultValue Value returned if the flag is absent or has no value
+     * @return The flag value or the default
+     * @throws NumberFormatException If the value is not a positive integer
+     */
+    public int getInt(String name, int defaultValue) {
+        String value = flags.get(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        int parsed = Integer.parseInt(value);
+        if (parsed <= 0) {
+            throw new NumberFormatException("Invalid value for --" + name + ": " + value);
+        }
+        return parsed;
+    }
+}
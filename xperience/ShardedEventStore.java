@@ -0,0 +1,178 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * EventStore that partitions events by name across several underlying
+ * stores, which may be any mix of implementations.
+ * Every name is routed to one shard by a fixed hash of its lower-case form,
+ * so all attempts to register a name (including names that only differ in
+ * case, which a case-insensitive database treats as equal) meet in the same
+ * shard and its duplicate detection stays correct. The routing does not
+ * depend on the process, so persistent shards keep their names across
+ * restarts as long as the shard list is unchanged. Event counts are global:
+ * the sum of the shards at startup plus every event accepted since.
+ */
+public class ShardedEventStore implements EventStore {
+
+    /**
+     * Underlying stores, in routing order.
+     */
+    private final List<EventStore> shards;
+
+    /**
+     * Total number of events over all shards.
+     */
+    private final AtomicInteger eventCount = new AtomicInteger();
+
+    /**
+     * Runs the parts of a batch on their shards concurrently. Its virtual
+     * threads do not keep the JVM alive, so it is never shut down.
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Constructs a sharded store.
+     *
+     * @param shards Underlying stores; the order determines routing and must not change between runs
+     */
+    public ShardedEventStore(List<? extends EventStore> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        for (EventStore shard : this.shards) {
+            eventCount.addAndGet(shard.getEventCount());
+        }
+    }
+
+    @Override
+    public Result addEvent(String name, String date, String time, String description) {
+        // Validate before routing so invalid names need no hash
+        if (!EventStore.EventValidator.validate(name, date, time, description)) {
+            return new Result(false, eventCount.get());
+        }
+        Result result = shards.get(shardOf(name)).addEvent(name, date, time, description);
+        return result.success ? new Result(true, eventCount.incrementAndGet()) : new Result(false, eventCount.get());
+    }
+
+    /**
+     * Splits the events by shard, adds each part to its shard concurrently,
+     * and numbers the accepted events in their original order.
+     *
+     * @param events Events to add, in order
+     * @return One result per event, in the same order
+     */
+    @Override
+    public List<Result> addEvents(List<Event> events) {
+        List<List<Event>> parts = new ArrayList<>(shards.size());
+        List<List<Integer>> positions = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            parts.add(new ArrayList<>());
+            positions.add(new ArrayList<>());
+        }
+        boolean[] valid = new boolean[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            valid[i] = EventStore.EventValidator.validate(event.getName(), event.getDate(), event.getTime(), event.getDescription());
+            if (valid[i]) {
+                int shard = shardOf(event.getName());
+                parts.get(shard).add(event);
+                positions.get(shard).add(i);
+            }
+        }
+
+        // Each shard commits its part independently
+        boolean[] accepted = new boolean[events.size()];
+        List<Future<List<Result>>> futures = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<Event> part = parts.get(shard);
+            EventStore store = shards.get(shard);
+            futures.add(part.isEmpty() ? null : executor.submit(() -> store.addEvents(part)));
+        }
+        boolean interrupted = false;
+        try {
+            for (int shard = 0; shard < shards.size(); shard++) {
+                if (futures.get(shard) == null) {
+                    continue;
+                }
+                // The shards commit whether or not this thread is interrupted, so their results are always read
+                List<Result> results;
+                while (true) {
+                    try {
+                        results = futures.get(shard).get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                for (int j = 0; j < results.size(); j++) {
+                    accepted[positions.get(shard).get(j)] = results.get(j).success;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Shard failed", e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<Result> results = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            results.add(accepted[i] ? new Result(true, eventCount.incrementAndGet()) : new Result(false, eventCount.get()));
+        }
+        return results;
+    }
+
+    @Override
+    public int getEventCount() {
+        return eventCount.get();
+    }
+
+    @Override
+    public void forEachEvent(Consumer<Event> action) {
+        for (EventStore shard : shards) {
+            shard.forEachEvent(action);
+        }
+    }
+
+    @Override
+    public void exportTo(EventExport.Writer export) throws IOException {
+        for (EventStore shard : shards) {
+            shard.exportTo(export);
+        }
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return Shard count
+     */
+    public int shardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Returns the shard a name is routed to.
+     *
+     * @param name Event name
+     * @return Shard index
+     */
+    int shardOf(String name) {
+        // Fixed seed, so every process routes a name to the same shard
+        long hash = Hashing.hash(0, name.toLowerCase(Locale.ROOT));
+        return (int) Math.floorMod(hash, (long) shards.size());
+    }
+}
@@ -0,0 +1,132 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * JUnit 5 test for ShardedEventStore over EventStoreMemory shards.
+ */
+public class ShardedEventStoreTest {
+
+    private List<EventStoreMemory> shards;
+    private ShardedEventStore eventStore;
+
+    @BeforeEach
+    public void setup() {
+        shards = List.of(new EventStoreMemory(), new EventStoreMemory(), new EventStoreMemory(), new EventStoreMemory());
+        eventStore = new ShardedEventStore(shards);
+    }
+
+    @Test
+    public void testGlobalCountAndDuplicates() {
+        for (int i = 0; i < 100; i++) {
+            EventStore.Result result = eventStore.addEvent("Event" + i, "2025-04-15", "14:30", "Sharded");
+            assertTrue(result.success);
+            assertEquals(i + 1, result.eventCount);
+        }
+        EventStore.Result duplicate = eventStore.addEvent("Event42", "2025-05-20", "09:00", "Duplicate");
+        assertFalse(duplicate.success);
+        assertEquals(100, duplicate.eventCount);
+        assertFalse(eventStore.addEvent("Meetup", "2025-02-30", "18:00", "Invalid date").success);
+
+        // Every shard received some names, and each name is in exactly one shard
+        int total = 0;
+        for (EventStoreMemory shard : shards) {
+            assertTrue(shard.getEventCount() > 0);
+            total += shard.getEventCount();
+        }
+        assertEquals(100, total);
+        assertEquals(100, eventStore.getEventCount());
+        assertNotNull(shards.get(eventStore.shardOf("Event42")).getEvent("Event42"));
+    }
+
+    @Test
+    public void testRoutingIsStableAndCaseInsensitive() {
+        ShardedEventStore other = new ShardedEventStore(List.of(
+            new EventStoreMemory(), new EventStoreMemory(), new EventStoreMemory(), new EventStoreMemory()));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(eventStore.shardOf("Event" + i), other.shardOf("Event" + i));
+        }
+        assertEquals(eventStore.shardOf("Conference"), eventStore.shardOf("CONFERENCE"));
+    }
+
+    @Test
+    public void testCountIncludesExistingShardEvents() {
+        EventStoreMemory existing = new EventStoreMemory();
+        existing.addEvent("Conference", "2025-04-15", "14:30", "Already stored");
+        ShardedEventStore store = new ShardedEventStore(List.of(existing, new EventStoreMemory()));
+        assertEquals(1, store.getEventCount());
+        assertEquals(2, store.addEvent("Workshop", "2025-04-16", "10:00", "Coding workshop").eventCount);
+    }
+
+    @Test
+    public void testAddEventsAcrossShards() {
+        eventStore.addEvent("Conference", "2025-04-15", "14:30", "Annual tech conference");
+
+        List<EventStore.Result> results = eventStore.addEvents(List.of(
+            new Event("Workshop", "2025-04-16", "10:00", "Coding workshop"),
+            new Event("Conference", "2025-05-20", "09:00", "Duplicate of an existing event"),
+            new Event("Meetup", "2025-02-30", "18:00", "Invalid date"),
+            new Event("Workshop", "2025-04-17", "11:00", "Duplicate within the batch"),
+            new Event("Meetup", "2025-04-18", "18:00", "Evening meetup")
+        ));
+
+        assertEquals(5, results.size());
+        assertTrue(results.get(0).success);
+        assertEquals(2, results.get(0).eventCount);
+        assertFalse(results.get(1).success);
+        assertFalse(results.get(2).success);
+        assertFalse(results.get(3).success);
+        assertTrue(results.get(4).success);
+        assertEquals(3, results.get(4).eventCount);
+    }
+
+    @Test
+    public void testInterruptedBatchStillReportsCommittedEvents() {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            events.add(new Event("Event " + i, "2025-04-15", "14:30", "Description"));
+        }
+
+        // The shards commit regardless, so every event is reported and the interrupt is kept
+        Thread.currentThread().interrupt();
+        List<EventStore.Result> results = eventStore.addEvents(events);
+        assertTrue(Thread.interrupted());
+        for (EventStore.Result result : results) {
+            assertTrue(result.success);
+        }
+        assertEquals(20, results.get(19).eventCount);
+        assertEquals(20, eventStore.getEventCount());
+    }
+
+    @Test
+    public void testConcurrentDuplicateNames() throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+        Set<Integer> counts = ConcurrentHashMap.newKeySet();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < 8; t++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        EventStore.Result result = eventStore.addEvent("Event" + i, "2025-04-15", "14:30", "Race");
+                        if (result.success) {
+                            accepted.incrementAndGet();
+                            counts.add(result.eventCount);
+                        }
+                    }
+                });
+            }
+        }
+        assertEquals(1000, accepted.get());
+        assertEquals(1000, counts.size(), () -> "Every accepted event should get its own count");
+    }
+}
@@ -0,0 +1,138 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.file.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+import javax.management.*;
+
+/**
+ * Writes snapshots of an EventStoreMemory in the background: periodically,
+ * on demand and once more when closed. A snapshot is skipped if no event was
+ * added since the last one. Once {@link #register registered}, on-demand
+ * snapshots can be taken over JMX.
+ */
+public final class SnapshotScheduler implements SnapshotSchedulerMXBean, Closeable {
+    private static final Logger logger = Logger.getLogger(SnapshotScheduler.class.getName());
+
+    /**
+     * Default interval between snapshots, in seconds.
+     */
+    public static final int DEFAULT_INTERVAL_SECONDS = 60;
+
+    private final EventStoreMemory store;
+    private final Path file;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Event count of the last snapshot written, or -1 before the first. Guarded by this scheduler.
+     */
+    private int lastCount = -1;
+
+    /**
+     * Name of the registered MBean, or null if not registered.
+     */
+    private volatile ObjectName objectName;
+
+    /**
+     * Starts taking periodic snapshots.
+     *
+     * @param store Store to snapshot
+     * @param file Snapshot file
+     * @param intervalSeconds Interval between snapshots
+     */
+    public SnapshotScheduler(EventStoreMemory store, Path file, int intervalSeconds) {
+        this.store = store;
+        this.file = file;
+        this.executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "xperience-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::snapshotQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Registers this scheduler as an MXBean, logging rather than throwing a failure.
+     *
+     * @param name Name of the scheduler in the MBean's object name
+     */
+    public void register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("xperience:type=SnapshotScheduler,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException e) {
+            logger.warning("Could not register snapshot MBean: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String getFile() {
+        return file.toString();
+    }
+
+    @Override
+    public synchronized int getLastCount() {
+        return lastCount;
+    }
+
+    /**
+     * Writes a snapshot now, on the calling thread, unless nothing changed since the last one.
+     *
+     * @return True if a snapshot was written
+     * @throws IOException If the snapshot cannot be written
+     */
+    @Override
+    public synchronized boolean snapshotNow() throws IOException {
+        if (store.getEventCount() == lastCount) {
+            return false;
+        }
+        long start = System.nanoTime();
+        lastCount = store.snapshot(file);
+        logger.info("Wrote snapshot of " + lastCount + " events to " + file + " in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        return true;
+    }
+
+    /**
+     * Stops the periodic snapshots and writes a final one.
+     */
+    @Override
+    public void close() {
+        ObjectName objectName = this.objectName;
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                // Already unregistered
+            }
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotQuietly();
+    }
+
+    /**
+     * Writes a snapshot, logging rather than throwing a failure.
+     */
+    private void snapshotQuietly() {
+        try {
+            snapshotNow();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Could not write snapshot " + file, e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.io.*;
+
+/**
+ * Management interface of {@link SnapshotScheduler}, registered with the
+ * platform MBean server so an operator can take a snapshot on demand, for
+ * example from jconsole before a planned restart or a backup.
+ */
+public interface SnapshotSchedulerMXBean {
+
+    /**
+     * Returns the file snapshots are written to.
+     *
+     * @return Snapshot file
+     */
+    String getFile();
+
+    /**
+     * Returns the event count of the last snapshot written.
+     *
+     * @return Event count, or -1 before the first snapshot
+     */
+    int getLastCount();
+
+    /**
+     * Writes a snapshot now unless nothing changed since the last one.
+     *
+     * @return True if a snapshot was written
+     * @throws IOException If the snapshot cannot be written
+     */
+    boolean snapshotNow() throws IOException;
+}
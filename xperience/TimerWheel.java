@@ -0,0 +1,293 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.logging.*;
+
+/**
+ * Hashed timer wheel: one thread runs the timeouts of any number of
+ * connections. The wheel is a ring of buckets, one per tick; a timeout is
+ * placed in the bucket of the tick it expires in, together with the number
+ * of full turns of the wheel still to wait. Each tick the thread visits one
+ * bucket, so scheduling and cancelling cost O(1) however many timeouts are
+ * pending, at the price of firing up to one tick late.
+ * <p>
+ * Only the timer thread touches the buckets. Other threads hand new and
+ * cancelled timeouts over through lock-free queues, which the timer thread
+ * drains at every tick. Tasks run on the timer thread and must be short.
+ */
+public final class TimerWheel implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(TimerWheel.class.getName());
+
+    /**
+     * Default duration of a tick, in milliseconds.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 100;
+
+    /**
+     * Default number of buckets; with the default tick one turn takes 51.2 seconds.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long startNanos;
+
+    /**
+     * Timeouts scheduled or cancelled since the last tick.
+     */
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of ticks processed; only used by the timer thread.
+     */
+    private long tick;
+    private volatile boolean closed;
+    private final Thread worker;
+
+    /**
+     * Constructs a wheel with the default tick and size and starts its thread.
+     *
+     * @param name Name of the timer thread
+     */
+    public TimerWheel(String name) {
+        this(name, DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Constructs a wheel and starts its thread.
+     *
+     * @param name Name of the timer thread
+     * @param tick Duration of a tick
+     * @param unit Unit of the tick
+     * @param wheelSize Number of buckets; rounded up to a power of two
+     */
+    public TimerWheel(String name, long tick, TimeUnit unit, int wheelSize) {
+        if (tick <= 0 || wheelSize < 1) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = unit.toNanos(tick);
+        this.wheel = new Bucket[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.startNanos = System.nanoTime();
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules a task.
+     *
+     * @param task Task to run on the timer thread once the delay has passed
+     * @param delay Delay before the task runs
+     * @param unit Unit of the delay
+     * @return Handle to cancel the task with
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(delay));
+        added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the timer thread; pending timeouts never run.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+    }
+
+    /**
+     * Timer thread: waits for each tick, then moves new timeouts into their
+     * buckets and expires the bucket of the tick.
+     */
+    private void run() {
+        while (!closed) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline && !closed) {
+                LockSupport.parkNanos(this, deadline - now);
+            }
+            removeCancelled();
+            transferAdded();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    /**
+     * Takes cancelled timeouts out of their buckets.
+     */
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * Puts newly scheduled timeouts in the bucket of the tick they expire in;
+     * timeouts already due go in the current bucket.
+     */
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state.get() != Timeout.PENDING) {
+                continue;
+            }
+            long expiryTick = Math.max(tick, (timeout.deadline - startNanos) / tickNanos);
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            wheel[(int) (expiryTick & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * Scheduled task; cancelling it is safe from any thread.
+     */
+    public final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        /**
+         * Turns of the wheel left to wait, and the links of the bucket list; only used by the timer thread.
+         */
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        /**
+         * Constructs a pending timeout.
+         *
+         * @param task Task to run
+         * @param deadline Time the task is due, in nanoseconds
+         */
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it has not run yet.
+         *
+         * @return True if the task will not run
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return state.get() == CANCELLED;
+            }
+            cancelled.add(this);
+            return true;
+        }
+
+        /**
+         * Checks whether the task has run or is running.
+         *
+         * @return True if the timeout expired
+         */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        /**
+         * Runs the task unless it was cancelled.
+         */
+        private void expire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Timer task failed", e);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of the timeouts of one tick.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        /**
+         * Appends a timeout.
+         *
+         * @param timeout The timeout
+         */
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * Unlinks a timeout.
+         *
+         * @param timeout The timeout, which must be in this bucket
+         */
+        void remove(Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            } else {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        /**
+         * Runs the timeouts due in this turn and counts down the others.
+         */
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    timeout.expire();
+                } else if (timeout.state.get() == Timeout.CANCELLED) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/************************************************
+ *
+ * Author: Mina Shehata
+ * Assignment: SeaCure (Program 4)
+ * Class: Software and System Security
+ *
+ ************************************************/
+package xperience;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * JUnit 5 test for TimerWheel.
+ */
+public class TimerWheelTest {
+
+    @Test
+    public void testFiresNoEarlierThanItsDelay() throws InterruptedException {
+        try (TimerWheel timer = new TimerWheel("test-timer", 10, TimeUnit.MILLISECONDS, 8)) {
+            CountDownLatch fired = new CountDownLatch(1);
+            long start = System.nanoTime();
+            TimerWheel.Timeout timeout = timer.schedule(fired::countDown, 50, TimeUnit.MILLISECONDS);
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+            assertTrue(timeout.isExpired());
+            assertFalse(timeout.cancel());
+        }
+    }
+
+    @Test
+    public void testCancelledTimeoutsDoNotFire() throws InterruptedException {
+        try (TimerWheel timer = new TimerWheel("test-timer", 10, TimeUnit.MILLISECONDS, 8)) {
+            AtomicInteger fired = new AtomicInteger();
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(timer.schedule(fired::incrementAndGet, 30, TimeUnit.MILLISECONDS).cancel());
+            }
+            CountDownLatch last = new CountDownLatch(1);
+            timer.schedule(last::countDown, 60, TimeUnit.MILLISECONDS);
+            assertTrue(last.await(5, TimeUnit.SECONDS));
+            assertEquals(0, fired.get());
+        }
+    }
+
+    @Test
+    public void testDelaysLongerThanOneTurn() throws InterruptedException {
+        // Eight 10 ms buckets make an 80 ms turn, so these wait several turns
+        try (TimerWheel timer = new TimerWheel("test-timer", 10, TimeUnit.MILLISECONDS, 8)) {
+            long start = System.nanoTime();
+            long[] firedAt = new long[3];
+            CountDownLatch fired = new CountDownLatch(firedAt.length);
+            long[] delays = {250, 35, 170};
+            for (int i = 0; i < delays.length; i++) {
+                int index = i;
+                timer.schedule(() -> {
+                    firedAt[index] = System.nanoTime() - start;
+                    fired.countDown();
+                }, delays[i], TimeUnit.MILLISECONDS);
+            }
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < delays.length; i++) {
+                assertTrue(firedAt[i] >= TimeUnit.MILLISECONDS.toNanos(delays[i]), "timeout " + i);
+            }
+            assertTrue(firedAt[1] < firedAt[2] && firedAt[2] < firedAt[0]);
+        }
+    }
+}
@@ -9,6 +9,9 @@ package xperience;
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.logging.*;
 
@@ -34,12 +37,28 @@ public class XPerienceServer {
      * Event store for managing events.
      */
     private final EventStore eventStore;
+
+    /**
+     * Read index over the event store, or null if queries are not enabled.
+     */
+    private final IndexedEventStore readIndex;
+
+    /**
+     * Per-stage latencies and outcome counts, or {@link ServerMetrics#DISABLED}.
+     */
+    private final ServerMetrics metrics;
+
+    /**
+     * Adaptive limit on concurrently processed requests, or {@link AdmissionController#UNLIMITED}.
+     */
+    private final AdmissionController admission;
     
     /**
      * Password list for validating one-time passwords.
      */
     private final PasswordList passwordList;
 
+
     /**
      * Constructs the XPerience server with an in-memory event store and password security.
      * 
@@ -60,31 +79,65 @@ public class XPerienceServer {
      * @throws IOException If server socket creation or password file reading fails
      */
     public XPerienceServer(int port, EventStore eventStore, String passwordFile) throws IOException {
+        this(port, eventStore, passwordFile, ServerOptions.defaults());
+    }
+
+    /**
+     * Constructs the XPerience server with a specific event store, password security,
+     * and startup options.
+     * 
+     * @param port The port to listen on
+     * @param eventStore The event store implementation to use
+     * @param passwordFile Path to the file containing passwords
+     * @param options Startup flags (for example {@code --nio} or {@code --keepalive})
+     * @throws IOException If server socket creation or password file reading fails
+     */
+    public XPerienceServer(int port, EventStore eventStore, String passwordFile, ServerOptions options) throws IOException {
         // Use virtual threads executor
         this.executor = Executors.newVirtualThreadPerTaskExecutor();
-        this.eventStore = eventStore;
+        this.readIndex = options.has(ServerOptions.QUERIES) ? new IndexedEventStore(eventStore) : null;
+        this.metrics = ServerMetrics.fromOptions(options, "XPerienceServer");
+        this.admission = AdmissionController.fromOptions(options);
+        this.eventStore = readIndex != null ? readIndex : eventStore;
         
         // Initialize password list
-        this.passwordList = new PasswordList(passwordFile);
+        this.passwordList = new PasswordList(passwordFile, options.has(ServerOptions.PERSISTENT_PASSWORDS));
         logger.info("Loaded " + passwordList.size() + " passwords");
 
-        configureLogging();
+        configureLogging(options);
 
-        // Start server
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
-            logger.info("Server started on port " + port);
-            
+        // Use the selector front end if requested, otherwise one virtual thread per connection
+        if (options.has(ServerOptions.NIO)) {
+            new SelectorServer(port, options, executor, this::processEvent, readIndex, metrics, admission).run();
+            return;
+        }
+
+        // Handles each blocking connection on its own virtual thread
+        ClientHandler clientHandler = new ClientHandler(this::processEvent, options, readIndex, metrics, admission);
+
+        // Start server, with one accept loop per listening socket
+        List<ServerSocket> serverSockets = Acceptors.bind(port, options.getInt(ServerOptions.ACCEPTORS, 1));
+        logger.info("Server started on port " + port + " with " + serverSockets.size() + " acceptors");
+        Acceptors.run(serverSockets, (serverSocket, index) -> {
             while (true) {
                 Socket clientSocket = serverSocket.accept();
-                executor.submit(() -> handleClient(clientSocket));
+                if (admission.isOverloaded()) {
+                    // Over capacity: answer at once instead of processing another request
+                    executor.submit(() -> clientHandler.shed(clientSocket));
+                    continue;
+                }
+                executor.submit(() -> clientHandler.handle(clientSocket));
             }
-        }
+        });
     }
 
     /**
-     * Configures the logging settings for the server.
+     * Configures the logging settings for the server. Records are written by a
+     * background thread so that request threads never wait on the console.
+     *
+     * @param options Startup flags ({@code --log-buffer})
      */
-    private void configureLogging() {
+    private void configureLogging(ServerOptions options) {
         Logger rootLogger = Logger.getLogger("");
         rootLogger.setLevel(Level.INFO);
         
@@ -93,86 +146,81 @@ public class XPerienceServer {
             rootLogger.removeHandler(handler);
         }
         
-        // Add console handler
+        // Add console handler behind a bounded buffer that drops records under overload
         ConsoleHandler handler = new ConsoleHandler();
         handler.setFormatter(new SimpleFormatter());
         handler.setLevel(Level.INFO);
-        rootLogger.addHandler(handler);
-    }
-
-    /**
-     * Handles communication with a connected client.
-     *
-     * @param clientSocket The socket representing the connection to the client.
-     */
-    private void handleClient(Socket clientSocket) {
-        try {
-            // Read raw bytes to handle exact string matching
-            InputStream in = clientSocket.getInputStream();
-            OutputStream out = clientSocket.getOutputStream();
-            
-            // Buffer for reading
-            byte[] buffer = new byte[1024];
-            int bytesRead = in.read(buffer);
-            
-            if (bytesRead > 0) {
-                // Convert to string preserving exact characters
-                String inputLine = new String(buffer, 0, bytesRead);
-                logger.info("Received from client: " + inputLine);
-                
-                // Process and send response
-                String response = processEvent(inputLine);
-                out.write(response.getBytes());
-                out.flush();
-                
-                logger.info("Sent to client: " + response);
-            }
-        } catch (IOException e) {
-            logger.severe("Error with client communication: " + e.getMessage());
-        } finally {
-            try {
-                clientSocket.close();
-            } catch (IOException e) {
-                logger.warning("Error closing client socket: " + e.getMessage());
-            }
-        }
+        AsyncLogHandler asyncHandler = new AsyncLogHandler(handler,
+            options.getInt(ServerOptions.LOG_BUFFER, AsyncLogHandler.DEFAULT_CAPACITY));
+        asyncHandler.setLevel(Level.INFO);
+        rootLogger.addHandler(asyncHandler);
     }
 
     /**
      * Processes an event registration request with password security.
+     * The record is parsed in place and fields are only decoded once they are needed.
      *
-     * @param input The raw input string from the client.
+     * @param buffer Buffer holding the raw request from the client.
+     * @param offset Offset of the request in the buffer.
+     * @param length Length of the request in bytes.
+     * @param timed Sample decision of the request, from {@link ServerMetrics#start()}.
      * @return A response string indicating whether the event was accepted or rejected.
      */
-    private String processEvent(String input) {
-        // Remove trailing newlines if any
-        input = input.replaceAll("[\r\n]+$", "");
-        
-        // Split on # and get all parts
-        String[] parts = input.split("#", -1);
-        
-        // Must have at least 5 parts (name, date, time, description, password)
-        if (parts.length < 5) {
-            return "Reject#";
+    private String processEvent(byte[] buffer, int offset, int length, long timed) {
+        // Queries are answered from the read index
+        if (QueryRequest.matches(buffer, offset, length)) {
+            return processQuery(new String(buffer, offset, length, StandardCharsets.UTF_8));
+        }
+        if (ServerMetrics.isStatsRequest(buffer, offset, length)) {
+            return metrics.isEnabled() ? metrics.formatStats() : "Reject#";
         }
 
-        // Extract the fields
-        String name = parts[0];
-        String date = parts[1];
-        String time = parts[2];
-        String description = parts[3];
-        String password = parts[4];
+        // Must have at least 5 fields (name, date, time, description, password)
+        long time = metrics.startNext(timed);
+        EventRequest request = new EventRequest();
+        if (!request.parse(buffer, offset, length)) {
+            metrics.rejected(ServerMetrics.RejectReason.MALFORMED);
+            return "Reject#";
+        }
+        
+        // Batch registrations carry many events and one password
+        if (request.fieldEquals(EventRequest.NAME, BatchRequest.KEYWORD)
+                && BatchRequest.parseCount(request.date()) > 0) {
+            return processBatch(new String(buffer, offset, length, StandardCharsets.UTF_8), timed);
+        }
+        time = metrics.record(ServerMetrics.Stage.PARSE, time);
         
         // Validate password first
-        if (!passwordList.validateAndConsume(password)) {
+        boolean authorized = passwordList.validateAndConsume(request.password());
+        time = metrics.record(ServerMetrics.Stage.PASSWORD, time);
+        if (!authorized) {
             logger.info("Password validation failed");
+            metrics.rejected(ServerMetrics.RejectReason.PASSWORD);
             return "Reject#";
         }
         
         logger.info("Password validation successful");
 
+        // The store validates again; this check only tells invalid events from duplicates in the metrics
+        if (metrics.isEnabled()) {
+            boolean valid = EventStore.EventValidator.validate(
+                request.name(), request.date(), request.time(), request.description());
+            time = metrics.record(ServerMetrics.Stage.VALIDATE, time);
+            if (!valid) {
+                metrics.rejected(ServerMetrics.RejectReason.INVALID);
+                return "Reject#";
+            }
+        }
+
         // Try to add event
-        EventStore.Result result = eventStore.addEvent(name, date, time, description);
+        EventStore.Result result = eventStore.addEvent(
+            request.name(), request.date(), request.time(), request.description());
+        metrics.record(ServerMetrics.Stage.STORE, time);
+        if (result.success) {
+            metrics.accepted(1);
+        } else {
+            metrics.rejected(ServerMetrics.RejectReason.STORE);
+        }
 
         // Return response based on result
         return result.success ? 
@@ -180,32 +228,136 @@ public class XPerienceServer {
             "Reject#";
     }
 
+    /**
+     * Processes a batch registration request with password security.
+     *
+     * @param input The raw batch request from the client.
+     * @param timed Sample decision of the request, from {@link ServerMetrics#start()}.
+     * @return A response string with one result per event, or a rejection of the whole batch.
+     */
+    private String processBatch(String input, long timed) {
+        long time = metrics.startNext(timed);
+        BatchRequest batch = BatchRequest.parse(input);
+        if (batch == null) {
+            metrics.rejected(ServerMetrics.RejectReason.MALFORMED);
+            return "Reject#";
+        }
+        time = metrics.record(ServerMetrics.Stage.PARSE, time);
+        
+        // One password authorizes the whole batch
+        boolean authorized = passwordList.validateAndConsume(batch.getPassword());
+        time = metrics.record(ServerMetrics.Stage.PASSWORD, time);
+        if (!authorized) {
+            logger.info("Password validation failed");
+            metrics.rejected(ServerMetrics.RejectReason.PASSWORD);
+            return "Reject#";
+        }
+        
+        logger.info("Password validation successful");
+
+        // Try to add all events
+        List<EventStore.Result> results = eventStore.addEvents(batch.getEvents());
+        metrics.record(ServerMetrics.Stage.STORE, time);
+        metrics.countResults(batch.getEvents(), results);
+        return BatchRequest.formatResponse(results);
+    }
+
+    /**
+     * Processes a read request from the read index. Queries need no password.
+     *
+     * @param input The raw query from the client.
+     * @return A response string with the events found, or a rejection.
+     */
+    private String processQuery(String input) {
+        QueryRequest query = QueryRequest.parse(input);
+        if (readIndex == null || query == null) {
+            return "Reject#";
+        }
+        return QueryRequest.formatResponse(query.execute(readIndex));
+    }
+
     /**
      * Main method to start the XPerienceServer.
      * 
      * @param args Command-line arguments, where the first argument is the port number
-     *             and the second is the path to the password file.
+     *             and the second is the path to the password file, optionally followed
+     *             by {@code --nio}, {@code --selectors=<n>}, {@code --keepalive},
+     *             {@code --idle-timeout=<ms>}, {@code --persistent-passwords}, {@code --shards=<n>},
+     *             {@code --event-log=<dir>}, {@code --event-log-async}, {@code --snapshot=<file>},
+     *             {@code --snapshot-interval=<s>}, {@code --queries}, {@code --metrics[=<n>]},
+     *             {@code --log-sample=<n>}, {@code --log-payload=<bytes>}, {@code --log-buffer=<records>}
+     *             {@code --admission[=<max>]}, {@code --first-byte-timeout=<ms>}, {@code --request-timeout=<ms>}
+     *             {@code --write-timeout=<ms>}, {@code --acceptors=<n>} and {@code --batch-frame-size=<bytes>}.
      */
     public static void main(String[] args) {
-        if (args.length != 2) {
-            System.out.println("Usage: java XPerienceServer <port> <password file>");
+        ServerOptions options;
+        try {
+            options = ServerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            options = null;
+        }
+        if (options == null || options.positional().size() != 2) {
+            System.out.println("Usage: java XPerienceServer <port> <password file> [--nio] [--selectors=<n>] [--keepalive] [--idle-timeout=<ms>] [--persistent-passwords] [--shards=<n>] [--event-log=<dir>] [--event-log-async] [--snapshot=<file>] [--snapshot-interval=<s>] [--queries] [--metrics[=<n>]] [--log-sample=<n>] [--log-payload=<bytes>] [--log-buffer=<records>] [--admission[=<max>]] [--first-byte-timeout=<ms>] [--request-timeout=<ms>] [--write-timeout=<ms>] [--acceptors=<n>]");
             System.exit(1);
         }
         
         try {
-            int port = Integer.parseInt(args[0]);
+            int port = Integer.parseInt(options.positional().get(0));
             if (port < 0 || port > 65535) {
                 throw new NumberFormatException("Invalid port number");
             }
             
-            String passwordFile = args[1];
-            new XPerienceServer(port, passwordFile);
+            String passwordFile = options.positional().get(1);
+            
+            // Optionally split events across several stores
+            int shards = options.getInt(ServerOptions.SHARDS, 1);
+            List<EventStore> stores = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++) {
+                stores.add(openStore(options, shards > 1 ? "shard-" + i : null));
+            }
+            EventStore eventStore = shards > 1 ? new ShardedEventStore(stores) : stores.get(0);
+            new XPerienceServer(port, eventStore, passwordFile, options);
         } catch (NumberFormatException e) {
             System.out.println("Invalid port number: " + e.getMessage());
             System.exit(1);
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             System.out.println("Server error: " + e.getMessage());
             System.exit(1);
         }
     }
+
+    /**
+     * Opens one event store: a durable log if {@code --event-log} is given,
+     * otherwise memory only, restored from and snapshotted to {@code --snapshot} if given.
+     *
+     * @param options Startup options
+     * @param shard Name of the shard's subdirectory of the log, or null if there is one store
+     * @return The event store
+     * @throws IOException If the log cannot be opened
+     */
+    private static EventStore openStore(ServerOptions options, String shard) throws IOException {
+        if (!options.has(ServerOptions.EVENT_LOG)) {
+            if (!options.has(ServerOptions.SNAPSHOT)) {
+                return new EventStoreMemory();
+            }
+
+            // Restore the latest snapshot, then keep taking them until shutdown, and on demand over JMX
+            Path file = Paths.get(options.get(ServerOptions.SNAPSHOT, "events.snapshot"));
+            if (shard != null) {
+                file = file.resolveSibling(file.getFileName() + "." + shard);
+            }
+            EventStoreMemory store = EventStoreMemory.load(file);
+            logger.info("Restored " + store.getEventCount() + " events from " + file);
+            SnapshotScheduler snapshots = new SnapshotScheduler(store, file,
+                options.getInt(ServerOptions.SNAPSHOT_INTERVAL, SnapshotScheduler.DEFAULT_INTERVAL_SECONDS));
+            snapshots.register(file.toString());
+            Runtime.getRuntime().addShutdownHook(new Thread(snapshots::close, "xperience-snapshot-shutdown"));
+            return store;
+        }
+        Path directory = Paths.get(options.get(ServerOptions.EVENT_LOG, "events"));
+        if (shard != null) {
+            directory = directory.resolve(shard);
+        }
+        return new EventStoreLog(directory, EventStoreLog.DEFAULT_SEGMENT_SIZE, !options.has(ServerOptions.EVENT_LOG_ASYNC));
+    }
 }
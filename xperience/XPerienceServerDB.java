@@ -9,9 +9,11 @@ package xperience;
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.*;
+import java.sql.*;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.logging.*;
-import donabase.*;
 
 /**
  * XPerienceServerDB is the main server class that listens for client connections
@@ -34,65 +36,160 @@ public class XPerienceServerDB {
      * Event store for managing events in the database
      */
     private final EventStore eventStore;
+
+    /**
+     * Read index over the event store, or null if queries are not enabled
+     */
+    private final IndexedEventStore readIndex;
+
+    /**
+     * Per-stage latencies and outcome counts, or {@link ServerMetrics#DISABLED}.
+     */
+    private final ServerMetrics metrics;
+
+    /**
+     * Adaptive limit on concurrently processed requests, or {@link AdmissionController#UNLIMITED}.
+     */
+    private final AdmissionController admission;
     
     /**
      * Password list for validating one-time passwords
      */
     private final PasswordList passwordList;
 
+
     /**
      * Constructor that initializes the server, establishes a connection to the database,
      * loads the password list, and starts listening for client connections.
      * 
      * @param port The port number for the server to listen on.
-     * @param dbServer The database server information (format: hostname)
+     * @param dbServer The database server information (format: hostname, or a comma-separated list of shards)
      * @param passwordFile Path to the file containing passwords
      * @throws IOException if there is an issue with the server socket, database connection, or password file.
      */
     public XPerienceServerDB(int port, String dbServer, String passwordFile) throws IOException {
+        this(port, dbServer, passwordFile, ServerOptions.defaults());
+    }
+
+    /**
+     * Constructor that initializes the server with startup options.
+     * 
+     * @param port The port number for the server to listen on.
+     * @param dbServer The database server information (format: hostname, or a comma-separated list of shards)
+     * @param passwordFile Path to the file containing passwords
+     * @param options Startup flags (for example {@code --nio} or {@code --keepalive})
+     * @throws IOException if there is an issue with the server socket, database connection, or password file.
+     */
+    public XPerienceServerDB(int port, String dbServer, String passwordFile, ServerOptions options) throws IOException {
         // Initialize virtual threads executor
         this.executor = Executors.newVirtualThreadPerTaskExecutor();
         
-        // Initialize database connection
-        DonaBaseConnection dbConnection;
-        try {
-            dbConnection = new DonaBaseConnection(
-                dbServer,     // Database host from command line
-                3306,         // Database port
-                "shehata",    // Database name (changed to last name as specified)
-                "mina",       // Username
-                "password123"  // Password
-            );
-        } catch (Exception e) {
-            logger.severe("Database connection failed: " + e.getMessage());
-            throw new IOException("Failed to connect to database", e);
+        // One store per database host; several hosts are sharded by event name
+        String[] hosts = dbServer.split(",");
+        List<GroupCommitEventStore> groupCommits = new ArrayList<>();
+        EventStore store;
+        if (hosts.length == 1) {
+            store = openDatabaseStore(hosts[0], options, groupCommits);
+        } else {
+            List<EventStore> shards = new ArrayList<>(hosts.length);
+            for (String host : hosts) {
+                shards.add(openDatabaseStore(host, options, groupCommits));
+            }
+            store = new ShardedEventStore(shards);
+            logger.info("Sharding events across " + hosts.length + " databases");
         }
-        
-        // Create database event store
-        this.eventStore = new EventStoreDB(dbConnection);
+
+        // Optionally answer queries from memory instead of the database. Names ignore case like the
+        // name column, and write-behind events are only indexed once committed, since they may be dropped
+        boolean writeBehind = options.has(ServerOptions.WRITE_BEHIND);
+        this.readIndex = options.has(ServerOptions.QUERIES) ? new IndexedEventStore(store, true, !writeBehind) : null;
+        if (readIndex != null && writeBehind) {
+            for (GroupCommitEventStore groupCommit : groupCommits) {
+                groupCommit.setCommitListener(readIndex::learn);
+            }
+        }
+        this.metrics = ServerMetrics.fromOptions(options, "XPerienceServerDB");
+        this.admission = AdmissionController.fromOptions(options);
+        this.eventStore = readIndex != null ? readIndex : store;
         
         // Initialize password list
-        this.passwordList = new PasswordList(passwordFile);
+        this.passwordList = new PasswordList(passwordFile, options.has(ServerOptions.PERSISTENT_PASSWORDS));
         logger.info("Loaded " + passwordList.size() + " passwords");
         
-        configureLogging();
+        configureLogging(options);
 
-        // Initialize server socket to listen for client connections
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
-            logger.info("XPerienceServerDB started on port " + port);
-            
+        // Use the selector front end if requested, otherwise one virtual thread per connection
+        if (options.has(ServerOptions.NIO)) {
+            new SelectorServer(port, options, executor, this::processEvent, readIndex, metrics, admission).run();
+            return;
+        }
+
+        // Handles each blocking connection on its own virtual thread
+        ClientHandler clientHandler = new ClientHandler(this::processEvent, options, readIndex, metrics, admission);
+
+        // Initialize server sockets to listen for client connections, each with its own accept loop
+        List<ServerSocket> serverSockets = Acceptors.bind(port, options.getInt(ServerOptions.ACCEPTORS, 1));
+        logger.info("XPerienceServerDB started on port " + port + " with " + serverSockets.size() + " acceptors");
+        Acceptors.run(serverSockets, (serverSocket, index) -> {
             while (true) {
                 // Accept client connection and handle it in a new thread
                 Socket clientSocket = serverSocket.accept();
-                executor.submit(() -> handleClient(clientSocket));
+                if (admission.isOverloaded()) {
+                    // Over capacity: answer at once instead of processing another request
+                    executor.submit(() -> clientHandler.shed(clientSocket));
+                    continue;
+                }
+                executor.submit(() -> clientHandler.handle(clientSocket));
             }
+        });
+    }
+
+    /**
+     * Connects to one database host and creates its event store.
+     *
+     * @param host Database host name
+     * @param options Startup flags for the pool, name filter and group commit
+     * @param groupCommits List the group-commit store is added to, if one is created
+     * @return The event store for the host
+     * @throws IOException If the database cannot be reached
+     */
+    private static EventStore openDatabaseStore(String host, ServerOptions options,
+                                                List<GroupCommitEventStore> groupCommits) throws IOException {
+        // Initialize database connection pool
+        ConnectionPool pool = new ConnectionPool(
+            "jdbc:mysql://" + host + ":3306/shehata?rewriteBatchedStatements=true", // Database host from command line
+            "mina",        // Username
+            "password123", // Password
+            options.getInt(ServerOptions.DB_POOL_SIZE, ServerOptions.DEFAULT_DB_POOL_SIZE)
+        );
+        try {
+            // Fail at startup if the database cannot be reached
+            pool.borrow().close();
+        } catch (SQLException e) {
+            logger.severe("Database connection failed: " + e.getMessage());
+            throw new IOException("Failed to connect to database " + host, e);
+        }
+        
+        // Create database event store, optionally committing concurrent inserts in groups
+        EventStore databaseStore = new EventStoreDB(pool, options.has(ServerOptions.NAME_FILTER));
+        if (options.has(ServerOptions.GROUP_COMMIT) || options.has(ServerOptions.WRITE_BEHIND)) {
+            GroupCommitEventStore groupCommit = new GroupCommitEventStore(databaseStore,
+                options.getInt(ServerOptions.GROUP_COMMIT_SIZE, GroupCommitEventStore.DEFAULT_MAX_BATCH),
+                options.getInt(ServerOptions.GROUP_COMMIT_DELAY, GroupCommitEventStore.DEFAULT_MAX_DELAY_MILLIS),
+                options.has(ServerOptions.WRITE_BEHIND));
+            groupCommits.add(groupCommit);
+            databaseStore = groupCommit;
         }
+        return databaseStore;
     }
 
     /**
-     * Configures the logging settings for the server.
+     * Configures the logging settings for the server. Records are written by a
+     * background thread so that request threads never wait on the console.
+     *
+     * @param options Startup flags ({@code --log-buffer})
      */
-    private void configureLogging() {
+    private void configureLogging(ServerOptions options) {
         Logger rootLogger = Logger.getLogger("");
         rootLogger.setLevel(Level.INFO);
         
@@ -101,86 +198,81 @@ public class XPerienceServerDB {
             rootLogger.removeHandler(handler);
         }
         
-        // Add console handler
+        // Add console handler behind a bounded buffer that drops records under overload
         ConsoleHandler handler = new ConsoleHandler();
         handler.setFormatter(new SimpleFormatter());
         handler.setLevel(Level.INFO);
-        rootLogger.addHandler(handler);
-    }
-
-    /**
-     * Handles communication with a connected client.
-     *
-     * @param clientSocket The socket representing the connection to the client.
-     */
-    private void handleClient(Socket clientSocket) {
-        try {
-            // Read raw bytes to handle exact string matching
-            InputStream in = clientSocket.getInputStream();
-            OutputStream out = clientSocket.getOutputStream();
-            
-            // Buffer for reading
-            byte[] buffer = new byte[1024];
-            int bytesRead = in.read(buffer);
-            
-            if (bytesRead > 0) {
-                // Convert to string preserving exact characters
-                String inputLine = new String(buffer, 0, bytesRead);
-                logger.info("Received from client: " + inputLine);
-                
-                // Process and send response
-                String response = processEvent(inputLine);
-                out.write(response.getBytes());
-                out.flush();
-                
-                logger.info("Sent to client: " + response);
-            }
-        } catch (IOException e) {
-            logger.severe("Error with client communication: " + e.getMessage());
-        } finally {
-            try {
-                clientSocket.close();
-            } catch (IOException e) {
-                logger.warning("Error closing client socket: " + e.getMessage());
-            }
-        }
+        AsyncLogHandler asyncHandler = new AsyncLogHandler(handler,
+            options.getInt(ServerOptions.LOG_BUFFER, AsyncLogHandler.DEFAULT_CAPACITY));
+        asyncHandler.setLevel(Level.INFO);
+        rootLogger.addHandler(asyncHandler);
     }
 
     /**
      * Processes an event registration request with password security.
+     * The record is parsed in place and fields are only decoded once they are needed.
      *
-     * @param input The raw input string from the client.
+     * @param buffer Buffer holding the raw request from the client.
+     * @param offset Offset of the request in the buffer.
+     * @param length Length of the request in bytes.
+     * @param timed Sample decision of the request, from {@link ServerMetrics#start()}.
      * @return A response string indicating whether the event was accepted or rejected.
      */
-    private String processEvent(String input) {
-        // Remove trailing newlines if any
-        input = input.replaceAll("[\r\n]+$", "");
-        
-        // Split on # and get all parts
-        String[] parts = input.split("#", -1);
-        
-        // Must have at least 5 parts (name, date, time, description, password)
-        if (parts.length < 5) {
-            return "Reject#";
+    private String processEvent(byte[] buffer, int offset, int length, long timed) {
+        // Queries are answered from the read index
+        if (QueryRequest.matches(buffer, offset, length)) {
+            return processQuery(new String(buffer, offset, length, StandardCharsets.UTF_8));
+        }
+        if (ServerMetrics.isStatsRequest(buffer, offset, length)) {
+            return metrics.isEnabled() ? metrics.formatStats() : "Reject#";
         }
 
-        // Extract fields
-        String name = parts[0];
-        String date = parts[1];
-        String time = parts[2];
-        String description = parts[3];
-        String password = parts[4];
+        // Must have at least 5 fields (name, date, time, description, password)
+        long time = metrics.startNext(timed);
+        EventRequest request = new EventRequest();
+        if (!request.parse(buffer, offset, length)) {
+            metrics.rejected(ServerMetrics.RejectReason.MALFORMED);
+            return "Reject#";
+        }
+        
+        // Batch registrations carry many events and one password
+        if (request.fieldEquals(EventRequest.NAME, BatchRequest.KEYWORD)
+                && BatchRequest.parseCount(request.date()) > 0) {
+            return processBatch(new String(buffer, offset, length, StandardCharsets.UTF_8), timed);
+        }
+        time = metrics.record(ServerMetrics.Stage.PARSE, time);
         
         // Validate password first
-        if (!passwordList.validateAndConsume(password)) {
+        boolean authorized = passwordList.validateAndConsume(request.password());
+        time = metrics.record(ServerMetrics.Stage.PASSWORD, time);
+        if (!authorized) {
             logger.info("Password validation failed");
+            metrics.rejected(ServerMetrics.RejectReason.PASSWORD);
             return "Reject#";
         }
         
         logger.info("Password validation successful");
 
+        // The store validates again; this check only tells invalid events from duplicates in the metrics
+        if (metrics.isEnabled()) {
+            boolean valid = EventStore.EventValidator.validate(
+                request.name(), request.date(), request.time(), request.description());
+            time = metrics.record(ServerMetrics.Stage.VALIDATE, time);
+            if (!valid) {
+                metrics.rejected(ServerMetrics.RejectReason.INVALID);
+                return "Reject#";
+            }
+        }
+
         // Try to add event
-        EventStore.Result result = eventStore.addEvent(name, date, time, description);
+        EventStore.Result result = eventStore.addEvent(
+            request.name(), request.date(), request.time(), request.description());
+        metrics.record(ServerMetrics.Stage.STORE, time);
+        if (result.success) {
+            metrics.accepted(1);
+        } else {
+            metrics.rejected(ServerMetrics.RejectReason.STORE);
+        }
 
         // Return response based on result
         return result.success ? 
@@ -188,32 +280,93 @@ public class XPerienceServerDB {
             "Reject#";
     }
 
+    /**
+     * Processes a batch registration request with password security.
+     *
+     * @param input The raw batch request from the client.
+     * @param timed Sample decision of the request, from {@link ServerMetrics#start()}.
+     * @return A response string with one result per event, or a rejection of the whole batch.
+     */
+    private String processBatch(String input, long timed) {
+        long time = metrics.startNext(timed);
+        BatchRequest batch = BatchRequest.parse(input);
+        if (batch == null) {
+            metrics.rejected(ServerMetrics.RejectReason.MALFORMED);
+            return "Reject#";
+        }
+        time = metrics.record(ServerMetrics.Stage.PARSE, time);
+        
+        // One password authorizes the whole batch
+        boolean authorized = passwordList.validateAndConsume(batch.getPassword());
+        time = metrics.record(ServerMetrics.Stage.PASSWORD, time);
+        if (!authorized) {
+            logger.info("Password validation failed");
+            metrics.rejected(ServerMetrics.RejectReason.PASSWORD);
+            return "Reject#";
+        }
+        
+        logger.info("Password validation successful");
+
+        // Try to add all events
+        List<EventStore.Result> results = eventStore.addEvents(batch.getEvents());
+        metrics.record(ServerMetrics.Stage.STORE, time);
+        metrics.countResults(batch.getEvents(), results);
+        return BatchRequest.formatResponse(results);
+    }
+
+    /**
+     * Processes a read request from the read index. Queries need no password.
+     *
+     * @param input The raw query from the client.
+     * @return A response string with the events found, or a rejection.
+     */
+    private String processQuery(String input) {
+        QueryRequest query = QueryRequest.parse(input);
+        if (readIndex == null || query == null) {
+            return "Reject#";
+        }
+        return QueryRequest.formatResponse(query.execute(readIndex));
+    }
+
     /**
      * Main method to start the XPerienceServerDB.
      * 
      * @param args Command-line arguments, where the first argument is the port number,
-     *             the second is the database server, and the third is the path to the password file.
+     *             the second is the database server, and the third is the path to the password file,
+     *             optionally followed by {@code --nio}, {@code --selectors=<n>}, {@code --keepalive},
+     *             {@code --idle-timeout=<ms>}, {@code --persistent-passwords}, {@code --db-pool=<n>},
+     *             {@code --group-commit}, {@code --group-commit-size=<n>}, {@code --group-commit-delay=<ms>}
+     *             {@code --write-behind}, {@code --name-filter}, {@code --queries}, {@code --metrics[=<n>]},
+     *             {@code --log-sample=<n>}, {@code --log-payload=<bytes>}, {@code --log-buffer=<records>}
+     *             {@code --admission[=<max>]}, {@code --first-byte-timeout=<ms>}, {@code --request-timeout=<ms>}
+     *             {@code --write-timeout=<ms>}, {@code --acceptors=<n>} and {@code --batch-frame-size=<bytes>}.
      */
     public static void main(String[] args) {
-        if (args.length != 3) {
-            System.out.println("Usage: java XPerienceServerDB <port> <db server> <password file>");
+        ServerOptions options;
+        try {
+            options = ServerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            options = null;
+        }
+        if (options == null || options.positional().size() != 3) {
+            System.out.println("Usage: java XPerienceServerDB <port> <db server> <password file> [--nio] [--selectors=<n>] [--keepalive] [--idle-timeout=<ms>] [--persistent-passwords] [--db-pool=<n>] [--group-commit] [--group-commit-size=<n>] [--group-commit-delay=<ms>] [--write-behind] [--name-filter] [--queries] [--metrics[=<n>]] [--log-sample=<n>] [--log-payload=<bytes>] [--log-buffer=<records>] [--admission[=<max>]] [--first-byte-timeout=<ms>] [--request-timeout=<ms>] [--write-timeout=<ms>] [--acceptors=<n>]");
             System.exit(1);
         }
         
         try {
-            int port = Integer.parseInt(args[0]);
+            int port = Integer.parseInt(options.positional().get(0));
             if (port < 0 || port > 65535) {
                 throw new NumberFormatException("Invalid port number");
             }
             
-            String dbServer = args[1];
-            String passwordFile = args[2];
+            String dbServer = options.positional().get(1);
+            String passwordFile = options.positional().get(2);
             
-            new XPerienceServerDB(port, dbServer, passwordFile);
+            new XPerienceServerDB(port, dbServer, passwordFile, options);
         } catch (NumberFormatException e) {
             System.out.println("Invalid port number: " + e.getMessage());
             System.exit(1);
-        } catch (IOException e) {
+        } catch (IOException | UncheckedIOException e) {
             System.out.println("Server error: " + e.getMessage());
             System.exit(1);
         }
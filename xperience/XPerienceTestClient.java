@@ -13,19 +13,37 @@ import java.util.logging.*;
 
 /**
  * XPerienceTestClient is used to send test cases to the XPerience server.
+ * With {@code --binary} the event records are sent as {@link BinaryRequest}
+ * frames. With {@code --load} it runs the {@link LoadGenerator} instead.
  */
 public class XPerienceTestClient {
     private static final Logger logger = Logger.getLogger(XPerienceTestClient.class.getName());
 
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.out.println("Usage: java XPerienceTestClient <port>");
+        ServerOptions options = ServerOptions.parse(args);
+        if (options.positional().size() != 1) {
+            System.out.println("Usage: java XPerienceTestClient <port> [--binary] [--load --passwords=<file> [--host=<host>]"
+                + " [--connections=<n>] [--rate=<req/s>] [--duration=<s>] [--requests=<n>]"
+                + " [--name-size=<dist>] [--description-size=<dist>] [--duplicates=<ratio>]"
+                + " [--output=<file>] [--format=csv|json]]");
             System.exit(1);
         }
 
-        int port = Integer.parseInt(args[0]);
+        int port = Integer.parseInt(options.positional().get(0));
         String host = "localhost";
 
+        if (options.has(LoadGenerator.LOAD)) {
+            try {
+                LoadGenerator.run(port, options);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.severe("Load run failed: " + e.getMessage());
+                System.exit(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
         String[] testCases = {
             // Valid cases
             "A#2025-03-04#12:00#Valid min name and description#", // Minimum valid name and description
@@ -51,21 +69,39 @@ public class XPerienceTestClient {
             // Duplicate event case
             "Unique Event#2025-09-09#19:00#This should be accepted first#", // First occurrence (should be accepted)
             "Unique Event#2025-09-09#19:00#This should be rejected as duplicate#", // Duplicate (should be rejected)
+            
+            // Batch case
+            "Batch#3#testpass#Batch One#2025-09-10#09:00#First#Batch Two#2025-13-01#09:00#Bad date#Batch One#2025-09-11#10:00#Repeat#", // Accept, Reject, Reject
         };
 
+        boolean binary = options.has(LoadGenerator.BINARY);
         for (int i = 0; i < testCases.length; i++) {
-            sendTestCase(host, port, testCases[i], i + 1);
+            sendTestCase(host, port, testCases[i], i + 1, binary);
         }
     }
 
-    private static void sendTestCase(String host, int port, String message, int caseNumber) {
+    private static void sendTestCase(String host, int port, String message, int caseNumber, boolean binary) {
+        byte[] request;
+        try {
+            // Batches have no binary form, and some malformed dates and times cannot be packed
+            request = binary && !message.startsWith(BatchRequest.KEYWORD + "#")
+                ? BinaryRequest.fromText(message) : message.getBytes();
+        } catch (IllegalArgumentException e) {
+            System.out.println("Test Case " + caseNumber + ":");
+            System.out.println("Skipped: " + e.getMessage() + "\n");
+            return;
+        }
+
         try (Socket socket = new Socket(host, port);
              OutputStream out = socket.getOutputStream();
              InputStream in = socket.getInputStream()) {
             
-            out.write(message.getBytes());
+            out.write(request);
             out.flush();
             
+            // Signal the end of the request so incomplete records are answered immediately
+            socket.shutdownOutput();
+            
             byte[] buffer = new byte[1024];
             int bytesRead = in.read(buffer);
             String response = new String(buffer, 0, bytesRead);